@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.aop;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a void method (typically @Scheduled) on only one instance of the app
+ * at a time: each call first takes a LeaderLockService lock, and is skipped
+ * when another instance holds it.
+ *
+ * Durations may be written as 10m, PT10M or plain milliseconds, and may
+ * use ${...} placeholders.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ClusterLock {
+  /**
+   * The lock's name; defaults to ClassName.methodName.
+   */
+  String name() default "";
+
+  /**
+   * How long the lock is held at most, should the method run that long or
+   * its instance die.
+   */
+  String lease() default "10m";
+
+  /**
+   * How long after it was taken the lock is held at least, even when the
+   * method is done sooner; set it a little under the schedule's interval
+   * so that each run happens once in the whole cluster.
+   */
+  String holdAtLeast() default "0";
+}
@@ -0,0 +1,44 @@
+package edu.ucsb.cs156.example.aop;
+
+import java.time.Duration;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import edu.ucsb.cs156.example.services.LeaderLockService;
+
+@Aspect
+@Component
+public class ClusterLockAspect {
+
+  @Autowired
+  LeaderLockService leaderLocks;
+
+  @Autowired
+  Environment environment;
+
+  @Around("@annotation(clusterLock)")
+  public Object runOncePerCluster(ProceedingJoinPoint joinPoint, ClusterLock clusterLock) throws Throwable {
+    MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+    if (signature.getReturnType() != void.class) {
+      throw new IllegalStateException("@ClusterLock method %s must be void, since it may be skipped"
+          .formatted(signature.toShortString()));
+    }
+    String name = clusterLock.name().isEmpty()
+        ? signature.getDeclaringType().getSimpleName() + "." + signature.getName()
+        : clusterLock.name();
+    leaderLocks.runExclusively(name, duration(clusterLock.lease()), duration(clusterLock.holdAtLeast()),
+        joinPoint::proceed);
+    return null;
+  }
+
+  private Duration duration(String text) {
+    return DurationStyle.detectAndParse(environment.resolveRequiredPlaceholders(text));
+  }
+}
@@ -1,19 +1,33 @@
 package edu.ucsb.cs156.example.aop;
 
 import lombok.extern.slf4j.Slf4j;
-import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.annotation.Before;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
+import edu.ucsb.cs156.example.services.RequestTimings;
+import edu.ucsb.cs156.example.services.TraceContext;
+
 import javax.servlet.http.HttpServletRequest;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Logs each request a controller handles and, when the request is traced,
+ * adds the filters span (up to the first controller method) and a span for
+ * the controller method itself. The method's time also counts towards the
+ * controller entry of the Server-Timing header, and its @QueryBudget, if
+ * any, becomes the request's.
+ */
 @Slf4j
 @Aspect
 @Component
@@ -31,8 +45,11 @@ public class LoggingAspect {
   private ArrayList<String> stoplist = new ArrayList<String>(Arrays.asList(
       "edu.ucsb.cs156.example.controllers.FrontendProxyController"));
 
-  @Before(pointcut)
-  public void logControllers(JoinPoint joinPoint) {
+  // the @QueryBudget of each controller method; -1 for none
+  private final Map<Method, Integer> queryBudgets = new ConcurrentHashMap<>();
+
+  @Around(pointcut)
+  public Object logControllers(ProceedingJoinPoint joinPoint) throws Throwable {
     getCurrentHttpRequest().ifPresent(
         request -> {
           String declaringTypeName = joinPoint.getSignature().getDeclaringTypeName();
@@ -41,6 +58,21 @@ public class LoggingAspect {
                 joinPoint.getSignature().getName(), declaringTypeName));
           }
         });
+    String handler = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+    TraceContext.handlerReached();
+    RequestTimings.handlerReached(handler,
+        queryBudgets.computeIfAbsent(((MethodSignature) joinPoint.getSignature()).getMethod(), LoggingAspect::queryBudget));
+    long start = System.nanoTime();
+    try (TraceContext.Scope span = TraceContext.span("controller", handler)) {
+      return joinPoint.proceed();
+    } finally {
+      RequestTimings.controllerRan(System.nanoTime() - start);
+    }
+  }
+
+  private static int queryBudget(Method method) {
+    QueryBudget budget = method.getAnnotation(QueryBudget.class);
+    return budget == null ? -1 : budget.value();
   }
 
   private static Optional<HttpServletRequest> getCurrentHttpRequest() {
@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.aop;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * How many SQL statements a request to this controller method may run in
+ * all: its own, its bulkhead work's and those of the filters around it
+ * (see QueryBudgetService). Read by LoggingAspect.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface QueryBudget {
+  /**
+   * For endpoints whose statement count depends on what they are sent: a
+   * batch, a GraphQL query, a CSV file.
+   */
+  int UNBOUNDED = Integer.MAX_VALUE;
+
+  int value();
+}
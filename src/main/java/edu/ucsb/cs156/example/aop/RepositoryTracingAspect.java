@@ -0,0 +1,52 @@
+package edu.ucsb.cs156.example.aop;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.stereotype.Component;
+
+import edu.ucsb.cs156.example.services.QueryOrigin;
+import edu.ucsb.cs156.example.services.TraceContext;
+
+/**
+ * Names each call to a Spring Data repository after the repository
+ * interface and method, e.g. UCSBDateRepository.findById: the SQL it runs
+ * is put down to that name (see QueryOrigin) and, in a traced request, it
+ * gets a span of that name.
+ */
+@Aspect
+@Component
+public class RepositoryTracingAspect {
+  // language=PointcutExpression
+  private static final String pointcut = "execution(* org.springframework.data.repository.Repository+.*(..))";
+
+  private record Call(Class<?> proxyClass, Method method) {
+  }
+
+  private final Map<Call, String> names = new ConcurrentHashMap<>();
+
+  @Around(pointcut)
+  public Object traceRepositoryCall(ProceedingJoinPoint joinPoint) throws Throwable {
+    Object proxy = joinPoint.getThis();
+    Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+    String name = names.computeIfAbsent(new Call(proxy.getClass(), method),
+        call -> repositoryName(proxy) + "." + method.getName());
+    String outer = QueryOrigin.enter(name);
+    try (TraceContext.Scope span = TraceContext.span("repository", name)) {
+      return joinPoint.proceed();
+    } finally {
+      QueryOrigin.exit(outer);
+    }
+  }
+
+  private static String repositoryName(Object proxy) {
+    Class<?>[] interfaces = AopProxyUtils.proxiedUserInterfaces(proxy);
+    return interfaces.length == 0 ? proxy.getClass().getSimpleName() : interfaces[0].getSimpleName();
+  }
+}
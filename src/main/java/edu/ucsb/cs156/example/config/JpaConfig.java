@@ -0,0 +1,16 @@
+package edu.ucsb.cs156.example.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import edu.ucsb.cs156.example.repositories.EntityJpaRepository;
+
+/**
+ * Gives every repository EntityJpaRepository as its implementation, for the
+ * fields= queries. @DataJpaTest slices do not scan configuration classes, so
+ * they @Import this one.
+ */
+@Configuration
+@EnableJpaRepositories(basePackages = "edu.ucsb.cs156.example.repositories", repositoryBaseClass = EntityJpaRepository.class)
+public class JpaConfig {
+}
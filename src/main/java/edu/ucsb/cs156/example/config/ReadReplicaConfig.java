@@ -0,0 +1,85 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Replaces Spring Boot's DataSource with a ReplicaRoutingDataSource when
+ * app.datasource.replica.urls is set; without it the app talks to
+ * spring.datasource.url only, as before.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replica.urls")
+public class ReadReplicaConfig {
+
+  @Value("${app.datasource.replica.urls}")
+  private List<String> urls;
+
+  @Value("${app.datasource.replica.username:${spring.datasource.username:}}")
+  private String username;
+
+  @Value("${app.datasource.replica.password:${spring.datasource.password:}}")
+  private String password;
+
+  @Value("${app.datasource.replica.stickySeconds:5}")
+  private long stickySeconds;
+
+  @Value("${app.datasource.replica.retrySeconds:30}")
+  private long retrySeconds;
+
+  @Value("${app.datasource.replica.connectionTimeoutMillis:2000}")
+  private long connectionTimeoutMillis;
+
+  private ReplicaRoutingDataSource routing;
+
+  @Bean
+  public DataSource dataSource(DataSourceProperties properties) {
+    HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    primary.setPoolName("primary");
+
+    List<DataSource> replicas = new ArrayList<>();
+    for (String url : urls) {
+      HikariDataSource replica = DataSourceBuilder.create()
+          .type(HikariDataSource.class)
+          .url(url)
+          .username(username)
+          .password(password)
+          .build();
+      replica.setPoolName("replica-" + replicas.size());
+      replica.setReadOnly(true);
+      // a replica that is down at startup must not stop the app from starting
+      replica.setInitializationFailTimeout(-1);
+      replica.setConnectionTimeout(connectionTimeoutMillis);
+      replicas.add(replica);
+    }
+    log.info("routing read-only transactions to {} read replica(s)", replicas.size());
+
+    routing = new ReplicaRoutingDataSource(primary, replicas,
+        Duration.ofSeconds(stickySeconds), Duration.ofSeconds(retrySeconds), System::nanoTime);
+    return new LazyConnectionDataSourceProxy(routing);
+  }
+
+  @PreDestroy
+  void closePools() throws Exception {
+    if (routing != null) {
+      routing.close();
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package edu.ucsb.cs156.example.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hands out replica connections for read-only transactions and primary
+ * connections for everything else.
+ *
+ * - read-your-writes: for a short window after a user's read-write
+ *   transaction commits, that user's reads also go to the primary, so they
+ *   see their own change even when the replicas lag behind
+ * - fallback: a replica that fails to give a connection is skipped for the
+ *   retry interval; when no replica is available reads use the primary
+ *
+ * Must sit behind a LazyConnectionDataSourceProxy, since Spring asks for the
+ * connection when it begins a transaction, before the transaction is marked
+ * read-only.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+  // cleaning up the read-your-writes map on every write would be wasted work
+  private static final int STICKY_SWEEP_THRESHOLD = 1_000;
+
+  private final DataSource primary;
+  private final List<Replica> replicas;
+  private final long stickyNanos;
+  private final long retryNanos;
+  private final LongSupplier clock;
+  private final Map<String, Long> stickyUntil = new ConcurrentHashMap<>();
+  private final AtomicInteger next = new AtomicInteger();
+
+  private static final class Replica {
+    private final DataSource dataSource;
+    private volatile boolean down;
+    private volatile long downUntil;
+
+    Replica(DataSource dataSource) {
+      this.dataSource = dataSource;
+    }
+  }
+
+  @FunctionalInterface
+  private interface ConnectionSource {
+    Connection from(DataSource dataSource) throws SQLException;
+  }
+
+  /**
+   * @param clock nanoTime-style clock, replaceable in tests
+   */
+  public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas,
+      Duration sticky, Duration retry, LongSupplier clock) {
+    this.primary = primary;
+    this.replicas = replicas.stream().map(Replica::new).toList();
+    this.stickyNanos = sticky.toNanos();
+    this.retryNanos = retry.toNanos();
+    this.clock = clock;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return route(DataSource::getConnection);
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return route(dataSource -> dataSource.getConnection(username, password));
+  }
+
+  private Connection route(ConnectionSource source) throws SQLException {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      recordWrite();
+      return source.from(primary);
+    }
+    if (!replicas.isEmpty() && !readsOwnWrites()) {
+      int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+      for (int i = 0; i < replicas.size(); i++) {
+        Replica replica = replicas.get((start + i) % replicas.size());
+        if (replica.down && replica.downUntil - clock.getAsLong() > 0) {
+          continue;
+        }
+        try {
+          Connection connection = source.from(replica.dataSource);
+          replica.down = false;
+          return connection;
+        } catch (SQLException e) {
+          log.warn("read replica unavailable; skipping it for {}s", Duration.ofNanos(retryNanos).toSeconds(), e);
+          replica.downUntil = clock.getAsLong() + retryNanos;
+          replica.down = true;
+        }
+      }
+    }
+    return source.from(primary);
+  }
+
+  private void recordWrite() {
+    String user = currentUser();
+    if (user == null || stickyNanos <= 0) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      stickToPrimary(user);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        stickToPrimary(user);
+      }
+    });
+  }
+
+  private void stickToPrimary(String user) {
+    long now = clock.getAsLong();
+    if (stickyUntil.size() > STICKY_SWEEP_THRESHOLD) {
+      stickyUntil.values().removeIf(until -> until - now <= 0);
+    }
+    stickyUntil.put(user, now + stickyNanos);
+  }
+
+  private boolean readsOwnWrites() {
+    String user = currentUser();
+    if (user == null) {
+      return false;
+    }
+    Long until = stickyUntil.get(user);
+    if (until == null) {
+      return false;
+    }
+    if (until - clock.getAsLong() > 0) {
+      return true;
+    }
+    stickyUntil.remove(user, until);
+    return false;
+  }
+
+  private static String currentUser() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+      return null;
+    }
+    return authentication.getName();
+  }
+
+  @Override
+  public void close() throws Exception {
+    closeIfPossible(primary);
+    for (Replica replica : replicas) {
+      closeIfPossible(replica.dataSource);
+    }
+  }
+
+  private static void closeIfPossible(DataSource dataSource) throws Exception {
+    if (dataSource instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package edu.ucsb.cs156.example.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Turns on {@code @Scheduled} housekeeping (e.g. purging expired idempotency
+ * keys). Kept out of ExampleApplication so that @WebMvcTest slices do not
+ * start the scheduler.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,11 @@
+package edu.ucsb.cs156.example.config;
+
+/**
+ * Told about each SQL statement the app runs (see StatementTimer), on the
+ * thread that ran it: the SQL as prepared, with ? for parameters, and how
+ * long executing it took. Must be quick and must not throw.
+ */
+@FunctionalInterface
+public interface StatementListener {
+  void executed(String sql, long nanos);
+}
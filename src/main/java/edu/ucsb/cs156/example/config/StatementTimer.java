@@ -0,0 +1,87 @@
+package edu.ucsb.cs156.example.config;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.SessionEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Times every SQL statement the app runs and tells the listeners about it
+ * once it has run: the SQL as prepared, with ? for parameters, and how long
+ * executing it took. A batch counts as one statement.
+ *
+ * Statements are timed where they are run rather than wrapped one by one.
+ * Hibernate hands each SQL string to this StatementInspector before it
+ * prepares it, and tells a SessionEventListener per session (see
+ * sessionListener) when executing starts and ends; JdbcTemplate statements
+ * go through TimedJdbcTemplate. Nothing is made per statement, and nothing
+ * is kept once the listeners return but the SQL last prepared on each
+ * thread.
+ */
+public class StatementTimer implements StatementInspector {
+
+  private final Supplier<List<StatementListener>> listenerSource;
+  private volatile List<StatementListener> listeners;
+
+  // Hibernate prepares and runs a statement on the same thread, with nothing
+  // in between that prepares another
+  private final ThreadLocal<String> prepared = new ThreadLocal<>();
+
+  /**
+   * @param listeners asked for once, on the first statement, so that they
+   *                  may be beans that need the DataSource themselves
+   */
+  public StatementTimer(Supplier<List<StatementListener>> listeners) {
+    this.listenerSource = listeners;
+  }
+
+  @Override
+  public String inspect(String sql) {
+    prepared.set(sql);
+    return sql;
+  }
+
+  /**
+   * @return a listener that times the statements of one Hibernate session
+   */
+  public SessionEventListener sessionListener() {
+    return new SessionTimer();
+  }
+
+  public void executed(String sql, long nanos) {
+    List<StatementListener> current = listeners;
+    if (current == null) {
+      current = listenerSource.get();
+      listeners = current;
+    }
+    for (StatementListener listener : current) {
+      listener.executed(sql, nanos);
+    }
+  }
+
+  private final class SessionTimer extends BaseSessionEventListener {
+    private long start;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+      start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+      executed(prepared.get(), System.nanoTime() - start);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+      start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+      executed(prepared.get(), System.nanoTime() - start);
+    }
+  }
+}
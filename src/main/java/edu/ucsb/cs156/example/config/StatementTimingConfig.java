@@ -0,0 +1,68 @@
+package edu.ucsb.cs156.example.config;
+
+import javax.sql.DataSource;
+
+import org.hibernate.Session;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.jdbc.JdbcProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+
+import edu.ucsb.cs156.example.services.RequestTimings;
+
+/**
+ * Has a StatementTimer tell every StatementListener bean about each SQL
+ * statement, whether Hibernate or a JdbcTemplate runs it.
+ */
+@Configuration
+public class StatementTimingConfig {
+
+  @Bean
+  public StatementTimer statementTimer(ObjectProvider<StatementListener> listeners) {
+    return new StatementTimer(() -> listeners.orderedStream().toList());
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer statementInspector(StatementTimer statementTimer) {
+    return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, statementTimer);
+  }
+
+  // static, so that post-processing does not wait for this configuration
+  @Bean
+  public static BeanPostProcessor timeSessionStatements(ObjectProvider<StatementTimer> statementTimer) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof AbstractEntityManagerFactoryBean factory) {
+          factory.setEntityManagerInitializer(entityManager -> entityManager.unwrap(Session.class)
+              .addEventListeners(statementTimer.getObject().sessionListener()));
+        }
+        return bean;
+      }
+    };
+  }
+
+  // in place of Spring Boot's
+  @Bean
+  public JdbcTemplate jdbcTemplate(DataSource dataSource, JdbcProperties properties, StatementTimer statementTimer) {
+    JdbcTemplate jdbcTemplate = new TimedJdbcTemplate(dataSource, statementTimer);
+    JdbcProperties.Template template = properties.getTemplate();
+    jdbcTemplate.setFetchSize(template.getFetchSize());
+    jdbcTemplate.setMaxRows(template.getMaxRows());
+    if (template.getQueryTimeout() != null) {
+      jdbcTemplate.setQueryTimeout((int) template.getQueryTimeout().getSeconds());
+    }
+    return jdbcTemplate;
+  }
+
+  // for the Server-Timing header
+  @Bean
+  public StatementListener requestTimingsListener() {
+    return (sql, nanos) -> RequestTimings.statementExecuted(nanos);
+  }
+}
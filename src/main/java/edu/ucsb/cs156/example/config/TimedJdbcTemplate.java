@@ -0,0 +1,121 @@
+package edu.ucsb.cs156.example.config;
+
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.CallableStatementCallback;
+import org.springframework.jdbc.core.CallableStatementCreator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.jdbc.support.KeyHolder;
+
+/**
+ * A JdbcTemplate that reports each statement it runs to a StatementTimer.
+ *
+ * Every JdbcTemplate method ends up in one of the methods overridden here,
+ * and none of these calls another of them, so each statement is reported
+ * once; the time includes reading its results, except for queryForStream,
+ * whose stream is read after it returns. A batch is reported with its first
+ * SQL.
+ */
+public class TimedJdbcTemplate extends JdbcTemplate {
+  private final StatementTimer timer;
+
+  public TimedJdbcTemplate(DataSource dataSource, StatementTimer timer) {
+    super(dataSource);
+    this.timer = timer;
+  }
+
+  @Override
+  public <T> T execute(StatementCallback<T> action) throws DataAccessException {
+    return timed(sqlOf(action), () -> super.execute(action));
+  }
+
+  @Override
+  public void execute(String sql) throws DataAccessException {
+    timed(sql, () -> {
+      super.execute(sql);
+      return null;
+    });
+  }
+
+  @Override
+  public <T> T query(String sql, ResultSetExtractor<T> rse) throws DataAccessException {
+    return timed(sql, () -> super.query(sql, rse));
+  }
+
+  @Override
+  public <T> Stream<T> queryForStream(String sql, RowMapper<T> rowMapper) throws DataAccessException {
+    return timed(sql, () -> super.queryForStream(sql, rowMapper));
+  }
+
+  @Override
+  public int update(String sql) throws DataAccessException {
+    return timed(sql, () -> super.update(sql));
+  }
+
+  @Override
+  public int[] batchUpdate(String... sql) throws DataAccessException {
+    return timed(sql.length > 0 ? sql[0] : null, () -> super.batchUpdate(sql));
+  }
+
+  @Override
+  public <T> T execute(PreparedStatementCreator psc, PreparedStatementCallback<T> action) throws DataAccessException {
+    return timed(sqlOf(psc), () -> super.execute(psc, action));
+  }
+
+  @Override
+  public <T> T execute(String sql, PreparedStatementCallback<T> action) throws DataAccessException {
+    return timed(sql, () -> super.execute(sql, action));
+  }
+
+  @Override
+  public <T> T query(PreparedStatementCreator psc, PreparedStatementSetter pss, ResultSetExtractor<T> rse)
+      throws DataAccessException {
+    return timed(sqlOf(psc), () -> super.query(psc, pss, rse));
+  }
+
+  @Override
+  public <T> Stream<T> queryForStream(PreparedStatementCreator psc, PreparedStatementSetter pss,
+      RowMapper<T> rowMapper) throws DataAccessException {
+    return timed(sqlOf(psc), () -> super.queryForStream(psc, pss, rowMapper));
+  }
+
+  @Override
+  protected int update(PreparedStatementCreator psc, PreparedStatementSetter pss) throws DataAccessException {
+    return timed(sqlOf(psc), () -> super.update(psc, pss));
+  }
+
+  @Override
+  public int update(PreparedStatementCreator psc, KeyHolder generatedKeyHolder) throws DataAccessException {
+    return timed(sqlOf(psc), () -> super.update(psc, generatedKeyHolder));
+  }
+
+  // execute(String, CallableStatementCallback) and call() come through here
+  @Override
+  public <T> T execute(CallableStatementCreator csc, CallableStatementCallback<T> action) throws DataAccessException {
+    return timed(sqlOf(csc), () -> super.execute(csc, action));
+  }
+
+  private <T> T timed(String sql, Supplier<T> statement) {
+    long start = System.nanoTime();
+    try {
+      return statement.get();
+    } finally {
+      timer.executed(sql, System.nanoTime() - start);
+    }
+  }
+
+  private static String sqlOf(Object sqlProvider) {
+    return sqlProvider instanceof SqlProvider provider ? provider.getSql() : null;
+  }
+}
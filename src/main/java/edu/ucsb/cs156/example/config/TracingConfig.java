@@ -0,0 +1,43 @@
+package edu.ucsb.cs156.example.config;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.services.RequestTimings;
+import edu.ucsb.cs156.example.services.TraceContext;
+
+/**
+ * Replaces Boot's JSON message converter with one that adds a serialization
+ * span to the trace of the current request for each response body it writes,
+ * and counts the time towards the ser entry of its Server-Timing header.
+ */
+@Configuration
+public class TracingConfig {
+
+  @Bean
+  public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+    return new MappingJackson2HttpMessageConverter(objectMapper) {
+      @Override
+      protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+          throws IOException, HttpMessageNotWritableException {
+        try (TraceContext.Scope span = TraceContext.span("serialization",
+            object == null ? "null" : object.getClass().getSimpleName())) {
+          long start = RequestTimings.serializationStarted();
+          try {
+            super.writeInternal(object, type, outputMessage);
+          } finally {
+            RequestTimings.serializationFinished(start);
+          }
+        }
+      }
+    };
+  }
+}
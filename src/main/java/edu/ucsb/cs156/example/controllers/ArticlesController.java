@@ -1,8 +1,12 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.QueryBudget;
 import edu.ucsb.cs156.example.entities.Article;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
-import edu.ucsb.cs156.example.repositories.ArticleRepository;
+import edu.ucsb.cs156.example.models.MultiGetResult;
+import edu.ucsb.cs156.example.models.ArticleSummary;
+import edu.ucsb.cs156.example.repositories.EntityFilter;
+import edu.ucsb.cs156.example.repositories.Fieldset;
+import edu.ucsb.cs156.example.services.ArticleService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -26,6 +30,9 @@ import org.springframework.web.bind.annotation.RestController;
 import javax.validation.Valid;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Tag(name = "Articles")
 @RequestMapping("/api/articles")
@@ -34,18 +41,49 @@ import java.time.LocalDateTime;
 public class ArticlesController extends ApiController {
 
     @Autowired
-    ArticleRepository articleRepository;
+    ArticleService articleService;
 
     @Operation(summary= "List all articles")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("/all")
-    public Iterable<Article> allArticles() {
-        Iterable<Article> articles = articleRepository.findAll();
-        return articles;
+    public CompletableFuture<Iterable<Article>> allArticles(
+            @Parameter(name="filter", description="comma separated field:value terms on indexed fields, e.g. email:cgaucho@ucsb.edu") @RequestParam(required = false) String filter,
+            @Parameter(name="sort", description="comma separated indexed fields, - for descending, e.g. -dateAdded") @RequestParam(required = false) String sort) {
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> articleService.findAll());
+        }
+        EntityFilter<Article> entityFilter = EntityFilter.parse(Article.class, filter, sort);
+        return bulkheads.userReads(() -> articleService.findAll(entityFilter));
+    }
+
+    @Operation(summary= "List all articles, with only the given fields")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "/all", params = "fields")
+    public CompletableFuture<List<Map<String, Object>>> allArticleFields(
+            @Parameter(name="fields", description="comma separated list, e.g. id,title") @RequestParam String fields,
+            @Parameter(name="filter", description="comma separated field:value terms on indexed fields, e.g. email:cgaucho@ucsb.edu") @RequestParam(required = false) String filter,
+            @Parameter(name="sort", description="comma separated indexed fields, - for descending, e.g. -dateAdded") @RequestParam(required = false) String sort) {
+        Fieldset fieldset = Fieldset.parse(Article.class, fields);
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> articleService.findAllFields(fieldset));
+        }
+        EntityFilter<Article> entityFilter = EntityFilter.parse(Article.class, filter, sort);
+        return bulkheads.userReads(() -> articleService.findAllFields(fieldset, entityFilter));
+    }
+
+    @Operation(summary= "List all articles without their explanation")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "/all", params = { "view=summary", "!fields", "!filter", "!sort" })
+    public CompletableFuture<List<ArticleSummary>> allArticleSummaries() {
+        return bulkheads.userReads(() -> articleService.findAllSummaries());
     }
 
     @Operation(summary= "Create a new article")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(4)
     @PostMapping("/post")
     public Article postArticle(
             @Parameter(name="title") @RequestParam String title,
@@ -67,52 +105,78 @@ public class ArticlesController extends ApiController {
         article.setEmail(email);
         article.setDateAdded(dateAdded);
 
-        Article savedArticle = articleRepository.save(article);
+        Article savedArticle = articleService.create(article);
 
         return savedArticle;
     }
 
     @Operation(summary= "Get a single article")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("")
     public Article getById(
             @Parameter(name="id") @RequestParam Long id) {
-        Article article = articleRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
+        Article article = articleService.findById(id);
 
         return article;
     }
 
+    @Operation(summary= "Get the given fields of a single article")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "", params = "fields")
+    public Map<String, Object> getFieldsById(
+            @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="fields", description="comma separated list, e.g. id,title") @RequestParam String fields) {
+        return articleService.findFieldsById(id, Fieldset.parse(Article.class, fields));
+    }
+
+    @Operation(summary= "Get several articles in one query")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping("/many")
+    public CompletableFuture<MultiGetResult<Article, Long>> getMany(
+            @Parameter(name="ids", description="comma separated list, e.g. 1,2,3") @RequestParam List<Long> ids) {
+        return bulkheads.userReads(() -> articleService.findMany(ids));
+    }
+
     @Operation(summary= "Delete an article")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(5)
     @DeleteMapping("")
     public Object deleteArticle(
             @Parameter(name="id") @RequestParam Long id) {
-        Article article = articleRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
-
-        articleRepository.delete(article);
+        articleService.delete(id);
         return genericMessage("Article with id %s deleted".formatted(id));
     }
 
+    @Operation(summary= "Delete several articles; ids that do not exist are skipped")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    // for up to 500 ids; each further 500 run as many again
+    @QueryBudget(5)
+    @DeleteMapping("/bulk")
+    public CompletableFuture<Object> bulkDeleteArticle(
+            @Parameter(name="ids", description="comma separated list, e.g. 1,2,3") @RequestParam List<Long> ids) {
+        return bulkheads.adminWrites(() -> {
+            int count = articleService.bulkDelete(ids);
+            return bulkDeleteMessage(Article.class, count);
+        });
+    }
+
     @Operation(summary= "Update a single article")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(5)
     @PutMapping("")
     public Article updateArticle(
             @Parameter(name="id") @RequestParam Long id,
             @RequestBody @Valid Article incoming) {
 
-        Article article = articleRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
-
-        article.setTitle(incoming.getTitle());
-        article.setUrl(incoming.getUrl());
-        article.setExplanation(incoming.getExplanation());
-        article.setEmail(incoming.getEmail());
-        article.setDateAdded(incoming.getDateAdded());
-
-        articleRepository.save(article);
-
-        return article;
+        return articleService.update(id, article -> {
+            article.setTitle(incoming.getTitle());
+            article.setUrl(incoming.getUrl());
+            article.setExplanation(incoming.getExplanation());
+            article.setEmail(incoming.getEmail());
+            article.setDateAdded(incoming.getDateAdded());
+        });
     }
 }
\ No newline at end of file
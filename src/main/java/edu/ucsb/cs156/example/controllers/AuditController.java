@@ -0,0 +1,46 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.aop.QueryBudget;
+import edu.ucsb.cs156.example.entities.AuditEvent;
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+import edu.ucsb.cs156.example.services.AuditLogService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@Tag(name = "Audit log (admin only)")
+@RequestMapping("/api/admin/audit")
+@RestController
+public class AuditController extends ApiController {
+
+    @Autowired
+    AuditLogService auditLogService;
+
+    @Value("${app.audit.maxLimit:500}")
+    private int maxLimit;
+
+    @Operation(summary= "List admin changes, newest first; pass the smallest id seen as before= to read further back")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(1)
+    @GetMapping("")
+    public List<AuditEvent> auditEvents(
+            @Parameter(name="user", description="only this user's changes, by email") @RequestParam(required = false) String user,
+            @Parameter(name="before", description="only events with a smaller id") @RequestParam(required = false) Long before,
+            @Parameter(name="limit", description="how many events at most") @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > maxLimit) {
+            throw new InvalidQueryException("limit must be between 1 and %d".formatted(maxLimit));
+        }
+        return auditLogService.find(user, before, limit);
+    }
+}
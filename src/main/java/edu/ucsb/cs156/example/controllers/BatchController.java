@@ -0,0 +1,51 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.aop.QueryBudget;
+import edu.ucsb.cs156.example.models.BatchRequest;
+import edu.ucsb.cs156.example.services.BatchDispatcherService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.util.List;
+
+@Tag(name = "Batch")
+@RequestMapping("/api/batch")
+@RestController
+@Slf4j
+public class BatchController extends ApiController {
+
+    @Autowired
+    BatchDispatcherService batchDispatcherService;
+
+    @Value("${app.batch.maxRequests:20}")
+    private int maxRequests;
+
+    @Operation(summary= "Run several API requests in one call; each entry is {method, path, params, body}")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(QueryBudget.UNBOUNDED)
+    @PostMapping("")
+    public ResponseEntity<Object> batch(
+            @RequestBody List<BatchRequest> requests,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        if (requests.size() > maxRequests) {
+            return ResponseEntity.badRequest().body(
+                    genericMessage("a batch may contain at most %d requests".formatted(maxRequests)));
+        }
+        return ResponseEntity.ok(batchDispatcherService.dispatchAll(requests, request, response));
+    }
+}
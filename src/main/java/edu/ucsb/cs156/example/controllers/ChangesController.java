@@ -0,0 +1,40 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.aop.QueryBudget;
+import edu.ucsb.cs156.example.models.ChangeFeed;
+import edu.ucsb.cs156.example.services.ChangeFeedService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Tag(name = "Change feed")
+@RequestMapping("/api/changes")
+@RestController
+public class ChangesController extends ApiController {
+
+    @Autowired
+    ChangeFeedService changeFeedService;
+
+    @Operation(summary= "List what was created, updated or deleted after a seq, with the rows as they are now; 410 when the client must read the collections again")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    // three, and one for the rows of each of the eight entity types
+    @QueryBudget(11)
+    @GetMapping("")
+    public CompletableFuture<ChangeFeed> changes(
+            @Parameter(name="since", description="the latest seq read so far; omit it to get just the latest seq, before reading the collections") @RequestParam(required = false) Long since,
+            @Parameter(name="entities", description="comma separated entity names, e.g. HelpRequests,UCSBDate; all of them if omitted") @RequestParam(required = false) List<String> entities) {
+        List<String> names = entities == null ? List.of() : entities;
+        return bulkheads.userReads(() -> changeFeedService.changesSince(since, names));
+    }
+}
@@ -0,0 +1,36 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.aop.QueryBudget;
+import edu.ucsb.cs156.example.models.GraphQLRequest;
+import edu.ucsb.cs156.example.services.GraphQLService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@Tag(name = "GraphQL (read only; dining commons, menu items and reviews)")
+@RequestMapping("/api/graphql")
+@RestController
+@Slf4j
+public class GraphQLController extends ApiController {
+
+    @Autowired
+    GraphQLService graphQLService;
+
+    @Operation(summary= "Run a GraphQL query; see graphql/schema.graphqls for the schema")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(QueryBudget.UNBOUNDED)
+    @PostMapping("")
+    public Map<String, Object> query(@RequestBody GraphQLRequest request) {
+        return graphQLService.execute(request);
+    }
+}
@@ -1,8 +1,16 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.QueryBudget;
+import edu.ucsb.cs156.example.entities.ArchivedHelpRequest;
 import edu.ucsb.cs156.example.entities.HelpRequests;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
-import edu.ucsb.cs156.example.repositories.HelpRequestsRepository;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+import edu.ucsb.cs156.example.models.MultiGetResult;
+import edu.ucsb.cs156.example.models.HelpRequestsSummary;
+import edu.ucsb.cs156.example.repositories.EntityFilter;
+import edu.ucsb.cs156.example.repositories.Fieldset;
+import edu.ucsb.cs156.example.services.HelpRequestsService;
+import edu.ucsb.cs156.example.services.PurgeSolvedHelpRequestsJobHandler;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -12,7 +20,9 @@ import lombok.extern.slf4j.Slf4j;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,11 +31,15 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Tag(name = "Help Requests")
 @RequestMapping("/api/helprequests")
@@ -34,18 +48,74 @@ import java.time.LocalDateTime;
 public class HelpRequestsController extends ApiController {
 
     @Autowired
-    HelpRequestsRepository helpRequestsRepository;
+    HelpRequestsService helpRequestsService;
+
+    @Autowired
+    PurgeSolvedHelpRequestsJobHandler purgeSolvedJobs;
+
+    @Value("${app.helpRequests.maxLimit:500}")
+    private int maxLimit;
 
     @Operation(summary= "List all help requests")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("/all")
-    public Iterable<HelpRequests> allHelpRequests() {
-        Iterable<HelpRequests> reqs = helpRequestsRepository.findAll();
-        return reqs;
+    public CompletableFuture<Iterable<HelpRequests>> allHelpRequests(
+            @Parameter(name="filter", description="comma separated field:value terms on indexed fields, e.g. solved:false,teamId:s22-6pm-3") @RequestParam(required = false) String filter,
+            @Parameter(name="sort", description="comma separated indexed fields, - for descending, e.g. -requestTime") @RequestParam(required = false) String sort) {
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> helpRequestsService.findAll());
+        }
+        EntityFilter<HelpRequests> entityFilter = EntityFilter.parse(HelpRequests.class, filter, sort);
+        return bulkheads.userReads(() -> helpRequestsService.findAll(entityFilter));
+    }
+
+    @Operation(summary= "List help requests in id order, including those moved to the archive; archived ones have an archivedAt. Pass the largest id seen as after= to read further")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "/all", params = "includeArchived=true")
+    public CompletableFuture<List<ArchivedHelpRequest>> allHelpRequestsIncludingArchived(
+            @Parameter(name="after", description="only requests with a larger id") @RequestParam(defaultValue = "0") long after,
+            @Parameter(name="limit", description="how many requests at most") @RequestParam(defaultValue = "500") int limit,
+            @Parameter(name="fields", description="not supported with includeArchived") @RequestParam(required = false) String fields,
+            @Parameter(name="filter", description="not supported with includeArchived") @RequestParam(required = false) String filter,
+            @Parameter(name="sort", description="not supported with includeArchived") @RequestParam(required = false) String sort) {
+        if (fields != null || filter != null || sort != null) {
+            throw new InvalidQueryException("includeArchived=true cannot be combined with fields, filter or sort");
+        }
+        if (limit < 1 || limit > maxLimit) {
+            throw new InvalidQueryException("limit must be between 1 and %d".formatted(maxLimit));
+        }
+        return bulkheads.userReads(() -> helpRequestsService.findAllIncludingArchived(after, limit));
+    }
+
+    @Operation(summary= "List all help requests, with only the given fields")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "/all", params = "fields")
+    public CompletableFuture<List<Map<String, Object>>> allHelpRequestFields(
+            @Parameter(name="fields", description="comma separated list, e.g. id,teamId") @RequestParam String fields,
+            @Parameter(name="filter", description="comma separated field:value terms on indexed fields, e.g. solved:false,teamId:s22-6pm-3") @RequestParam(required = false) String filter,
+            @Parameter(name="sort", description="comma separated indexed fields, - for descending, e.g. -requestTime") @RequestParam(required = false) String sort) {
+        Fieldset fieldset = Fieldset.parse(HelpRequests.class, fields);
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> helpRequestsService.findAllFields(fieldset));
+        }
+        EntityFilter<HelpRequests> entityFilter = EntityFilter.parse(HelpRequests.class, filter, sort);
+        return bulkheads.userReads(() -> helpRequestsService.findAllFields(fieldset, entityFilter));
+    }
+
+    @Operation(summary= "List all help requests without their explanation")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "/all", params = { "view=summary", "!fields", "!filter", "!sort" })
+    public CompletableFuture<List<HelpRequestsSummary>> allHelpRequestSummaries() {
+        return bulkheads.userReads(() -> helpRequestsService.findAllSummaries());
     }
 
     @Operation(summary= "Create a new help request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(4)
     @PostMapping("/post")
     public HelpRequests postHelpRequest(
             @Parameter(name="requesterEmail") @RequestParam String requesterEmail,
@@ -71,52 +141,111 @@ public class HelpRequestsController extends ApiController {
         helpRequest.setRequestTime(requestTime);
         helpRequest.setSolved(solved);
 
-        HelpRequests savedHelpRequest = helpRequestsRepository.save(helpRequest);
+        HelpRequests savedHelpRequest = helpRequestsService.create(helpRequest);
 
         return savedHelpRequest;
     }
 
     @Operation(summary= "Get a single help request by id")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("")
     public HelpRequests getById(
             @Parameter(name="id") @RequestParam Long id) {
-        HelpRequests helpRequest = helpRequestsRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(HelpRequests.class, id));
+        HelpRequests helpRequest = helpRequestsService.findById(id);
 
         return helpRequest;
     }
 
+    @Operation(summary= "Get a single help request by id, looking in the archive too")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    // a second SELECT, in the archive, when the id is not a live one
+    @QueryBudget(2)
+    @GetMapping(value = "", params = "includeArchived=true")
+    public Object getByIdIncludingArchived(
+            @Parameter(name="id") @RequestParam Long id) {
+        return helpRequestsService.findByIdIncludingArchived(id);
+    }
+
+    @Operation(summary= "Get the given fields of a single help request")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "", params = "fields")
+    public Map<String, Object> getFieldsById(
+            @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="fields", description="comma separated list, e.g. id,teamId") @RequestParam String fields) {
+        return helpRequestsService.findFieldsById(id, Fieldset.parse(HelpRequests.class, fields));
+    }
+
+    @Operation(summary= "Get several help requests in one query")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping("/many")
+    public CompletableFuture<MultiGetResult<HelpRequests, Long>> getMany(
+            @Parameter(name="ids", description="comma separated list, e.g. 1,2,3") @RequestParam List<Long> ids) {
+        return bulkheads.userReads(() -> helpRequestsService.findMany(ids));
+    }
+
     @Operation(summary= "Delete a Help Request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(5)
     @DeleteMapping("")
     public Object deleteHelpRequests(
             @Parameter(name="id") @RequestParam Long id) {
-        HelpRequests helpRequest = helpRequestsRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(HelpRequests.class, id));
-
-        helpRequestsRepository.delete(helpRequest);
+        helpRequestsService.delete(id);
         return genericMessage("HelpRequest with id %s deleted".formatted(id));
     }
 
+    @Operation(summary= "Delete several help requests; ids that do not exist are skipped")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    // for up to 500 ids; each further 500 run as many again
+    @QueryBudget(5)
+    @DeleteMapping("/bulk")
+    public CompletableFuture<Object> bulkDeleteHelpRequests(
+            @Parameter(name="ids", description="comma separated list, e.g. 1,2,3") @RequestParam List<Long> ids) {
+        return bulkheads.adminWrites(() -> {
+            int count = helpRequestsService.bulkDelete(ids);
+            return bulkDeleteMessage(HelpRequests.class, count);
+        });
+    }
+
+    @Operation(summary= "Delete all solved help requests made before a given time")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(4)
+    @DeleteMapping("/solved")
+    public CompletableFuture<Object> deleteSolvedHelpRequests(
+            @Parameter(name="before", description="in iso format, e.g. YYYY-mm-ddTHH:MM:SS; see https://en.wikipedia.org/wiki/ISO_8601") @RequestParam("before") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before) {
+        return bulkheads.adminWrites(() -> {
+            int count = helpRequestsService.bulkDeleteSolvedBefore(before);
+            return bulkDeleteMessage(HelpRequests.class, count);
+        });
+    }
+
+    @Operation(summary= "Start deleting all solved help requests made before a given time as a background job; poll /api/jobs?id= for its progress")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(2)
+    @DeleteMapping(value = "/solved", params = "async=true")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Job deleteSolvedHelpRequestsAsJob(
+            @Parameter(name="before", description="in iso format, e.g. YYYY-mm-ddTHH:MM:SS; see https://en.wikipedia.org/wiki/ISO_8601") @RequestParam("before") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before) {
+        return purgeSolvedJobs.submit(before, getCurrentUser().getUser().getEmail());
+    }
+
     @Operation(summary= "Update a help request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(5)
     @PutMapping("")
     public HelpRequests updateHelpRequests(
             @Parameter(name="id") @RequestParam Long id,
             @RequestBody @Valid HelpRequests incoming) {
 
-        HelpRequests helpRequest = helpRequestsRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(HelpRequests.class, id));
-        helpRequest.setRequesterEmail(incoming.getRequesterEmail());
-        helpRequest.setTeamId(incoming.getTeamId());
-        helpRequest.setTableOrBreakoutRoom(incoming.getTableOrBreakoutRoom());
-        helpRequest.setExplanation(incoming.getExplanation());
-        helpRequest.setRequestTime(incoming.getRequestTime());
-        helpRequest.setSolved(incoming.getSolved());
-        
-        helpRequestsRepository.save(helpRequest);
-
-        return helpRequest;
+        return helpRequestsService.update(id, helpRequest -> {
+            helpRequest.setRequesterEmail(incoming.getRequesterEmail());
+            helpRequest.setTeamId(incoming.getTeamId());
+            helpRequest.setTableOrBreakoutRoom(incoming.getTableOrBreakoutRoom());
+            helpRequest.setExplanation(incoming.getExplanation());
+            helpRequest.setRequestTime(incoming.getRequestTime());
+            helpRequest.setSolved(incoming.getSolved());
+        });
     }
 }
@@ -0,0 +1,63 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.aop.QueryBudget;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.services.JobService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@Tag(name = "Background jobs (admin only)")
+@RequestMapping("/api/jobs")
+@RestController
+public class JobsController extends ApiController {
+
+    @Autowired
+    JobService jobService;
+
+    @Operation(summary= "List all background jobs, newest first")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(1)
+    @GetMapping("/all")
+    public Iterable<Job> allJobs() {
+        return jobService.findAll();
+    }
+
+    @Operation(summary= "Get the status and progress of a background job")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(1)
+    @GetMapping("")
+    public Job getById(
+            @Parameter(name="id") @RequestParam Long id) {
+        return jobService.find(id);
+    }
+
+    @Operation(summary= "Get what a background job has logged so far")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(1)
+    @GetMapping(value = "/log", produces = MediaType.TEXT_PLAIN_VALUE)
+    public String getLog(
+            @Parameter(name="id") @RequestParam Long id) {
+        String log = jobService.find(id).getLog();
+        return log == null ? "" : log;
+    }
+
+    @Operation(summary= "Cancel a background job; a running job stops at its next check")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(4)
+    @PostMapping("/cancel")
+    public Job cancelJob(
+            @Parameter(name="id") @RequestParam Long id) {
+        return jobService.cancel(id);
+    }
+}
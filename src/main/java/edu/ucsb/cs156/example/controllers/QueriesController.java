@@ -0,0 +1,61 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.aop.QueryBudget;
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+import edu.ucsb.cs156.example.models.QueryStats;
+import edu.ucsb.cs156.example.models.SlowQuery;
+import edu.ucsb.cs156.example.services.SlowQueryService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+@Tag(name = "SQL statistics (admin only)")
+@RequestMapping("/api/admin/queries")
+@RestController
+public class QueriesController extends ApiController {
+
+    private static final int MAX_LIMIT = 500;
+
+    @Autowired
+    SlowQueryService slowQueryService;
+
+    @Operation(summary= "List the SQL statements, by fingerprint, that the database spent the most time (or count, max, mean) on since the app started")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(0)
+    @GetMapping("/top")
+    public List<QueryStats> topQueries(
+            @Parameter(name="sortBy", description="total, count, max or mean") @RequestParam(defaultValue = "total") String sortBy,
+            @Parameter(name="limit", description="how many fingerprints at most") @RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidQueryException("limit must be between 1 and %d".formatted(MAX_LIMIT));
+        }
+        return slowQueryService.top(parseSortBy(sortBy), limit);
+    }
+
+    @Operation(summary= "List the latest statements slower than app.slowQueries.thresholdMillis, newest first")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(0)
+    @GetMapping("/slow")
+    public List<SlowQuery> slowQueries() {
+        return slowQueryService.slowest();
+    }
+
+    private static SlowQueryService.SortBy parseSortBy(String sortBy) {
+        return Arrays.stream(SlowQueryService.SortBy.values())
+                .filter(value -> value.name().equals(sortBy.toUpperCase(Locale.ROOT)))
+                .findFirst()
+                .orElseThrow(() -> new InvalidQueryException("sortBy must be total, count, max or mean"));
+    }
+}
@@ -1,8 +1,12 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.QueryBudget;
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
-import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+import edu.ucsb.cs156.example.models.MultiGetResult;
+import edu.ucsb.cs156.example.models.RecommendationRequestSummary;
+import edu.ucsb.cs156.example.repositories.EntityFilter;
+import edu.ucsb.cs156.example.repositories.Fieldset;
+import edu.ucsb.cs156.example.services.RecommendationRequestService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -26,6 +30,9 @@ import org.springframework.web.bind.annotation.RestController;
 import javax.validation.Valid;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Tag(name = "recommendationrequests")
 @RequestMapping("/api/recommendationrequests")
@@ -34,18 +41,49 @@ import java.time.LocalDateTime;
 public class RecommendationRequestController extends ApiController {
 
     @Autowired
-    RecommendationRequestRepository recommendationRequestRepository;
+    RecommendationRequestService recommendationRequestService;
 
     @Operation(summary= "List all recommendation requests")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("/all")
-    public Iterable<RecommendationRequest> allRecommendationRequests() {
-        Iterable<RecommendationRequest> requests = recommendationRequestRepository.findAll();
-        return requests;
+    public CompletableFuture<Iterable<RecommendationRequest>> allRecommendationRequests(
+            @Parameter(name="filter", description="comma separated field:value terms on indexed fields, e.g. done:false,professorEmail:phtcon@ucsb.edu") @RequestParam(required = false) String filter,
+            @Parameter(name="sort", description="comma separated indexed fields, - for descending, e.g. dateNeeded") @RequestParam(required = false) String sort) {
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> recommendationRequestService.findAll());
+        }
+        EntityFilter<RecommendationRequest> entityFilter = EntityFilter.parse(RecommendationRequest.class, filter, sort);
+        return bulkheads.userReads(() -> recommendationRequestService.findAll(entityFilter));
+    }
+
+    @Operation(summary= "List all recommendation requests, with only the given fields")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "/all", params = "fields")
+    public CompletableFuture<List<Map<String, Object>>> allRecommendationRequestFields(
+            @Parameter(name="fields", description="comma separated list, e.g. id,professorEmail") @RequestParam String fields,
+            @Parameter(name="filter", description="comma separated field:value terms on indexed fields, e.g. done:false,professorEmail:phtcon@ucsb.edu") @RequestParam(required = false) String filter,
+            @Parameter(name="sort", description="comma separated indexed fields, - for descending, e.g. dateNeeded") @RequestParam(required = false) String sort) {
+        Fieldset fieldset = Fieldset.parse(RecommendationRequest.class, fields);
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> recommendationRequestService.findAllFields(fieldset));
+        }
+        EntityFilter<RecommendationRequest> entityFilter = EntityFilter.parse(RecommendationRequest.class, filter, sort);
+        return bulkheads.userReads(() -> recommendationRequestService.findAllFields(fieldset, entityFilter));
+    }
+
+    @Operation(summary= "List all recommendation requests without their explanation")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "/all", params = { "view=summary", "!fields", "!filter", "!sort" })
+    public CompletableFuture<List<RecommendationRequestSummary>> allRecommendationRequestSummaries() {
+        return bulkheads.userReads(() -> recommendationRequestService.findAllSummaries());
     }
 
     @Operation(summary= "Create a new recommendation request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(4)
     @PostMapping("/post")
     public RecommendationRequest postRecommendationRequest(
             @Parameter(name="requestorEmail") @RequestParam String requestorEmail,
@@ -66,7 +104,7 @@ public class RecommendationRequestController extends ApiController {
         recRequest.setDateNeeded(dateNeeded);
         recRequest.setDone(done);
 
-        RecommendationRequest savedRecRequest = recommendationRequestRepository.save(recRequest);
+        RecommendationRequest savedRecRequest = recommendationRequestService.create(recRequest);
 
         return savedRecRequest;
     }
@@ -74,46 +112,73 @@ public class RecommendationRequestController extends ApiController {
 
     @Operation(summary= "Get a single recommendation request")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("")
     public RecommendationRequest getRecommendationRequest(
-            @Parameter(name="id") @RequestParam Long id) {RecommendationRequest recommendationRequest = recommendationRequestRepository.findById(id).orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
+            @Parameter(name="id") @RequestParam Long id) {RecommendationRequest recommendationRequest = recommendationRequestService.findById(id);
 
         return recommendationRequest;
     }
 
+    @Operation(summary= "Get the given fields of a single recommendation request")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "", params = "fields")
+    public Map<String, Object> getFieldsById(
+            @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="fields", description="comma separated list, e.g. id,professorEmail") @RequestParam String fields) {
+        return recommendationRequestService.findFieldsById(id, Fieldset.parse(RecommendationRequest.class, fields));
+    }
+
+    @Operation(summary= "Get several recommendation requests in one query")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping("/many")
+    public CompletableFuture<MultiGetResult<RecommendationRequest, Long>> getMany(
+            @Parameter(name="ids", description="comma separated list, e.g. 1,2,3") @RequestParam List<Long> ids) {
+        return bulkheads.userReads(() -> recommendationRequestService.findMany(ids));
+    }
+
     @Operation(summary= "Delete a recommendation request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(5)
     @DeleteMapping("")
     public Object deleteRecommendationRequest(
             @Parameter(name="id", description="Id of recommendation request to delete", example="1") @RequestParam Long id) {
-        RecommendationRequest recRequest = recommendationRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
-
-        recommendationRequestRepository.delete(recRequest);
+        recommendationRequestService.delete(id);
         return genericMessage("RecommendationRequest with id %s deleted".formatted(id));
     }
 
+    @Operation(summary= "Delete several recommendation requests; ids that do not exist are skipped")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    // for up to 500 ids; each further 500 run as many again
+    @QueryBudget(5)
+    @DeleteMapping("/bulk")
+    public CompletableFuture<Object> bulkDeleteRecommendationRequest(
+            @Parameter(name="ids", description="comma separated list, e.g. 1,2,3") @RequestParam List<Long> ids) {
+        return bulkheads.adminWrites(() -> {
+            int count = recommendationRequestService.bulkDelete(ids);
+            return bulkDeleteMessage(RecommendationRequest.class, count);
+        });
+    }
+
 
     @Operation(summary= "Update a recommendation request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(5)
     @PutMapping("")
     public RecommendationRequest updateRecommendationRequest(
         @Parameter(name="id") @RequestParam Long id,
         @RequestBody @Valid RecommendationRequest incoming) {
 
-        RecommendationRequest recRequest = recommendationRequestRepository.findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
-
-        // recRequest.setRequesterEmail(incoming.getRequesterEmail());d
-        recRequest.setProfessorEmail(incoming.getProfessorEmail());
-        recRequest.setExplanation(incoming.getExplanation());
-        recRequest.setDateRequested(incoming.getDateRequested());
-        recRequest.setDateNeeded(incoming.getDateNeeded());
-        recRequest.setDone(incoming.getDone());
-
-        recommendationRequestRepository.save(recRequest);
-
-        return recRequest;
+        return recommendationRequestService.update(id, recRequest -> {
+            // recRequest.setRequesterEmail(incoming.getRequesterEmail());d
+            recRequest.setProfessorEmail(incoming.getProfessorEmail());
+            recRequest.setExplanation(incoming.getExplanation());
+            recRequest.setDateRequested(incoming.getDateRequested());
+            recRequest.setDateNeeded(incoming.getDateNeeded());
+            recRequest.setDone(incoming.getDone());
+        });
     }
 }
 
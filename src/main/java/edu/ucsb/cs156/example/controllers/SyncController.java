@@ -0,0 +1,39 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.aop.QueryBudget;
+import edu.ucsb.cs156.example.models.SyncDiff;
+import edu.ucsb.cs156.example.models.SyncRequest;
+import edu.ucsb.cs156.example.services.SyncTreeService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletableFuture;
+
+@Tag(name = "Offline sync")
+@RequestMapping("/api/sync")
+@RestController
+public class SyncController extends ApiController {
+
+    @Autowired
+    SyncTreeService syncTreeService;
+
+    @Operation(summary= "Compare a client's copy of a reference table with the server's by hash tree; returns the rows of the buckets that differ")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(3)
+    @PostMapping("/{entity}")
+    public CompletableFuture<SyncDiff> sync(
+            @Parameter(name="entity", description="UCSBDiningCommons, UCSBOrganization, UCSBDate or UCSBDiningCommonsMenuItem") @PathVariable String entity,
+            @RequestBody SyncRequest request) {
+        return bulkheads.userReads(() -> syncTreeService.diff(entity, request));
+    }
+}
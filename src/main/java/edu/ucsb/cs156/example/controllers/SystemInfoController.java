@@ -1,5 +1,6 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.QueryBudget;
 import edu.ucsb.cs156.example.models.SystemInfo;
 import edu.ucsb.cs156.example.services.SystemInfoService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -20,6 +21,7 @@ public class SystemInfoController extends ApiController {
     private SystemInfoService systemInfoService;
 
     @Operation(summary= "Get global information about the application")
+    @QueryBudget(0)
     @GetMapping("")
     public SystemInfo getSystemInfo() {
         return systemInfoService.getSystemInfo();
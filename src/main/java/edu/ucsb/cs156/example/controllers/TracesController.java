@@ -0,0 +1,46 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.aop.QueryBudget;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.Trace;
+import edu.ucsb.cs156.example.services.TraceService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@Tag(name = "Request traces (admin only)")
+@RequestMapping("/api/admin/traces")
+@RestController
+public class TracesController extends ApiController {
+
+    @Autowired
+    TraceService traceService;
+
+    @Operation(summary= "List the slow, failed and sampled request traces kept in memory, newest first")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(0)
+    @GetMapping("/all")
+    public List<Trace.Summary> allTraces() {
+        return traceService.list();
+    }
+
+    @Operation(summary= "Get one kept trace with its spans, by the id sent in its X-Trace-Id header")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(0)
+    @GetMapping("")
+    public Trace getTrace(
+            @Parameter(name="id") @RequestParam String id) {
+        return traceService.find(id)
+                .orElseThrow(() -> new EntityNotFoundException(Trace.class, id));
+    }
+}
@@ -1,8 +1,16 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.QueryBudget;
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.entities.UCSBDate;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
-import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.models.CsvImportResult;
+import edu.ucsb.cs156.example.models.MultiGetResult;
+import edu.ucsb.cs156.example.repositories.EntityFilter;
+import edu.ucsb.cs156.example.repositories.Fieldset;
+import edu.ucsb.cs156.example.services.CsvImportJobHandler;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.CsvImportSpec;
+import edu.ucsb.cs156.example.services.UCSBDateService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,6 +21,8 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,11 +31,18 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
 import javax.validation.Valid;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Tag(name = "UCSBDates")
 @RequestMapping("/api/ucsbdates")
@@ -34,18 +51,47 @@ import java.time.LocalDateTime;
 public class UCSBDatesController extends ApiController {
 
     @Autowired
-    UCSBDateRepository ucsbDateRepository;
+    UCSBDateService ucsbDateService;
+
+    @Autowired
+    CsvImportService csvImportService;
+
+    @Autowired
+    CsvImportJobHandler csvImportJobs;
 
     @Operation(summary= "List all ucsb dates")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("/all")
-    public Iterable<UCSBDate> allUCSBDates() {
-        Iterable<UCSBDate> dates = ucsbDateRepository.findAll();
-        return dates;
+    public CompletableFuture<Iterable<UCSBDate>> allUCSBDates(
+            @Parameter(name="filter", description="comma separated field:value terms on indexed fields, e.g. quarterYYYYQ:20222") @RequestParam(required = false) String filter,
+            @Parameter(name="sort", description="comma separated indexed fields, - for descending, e.g. -localDateTime") @RequestParam(required = false) String sort) {
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> ucsbDateService.findAll());
+        }
+        EntityFilter<UCSBDate> entityFilter = EntityFilter.parse(UCSBDate.class, filter, sort);
+        return bulkheads.userReads(() -> ucsbDateService.findAll(entityFilter));
+    }
+
+    @Operation(summary= "List all ucsb dates, with only the given fields")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "/all", params = "fields")
+    public CompletableFuture<List<Map<String, Object>>> allUCSBDateFields(
+            @Parameter(name="fields", description="comma separated list, e.g. id,name") @RequestParam String fields,
+            @Parameter(name="filter", description="comma separated field:value terms on indexed fields, e.g. quarterYYYYQ:20222") @RequestParam(required = false) String filter,
+            @Parameter(name="sort", description="comma separated indexed fields, - for descending, e.g. -localDateTime") @RequestParam(required = false) String sort) {
+        Fieldset fieldset = Fieldset.parse(UCSBDate.class, fields);
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> ucsbDateService.findAllFields(fieldset));
+        }
+        EntityFilter<UCSBDate> entityFilter = EntityFilter.parse(UCSBDate.class, filter, sort);
+        return bulkheads.userReads(() -> ucsbDateService.findAllFields(fieldset, entityFilter));
     }
 
     @Operation(summary= "Create a new date")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(9)
     @PostMapping("/post")
     public UCSBDate postUCSBDate(
             @Parameter(name="quarterYYYYQ") @RequestParam String quarterYYYYQ,
@@ -63,50 +109,99 @@ public class UCSBDatesController extends ApiController {
         ucsbDate.setName(name);
         ucsbDate.setLocalDateTime(localDateTime);
 
-        UCSBDate savedUcsbDate = ucsbDateRepository.save(ucsbDate);
+        UCSBDate savedUcsbDate = ucsbDateService.create(ucsbDate);
 
         return savedUcsbDate;
     }
 
     @Operation(summary= "Get a single date")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("")
     public UCSBDate getById(
             @Parameter(name="id") @RequestParam Long id) {
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
+        UCSBDate ucsbDate = ucsbDateService.findById(id);
 
         return ucsbDate;
     }
 
+    @Operation(summary= "Get the given fields of a single date")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "", params = "fields")
+    public Map<String, Object> getFieldsById(
+            @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="fields", description="comma separated list, e.g. id,name") @RequestParam String fields) {
+        return ucsbDateService.findFieldsById(id, Fieldset.parse(UCSBDate.class, fields));
+    }
+
+    @Operation(summary= "Get several dates in one query")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping("/many")
+    public CompletableFuture<MultiGetResult<UCSBDate, Long>> getMany(
+            @Parameter(name="ids", description="comma separated list, e.g. 1,2,3") @RequestParam List<Long> ids) {
+        return bulkheads.userReads(() -> ucsbDateService.findMany(ids));
+    }
+
     @Operation(summary= "Delete a UCSBDate")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(9)
     @DeleteMapping("")
     public Object deleteUCSBDate(
             @Parameter(name="id") @RequestParam Long id) {
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
-
-        ucsbDateRepository.delete(ucsbDate);
+        ucsbDateService.delete(id);
         return genericMessage("UCSBDate with id %s deleted".formatted(id));
     }
 
+    @Operation(summary= "Import ucsb dates from a CSV file, reporting the rows that could not be imported")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(QueryBudget.UNBOUNDED)
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public CsvImportResult importUCSBDates(
+            @Parameter(name="file", description="UTF-8 CSV with a header row naming the columns quarterYYYYQ,name,localDateTime") @RequestParam MultipartFile file)
+            throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return csvImportService.importCsv(CsvImportSpec.UCSB_DATES, in);
+        }
+    }
+
+    @Operation(summary="Start importing ucsb dates from a CSV file as a background job; poll /api/jobs?id= for its progress")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(2)
+    @PostMapping(value = "/import", params = "async=true", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Job importUCSBDatesAsJob(
+            @Parameter(name="file", description="UTF-8 CSV with a header row naming the columns quarterYYYYQ,name,localDateTime") @RequestParam MultipartFile file)
+            throws IOException {
+        return csvImportJobs.submit(CsvImportSpec.UCSB_DATES, file, getCurrentUser().getUser().getEmail());
+    }
+
+    @Operation(summary= "Delete several UCSBDates; ids that do not exist are skipped")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    // for up to 500 ids; each further 500 run as many again
+    @QueryBudget(9)
+    @DeleteMapping("/bulk")
+    public CompletableFuture<Object> bulkDeleteUCSBDate(
+            @Parameter(name="ids", description="comma separated list, e.g. 1,2,3") @RequestParam List<Long> ids) {
+        return bulkheads.adminWrites(() -> {
+            int count = ucsbDateService.bulkDelete(ids);
+            return bulkDeleteMessage(UCSBDate.class, count);
+        });
+    }
+
     @Operation(summary= "Update a single date")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(10)
     @PutMapping("")
     public UCSBDate updateUCSBDate(
             @Parameter(name="id") @RequestParam Long id,
             @RequestBody @Valid UCSBDate incoming) {
 
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
-
-        ucsbDate.setQuarterYYYYQ(incoming.getQuarterYYYYQ());
-        ucsbDate.setName(incoming.getName());
-        ucsbDate.setLocalDateTime(incoming.getLocalDateTime());
-
-        ucsbDateRepository.save(ucsbDate);
-
-        return ucsbDate;
+        return ucsbDateService.update(id, ucsbDate -> {
+            ucsbDate.setQuarterYYYYQ(incoming.getQuarterYYYYQ());
+            ucsbDate.setName(incoming.getName());
+            ucsbDate.setLocalDateTime(incoming.getLocalDateTime());
+        });
     }
 }
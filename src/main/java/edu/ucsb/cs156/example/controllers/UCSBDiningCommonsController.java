@@ -1,8 +1,11 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.QueryBudget;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
-import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.models.MultiGetResult;
+import edu.ucsb.cs156.example.repositories.EntityFilter;
+import edu.ucsb.cs156.example.repositories.Fieldset;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -22,6 +25,10 @@ import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 @Tag(name = "UCSBDiningCommons")
 @RequestMapping("/api/ucsbdiningcommons")
 @RestController
@@ -29,18 +36,41 @@ import javax.validation.Valid;
 public class UCSBDiningCommonsController extends ApiController {
 
     @Autowired
-    UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+    UCSBDiningCommonsService ucsbDiningCommonsService;
 
     @Operation(summary= "List all ucsb dining commons")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("/all")
-    public Iterable<UCSBDiningCommons> allCommonss() {
-        Iterable<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findAll();
-        return commons;
+    public CompletableFuture<Iterable<UCSBDiningCommons>> allCommonss(
+            @Parameter(name="filter", description="comma separated field:value terms on indexed fields, e.g. name:Ortega") @RequestParam(required = false) String filter,
+            @Parameter(name="sort", description="comma separated indexed fields, - for descending, e.g. name") @RequestParam(required = false) String sort) {
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> ucsbDiningCommonsService.findAll());
+        }
+        EntityFilter<UCSBDiningCommons> entityFilter = EntityFilter.parse(UCSBDiningCommons.class, filter, sort);
+        return bulkheads.userReads(() -> ucsbDiningCommonsService.findAll(entityFilter));
+    }
+
+    @Operation(summary= "List all ucsb dining commons, with only the given fields")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "/all", params = "fields")
+    public CompletableFuture<List<Map<String, Object>>> allCommonsFields(
+            @Parameter(name="fields", description="comma separated list, e.g. code,name") @RequestParam String fields,
+            @Parameter(name="filter", description="comma separated field:value terms on indexed fields, e.g. name:Ortega") @RequestParam(required = false) String filter,
+            @Parameter(name="sort", description="comma separated indexed fields, - for descending, e.g. name") @RequestParam(required = false) String sort) {
+        Fieldset fieldset = Fieldset.parse(UCSBDiningCommons.class, fields);
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> ucsbDiningCommonsService.findAllFields(fieldset));
+        }
+        EntityFilter<UCSBDiningCommons> entityFilter = EntityFilter.parse(UCSBDiningCommons.class, filter, sort);
+        return bulkheads.userReads(() -> ucsbDiningCommonsService.findAllFields(fieldset, entityFilter));
     }
 
     @Operation(summary= "Create a new commons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(10)
     @PostMapping("/post")
     public UCSBDiningCommons postCommons(
         @Parameter(name="code") @RequestParam String code,
@@ -62,54 +92,79 @@ public class UCSBDiningCommonsController extends ApiController {
         commons.setLatitude(latitude);
         commons.setLongitude(longitude);
 
-        UCSBDiningCommons savedCommons = ucsbDiningCommonsRepository.save(commons);
+        UCSBDiningCommons savedCommons = ucsbDiningCommonsService.create(commons);
 
         return savedCommons;
     }
 
     @Operation(summary= "Get a single commons")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("")
     public UCSBDiningCommons getById(
             @Parameter(name="code") @RequestParam String code) {
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
+        UCSBDiningCommons commons = ucsbDiningCommonsService.findById(code);
 
         return commons;
     }
 
+    @Operation(summary= "Get the given fields of a single commons")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "", params = "fields")
+    public Map<String, Object> getFieldsById(
+            @Parameter(name="code") @RequestParam String code,
+            @Parameter(name="fields", description="comma separated list, e.g. code,name") @RequestParam String fields) {
+        return ucsbDiningCommonsService.findFieldsById(code, Fieldset.parse(UCSBDiningCommons.class, fields));
+    }
+
+    @Operation(summary= "Get several commons in one query")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping("/many")
+    public CompletableFuture<MultiGetResult<UCSBDiningCommons, String>> getMany(
+            @Parameter(name="codes", description="comma separated list, e.g. a,b,c") @RequestParam List<String> codes) {
+        return bulkheads.userReads(() -> ucsbDiningCommonsService.findMany(codes));
+    }
+
     @Operation(summary= "Delete a UCSBDiningCommons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(9)
     @DeleteMapping("")
     public Object deleteCommons(
             @Parameter(name="code") @RequestParam String code) {
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
-
-        ucsbDiningCommonsRepository.delete(commons);
+        ucsbDiningCommonsService.delete(code);
         return genericMessage("UCSBDiningCommons with id %s deleted".formatted(code));
     }
 
+    @Operation(summary= "Delete several UCSBDiningCommons; ids that do not exist are skipped")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    // for up to 500 ids; each further 500 run as many again
+    @QueryBudget(9)
+    @DeleteMapping("/bulk")
+    public CompletableFuture<Object> bulkDeleteUCSBDiningCommons(
+            @Parameter(name="codes", description="comma separated list, e.g. a,b,c") @RequestParam List<String> codes) {
+        return bulkheads.adminWrites(() -> {
+            int count = ucsbDiningCommonsService.bulkDelete(codes);
+            return bulkDeleteMessage(UCSBDiningCommons.class, count);
+        });
+    }
+
     @Operation(summary= "Update a single commons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(10)
     @PutMapping("")
     public UCSBDiningCommons updateCommons(
             @Parameter(name="code") @RequestParam String code,
             @RequestBody @Valid UCSBDiningCommons incoming) {
 
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
-
-
-        commons.setName(incoming.getName());  
-        commons.setHasSackMeal(incoming.getHasSackMeal());
-        commons.setHasTakeOutMeal(incoming.getHasTakeOutMeal());
-        commons.setHasDiningCam(incoming.getHasDiningCam());
-        commons.setLatitude(incoming.getLatitude());
-        commons.setLongitude(incoming.getLongitude());
-
-        ucsbDiningCommonsRepository.save(commons);
-
-        return commons;
+        return ucsbDiningCommonsService.update(code, commons -> {
+            commons.setName(incoming.getName());
+            commons.setHasSackMeal(incoming.getHasSackMeal());
+            commons.setHasTakeOutMeal(incoming.getHasTakeOutMeal());
+            commons.setHasDiningCam(incoming.getHasDiningCam());
+            commons.setLatitude(incoming.getLatitude());
+            commons.setLongitude(incoming.getLongitude());
+        });
     }
 }
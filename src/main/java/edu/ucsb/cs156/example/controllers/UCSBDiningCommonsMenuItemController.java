@@ -1,8 +1,16 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.QueryBudget;
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
-import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.models.CsvImportResult;
+import edu.ucsb.cs156.example.models.MultiGetResult;
+import edu.ucsb.cs156.example.repositories.EntityFilter;
+import edu.ucsb.cs156.example.repositories.Fieldset;
+import edu.ucsb.cs156.example.services.CsvImportJobHandler;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.CsvImportSpec;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsMenuItemService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -11,6 +19,8 @@ import lombok.extern.slf4j.Slf4j;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -19,10 +29,18 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
 import javax.validation.Valid;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 @Tag(name = "UCSBDiningCommonsMenuItem")
 @RequestMapping("/api/UCSBDiningCommonsMenuItem")
 @RestController
@@ -30,18 +48,47 @@ import javax.validation.Valid;
 public class UCSBDiningCommonsMenuItemController extends ApiController {
 
     @Autowired
-    UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+    UCSBDiningCommonsMenuItemService ucsbDiningCommonsMenuItemService;
+
+    @Autowired
+    CsvImportService csvImportService;
+
+    @Autowired
+    CsvImportJobHandler csvImportJobs;
 
     @Operation(summary= "List all ucsb dining commons menu items")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("/all")
-    public Iterable<UCSBDiningCommonsMenuItem> allUCSBDiningCommonsMenuItems() {
-        Iterable<UCSBDiningCommonsMenuItem> items = ucsbDiningCommonsMenuItemRepository.findAll();
-        return items;
+    public CompletableFuture<Iterable<UCSBDiningCommonsMenuItem>> allUCSBDiningCommonsMenuItems(
+            @Parameter(name="filter", description="comma separated field:value terms on indexed fields, e.g. diningCommonsCode:ortega") @RequestParam(required = false) String filter,
+            @Parameter(name="sort", description="comma separated indexed fields, - for descending, e.g. diningCommonsCode,id") @RequestParam(required = false) String sort) {
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> ucsbDiningCommonsMenuItemService.findAll());
+        }
+        EntityFilter<UCSBDiningCommonsMenuItem> entityFilter = EntityFilter.parse(UCSBDiningCommonsMenuItem.class, filter, sort);
+        return bulkheads.userReads(() -> ucsbDiningCommonsMenuItemService.findAll(entityFilter));
+    }
+
+    @Operation(summary= "List all ucsb dining commons menu items, with only the given fields")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "/all", params = "fields")
+    public CompletableFuture<List<Map<String, Object>>> allUCSBDiningCommonsMenuItemFields(
+            @Parameter(name="fields", description="comma separated list, e.g. id,name") @RequestParam String fields,
+            @Parameter(name="filter", description="comma separated field:value terms on indexed fields, e.g. diningCommonsCode:ortega") @RequestParam(required = false) String filter,
+            @Parameter(name="sort", description="comma separated indexed fields, - for descending, e.g. diningCommonsCode,id") @RequestParam(required = false) String sort) {
+        Fieldset fieldset = Fieldset.parse(UCSBDiningCommonsMenuItem.class, fields);
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> ucsbDiningCommonsMenuItemService.findAllFields(fieldset));
+        }
+        EntityFilter<UCSBDiningCommonsMenuItem> entityFilter = EntityFilter.parse(UCSBDiningCommonsMenuItem.class, filter, sort);
+        return bulkheads.userReads(() -> ucsbDiningCommonsMenuItemService.findAllFields(fieldset, entityFilter));
     }
 
     @Operation(summary= "Create a new dining commons menu item")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(9)
     @PostMapping("/post")
     public UCSBDiningCommonsMenuItem postUCSBDiningCommonsMenuItem(
             @Parameter(name="diningCommonsCode") @RequestParam String diningCommonsCode,
@@ -57,50 +104,99 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
         ucsbDiningCommonsMenuItem.setDiningCommonsCode(diningCommonsCode);
         ucsbDiningCommonsMenuItem.setName(name);
         ucsbDiningCommonsMenuItem.setStation(station);
-        UCSBDiningCommonsMenuItem savedUcsbDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.save(ucsbDiningCommonsMenuItem);
+        UCSBDiningCommonsMenuItem savedUcsbDiningCommonsMenuItem = ucsbDiningCommonsMenuItemService.create(ucsbDiningCommonsMenuItem);
 
         return savedUcsbDiningCommonsMenuItem;
     }
 
     @Operation(summary= "Get a ucsb dining commons menu item by id")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("")
     public UCSBDiningCommonsMenuItem getById(
             @Parameter(name="id") @RequestParam Long id) {
-        UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
+        UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem = ucsbDiningCommonsMenuItemService.findById(id);
 
         return ucsbDiningCommonsMenuItem;
     }
 
+    @Operation(summary= "Get the given fields of a single menu item")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "", params = "fields")
+    public Map<String, Object> getFieldsById(
+            @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="fields", description="comma separated list, e.g. id,name") @RequestParam String fields) {
+        return ucsbDiningCommonsMenuItemService.findFieldsById(id, Fieldset.parse(UCSBDiningCommonsMenuItem.class, fields));
+    }
+
+    @Operation(summary= "Get several menu items in one query")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping("/many")
+    public CompletableFuture<MultiGetResult<UCSBDiningCommonsMenuItem, Long>> getMany(
+            @Parameter(name="ids", description="comma separated list, e.g. 1,2,3") @RequestParam List<Long> ids) {
+        return bulkheads.userReads(() -> ucsbDiningCommonsMenuItemService.findMany(ids));
+    }
+
     @Operation(summary= "Update a ucsb dining commons menu item by id")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(10)
     @PutMapping("")
     public UCSBDiningCommonsMenuItem updateUCSBDiningCommonsMenuItem(
             @Parameter(name="id") @RequestParam Long id,
             @RequestBody @Valid UCSBDiningCommonsMenuItem incoming) {
         
-        UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
-
-        ucsbDiningCommonsMenuItem.setName(incoming.getName());
-        ucsbDiningCommonsMenuItem.setDiningCommonsCode(incoming.getDiningCommonsCode());
-        ucsbDiningCommonsMenuItem.setStation(incoming.getStation());
-
-        ucsbDiningCommonsMenuItemRepository.save(ucsbDiningCommonsMenuItem);
-
-        return ucsbDiningCommonsMenuItem;
+        return ucsbDiningCommonsMenuItemService.update(id, ucsbDiningCommonsMenuItem -> {
+            ucsbDiningCommonsMenuItem.setName(incoming.getName());
+            ucsbDiningCommonsMenuItem.setDiningCommonsCode(incoming.getDiningCommonsCode());
+            ucsbDiningCommonsMenuItem.setStation(incoming.getStation());
+        });
     }
 
     @Operation(summary= "Delete a ucsb dining commons menu item by id")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(9)
     @DeleteMapping("")
     public Object deleteUCSBDiningCommonsMenuItem(
             @Parameter(name="id") @RequestParam Long id) {
-        UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
-
-        ucsbDiningCommonsMenuItemRepository.delete(ucsbDiningCommonsMenuItem);
+        ucsbDiningCommonsMenuItemService.delete(id);
         return genericMessage("UCSBDiningCommonsMenuItem with id %s deleted".formatted(id));
     }
+
+    @Operation(summary= "Import dining commons menu items from a CSV file, reporting the rows that could not be imported")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(QueryBudget.UNBOUNDED)
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public CsvImportResult importUCSBDiningCommonsMenuItems(
+            @Parameter(name="file", description="UTF-8 CSV with a header row naming the columns diningCommonsCode,name,station") @RequestParam MultipartFile file)
+            throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return csvImportService.importCsv(CsvImportSpec.UCSB_DINING_COMMONS_MENU_ITEMS, in);
+        }
+    }
+
+    @Operation(summary="Start importing dining commons menu items from a CSV file as a background job; poll /api/jobs?id= for its progress")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(2)
+    @PostMapping(value = "/import", params = "async=true", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Job importUCSBDiningCommonsMenuItemsAsJob(
+            @Parameter(name="file", description="UTF-8 CSV with a header row naming the columns diningCommonsCode,name,station") @RequestParam MultipartFile file)
+            throws IOException {
+        return csvImportJobs.submit(CsvImportSpec.UCSB_DINING_COMMONS_MENU_ITEMS, file, getCurrentUser().getUser().getEmail());
+    }
+
+    @Operation(summary= "Delete several UCSBDiningCommonsMenuItems; ids that do not exist are skipped")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    // for up to 500 ids; each further 500 run as many again
+    @QueryBudget(9)
+    @DeleteMapping("/bulk")
+    public CompletableFuture<Object> bulkDeleteUCSBDiningCommonsMenuItem(
+            @Parameter(name="ids", description="comma separated list, e.g. 1,2,3") @RequestParam List<Long> ids) {
+        return bulkheads.adminWrites(() -> {
+            int count = ucsbDiningCommonsMenuItemService.bulkDelete(ids);
+            return bulkDeleteMessage(UCSBDiningCommonsMenuItem.class, count);
+        });
+    }
 }
@@ -1,10 +1,17 @@
 package edu.ucsb.cs156.example.controllers;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,13 +20,24 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
+import edu.ucsb.cs156.example.aop.QueryBudget;
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.entities.UCSBMenuItemReview;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
-import edu.ucsb.cs156.example.repositories.UCSBMenuItemReviewRepository;
+import edu.ucsb.cs156.example.models.CsvImportResult;
+import edu.ucsb.cs156.example.models.MultiGetResult;
+import edu.ucsb.cs156.example.models.UCSBMenuItemReviewSummary;
+import edu.ucsb.cs156.example.repositories.EntityFilter;
+import edu.ucsb.cs156.example.repositories.Fieldset;
+import edu.ucsb.cs156.example.services.CsvImportJobHandler;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.CsvImportSpec;
+import edu.ucsb.cs156.example.services.UCSBMenuItemReviewService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -32,10 +50,17 @@ import lombok.extern.slf4j.Slf4j;
 public class UCSBMenuItemReviewController extends ApiController {
 
     @Autowired
-    UCSBMenuItemReviewRepository ucsbMenuItemReviewRepository;
+    UCSBMenuItemReviewService ucsbMenuItemReviewService;
+
+    @Autowired
+    CsvImportService csvImportService;
+
+    @Autowired
+    CsvImportJobHandler csvImportJobs;
 
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @Operation(summary = "Create a new review")
+    @QueryBudget(4)
     @PostMapping("/post")
     public UCSBMenuItemReview postUCSBMenuItemReview(
             @Parameter(name = "itemId", description = "Id for item being reviewed") @RequestParam long itemId,
@@ -52,60 +77,151 @@ public class UCSBMenuItemReviewController extends ApiController {
         ucsbMenuItemReview.setDateReviewed(dateReviewed);
         ucsbMenuItemReview.setComments(comments);
 
-        UCSBMenuItemReview savedUcsbMenuItemReview = ucsbMenuItemReviewRepository.save(ucsbMenuItemReview);
+        UCSBMenuItemReview savedUcsbMenuItemReview = ucsbMenuItemReviewService.create(ucsbMenuItemReview);
 
         return savedUcsbMenuItemReview;
     }
 
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("/all")
     @Operation(summary = "Get all reviews")
-    public Iterable<UCSBMenuItemReview> allUCSBMenuItemReviews() {
-        Iterable<UCSBMenuItemReview> reviews = ucsbMenuItemReviewRepository.findAll();
-        return reviews;
+    public CompletableFuture<Iterable<UCSBMenuItemReview>> allUCSBMenuItemReviews(
+            @Parameter(name = "filter", description = "comma separated field:value terms on indexed fields, e.g. itemId:7") @RequestParam(required = false) String filter,
+            @Parameter(name = "sort", description = "comma separated indexed fields, - for descending, e.g. -dateReviewed") @RequestParam(required = false) String sort) {
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> ucsbMenuItemReviewService.findAll());
+        }
+        EntityFilter<UCSBMenuItemReview> entityFilter = EntityFilter.parse(UCSBMenuItemReview.class, filter, sort);
+        return bulkheads.userReads(() -> ucsbMenuItemReviewService.findAll(entityFilter));
     }
 
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "/all", params = "fields")
+    @Operation(summary = "List all reviews, with only the given fields")
+    public CompletableFuture<List<Map<String, Object>>> allUCSBMenuItemReviewFields(
+            @Parameter(name = "fields", description = "comma separated list, e.g. id,stars") @RequestParam String fields,
+            @Parameter(name = "filter", description = "comma separated field:value terms on indexed fields, e.g. itemId:7") @RequestParam(required = false) String filter,
+            @Parameter(name = "sort", description = "comma separated indexed fields, - for descending, e.g. -dateReviewed") @RequestParam(required = false) String sort) {
+        Fieldset fieldset = Fieldset.parse(UCSBMenuItemReview.class, fields);
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> ucsbMenuItemReviewService.findAllFields(fieldset));
+        }
+        EntityFilter<UCSBMenuItemReview> entityFilter = EntityFilter.parse(UCSBMenuItemReview.class, filter, sort);
+        return bulkheads.userReads(() -> ucsbMenuItemReviewService.findAllFields(fieldset, entityFilter));
+    }
+
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "/all", params = { "view=summary", "!fields", "!filter", "!sort" })
+    @Operation(summary = "Get all reviews without their comments")
+    public CompletableFuture<List<UCSBMenuItemReviewSummary>> allUCSBMenuItemReviewSummaries() {
+        return bulkheads.userReads(() -> ucsbMenuItemReviewService.findAllSummaries());
+    }
+
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("")
     @Operation(summary = "Get one review")
     public UCSBMenuItemReview getById(
             @Parameter(name = "id") @RequestParam Long id) {
-        UCSBMenuItemReview ucsbMenuItemReview = ucsbMenuItemReviewRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBMenuItemReview.class, id));
+        UCSBMenuItemReview ucsbMenuItemReview = ucsbMenuItemReviewService.findById(id);
 
         return ucsbMenuItemReview;
     }
 
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "", params = "fields")
+    @Operation(summary = "Get the given fields of a single review")
+    public Map<String, Object> getFieldsById(
+            @Parameter(name = "id") @RequestParam Long id,
+            @Parameter(name = "fields", description = "comma separated list, e.g. id,stars") @RequestParam String fields) {
+        return ucsbMenuItemReviewService.findFieldsById(id, Fieldset.parse(UCSBMenuItemReview.class, fields));
+    }
+
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping("/many")
+    @Operation(summary = "Get several reviews in one query")
+    public CompletableFuture<MultiGetResult<UCSBMenuItemReview, Long>> getMany(
+            @Parameter(name = "ids", description = "comma separated list, e.g. 1,2,3") @RequestParam List<Long> ids) {
+        return bulkheads.userReads(() -> ucsbMenuItemReviewService.findMany(ids));
+    }
+
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(5)
     @PutMapping("")
     @Operation(summary = "Update a review")
     public UCSBMenuItemReview updateUCSBMenuItemReview(
             @Parameter(name="id") @RequestParam Long id,
             @RequestBody @Valid UCSBMenuItemReview incoming) {
 
-        UCSBMenuItemReview ucsbMenuItemReview = ucsbMenuItemReviewRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBMenuItemReview.class, id));
-
-        ucsbMenuItemReview.setItemId(incoming.getItemId());
-        ucsbMenuItemReview.setStars(incoming.getStars());
-        ucsbMenuItemReview.setReviewerEmail(incoming.getReviewerEmail());
-        ucsbMenuItemReview.setDateReviewed(incoming.getDateReviewed());
-        ucsbMenuItemReview.setComments(incoming.getComments());
-
-        ucsbMenuItemReviewRepository.save(ucsbMenuItemReview);
-
-        return ucsbMenuItemReview;
+        return ucsbMenuItemReviewService.update(id, ucsbMenuItemReview -> {
+            ucsbMenuItemReview.setItemId(incoming.getItemId());
+            ucsbMenuItemReview.setStars(incoming.getStars());
+            ucsbMenuItemReview.setReviewerEmail(incoming.getReviewerEmail());
+            ucsbMenuItemReview.setDateReviewed(incoming.getDateReviewed());
+            ucsbMenuItemReview.setComments(incoming.getComments());
+        });
     }
 
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(5)
     @DeleteMapping("")
     @Operation(summary = "Delete a review")
     public Object deleteUCSBMenuItemReview(
             @Parameter(name="id") @RequestParam Long id) {
-        UCSBMenuItemReview ucsbMenuItemReview = ucsbMenuItemReviewRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBMenuItemReview.class, id));
-
-        ucsbMenuItemReviewRepository.delete(ucsbMenuItemReview);
+        ucsbMenuItemReviewService.delete(id);
         return genericMessage("UCSBMenuItemReview with id %s deleted".formatted(id));
     }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(QueryBudget.UNBOUNDED)
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Import reviews from a CSV file, reporting the rows that could not be imported")
+    public CsvImportResult importUCSBMenuItemReviews(
+            @Parameter(name = "file", description = "UTF-8 CSV with a header row naming the columns itemId,stars,reviewerEmail,dateReviewed,comments") @RequestParam MultipartFile file)
+            throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return csvImportService.importCsv(CsvImportSpec.UCSB_MENU_ITEM_REVIEWS, in);
+        }
+    }
+
+    @Operation(summary = "Start importing reviews from a CSV file as a background job; poll /api/jobs?id= for its progress")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(2)
+    @PostMapping(value = "/import", params = "async=true", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Job importUCSBMenuItemReviewsAsJob(
+            @Parameter(name = "file", description = "UTF-8 CSV with a header row naming the columns itemId,stars,reviewerEmail,dateReviewed,comments") @RequestParam MultipartFile file)
+            throws IOException {
+        return csvImportJobs.submit(CsvImportSpec.UCSB_MENU_ITEM_REVIEWS, file, getCurrentUser().getUser().getEmail());
+    }
+
+    @Operation(summary= "Delete several reviews; ids that do not exist are skipped")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    // for up to 500 ids; each further 500 run as many again
+    @QueryBudget(5)
+    @DeleteMapping("/bulk")
+    public CompletableFuture<Object> bulkDeleteUCSBMenuItemReview(
+            @Parameter(name="ids", description="comma separated list, e.g. 1,2,3") @RequestParam List<Long> ids) {
+        return bulkheads.adminWrites(() -> {
+            int count = ucsbMenuItemReviewService.bulkDelete(ids);
+            return bulkDeleteMessage(UCSBMenuItemReview.class, count);
+        });
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(4)
+    @DeleteMapping("/item")
+    @Operation(summary = "Delete all reviews for a menu item")
+    public CompletableFuture<Object> deleteUCSBMenuItemReviewsForItem(
+            @Parameter(name = "itemId", description = "Id for item whose reviews are deleted") @RequestParam long itemId) {
+        return bulkheads.adminWrites(() -> {
+            int count = ucsbMenuItemReviewService.bulkDeleteByItemId(itemId);
+            return bulkDeleteMessage(UCSBMenuItemReview.class, count);
+        });
+    }
 }
@@ -1,8 +1,16 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.QueryBudget;
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
-import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.models.CsvImportResult;
+import edu.ucsb.cs156.example.models.MultiGetResult;
+import edu.ucsb.cs156.example.repositories.EntityFilter;
+import edu.ucsb.cs156.example.repositories.Fieldset;
+import edu.ucsb.cs156.example.services.CsvImportJobHandler;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.CsvImportSpec;
+import edu.ucsb.cs156.example.services.UCSBOrganizationService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -10,6 +18,8 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,10 +28,18 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
 import javax.validation.Valid;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 @Tag(name = "UCSBOrganization")
 @RequestMapping("/api/ucsborganization")
 @RestController
@@ -29,18 +47,47 @@ import javax.validation.Valid;
 public class UCSBOrganizationController extends ApiController {
 
     @Autowired
-    UCSBOrganizationRepository ucsbOrganizationRepository;
+    UCSBOrganizationService ucsbOrganizationService;
+
+    @Autowired
+    CsvImportService csvImportService;
+
+    @Autowired
+    CsvImportJobHandler csvImportJobs;
 
     @Operation(summary= "List all ucsb organizations")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("/all")
-    public Iterable<UCSBOrganization> allOrganizations() {
-        Iterable<UCSBOrganization> orgs = ucsbOrganizationRepository.findAll();
-        return orgs;
+    public CompletableFuture<Iterable<UCSBOrganization>> allOrganizations(
+            @Parameter(name="filter", description="comma separated field:value terms on indexed fields, e.g. orgTranslationShort:ZPR") @RequestParam(required = false) String filter,
+            @Parameter(name="sort", description="comma separated indexed fields, - for descending, e.g. orgTranslationShort") @RequestParam(required = false) String sort) {
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> ucsbOrganizationService.findAll());
+        }
+        EntityFilter<UCSBOrganization> entityFilter = EntityFilter.parse(UCSBOrganization.class, filter, sort);
+        return bulkheads.userReads(() -> ucsbOrganizationService.findAll(entityFilter));
+    }
+
+    @Operation(summary= "List all ucsb organizations, with only the given fields")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "/all", params = "fields")
+    public CompletableFuture<List<Map<String, Object>>> allOrganizationFields(
+            @Parameter(name="fields", description="comma separated list, e.g. orgCode,orgTranslationShort") @RequestParam String fields,
+            @Parameter(name="filter", description="comma separated field:value terms on indexed fields, e.g. orgTranslationShort:ZPR") @RequestParam(required = false) String filter,
+            @Parameter(name="sort", description="comma separated indexed fields, - for descending, e.g. orgTranslationShort") @RequestParam(required = false) String sort) {
+        Fieldset fieldset = Fieldset.parse(UCSBOrganization.class, fields);
+        if (filter == null && sort == null) {
+            return bulkheads.userReads(() -> ucsbOrganizationService.findAllFields(fieldset));
+        }
+        EntityFilter<UCSBOrganization> entityFilter = EntityFilter.parse(UCSBOrganization.class, filter, sort);
+        return bulkheads.userReads(() -> ucsbOrganizationService.findAllFields(fieldset, entityFilter));
     }
 
     @Operation(summary= "Create a new organization")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(10)
     @PostMapping("/post")
     public UCSBOrganization postOrganization(
         @Parameter(name="orgCode") @RequestParam String orgCode,
@@ -56,51 +103,99 @@ public class UCSBOrganizationController extends ApiController {
         org.setOrgTranslation(orgTranslation);
         org.setInactive(inactive);
 
-        UCSBOrganization savedOrg = ucsbOrganizationRepository.save(org);
+        UCSBOrganization savedOrg = ucsbOrganizationService.create(org);
 
         return savedOrg;
     }
 
     @Operation(summary= "Get a single organization")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
     @GetMapping("")
     public UCSBOrganization getById(
             @Parameter(name="orgCode") @RequestParam String orgCode) {
-        UCSBOrganization org = ucsbOrganizationRepository.findById(orgCode)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
+        UCSBOrganization org = ucsbOrganizationService.findById(orgCode);
 
         return org;
     }
 
+    @Operation(summary= "Get the given fields of a single organization")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping(value = "", params = "fields")
+    public Map<String, Object> getFieldsById(
+            @Parameter(name="orgCode") @RequestParam String orgCode,
+            @Parameter(name="fields", description="comma separated list, e.g. orgCode,orgTranslationShort") @RequestParam String fields) {
+        return ucsbOrganizationService.findFieldsById(orgCode, Fieldset.parse(UCSBOrganization.class, fields));
+    }
+
+    @Operation(summary= "Get several organizations in one query")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @QueryBudget(1)
+    @GetMapping("/many")
+    public CompletableFuture<MultiGetResult<UCSBOrganization, String>> getMany(
+            @Parameter(name="orgCodes", description="comma separated list, e.g. a,b,c") @RequestParam List<String> orgCodes) {
+        return bulkheads.userReads(() -> ucsbOrganizationService.findMany(orgCodes));
+    }
+
     @Operation(summary= "Delete a UCSBOrganization")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(9)
     @DeleteMapping("")
     public Object deleteOrganization(
             @Parameter(name="orgCode") @RequestParam String orgCode) {
-        UCSBOrganization org = ucsbOrganizationRepository.findById(orgCode)
-            .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
-
-        ucsbOrganizationRepository.delete(org);
+        ucsbOrganizationService.delete(orgCode);
         return genericMessage("UCSBOrganization with id %s deleted".formatted(orgCode));
     }
 
+    @Operation(summary= "Import organizations from a CSV file, reporting the rows that could not be imported")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(QueryBudget.UNBOUNDED)
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public CsvImportResult importOrganizations(
+            @Parameter(name="file", description="UTF-8 CSV with a header row naming the columns orgCode,orgTranslationShort,orgTranslation,inactive") @RequestParam MultipartFile file)
+            throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return csvImportService.importCsv(CsvImportSpec.UCSB_ORGANIZATIONS, in);
+        }
+    }
+
+    @Operation(summary="Start importing organizations from a CSV file as a background job; poll /api/jobs?id= for its progress")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(2)
+    @PostMapping(value = "/import", params = "async=true", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Job importOrganizationsAsJob(
+            @Parameter(name="file", description="UTF-8 CSV with a header row naming the columns orgCode,orgTranslationShort,orgTranslation,inactive") @RequestParam MultipartFile file)
+            throws IOException {
+        return csvImportJobs.submit(CsvImportSpec.UCSB_ORGANIZATIONS, file, getCurrentUser().getUser().getEmail());
+    }
+
+    @Operation(summary= "Delete several organizations; ids that do not exist are skipped")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    // for up to 500 ids; each further 500 run as many again
+    @QueryBudget(9)
+    @DeleteMapping("/bulk")
+    public CompletableFuture<Object> bulkDeleteUCSBOrganization(
+            @Parameter(name="orgCodes", description="comma separated list, e.g. a,b,c") @RequestParam List<String> orgCodes) {
+        return bulkheads.adminWrites(() -> {
+            int count = ucsbOrganizationService.bulkDelete(orgCodes);
+            return bulkDeleteMessage(UCSBOrganization.class, count);
+        });
+    }
+
     @Operation(summary= "Update a single organization")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @QueryBudget(10)
     @PutMapping("")
     public UCSBOrganization updateOrganization(
             @Parameter(name="orgCode") @RequestParam String orgCode,
             @RequestBody @Valid UCSBOrganization incoming) {
 
-        UCSBOrganization org = ucsbOrganizationRepository.findById(orgCode)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
-
-
-        org.setOrgTranslationShort(incoming.getOrgTranslationShort());
-        org.setOrgTranslation(incoming.getOrgTranslation());
-        org.setInactive(incoming.getInactive());
-
-        ucsbOrganizationRepository.save(org);
-
-        return org;
+        return ucsbOrganizationService.update(orgCode, org -> {
+            org.setOrgTranslationShort(incoming.getOrgTranslationShort());
+            org.setOrgTranslation(incoming.getOrgTranslation());
+            org.setInactive(incoming.getInactive());
+        });
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.QueryBudget;
 import edu.ucsb.cs156.example.entities.User;
 import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.services.CurrentUserService;
@@ -19,6 +20,8 @@ public class UserInfoController extends ApiController {
  
   @Operation(summary= "Get information about current user")
   @PreAuthorize("hasRole('ROLE_USER')")
+  // a user's first request also signs them up
+  @QueryBudget(2)
   @GetMapping("")
   public CurrentUser getCurrentUser() {
     return super.getCurrentUser();
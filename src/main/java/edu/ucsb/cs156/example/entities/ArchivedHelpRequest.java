@@ -0,0 +1,44 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Type;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A solved help request moved out of helprequests by
+ * HelpRequestsArchiveService once it is old enough. It keeps its id and
+ * columns, so the rows are copied across with one INSERT ... SELECT; the
+ * two tables must be kept in step.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "helprequestsarchive")
+@Table(indexes = {
+    @Index(name = "helprequestsarchive_request_time", columnList = "requestTime") })
+public class ArchivedHelpRequest {
+  @Id
+  private long id;
+
+  private String requesterEmail;
+  private String teamId;
+  private String tableOrBreakoutRoom;
+  @Lob
+  @Type(type = "org.hibernate.type.TextType")
+  private String explanation;
+  private LocalDateTime requestTime;
+  private boolean solved;
+  private LocalDateTime archivedAt;
+}
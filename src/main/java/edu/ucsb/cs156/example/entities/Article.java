@@ -5,7 +5,12 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.GeneratedValue;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Type;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,6 +22,9 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "articles")
+@Table(indexes = {
+    @Index(name = "articles_email", columnList = "email"),
+    @Index(name = "articles_date_added", columnList = "dateAdded") })
 public class Article {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -24,6 +32,8 @@ public class Article {
 
   private String title;
   private String url;
+  @Lob
+  @Type(type = "org.hibernate.type.TextType")
   private String explanation;
   private String email;
   private LocalDateTime dateAdded;
@@ -0,0 +1,45 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One admin request that could change something (a POST, PUT or DELETE to
+ * a handler that needs ROLE_ADMIN): who made it, to what path with which
+ * query parameters, and how it ended. Written in batches by AuditLogService
+ * shortly after the request.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "auditlog")
+@Table(indexes = { @Index(name = "auditlog_user_email", columnList = "userEmail") })
+public class AuditEvent {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  private LocalDateTime occurredAt;
+  private String userEmail;
+  private String method;
+  private String path;
+  // the query string, cut to fit the column
+  private String params;
+  // Controller.method
+  private String handler;
+  // OK, or the simple name of the exception the request ended with
+  private String outcome;
+  private long durationMillis;
+}
@@ -0,0 +1,51 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One change to a row behind the entity APIs, written by ChangeLogService in
+ * the transaction that made it. seq numbers changes in the order their
+ * transactions committed; GET /api/changes?since= reads them back.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "changelog")
+@Table(indexes = {
+    @Index(name = "changelog_entity_entity_id", columnList = "entity, entityId") })
+public class ChangeLogEntry {
+  /**
+   * UPSERT: the row was created or changed; DELETE: it is gone; RESET: rows
+   * of the entity changed in a way not recorded row by row (a CSV import, a
+   * purge), so a client has to read them all again. A RESET's entityId is
+   * {@link #ALL_ROWS}.
+   */
+  public enum Op {
+    UPSERT, DELETE, RESET
+  }
+
+  public static final String ALL_ROWS = "*";
+
+  @Id
+  private long seq;
+
+  // the simple name of the entity class, e.g. UCSBDate
+  private String entity;
+  private String entityId;
+  @Enumerated(EnumType.STRING)
+  private Op op;
+  private LocalDateTime changedAt;
+}
@@ -0,0 +1,30 @@
+package edu.ucsb.cs156.example.entities;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The single row (id 1) that ChangeLogService numbers changes from:
+ * lastSeq is the seq of the latest change written, and compactedThrough the
+ * seq up to which changes may have been dropped by compaction, so that a
+ * client that has seen less than that must read everything again.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "changelogstate")
+public class ChangeLogState {
+  public static final int ID = 1;
+
+  @Id
+  private int id;
+
+  private long lastSeq;
+  private long compactedThrough;
+}
@@ -5,7 +5,12 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.GeneratedValue;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Type;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,6 +22,11 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "helprequests")
+@Table(indexes = {
+    @Index(name = "helprequests_solved_request_time", columnList = "solved, requestTime"),
+    @Index(name = "helprequests_team_id", columnList = "teamId"),
+    @Index(name = "helprequests_requester_email", columnList = "requesterEmail"),
+    @Index(name = "helprequests_request_time", columnList = "requestTime") })
 public class HelpRequests {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -27,6 +37,8 @@ public class HelpRequests {
   private String requesterEmail;
   private String teamId;
   private String tableOrBreakoutRoom;
+  @Lob
+  @Type(type = "org.hibernate.type.TextType")
   private String explanation;
   private LocalDateTime requestTime;
   private boolean solved;
@@ -0,0 +1,47 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+/**
+ * The response saved for one Idempotency-Key, so that a retried POST can be
+ * answered without running the request again. {@code key} is a SHA-256 of
+ * the key and the user and path it was sent with; see IdempotencyFilter.
+ *
+ * While the first request runs, its row is PENDING (status 0, no response
+ * yet): inserting it is how an instance claims the key, so a duplicate sent
+ * to another instance fails to insert it and does not run.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "idempotencykeys")
+public class IdempotencyRecord {
+  public static final int PENDING = 0;
+
+  @Id
+  @Column(name = "idempotency_key", length = 64)
+  private String key;
+
+  private String fingerprint;
+  private int status;
+  private String contentType;
+
+  @Column(length = 1_000_000)
+  private String body;
+
+  private LocalDateTime createdAt;
+
+  public boolean isPending() {
+    return status == PENDING;
+  }
+}
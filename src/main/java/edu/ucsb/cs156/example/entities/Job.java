@@ -0,0 +1,81 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One long-running admin operation (a CSV import, a purge, ...) that runs in
+ * the background on JobService's workers rather than in a request thread.
+ *
+ * The row is the job's queue entry as well as its record: a worker claims a
+ * QUEUED job by making it RUNNING under its own workerId, refreshes
+ * heartbeatAt while it runs, and writes the outcome when it ends. params and
+ * result are JSON; the log holds what the job logged while it ran.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "jobs")
+@Table(indexes = { @Index(name = "jobs_status", columnList = "status") })
+public class Job {
+  public enum Status {
+    QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+  }
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  private String type;
+  private String description;
+
+  @Enumerated(EnumType.STRING)
+  private Status status;
+
+  private String createdBy;
+  private LocalDateTime createdAt;
+  private LocalDateTime startedAt;
+  private LocalDateTime finishedAt;
+
+  private String workerId;
+  private LocalDateTime heartbeatAt;
+  private boolean cancelRequested;
+
+  private long progress;
+  private Long total;
+  private String progressMessage;
+
+  @JsonRawValue
+  @Column(length = 100_000)
+  private String params;
+
+  @JsonRawValue
+  @Column(length = 1_000_000)
+  private String result;
+
+  @Column(length = 4000)
+  private String error;
+
+  // served separately, by GET /api/jobs/log
+  @JsonIgnore
+  @Column(name = "job_log", length = 1_000_000)
+  private String log;
+}
@@ -0,0 +1,34 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A named lock shared by all instances of the app through the database; see
+ * LeaderLockService. Whoever holds it does so until leaseUntil. Every time it
+ * changes hands fencingToken goes up by one, so work done under an older
+ * token can be told apart from work done under the current one.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "leaderlocks")
+public class LeaderLock {
+  @Id
+  @Column(name = "lock_name")
+  private String name;
+
+  private String owner;
+  private LocalDateTime acquiredAt;
+  private LocalDateTime leaseUntil;
+  private long fencingToken;
+}
@@ -5,7 +5,12 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.GeneratedValue;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Type;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,6 +22,11 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "recommendationrequests")
+@Table(indexes = {
+    @Index(name = "recommendationrequests_requester_email", columnList = "requesterEmail"),
+    @Index(name = "recommendationrequests_professor_email", columnList = "professorEmail"),
+    @Index(name = "recommendationrequests_done_date_needed", columnList = "done, dateNeeded"),
+    @Index(name = "recommendationrequests_date_needed", columnList = "dateNeeded") })
 public class RecommendationRequest {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)        
@@ -25,6 +35,8 @@ public class RecommendationRequest {
 
   private String requesterEmail;
   private String professorEmail;  
+  @Lob
+  @Type(type = "org.hibernate.type.TextType")
   private String explanation;
   private LocalDateTime dateRequested;
   private LocalDateTime dateNeeded;
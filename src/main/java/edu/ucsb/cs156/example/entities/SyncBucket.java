@@ -0,0 +1,41 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.io.Serializable;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One leaf of a table's sync tree: the XOR of the hashes of the rows in the
+ * bucket, 0 when it is empty. XOR lets a write change the hash by taking
+ * the row's old hash out and putting the new one in, without reading the
+ * bucket's other rows.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "syncbuckets")
+@IdClass(SyncBucket.Key.class)
+public class SyncBucket {
+  @Data
+  @AllArgsConstructor
+  @NoArgsConstructor
+  public static class Key implements Serializable {
+    private String entity;
+    private int bucket;
+  }
+
+  @Id
+  private String entity;
+  @Id
+  private int bucket;
+
+  private long hash;
+}
@@ -0,0 +1,46 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.io.Serializable;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The hash of one row of a table that clients keep offline copies of, and
+ * the bucket of the sync tree it is in (see SyncTreeService). Kept so that
+ * an update or delete can take the row's old hash back out of its bucket.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "syncrowhashes")
+@IdClass(SyncRowHash.Key.class)
+@Table(indexes = {
+    @Index(name = "syncrowhashes_entity_bucket", columnList = "entity, bucket") })
+public class SyncRowHash {
+  @Data
+  @AllArgsConstructor
+  @NoArgsConstructor
+  public static class Key implements Serializable {
+    private String entity;
+    private String entityId;
+  }
+
+  // the simple name of the entity class, e.g. UCSBDate
+  @Id
+  private String entity;
+  @Id
+  private String entityId;
+
+  private int bucket;
+  private long hash;
+}
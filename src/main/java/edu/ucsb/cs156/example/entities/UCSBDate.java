@@ -5,7 +5,9 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.GeneratedValue;
+import javax.persistence.Table;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,6 +19,9 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbdates")
+@Table(indexes = {
+    @Index(name = "ucsbdates_quarter_yyyyq", columnList = "quarterYYYYQ"),
+    @Index(name = "ucsbdates_local_date_time", columnList = "localDateTime") })
 public class UCSBDate {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -5,7 +5,12 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.GeneratedValue;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Type;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,6 +22,10 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbmenuitemreview")
+@Table(indexes = {
+    @Index(name = "ucsbmenuitemreview_item_id", columnList = "itemId"),
+    @Index(name = "ucsbmenuitemreview_reviewer_email", columnList = "reviewerEmail"),
+    @Index(name = "ucsbmenuitemreview_date_reviewed", columnList = "dateReviewed") })
 public class UCSBMenuItemReview {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -26,5 +35,7 @@ public class UCSBMenuItemReview {
     private Integer stars;
     private String reviewerEmail;
     private LocalDateTime dateReviewed;
+    @Lob
+    @Type(type = "org.hibernate.type.TextType")
     private String comments;
 }
\ No newline at end of file
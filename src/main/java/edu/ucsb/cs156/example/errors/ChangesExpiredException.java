@@ -0,0 +1,12 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * A client asked the change feed for changes the log no longer has, or
+ * never had; answered with 410 Gone. The client has to read the
+ * collections again and carry on from the latest seq.
+ */
+public class ChangesExpiredException extends RuntimeException {
+  public ChangesExpiredException(String message) {
+    super(message);
+  }
+}
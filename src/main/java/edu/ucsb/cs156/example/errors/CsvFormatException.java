@@ -0,0 +1,12 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * An uploaded CSV file that cannot be read any further (missing header
+ * columns, an unterminated quote, ...); answered with 400 Bad Request.
+ * Problems confined to one row are reported per row instead.
+ */
+public class CsvFormatException extends RuntimeException {
+  public CsvFormatException(String message) {
+    super(message);
+  }
+}
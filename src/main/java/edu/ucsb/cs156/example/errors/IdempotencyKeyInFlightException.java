@@ -0,0 +1,12 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * Another instance holds the pending row for an Idempotency-Key, so the
+ * request is running there; IdempotencyFilter answers the duplicate with
+ * 409 Conflict, and the client retries once the first request is done.
+ */
+public class IdempotencyKeyInFlightException extends RuntimeException {
+  public IdempotencyKeyInFlightException(String message) {
+    super(message);
+  }
+}
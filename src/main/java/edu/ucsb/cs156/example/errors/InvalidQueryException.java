@@ -0,0 +1,11 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * A query parameter (e.g. fields=) that names something the entity does not
+ * have; answered with 400 Bad Request.
+ */
+public class InvalidQueryException extends RuntimeException {
+  public InvalidQueryException(String message) {
+    super(message);
+  }
+}
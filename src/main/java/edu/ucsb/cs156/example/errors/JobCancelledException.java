@@ -0,0 +1,11 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * Thrown inside a job that notices it has been cancelled; the job then ends
+ * as CANCELLED. Whatever it had already committed is kept.
+ */
+public class JobCancelledException extends RuntimeException {
+  public JobCancelledException(String message) {
+    super(message);
+  }
+}
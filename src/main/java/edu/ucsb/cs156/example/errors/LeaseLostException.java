@@ -0,0 +1,12 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * Thrown by work done under a leader lock that finds the lock has passed to
+ * another instance (its lease ran out), so that it stops before writing
+ * anything more.
+ */
+public class LeaseLostException extends RuntimeException {
+  public LeaseLostException(String message) {
+    super(message);
+  }
+}
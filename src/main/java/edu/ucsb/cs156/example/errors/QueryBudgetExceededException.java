@@ -0,0 +1,13 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * A request ran more SQL statements than its endpoint's @QueryBudget
+ * allows, or reached an endpoint without one, while app.queryBudget.mode is
+ * FAIL. Thrown before the response is committed, where nothing handles it,
+ * so it fails the test that made the request.
+ */
+public class QueryBudgetExceededException extends RuntimeException {
+  public QueryBudgetExceededException(String message) {
+    super(message);
+  }
+}
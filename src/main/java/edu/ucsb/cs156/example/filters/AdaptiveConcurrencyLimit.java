@@ -0,0 +1,135 @@
+package edu.ucsb.cs156.example.filters;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * A concurrency limit that adapts to observed latency (AIMD).
+ *
+ * A request may start only while fewer than {@link #getLimit()} requests are
+ * running; otherwise it is turned away at once rather than queued.
+ *
+ * Latencies are collected in sampling windows of at least windowMillis and
+ * minSamples requests, and the limit changes at most once per window: when
+ * the window's p90 latency is over the threshold, the limit is multiplied by
+ * the backoff ratio; when it is under and the limit was actually in use, the
+ * limit grows by one. So a burst of slow requests backs off once rather than
+ * once per request, and a few slow ones among many fast ones not at all.
+ * When the database slows down, fewer requests are let through until
+ * latency is back under the threshold, and the limit creeps back up once it
+ * recovers.
+ *
+ * With min, initial and max all the same it is simply a fixed limit.
+ */
+class AdaptiveConcurrencyLimit {
+  // the most recent samples of a window; enough for a p90
+  private static final int MAX_SAMPLES = 256;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final long latencyThresholdNanos;
+  private final double backoffRatio;
+  private final long windowNanos;
+  private final int minSamples;
+  private final LongSupplier clock;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile double limit;
+
+  // the current sampling window, guarded by this
+  private final long[] samples = new long[MAX_SAMPLES];
+  private final long[] sorted = new long[MAX_SAMPLES];
+  private int sampleCount;
+  private int maxInFlight;
+  private long windowStart;
+
+  AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long latencyThresholdMillis,
+      double backoffRatio, long windowMillis, int minSamples, LongSupplier clock) {
+    if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+      throw new IllegalArgumentException("limits must satisfy 1 <= min <= initial <= max");
+    }
+    if (backoffRatio <= 0 || backoffRatio >= 1) {
+      throw new IllegalArgumentException("backoffRatio must be between 0 and 1");
+    }
+    if (minSamples < 1) {
+      throw new IllegalArgumentException("minSamples must be at least 1");
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+    this.backoffRatio = backoffRatio;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    this.minSamples = minSamples;
+    this.clock = clock;
+    this.limit = initialLimit;
+    this.windowStart = clock.getAsLong();
+  }
+
+  /**
+   * @return the number of requests running, including this one, if it may
+   *         start, or 0 if it must be rejected; pass the value back to
+   *         {@link #release}
+   */
+  int tryAcquire() {
+    while (true) {
+      int current = inFlight.get();
+      if (current >= (int) limit) {
+        return 0;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return current + 1;
+      }
+    }
+  }
+
+  /**
+   * Releases a slot and counts its latency towards the current window.
+   */
+  void release(int inFlightAtStart, long latencyNanos) {
+    inFlight.decrementAndGet();
+    synchronized (this) {
+      samples[sampleCount % MAX_SAMPLES] = latencyNanos;
+      sampleCount++;
+      maxInFlight = Math.max(maxInFlight, inFlightAtStart);
+
+      long now = clock.getAsLong();
+      if (sampleCount < minSamples || now - windowStart < windowNanos) {
+        return;
+      }
+      if (p90() > latencyThresholdNanos) {
+        limit = Math.max(minLimit, limit * backoffRatio);
+      } else if (maxInFlight * 2 >= limit) {
+        // only grow when the limit is what is holding requests back
+        limit = Math.min(maxLimit, limit + 1);
+      }
+      sampleCount = 0;
+      maxInFlight = 0;
+      windowStart = now;
+    }
+  }
+
+  /**
+   * Releases a slot whose latency says nothing about the database, e.g.
+   * because it includes time spent queued for a bulkhead.
+   */
+  void release() {
+    inFlight.decrementAndGet();
+  }
+
+  private long p90() {
+    int count = Math.min(sampleCount, MAX_SAMPLES);
+    System.arraycopy(samples, 0, sorted, 0, count);
+    Arrays.sort(sorted, 0, count);
+    return sorted[(int) Math.ceil(count * 0.9) - 1];
+  }
+
+  int getLimit() {
+    return (int) limit;
+  }
+
+  int getInFlight() {
+    return inFlight.get();
+  }
+}
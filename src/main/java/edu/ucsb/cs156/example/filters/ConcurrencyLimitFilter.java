@@ -0,0 +1,247 @@
+package edu.ucsb.cs156.example.filters;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Caps how many /api/ requests run at once, with separate adaptive limits for
+ * reads (GET, HEAD, OPTIONS) and writes; see AdaptiveConcurrencyLimit.
+ *
+ * Endpoints that are slow by design (app.concurrencyLimit.bulk.paths: CSV
+ * imports and bulk deletes) would teach those limits that the database is
+ * slow, so they have a class of their own with a fixed limit instead. The
+ * time of a request whose handler goes async includes its wait in a
+ * bulkhead's queue, which the bulkhead already bounds, so it holds a slot
+ * but does not count towards the adaptive limit's latency.
+ *
+ * When the database slows down, requests beyond the limit get 503 with
+ * Retry-After straight away instead of waiting for a Tomcat thread and a
+ * connection, which keeps latency bounded for the requests that do run.
+ *
+ * Runs after ReadCoalescingFilter, so reads that are answered from another
+ * request's response never take a slot. A request whose handler goes async
+ * keeps its slot until the async dispatch has written the response.
+ *
+ * POST /api/batch itself takes no slot: each of its sub-requests takes one
+ * (see BatchDispatcherService).
+ */
+@Slf4j
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 25)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+  static final String LIMIT_METER = "app.concurrency.limit";
+  static final String REJECTED_METER = "app.concurrency.rejected";
+
+  private static final String BATCH_PATH = "/api/batch";
+
+  private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+  private static final String SLOT_ATTRIBUTE = ConcurrencyLimitFilter.class.getName() + ".slot";
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Value("${app.concurrencyLimit.enabled:true}")
+  private boolean enabled;
+
+  @Value("${app.concurrencyLimit.read.initial:20}")
+  private int readInitial;
+
+  @Value("${app.concurrencyLimit.read.min:2}")
+  private int readMin;
+
+  @Value("${app.concurrencyLimit.read.max:100}")
+  private int readMax;
+
+  @Value("${app.concurrencyLimit.write.initial:10}")
+  private int writeInitial;
+
+  @Value("${app.concurrencyLimit.write.min:1}")
+  private int writeMin;
+
+  @Value("${app.concurrencyLimit.write.max:40}")
+  private int writeMax;
+
+  @Value("${app.concurrencyLimit.latencyThresholdMillis:500}")
+  private long latencyThresholdMillis;
+
+  @Value("${app.concurrencyLimit.backoffRatio:0.9}")
+  private double backoffRatio;
+
+  @Value("${app.concurrencyLimit.windowMillis:1000}")
+  private long windowMillis;
+
+  @Value("${app.concurrencyLimit.minSamples:10}")
+  private int minSamples;
+
+  @Value("${app.concurrencyLimit.bulk.limit:2}")
+  private int bulkLimit;
+
+  @Value("${app.concurrencyLimit.bulk.paths:/api/*/import,/api/*/bulk}")
+  private List<String> bulkPaths;
+
+  private LimitClass reads;
+  private LimitClass writes;
+  private LimitClass bulk;
+
+  private record LimitClass(String name, AdaptiveConcurrencyLimit limit, Counter rejected) {
+  }
+
+  @PostConstruct
+  void createLimits() {
+    reads = limitClass("read", readInitial, readMin, readMax);
+    writes = limitClass("write", writeInitial, writeMin, writeMax);
+    bulk = limitClass("bulk", bulkLimit, bulkLimit, bulkLimit);
+  }
+
+  private LimitClass limitClass(String name, int initial, int min, int max) {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(initial, min, max, latencyThresholdMillis,
+        backoffRatio, windowMillis, minSamples, System::nanoTime);
+    Gauge.builder(LIMIT_METER, limit, AdaptiveConcurrencyLimit::getLimit).tag("class", name).register(meterRegistry);
+    return new LimitClass(name, limit, meterRegistry.counter(REJECTED_METER, "class", name));
+  }
+
+  private LimitClass limitClass(HttpServletRequest request) {
+    String path = FilterRequests.path(request);
+    if (bulkPaths.stream().anyMatch(pattern -> pathMatcher.match(pattern, path))) {
+      return bulk;
+    }
+    return FilterRequests.isRead(request) ? reads : writes;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !enabled || !FilterRequests.isApi(request) || FilterRequests.path(request).equals(BATCH_PATH);
+  }
+
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    return false;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    if (isAsyncDispatch(request)) {
+      Slot slot = (Slot) request.getAttribute(SLOT_ATTRIBUTE);
+      if (slot == null) {
+        chain.doFilter(request, response);
+      } else {
+        hold(slot, request, response, chain);
+      }
+      return;
+    }
+
+    LimitClass limitClass = limitClass(request);
+    AdaptiveConcurrencyLimit limit = limitClass.limit();
+
+    int inFlight = limit.tryAcquire();
+    if (inFlight == 0) {
+      limitClass.rejected().increment();
+      response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+      response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+      mapper.writeValue(response.getOutputStream(),
+          Map.of("message", "server busy; at most %d concurrent %s requests allowed right now"
+              .formatted(limit.getLimit(), limitClass.name())));
+      return;
+    }
+
+    Slot slot = new Slot(limit, inFlight, System.nanoTime());
+    hold(slot, request, response, chain);
+    if (request.isAsyncStarted()) {
+      slot.async = true;
+      request.setAttribute(SLOT_ATTRIBUTE, slot);
+      request.getAsyncContext().addListener(slot);
+    }
+  }
+
+  private void hold(Slot slot, HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      if (!request.isAsyncStarted()) {
+        slot.release();
+      }
+    }
+  }
+
+  /**
+   * A permit taken from one of the limits; released exactly once, either when
+   * the response is written or when the async request ends some other way.
+   */
+  private static final class Slot implements AsyncListener {
+    private final AdaptiveConcurrencyLimit limit;
+    private final int inFlightAtStart;
+    private final long start;
+    private final AtomicBoolean released = new AtomicBoolean();
+    private volatile boolean async;
+
+    Slot(AdaptiveConcurrencyLimit limit, int inFlightAtStart, long start) {
+      this.limit = limit;
+      this.inFlightAtStart = inFlightAtStart;
+      this.start = start;
+    }
+
+    void release() {
+      if (!released.compareAndSet(false, true)) {
+        return;
+      }
+      if (async) {
+        limit.release();
+      } else {
+        limit.release(inFlightAtStart, System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      release();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      release();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      release();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+  }
+}
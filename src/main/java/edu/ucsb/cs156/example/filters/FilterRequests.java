@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.filters;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.http.HttpMethod;
+
+/**
+ * Request classification shared by the filters in this package.
+ */
+final class FilterRequests {
+  private FilterRequests() {
+  }
+
+  /**
+   * The request URI without the context path, e.g. /api/ucsbdates/all.
+   */
+  static String path(HttpServletRequest request) {
+    return request.getRequestURI().substring(request.getContextPath().length());
+  }
+
+  static boolean isApi(HttpServletRequest request) {
+    return path(request).startsWith("/api/");
+  }
+
+  /**
+   * GET, HEAD and OPTIONS; everything else counts as a write.
+   */
+  static boolean isRead(HttpServletRequest request) {
+    String method = request.getMethod();
+    return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method);
+  }
+}
@@ -0,0 +1,187 @@
+package edu.ucsb.cs156.example.filters;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.IdempotencyRecord;
+import edu.ucsb.cs156.example.errors.IdempotencyKeyInFlightException;
+import edu.ucsb.cs156.example.services.IdempotencyService;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Makes the POST /api/.../post creation endpoints safe to retry.
+ *
+ * A client that sends an Idempotency-Key header gets the response of the
+ * first request with that key back on every retry, without the request
+ * (and its INSERT) running again. Keys are scoped to the user and the path,
+ * and a key reused with different parameters is rejected with 422. A
+ * duplicate sent while the first request is still running on another
+ * instance gets 409.
+ *
+ * Runs after the Spring Security filter chain, so the user is known.
+ */
+@Slf4j
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+  public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+  public static final String REPLAYED = "Idempotent-Replayed";
+
+  private static final int MAX_KEY_LENGTH = 255;
+
+  // differs on every retry, so it is not part of what makes two requests the same
+  private static final String CSRF_PARAMETER = "_csrf";
+
+  @Autowired
+  IdempotencyService idempotencyService;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Value("${app.idempotency.waitSeconds:30}")
+  private long waitSeconds;
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !HttpMethod.POST.matches(request.getMethod())
+        || !FilterRequests.isApi(request)
+        || !FilterRequests.path(request).endsWith("/post")
+        || request.getHeader(IDEMPOTENCY_KEY) == null;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    String clientKey = request.getHeader(IDEMPOTENCY_KEY);
+    if (clientKey.isBlank() || clientKey.length() > MAX_KEY_LENGTH) {
+      writeMessage(response, HttpServletResponse.SC_BAD_REQUEST,
+          "%s must be 1 to %d characters".formatted(IDEMPOTENCY_KEY, MAX_KEY_LENGTH));
+      return;
+    }
+    String key = scopedKey(request, clientKey);
+    String fingerprint = fingerprint(request);
+
+    Optional<IdempotencyRecord> previous = idempotencyService.find(key);
+    if (previous.isPresent()) {
+      replay(previous.get(), fingerprint, response);
+      return;
+    }
+
+    CompletableFuture<IdempotencyRecord> running = idempotencyService.claim(key);
+    if (running != null) {
+      awaitAndReplay(running, fingerprint, response);
+      return;
+    }
+
+    ContentCachingResponseWrapper captured = new ContentCachingResponseWrapper(response);
+    try {
+      chain.doFilter(request, captured);
+    } catch (IOException | ServletException | RuntimeException e) {
+      idempotencyService.abandon(key, e);
+      throw e;
+    }
+    idempotencyService.complete(key, IdempotencyRecord.builder()
+        .key(key)
+        .fingerprint(fingerprint)
+        .status(captured.getStatus())
+        .contentType(captured.getContentType())
+        .body(new String(captured.getContentAsByteArray(), StandardCharsets.UTF_8))
+        .createdAt(LocalDateTime.now())
+        .build());
+    captured.copyBodyToResponse();
+  }
+
+  private void awaitAndReplay(CompletableFuture<IdempotencyRecord> running, String fingerprint,
+      HttpServletResponse response) throws IOException {
+    try {
+      replay(running.get(waitSeconds, TimeUnit.SECONDS), fingerprint, response);
+    } catch (InterruptedException | TimeoutException e) {
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      writeMessage(response, HttpServletResponse.SC_CONFLICT, "a request with this %s is still in progress".formatted(IDEMPOTENCY_KEY));
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IdempotencyKeyInFlightException) {
+        writeMessage(response, HttpServletResponse.SC_CONFLICT, "a request with this %s is still in progress".formatted(IDEMPOTENCY_KEY));
+      } else {
+        writeMessage(response, HttpServletResponse.SC_CONFLICT, "the request with this %s failed; retry it".formatted(IDEMPOTENCY_KEY));
+      }
+    }
+  }
+
+  private void replay(IdempotencyRecord record, String fingerprint, HttpServletResponse response) throws IOException {
+    if (!record.getFingerprint().equals(fingerprint)) {
+      writeMessage(response, HttpStatus.UNPROCESSABLE_ENTITY.value(), "%s was already used for a different request".formatted(IDEMPOTENCY_KEY));
+      return;
+    }
+    response.setStatus(record.getStatus());
+    if (record.getContentType() != null) {
+      response.setContentType(record.getContentType());
+    }
+    response.setHeader(REPLAYED, "true");
+    byte[] body = record.getBody() == null ? new byte[0] : record.getBody().getBytes(StandardCharsets.UTF_8);
+    response.setContentLength(body.length);
+    response.getOutputStream().write(body);
+  }
+
+  private void writeMessage(HttpServletResponse response, int status, String message) throws IOException {
+    response.setStatus(status);
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    mapper.writeValue(response.getOutputStream(), Map.of("message", message));
+  }
+
+  /**
+   * @return a SHA-256 of the user, path and client key, so that it fits the
+   *         key column however long the path and user name are
+   */
+  private static String scopedKey(HttpServletRequest request, String clientKey) {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    String user = authentication == null ? "" : authentication.getName();
+    String scoped = user + " " + request.getRequestURI() + " " + clientKey;
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(scoped.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      // every JVM has SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String fingerprint(HttpServletRequest request) {
+    StringBuilder canonical = new StringBuilder(request.getMethod()).append(' ').append(request.getRequestURI());
+    Map<String, String[]> parameters = new TreeMap<>(request.getParameterMap());
+    parameters.remove(CSRF_PARAMETER);
+    parameters.forEach((name, values) ->
+        canonical.append('\n').append(name).append('=').append(Arrays.toString(values)));
+    return DigestUtils.md5DigestAsHex(canonical.toString().getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,134 @@
+package edu.ucsb.cs156.example.filters;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Per-user token-bucket rate limiting for /api/ requests.
+ *
+ * Users are identified by their OAuth email (other logins by name, anonymous
+ * callers by address). Each user has one bucket for reads (GET, HEAD,
+ * OPTIONS) and one for writes, sized by the app.rateLimit.* properties.
+ * A request that finds its bucket empty gets 429 with Retry-After.
+ *
+ * Each sub-request of a POST /api/batch passes through this filter as well
+ * (see BatchDispatcherService), so a batch cannot get round the limit.
+ *
+ * Runs right after the Spring Security filter chain, so the user is known,
+ * and before the other application filters, so rejected requests cost as
+ * little as possible.
+ */
+@Slf4j
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 100)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Value("${app.rateLimit.enabled:true}")
+  private boolean enabled;
+
+  @Value("${app.rateLimit.read.capacity:100}")
+  private int readCapacity;
+
+  @Value("${app.rateLimit.read.refillPerSecond:20}")
+  private double readRefillPerSecond;
+
+  @Value("${app.rateLimit.write.capacity:30}")
+  private int writeCapacity;
+
+  @Value("${app.rateLimit.write.refillPerSecond:5}")
+  private double writeRefillPerSecond;
+
+  @Value("${app.rateLimit.sweepIntervalSeconds:60}")
+  private long sweepIntervalSeconds;
+
+  private TokenBuckets readBuckets;
+  private TokenBuckets writeBuckets;
+
+  @PostConstruct
+  void createBuckets() {
+    readBuckets = new TokenBuckets(readCapacity, readRefillPerSecond, sweepIntervalSeconds, System::nanoTime);
+    writeBuckets = new TokenBuckets(writeCapacity, writeRefillPerSecond, sweepIntervalSeconds, System::nanoTime);
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !enabled || !FilterRequests.isApi(request);
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    long retryAfterSeconds = acquire(request);
+    if (retryAfterSeconds == 0) {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+    response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    mapper.writeValue(response.getOutputStream(), Map.of("message", tooManyRequests(retryAfterSeconds)));
+  }
+
+  /**
+   * Takes a read or write token, as the request's method says, from the
+   * current user's bucket.
+   *
+   * @return 0 if a token was taken (or rate limiting is off), otherwise how
+   *         many seconds to wait, at least 1
+   */
+  private long acquire(HttpServletRequest request) {
+    if (!enabled) {
+      return 0;
+    }
+    TokenBuckets buckets = FilterRequests.isRead(request) ? readBuckets : writeBuckets;
+    long waitNanos = buckets.tryAcquire(user(request));
+    if (waitNanos == 0) {
+      return 0;
+    }
+    return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+  }
+
+  private static String tooManyRequests(long retryAfterSeconds) {
+    return "too many requests; retry in %d seconds".formatted(retryAfterSeconds);
+  }
+
+  private static String user(HttpServletRequest request) {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+      return "address:" + request.getRemoteAddr();
+    }
+    if (authentication.getPrincipal() instanceof OAuth2User oAuthUser && oAuthUser.getAttribute("email") != null) {
+      return "user:" + oAuthUser.getAttribute("email");
+    }
+    return "user:" + authentication.getName();
+  }
+}
@@ -0,0 +1,274 @@
+package edu.ucsb.cs156.example.filters;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Single-flight for identical concurrent reads.
+ *
+ * When a GET matching app.coalesce.paths arrives while an identical one
+ * (same path, same parameters, same set of roles) is still running, it waits
+ * for that one and is answered with the very same status, headers and body
+ * bytes, so the repository call and the JSON serialization happen once.
+ * Nothing is kept once the running request finishes; this is not a cache.
+ *
+ * Headers that belong to one request are not shared: a waiting request
+ * keeps its own X-Trace-Id and Server-Timing, which the outer TracingFilter
+ * and ServerTimingFilter set on it, and never gets the running request's
+ * Set-Cookie.
+ *
+ * Requests are grouped by roles rather than by user, so only endpoints whose
+ * response does not depend on who the user is (e.g. /all listings) belong
+ * in app.coalesce.paths.
+ *
+ * Handlers that return a CompletableFuture finish on the async dispatch, so
+ * the leader's response is only shared once that dispatch has written it.
+ *
+ * Counted in the app.coalesce.requests meter, tagged outcome=executed or
+ * outcome=coalesced.
+ */
+@Slf4j
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 50)
+public class ReadCoalescingFilter extends OncePerRequestFilter {
+  static final String METER = "app.coalesce.requests";
+
+  private static final String CSRF_PARAMETER = "_csrf";
+  private static final String LEADER_ATTRIBUTE = ReadCoalescingFilter.class.getName() + ".leader";
+  private static final Set<String> UNSHARED_HEADERS = Set.of(
+      HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH, HttpHeaders.SET_COOKIE,
+      TracingFilter.TRACE_ID_HEADER, ServerTimingFilter.SERVER_TIMING_HEADER);
+
+  private final AntPathMatcher pathMatcher = new AntPathMatcher();
+  private final Map<String, CompletableFuture<SharedResponse>> inFlight = new ConcurrentHashMap<>();
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Value("${app.coalesce.enabled:true}")
+  private boolean enabled;
+
+  @Value("${app.coalesce.paths:/api/*/all}")
+  private List<String> paths;
+
+  @Value("${app.coalesce.waitSeconds:30}")
+  private long waitSeconds;
+
+  private Counter executed;
+  private Counter coalesced;
+
+  @PostConstruct
+  void registerMeters() {
+    executed = meterRegistry.counter(METER, "outcome", "executed");
+    coalesced = meterRegistry.counter(METER, "outcome", "coalesced");
+  }
+
+  private record SharedResponse(int status, String contentType, Map<String, List<String>> headers, byte[] body) {
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    if (!enabled || !HttpMethod.GET.matches(request.getMethod())) {
+      return true;
+    }
+    String path = FilterRequests.path(request);
+    return paths.stream().noneMatch(pattern -> pathMatcher.match(pattern, path));
+  }
+
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    return false;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    if (isAsyncDispatch(request)) {
+      Leader leader = (Leader) request.getAttribute(LEADER_ATTRIBUTE);
+      if (leader == null) {
+        chain.doFilter(request, response);
+      } else {
+        lead(leader, request, chain);
+      }
+      return;
+    }
+
+    String key = key(request);
+    CompletableFuture<SharedResponse> mine = new CompletableFuture<>();
+    CompletableFuture<SharedResponse> running = inFlight.putIfAbsent(key, mine);
+
+    if (running != null) {
+      SharedResponse shared = await(running, key);
+      if (shared != null) {
+        coalesced.increment();
+        write(shared, response);
+        return;
+      }
+      // the request we waited for failed or is stuck; reads are safe to run again
+      executed.increment();
+      chain.doFilter(request, response);
+      return;
+    }
+
+    executed.increment();
+    Leader leader = new Leader(key, mine, new ContentCachingResponseWrapper(response));
+    lead(leader, request, chain);
+    if (request.isAsyncStarted()) {
+      request.setAttribute(LEADER_ATTRIBUTE, leader);
+      request.getAsyncContext().addListener(leader);
+    }
+  }
+
+  private void lead(Leader leader, HttpServletRequest request, FilterChain chain)
+      throws ServletException, IOException {
+    try {
+      chain.doFilter(request, leader.captured);
+    } catch (IOException | ServletException | RuntimeException e) {
+      leader.fail(e);
+      throw e;
+    }
+    if (!request.isAsyncStarted()) {
+      leader.finish();
+    }
+  }
+
+  /**
+   * The request that actually runs for a key, and the response it captures
+   * for everyone waiting on the same key.
+   */
+  private final class Leader implements AsyncListener {
+    private final String key;
+    private final CompletableFuture<SharedResponse> future;
+    private final ContentCachingResponseWrapper captured;
+
+    Leader(String key, CompletableFuture<SharedResponse> future, ContentCachingResponseWrapper captured) {
+      this.key = key;
+      this.future = future;
+      this.captured = captured;
+    }
+
+    void finish() throws IOException {
+      future.complete(new SharedResponse(captured.getStatus(), captured.getContentType(),
+          sharedHeaders(captured), captured.getContentAsByteArray()));
+      inFlight.remove(key, future);
+      captured.copyBodyToResponse();
+    }
+
+    void fail(Throwable e) {
+      future.completeExceptionally(e);
+      inFlight.remove(key, future);
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      // no-op when finish() already ran; otherwise the async dispatch never came
+      fail(new IllegalStateException("async request completed without a response"));
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      fail(new TimeoutException("async request timed out"));
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      fail(event.getThrowable());
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+  }
+
+  private SharedResponse await(CompletableFuture<SharedResponse> running, String key) {
+    try {
+      return running.get(waitSeconds, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      log.warn("coalesced read {} did not complete; running it again", key, e);
+    }
+    return null;
+  }
+
+  private static Map<String, List<String>> sharedHeaders(HttpServletResponse response) {
+    Map<String, List<String>> headers = new LinkedHashMap<>();
+    for (String name : response.getHeaderNames()) {
+      List<String> values = List.copyOf(response.getHeaders(name));
+      if (!values.isEmpty() && UNSHARED_HEADERS.stream().noneMatch(name::equalsIgnoreCase)) {
+        headers.put(name, values);
+      }
+    }
+    return headers;
+  }
+
+  private static void write(SharedResponse shared, HttpServletResponse response) throws IOException {
+    response.setStatus(shared.status());
+    if (shared.contentType() != null) {
+      response.setContentType(shared.contentType());
+    }
+    shared.headers().forEach((name, values) -> {
+      response.setHeader(name, values.get(0));
+      values.stream().skip(1).forEach(value -> response.addHeader(name, value));
+    });
+    response.setContentLength(shared.body().length);
+    response.getOutputStream().write(shared.body());
+  }
+
+  private static String key(HttpServletRequest request) {
+    StringBuilder key = new StringBuilder(request.getRequestURI());
+    Map<String, String[]> parameters = new TreeMap<>(request.getParameterMap());
+    parameters.remove(CSRF_PARAMETER);
+    parameters.forEach((name, values) -> key.append('&').append(name).append('=').append(Arrays.toString(values)));
+    return key.append(' ').append(authorizationClass()).toString();
+  }
+
+  private static String authorizationClass() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication == null || !authentication.isAuthenticated()) {
+      return "[]";
+    }
+    return authentication.getAuthorities().stream()
+        .map(GrantedAuthority::getAuthority)
+        .sorted()
+        .distinct()
+        .collect(Collectors.joining(",", "[", "]"));
+  }
+}
@@ -0,0 +1,265 @@
+package edu.ucsb.cs156.example.filters;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import edu.ucsb.cs156.example.services.QueryBudgetService;
+import edu.ucsb.cs156.example.services.RequestTimings;
+
+/**
+ * Measures each /api/ request (see RequestTimings), holds it to its query
+ * budget (see QueryBudgetService) and, unless app.serverTiming.enabled is
+ * false, sends a Server-Timing header with the response, which browser
+ * devtools show next to the request's own timings:
+ *
+ *   Server-Timing: db;dur=3.2;desc="4 SQL statements", controller;dur=5.0, ser;dur=0.4, total;dur=7.9
+ *
+ * db is the time executing SQL (see StatementTimer), controller the
+ * time in controller methods and the bulkhead work they started, ser the
+ * time serializing the body and total the time since this filter saw the
+ * request. See RequestTimings.
+ *
+ * Both happen just before the response is committed, so that a request
+ * over its budget can still fail. A body bigger than the response buffer
+ * commits it partway through serialization, so ser then covers filling the
+ * first buffer only.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 20)
+public class ServerTimingFilter extends OncePerRequestFilter {
+  static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+  private static final String TIMINGS_ATTRIBUTE = ServerTimingFilter.class.getName() + ".timings";
+
+  @Autowired
+  QueryBudgetService queryBudgets;
+
+  @Value("${app.serverTiming.enabled:true}")
+  private boolean enabled;
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !FilterRequests.isApi(request);
+  }
+
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    return false;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    RequestTimings timings;
+    if (isAsyncDispatch(request)) {
+      timings = (RequestTimings) request.getAttribute(TIMINGS_ATTRIBUTE);
+      if (timings == null) {
+        chain.doFilter(request, response);
+        return;
+      }
+    } else {
+      timings = new RequestTimings();
+    }
+
+    // a batch sub-request is measured on its own, inside the batch's request
+    RequestTimings enclosing = RequestTimings.current();
+    RequestTimings.bind(timings);
+    BeforeCommitResponse wrapped = new BeforeCommitResponse(response, () -> beforeCommit(timings, response, true));
+    boolean handled = false;
+    try {
+      chain.doFilter(request, wrapped);
+      handled = true;
+    } finally {
+      if (enclosing == null) {
+        RequestTimings.unbind();
+      } else {
+        RequestTimings.bind(enclosing);
+      }
+      if (request.isAsyncStarted()) {
+        request.setAttribute(TIMINGS_ATTRIBUTE, timings);
+      } else if (!response.isCommitted()) {
+        // e.g. no body at all; after an exception there is no budget to hold it to
+        beforeCommit(timings, response, handled);
+      }
+    }
+  }
+
+  /**
+   * Sends the header and holds the request to its budget, once, while the
+   * response can still be turned into an error.
+   */
+  private void beforeCommit(RequestTimings timings, HttpServletResponse response, boolean checkBudget) {
+    if (!timings.markReported()) {
+      return;
+    }
+    if (enabled) {
+      response.setHeader(SERVER_TIMING_HEADER, timings.serverTiming());
+    }
+    if (checkBudget) {
+      queryBudgets.check(timings);
+    }
+  }
+
+  /**
+   * Runs a hook just before the response is committed: when the body is
+   * flushed or closed, when a write would overflow the buffer, or on
+   * flushBuffer, sendError or sendRedirect.
+   */
+  private static final class BeforeCommitResponse extends HttpServletResponseWrapper {
+    // at most 3 bytes per char in UTF-8, so that a writer never overflows the buffer unseen
+    private static final int MAX_BYTES_PER_CHAR = 3;
+
+    private final Runnable hook;
+    private boolean hookRan;
+    private long written;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    BeforeCommitResponse(HttpServletResponse response, Runnable hook) {
+      super(response);
+      this.hook = hook;
+    }
+
+    void beforeCommit() {
+      if (!hookRan) {
+        hookRan = true;
+        hook.run();
+      }
+    }
+
+    void beforeWrite(long bytes) {
+      written += bytes;
+      if (written > getBufferSize()) {
+        beforeCommit();
+      }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (outputStream == null) {
+        outputStream = new BeforeCommitOutputStream(super.getOutputStream(), this);
+      }
+      return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      if (writer == null) {
+        writer = new PrintWriter(new BeforeCommitWriter(super.getWriter(), this));
+      }
+      return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      beforeCommit();
+      super.flushBuffer();
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+      beforeCommit();
+      super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+      beforeCommit();
+      super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+      beforeCommit();
+      super.sendRedirect(location);
+    }
+  }
+
+  private static final class BeforeCommitOutputStream extends ServletOutputStream {
+    private final ServletOutputStream delegate;
+    private final BeforeCommitResponse response;
+
+    BeforeCommitOutputStream(ServletOutputStream delegate, BeforeCommitResponse response) {
+      this.delegate = delegate;
+      this.response = response;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      response.beforeWrite(1);
+      delegate.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      response.beforeWrite(len);
+      delegate.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      response.beforeCommit();
+      delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      response.beforeCommit();
+      delegate.close();
+    }
+
+    @Override
+    public boolean isReady() {
+      return delegate.isReady();
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      delegate.setWriteListener(writeListener);
+    }
+  }
+
+  private static final class BeforeCommitWriter extends Writer {
+    private final Writer delegate;
+    private final BeforeCommitResponse response;
+
+    BeforeCommitWriter(Writer delegate, BeforeCommitResponse response) {
+      this.delegate = delegate;
+      this.response = response;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      response.beforeWrite((long) len * BeforeCommitResponse.MAX_BYTES_PER_CHAR);
+      delegate.write(cbuf, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      response.beforeCommit();
+      delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      response.beforeCommit();
+      delegate.close();
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package edu.ucsb.cs156.example.filters;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * One token bucket per key, all with the same capacity and refill rate.
+ *
+ * Each bucket is a single AtomicLong holding its "theoretical arrival time"
+ * (the GCRA formulation of a token bucket): the instant at which the bucket
+ * would be completely refilled. Taking a token is one compare-and-set, so
+ * there are no locks and no allocation on the request path once a key has
+ * a bucket. Buckets live in a ConcurrentHashMap, whose reads are lock-free
+ * and whose inserts only lock a single bin.
+ *
+ * A bucket that has refilled completely holds no information, so buckets
+ * are not expired on a timer; instead, at most once per sweep interval, the
+ * request that notices the interval has passed drops every full bucket.
+ */
+class TokenBuckets {
+  private final long emissionIntervalNanos;
+  private final long burstNanos;
+  private final long sweepIntervalNanos;
+  private final LongSupplier clock;
+
+  private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+  private final AtomicLong nextSweep;
+
+  TokenBuckets(int capacity, double refillPerSecond, long sweepIntervalSeconds, LongSupplier clock) {
+    if (capacity < 1 || refillPerSecond <= 0) {
+      throw new IllegalArgumentException("capacity must be at least 1 and refillPerSecond positive");
+    }
+    this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond);
+    this.burstNanos = emissionIntervalNanos * capacity;
+    this.sweepIntervalNanos = TimeUnit.SECONDS.toNanos(sweepIntervalSeconds);
+    this.clock = clock;
+    this.nextSweep = new AtomicLong(clock.getAsLong() + sweepIntervalNanos);
+  }
+
+  /**
+   * Takes a token from key's bucket.
+   *
+   * @return 0 if a token was taken, otherwise how many nanoseconds until the
+   *         next token is available
+   */
+  long tryAcquire(String key) {
+    long now = clock.getAsLong();
+    sweepIfDue(now);
+
+    AtomicLong arrival = buckets.get(key);
+    if (arrival == null) {
+      arrival = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+    while (true) {
+      long current = arrival.get();
+      long next = Math.max(current, now) + emissionIntervalNanos;
+      long excess = next - now - burstNanos;
+      if (excess > 0) {
+        return excess;
+      }
+      if (arrival.compareAndSet(current, next)) {
+        return 0;
+      }
+    }
+  }
+
+  int size() {
+    return buckets.size();
+  }
+
+  private void sweepIfDue(long now) {
+    long due = nextSweep.get();
+    if (now < due || !nextSweep.compareAndSet(due, now + sweepIntervalNanos)) {
+      return;
+    }
+    // a request racing with the sweep may take a token from a bucket that is
+    // being dropped; that bucket was full, so at most one token is forgiven
+    buckets.values().removeIf(arrival -> arrival.get() <= now);
+  }
+}
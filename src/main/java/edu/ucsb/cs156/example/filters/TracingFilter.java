@@ -0,0 +1,80 @@
+package edu.ucsb.cs156.example.filters;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import edu.ucsb.cs156.example.models.Trace;
+import edu.ucsb.cs156.example.services.TraceService;
+
+/**
+ * Traces each /api/ request (see TraceService) and tells the client its
+ * trace id in the X-Trace-Id header.
+ *
+ * Runs before every other filter, security included, so that the time they
+ * take shows up in the trace as the filters span. A request whose handler
+ * goes async is finished when the async dispatch has written the response.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class TracingFilter extends OncePerRequestFilter {
+  static final String TRACE_ID_HEADER = "X-Trace-Id";
+
+  private static final String TRACE_ATTRIBUTE = TracingFilter.class.getName() + ".trace";
+
+  @Autowired
+  TraceService traceService;
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !FilterRequests.isApi(request);
+  }
+
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    return false;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    Trace trace;
+    if (isAsyncDispatch(request)) {
+      trace = (Trace) request.getAttribute(TRACE_ATTRIBUTE);
+      if (trace == null) {
+        chain.doFilter(request, response);
+        return;
+      }
+      traceService.resume(trace);
+    } else {
+      trace = traceService.start(request.getMethod(), FilterRequests.path(request));
+      if (trace == null) {
+        chain.doFilter(request, response);
+        return;
+      }
+      response.setHeader(TRACE_ID_HEADER, trace.getId());
+    }
+
+    boolean failed = true;
+    try {
+      chain.doFilter(request, response);
+      failed = false;
+    } finally {
+      if (request.isAsyncStarted()) {
+        request.setAttribute(TRACE_ATTRIBUTE, trace);
+        traceService.suspend();
+      } else {
+        traceService.finish(trace, failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus());
+      }
+    }
+  }
+}
@@ -0,0 +1,10 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * An article without its explanation, for list views
+ * (GET /api/articles/all?view=summary).
+ */
+public record ArticleSummary(long id, String title, String url, String email, LocalDateTime dateAdded) {
+}
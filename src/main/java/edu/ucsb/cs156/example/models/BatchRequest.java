@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+public class BatchRequest {
+  private String method;
+  private String path;
+  private Map<String, String> params;
+  // optional headers of its own, e.g. Idempotency-Key; the others come from the batch request
+  private Map<String, String> headers;
+  // optional request body, for PUT endpoints that take @RequestBody
+  private JsonNode body;
+}
@@ -0,0 +1,34 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+
+import java.util.List;
+
+import edu.ucsb.cs156.example.entities.ChangeLogEntry;
+
+/**
+ * What changed after a seq (GET /api/changes?since=): the latest change to
+ * each row, in seq order, with the row as it is now.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ChangeFeed {
+  /**
+   * @param id    the row's id as text; * for a RESET
+   * @param value the row for an UPSERT; null for a DELETE or RESET
+   */
+  public record Change(long seq, String entity, String id, ChangeLogEntry.Op op, Object value) {
+  }
+
+  private Long since;
+  // what to pass as since= next time
+  private long latest;
+  // whether more changes wait after latest; ask again straight away
+  private boolean hasMore;
+  private List<Change> changes;
+}
@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CsvImportResult {
+  // data rows in the file, not counting the header
+  private long rowsRead;
+  private long rowsImported;
+  // the first errors found, in file order; errorCount counts all of them
+  private List<CsvRowError> errors;
+  private long errorCount;
+}
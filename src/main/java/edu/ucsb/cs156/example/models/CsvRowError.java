@@ -0,0 +1,8 @@
+package edu.ucsb.cs156.example.models;
+
+/**
+ * A CSV row that was not imported, by the line it starts on (the header is
+ * line 1).
+ */
+public record CsvRowError(long line, String message) {
+}
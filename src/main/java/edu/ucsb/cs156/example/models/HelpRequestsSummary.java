@@ -0,0 +1,10 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * A help request without its explanation, for list views
+ * (GET /api/helprequests/all?view=summary).
+ */
+public record HelpRequestsSummary(long id, String requesterEmail, String teamId, String tableOrBreakoutRoom, LocalDateTime requestTime, boolean solved) {
+}
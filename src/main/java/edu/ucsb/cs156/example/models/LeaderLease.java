@@ -0,0 +1,11 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * A lock held by this instance: the fencing token it was taken with, and
+ * until when it is held unless extended.
+ */
+public record LeaderLease(String name, String owner, long fencingToken, LocalDateTime acquiredAt,
+    LocalDateTime leaseUntil) {
+}
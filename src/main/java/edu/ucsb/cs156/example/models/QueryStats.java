@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+
+/**
+ * The statements with one fingerprint run since the app started (see
+ * SlowQueryService).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class QueryStats {
+  // the SQL with literals and parameter lists reduced to ?
+  private String fingerprint;
+  // the repository method that ran it last, if any
+  private String repositoryMethod;
+  private long count;
+  private double totalMillis;
+  private double maxMillis;
+  private double meanMillis;
+}
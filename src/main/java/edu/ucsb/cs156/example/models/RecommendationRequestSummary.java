@@ -0,0 +1,10 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * A recommendation request without its explanation, for list views
+ * (GET /api/recommendationrequests/all?view=summary).
+ */
+public record RecommendationRequestSummary(long id, String requesterEmail, String professorEmail, LocalDateTime dateRequested, LocalDateTime dateNeeded, boolean done) {
+}
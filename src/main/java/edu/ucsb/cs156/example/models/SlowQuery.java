@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+/**
+ * One statement that took longer than app.slowQueries.thresholdMillis. Its
+ * SQL is the fingerprint, so no bind value or literal is kept.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class SlowQuery {
+  private String fingerprint;
+  private String repositoryMethod;
+  private double durationMillis;
+  private LocalDateTime occurredAt;
+  // the request's trace, when it was traced; see GET /api/admin/traces
+  private String traceId;
+}
@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * How a client's copy of a table differs from the server's: every bucket
+ * whose hash differs, with all the rows now in it. The client replaces the
+ * rows it has in each of those buckets with the ones sent (none means the
+ * bucket is now empty) and keeps root and the bucket hashes for next time.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class SyncDiff {
+  /**
+   * @param index which bucket, from 0 to bucketCount - 1
+   * @param hash  its hash now, as hex
+   * @param rows  the rows in it now
+   */
+  public record Bucket(int index, String hash, List<Object> rows) {
+  }
+
+  private String root;
+  private int bucketCount;
+  private List<Bucket> buckets;
+}
@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * What a client's copy of a table looks like (POST /api/sync/{entity}): the
+ * root and bucket hashes the server sent it last time, as hex. A client with
+ * no copy yet sends neither.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class SyncRequest {
+  private String root;
+  private List<String> buckets;
+}
@@ -0,0 +1,95 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Where the time went in one request: a span for the filters before the
+ * controller, the controller method, each repository call, the work done
+ * on a bulkhead and the serialization of the response, each timed from the
+ * start of the request. Spans are added by TraceContext, possibly from more
+ * than one thread; past maxSpans they are only counted.
+ */
+@Getter
+public class Trace {
+  /**
+   * @param kind        filters, controller, bulkhead, repository or
+   *                    serialization
+   * @param startMicros from the start of the request
+   */
+  public record Span(String kind, String name, String thread, long startMicros, long durationMicros) {
+  }
+
+  /**
+   * A trace without its spans, for listing.
+   */
+  public record Summary(String id, String method, String path, int status, LocalDateTime startedAt,
+      long durationMicros, int spanCount, String keptBecause) {
+  }
+
+  private final String id;
+  private final String method;
+  private final String path;
+  private final LocalDateTime startedAt;
+  @JsonIgnore
+  private final long startNanos;
+  @JsonIgnore
+  private final int maxSpans;
+  private final List<Span> spans = new ArrayList<>();
+  private int droppedSpans;
+
+  @Setter
+  private int status;
+  @Setter
+  private long durationMicros;
+  // slow, error or sampled: why the trace was kept
+  @Setter
+  private String keptBecause;
+  @JsonIgnore
+  private boolean handlerReached;
+
+  public Trace(String id, String method, String path, int maxSpans) {
+    this.id = id;
+    this.method = method;
+    this.path = path;
+    this.startedAt = LocalDateTime.now();
+    this.startNanos = System.nanoTime();
+    this.maxSpans = maxSpans;
+  }
+
+  public synchronized void addSpan(String kind, String name, long startNanos, long endNanos) {
+    if (spans.size() >= maxSpans) {
+      droppedSpans++;
+      return;
+    }
+    spans.add(new Span(kind, name, Thread.currentThread().getName(), (startNanos - this.startNanos) / 1000,
+        (endNanos - startNanos) / 1000));
+  }
+
+  /**
+   * @return true the first time it is called
+   */
+  public synchronized boolean reachHandler() {
+    boolean first = !handlerReached;
+    handlerReached = true;
+    return first;
+  }
+
+  public synchronized Summary summary() {
+    return new Summary(id, method, path, status, startedAt, durationMicros, spans.size() + droppedSpans, keptBecause);
+  }
+
+  public synchronized List<Span> getSpans() {
+    return List.copyOf(spans);
+  }
+
+  public synchronized int getDroppedSpans() {
+    return droppedSpans;
+  }
+}
@@ -0,0 +1,10 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * A menu item review without its comments, for list views
+ * (GET /api/ucsbmenuitemreview/all?view=summary).
+ */
+public record UCSBMenuItemReviewSummary(long id, long itemId, Integer stars, String reviewerEmail, LocalDateTime dateReviewed) {
+}
@@ -0,0 +1,41 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.ArchivedHelpRequest;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ArchivedHelpRequestRepository extends CrudRepository<ArchivedHelpRequest, Long> {
+  /**
+   * Copies the given rows of helprequests into the archive, in one statement.
+   */
+  @Modifying
+  @Transactional
+  @Query(value = "INSERT INTO helprequestsarchive"
+      + " (id, requester_email, team_id, table_or_breakout_room, explanation, request_time, solved, archived_at)"
+      + " SELECT id, requester_email, team_id, table_or_breakout_room, explanation, request_time, solved, :archivedAt"
+      + " FROM helprequests WHERE id IN (:ids)", nativeQuery = true)
+  int copyFromHelpRequests(@Param("ids") Collection<Long> ids, @Param("archivedAt") LocalDateTime archivedAt);
+
+  /**
+   * The first limit live and archived requests with an id over after, in id
+   * order, merged by the database in one query; live ones come back as
+   * ArchivedHelpRequests with a null archivedAt.
+   */
+  @Query(value = "SELECT id, requester_email, team_id, table_or_breakout_room, explanation, request_time, solved,"
+      + " CAST(NULL AS TIMESTAMP) AS archived_at FROM helprequests WHERE id > :after"
+      + " UNION ALL SELECT id, requester_email, team_id, table_or_breakout_room, explanation, request_time, solved,"
+      + " archived_at FROM helprequestsarchive WHERE id > :after"
+      + " ORDER BY id LIMIT :limit", nativeQuery = true)
+  List<ArchivedHelpRequest> findAllIncludingLive(@Param("after") long after, @Param("limit") int limit);
+}
@@ -1,12 +1,24 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.models.ArticleSummary;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 
 @Repository
-public interface ArticleRepository extends CrudRepository<Article, Long> {
-  
-}
\ No newline at end of file
+public interface ArticleRepository extends EntityRepository<Article, Long> {
+  @Query("SELECT new edu.ucsb.cs156.example.models.ArticleSummary(a.id, a.title, a.url, a.email, a.dateAdded) FROM articles a")
+  List<ArticleSummary> findAllSummaries();
+
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM articles a WHERE a.id IN :ids")
+  int bulkDelete(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,17 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.AuditEvent;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.CrudRepository;
+
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface AuditEventRepository extends CrudRepository<AuditEvent, Long> {
+  List<AuditEvent> findByIdLessThanOrderByIdDesc(long before, Pageable page);
+
+  List<AuditEvent> findByUserEmailAndIdLessThanOrderByIdDesc(String userEmail, long before, Pageable page);
+}
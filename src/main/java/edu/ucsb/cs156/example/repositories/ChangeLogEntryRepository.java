@@ -0,0 +1,43 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.ChangeLogEntry;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ChangeLogEntryRepository extends CrudRepository<ChangeLogEntry, Long> {
+  List<ChangeLogEntry> findBySeqGreaterThanAndSeqLessThanEqualOrderBySeq(long after, long upTo, Pageable page);
+
+  List<ChangeLogEntry> findBySeqGreaterThanAndSeqLessThanEqualAndEntityInOrderBySeq(long after, long upTo,
+      Collection<String> entities, Pageable page);
+
+  /**
+   * Deletes every change followed by a later one to the same row; a client
+   * that needs the earlier one gets the later one too, and reads the row as
+   * it is now either way.
+   */
+  @Modifying
+  @Transactional
+  @Query(value = "DELETE FROM changelog c WHERE EXISTS (SELECT 1 FROM changelog n"
+      + " WHERE n.entity = c.entity AND n.entity_id = c.entity_id AND n.seq > c.seq)", nativeQuery = true)
+  int deleteSuperseded();
+
+  @Query("SELECT MAX(c.seq) FROM changelog c WHERE c.changedAt < :before")
+  Long findLastSeqBefore(@Param("before") LocalDateTime before);
+
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM changelog c WHERE c.seq <= :seq")
+  int deleteThrough(@Param("seq") long seq);
+}
@@ -0,0 +1,34 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.ChangeLogState;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import org.springframework.stereotype.Repository;
+
+/**
+ * The updates lock the state row until the calling transaction ends, which
+ * is what makes seq numbers follow commit order.
+ */
+@Repository
+public interface ChangeLogStateRepository extends CrudRepository<ChangeLogState, Integer> {
+  @Modifying
+  @Transactional
+  @Query("UPDATE changelogstate s SET s.lastSeq = s.lastSeq + :count WHERE s.id = 1")
+  int advance(@Param("count") long count);
+
+  @Query("SELECT s.lastSeq FROM changelogstate s WHERE s.id = 1")
+  long findLastSeq();
+
+  @Query("SELECT s.compactedThrough FROM changelogstate s WHERE s.id = 1")
+  long findCompactedThrough();
+
+  @Modifying
+  @Transactional
+  @Query("UPDATE changelogstate s SET s.compactedThrough = :seq WHERE s.id = 1 AND s.compactedThrough < :seq")
+  int compactedThrough(@Param("seq") long seq);
+}
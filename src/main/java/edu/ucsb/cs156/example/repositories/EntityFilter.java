@@ -0,0 +1,203 @@
+package edu.ucsb.cs156.example.repositories;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+
+/**
+ * A filter= and sort= pair compiled into a Specification and a Sort, e.g.
+ * filter=solved:false,teamId:s22-6pm-3 and sort=-requestTime.
+ *
+ * Terms on different fields must all hold; repeating a field matches any of
+ * its values. Only the id and the leading column of one of the entity's
+ * {@code @Table} indexes can be filtered or sorted on, so every query the
+ * API can be made to run has an index behind it. Parsing, validation and
+ * value conversion happen once per distinct filter/sort pair per entity.
+ */
+public final class EntityFilter<T> {
+  // filter= and sort= come from the client; past this many distinct pairs per
+  // entity new ones are still compiled, just not remembered
+  static final int MAX_CACHED_PER_ENTITY = 256;
+
+  private static final ClassValue<Map<String, Class<?>>> QUERYABLE = new ClassValue<>() {
+    @Override
+    protected Map<String, Class<?>> computeValue(Class<?> entityType) {
+      Map<String, Class<?>> fields = new LinkedHashMap<>();
+      for (Field field : entityType.getDeclaredFields()) {
+        if (field.isAnnotationPresent(Id.class)) {
+          fields.put(field.getName(), field.getType());
+        }
+      }
+      Table table = entityType.getAnnotation(Table.class);
+      Index[] indexes = table == null ? new Index[0] : table.indexes();
+      for (Index index : indexes) {
+        String leading = index.columnList().split(",")[0].trim().split("\\s+")[0];
+        Field field = Arrays.stream(entityType.getDeclaredFields())
+            .filter(candidate -> candidate.getName().equals(leading))
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("index %s of %s does not start with a field name"
+                .formatted(index.name(), entityType.getSimpleName())));
+        fields.put(field.getName(), field.getType());
+      }
+      return Map.copyOf(fields);
+    }
+  };
+
+  private static final ClassValue<Map<Key, EntityFilter<?>>> PARSED = new ClassValue<>() {
+    @Override
+    protected Map<Key, EntityFilter<?>> computeValue(Class<?> entityType) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+
+  private record Key(String filter, String sort) {
+  }
+
+  private final Class<T> entityType;
+  private final Map<String, List<Object>> terms;
+  private final Specification<T> specification;
+  private final Sort sort;
+
+  private EntityFilter(Class<T> entityType, Map<String, List<Object>> terms, Sort sort) {
+    this.entityType = entityType;
+    this.terms = terms;
+    this.specification = terms.isEmpty() ? null : this::toPredicate;
+    this.sort = sort;
+  }
+
+  /**
+   * @param filter comma separated field:value terms, or null for all rows
+   * @param sort   comma separated fields, each optionally prefixed with - for
+   *               descending order, or null for no particular order
+   * @throws InvalidQueryException when a term is malformed, a field is not
+   *                               indexed, or a value does not fit its field
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> EntityFilter<T> parse(Class<T> entityType, String filter, String sort) {
+    Key key = new Key(filter == null ? "" : filter, sort == null ? "" : sort);
+    Map<Key, EntityFilter<?>> parsed = PARSED.get(entityType);
+    EntityFilter<?> cached = parsed.get(key);
+    if (cached != null) {
+      return (EntityFilter<T>) cached;
+    }
+    EntityFilter<T> compiled = new EntityFilter<>(entityType,
+        parseTerms(entityType, key.filter()), parseSort(entityType, key.sort()));
+    if (parsed.size() < MAX_CACHED_PER_ENTITY) {
+      parsed.putIfAbsent(key, compiled);
+    }
+    return compiled;
+  }
+
+  private static Map<String, List<Object>> parseTerms(Class<?> entityType, String filter) {
+    Map<String, List<Object>> terms = new LinkedHashMap<>();
+    for (String term : filter.split(",")) {
+      if (term.isBlank()) {
+        continue;
+      }
+      int colon = term.indexOf(':');
+      if (colon < 0) {
+        throw new InvalidQueryException("filter terms look like field:value, got %s".formatted(term.trim()));
+      }
+      String name = term.substring(0, colon).trim();
+      Object value = convert(entityType, name, term.substring(colon + 1).trim());
+      terms.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
+    }
+    terms.replaceAll((name, values) -> List.copyOf(values));
+    return Map.copyOf(terms);
+  }
+
+  private static Sort parseSort(Class<?> entityType, String sort) {
+    List<Sort.Order> orders = new ArrayList<>();
+    for (String item : sort.split(",")) {
+      String name = item.trim();
+      if (name.isEmpty()) {
+        continue;
+      }
+      boolean descending = name.startsWith("-");
+      if (descending) {
+        name = name.substring(1);
+      }
+      queryableType(entityType, name);
+      orders.add(descending ? Sort.Order.desc(name) : Sort.Order.asc(name));
+    }
+    return Sort.by(orders);
+  }
+
+  private static Class<?> queryableType(Class<?> entityType, String name) {
+    Map<String, Class<?>> queryable = QUERYABLE.get(entityType);
+    Class<?> type = queryable.get(name);
+    if (type == null) {
+      throw new InvalidQueryException("%s cannot be filtered or sorted on %s; indexed fields are %s"
+          .formatted(entityType.getSimpleName(), name, String.join(",", queryable.keySet().stream().sorted().toList())));
+    }
+    return type;
+  }
+
+  private static Object convert(Class<?> entityType, String name, String value) {
+    Class<?> type = queryableType(entityType, name);
+    try {
+      if (type == String.class) {
+        return value;
+      } else if (type == boolean.class || type == Boolean.class) {
+        if (!value.equals("true") && !value.equals("false")) {
+          throw new IllegalArgumentException();
+        }
+        return Boolean.valueOf(value);
+      } else if (type == long.class || type == Long.class) {
+        return Long.valueOf(value);
+      } else if (type == int.class || type == Integer.class) {
+        return Integer.valueOf(value);
+      } else if (type == double.class || type == Double.class) {
+        return Double.valueOf(value);
+      } else if (type == LocalDateTime.class) {
+        return LocalDateTime.parse(value);
+      }
+    } catch (IllegalArgumentException | DateTimeParseException e) {
+      throw new InvalidQueryException("%s is not a valid %s for %s"
+          .formatted(value, type.getSimpleName(), name));
+    }
+    throw new InvalidQueryException("%s cannot be filtered on %s".formatted(entityType.getSimpleName(), name));
+  }
+
+  private Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder builder) {
+    List<Predicate> predicates = new ArrayList<>();
+    terms.forEach((name, values) -> predicates.add(values.size() == 1
+        ? builder.equal(root.get(name), values.get(0))
+        : root.get(name).in(values)));
+    return builder.and(predicates.toArray(new Predicate[0]));
+  }
+
+  public Class<T> getEntityType() {
+    return entityType;
+  }
+
+  /**
+   * @return the filter as a Specification, or null when it matches every row
+   */
+  public Specification<T> getSpecification() {
+    return specification;
+  }
+
+  public Sort getSort() {
+    return sort;
+  }
+}
@@ -0,0 +1,117 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.hibernate.jpa.QueryHints.HINT_FLUSH_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+
+/**
+ * Base class of every repository (see JpaConfig); adds the fields= queries
+ * declared in EntityRepository, which select only the requested columns,
+ * optionally narrowed and ordered by an EntityFilter, the id-only
+ * existence check used by bulk deletes, and the first rows by id.
+ */
+public class EntityJpaRepository<T, ID> extends SimpleJpaRepository<T, ID> {
+  private final JpaEntityInformation<T, ?> entityInformation;
+  private final EntityManager entityManager;
+
+  public EntityJpaRepository(JpaEntityInformation<T, ?> entityInformation, EntityManager entityManager) {
+    super(entityInformation, entityManager);
+    this.entityInformation = entityInformation;
+    this.entityManager = entityManager;
+  }
+
+  public List<Map<String, Object>> findAllFields(Fieldset fields) {
+    return findAllFields(fields, null);
+  }
+
+  public List<Map<String, Object>> findAllFields(Fieldset fields, EntityFilter<T> filter) {
+    return entityManager.createQuery(select(fields, null, filter)).getResultList().stream()
+        .map(tuple -> toMap(fields, tuple))
+        .toList();
+  }
+
+  public Optional<Map<String, Object>> findFieldsById(ID id, Fieldset fields) {
+    return entityManager.createQuery(select(fields, id, null)).getResultList().stream()
+        .findFirst()
+        .map(tuple -> toMap(fields, tuple));
+  }
+
+  @SuppressWarnings("unchecked")
+  public List<ID> findExistingIds(Collection<ID> ids) {
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<ID> query = builder.createQuery((Class<ID>) entityInformation.getIdType());
+    Root<T> root = query.from(getDomainClass());
+    Path<ID> id = root.get(entityInformation.getIdAttribute().getName());
+    query.select(id).where(id.in(ids));
+    return entityManager.createQuery(query).getResultList();
+  }
+
+  public List<T> findFirst(int count) {
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<T> query = builder.createQuery(getDomainClass());
+    Root<T> root = query.from(getDomainClass());
+    query.select(root).orderBy(builder.asc(root.get(entityInformation.getIdAttribute().getName())));
+    return entityManager.createQuery(query)
+        .setMaxResults(count)
+        .setHint(HINT_READONLY, true)
+        .setHint(HINT_FLUSH_MODE, "MANUAL")
+        .getResultList();
+  }
+
+  private CriteriaQuery<Tuple> select(Fieldset fields, ID id, EntityFilter<T> filter) {
+    checkEntityType(fields.getEntityType());
+    if (filter != null) {
+      checkEntityType(filter.getEntityType());
+    }
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Tuple> query = builder.createTupleQuery();
+    Root<T> root = query.from(getDomainClass());
+    List<Selection<?>> columns = fields.getNames().stream()
+        .<Selection<?>>map(root::get)
+        .toList();
+    query.multiselect(columns);
+    if (id != null) {
+      query.where(builder.equal(root.get(entityInformation.getIdAttribute()), id));
+    }
+    if (filter != null) {
+      if (filter.getSpecification() != null) {
+        query.where(filter.getSpecification().toPredicate(root, query, builder));
+      }
+      query.orderBy(QueryUtils.toOrders(filter.getSort(), root, builder));
+    }
+    return query;
+  }
+
+  private void checkEntityType(Class<?> entityType) {
+    if (entityType != getDomainClass()) {
+      throw new IllegalArgumentException("query for %s used with %s"
+          .formatted(entityType.getSimpleName(), getDomainClass().getSimpleName()));
+    }
+  }
+
+  private static Map<String, Object> toMap(Fieldset fields, Tuple tuple) {
+    Map<String, Object> row = new LinkedHashMap<>();
+    List<String> names = fields.getNames();
+    for (int i = 0; i < names.size(); i++) {
+      row.put(names.get(i), tuple.get(i));
+    }
+    return row;
+  }
+}
@@ -0,0 +1,66 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.hibernate.jpa.QueryHints.HINT_FLUSH_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+/**
+ * Base for the repositories behind the entity APIs. The list reads load
+ * read-only entities without flushing first, even when called inside a
+ * read-write transaction: Hibernate keeps no dirty-checking snapshot of
+ * each row, which for a large /all is as big again as the rows themselves.
+ * Entities that are to be changed must be loaded with findById.
+ */
+@NoRepositoryBean
+public interface EntityRepository<T, ID> extends CrudRepository<T, ID>, JpaSpecificationExecutor<T> {
+  @Override
+  @QueryHints({ @QueryHint(name = HINT_READONLY, value = "true"), @QueryHint(name = HINT_FLUSH_MODE, value = "MANUAL") })
+  Iterable<T> findAll();
+
+  @Override
+  @QueryHints({ @QueryHint(name = HINT_READONLY, value = "true"), @QueryHint(name = HINT_FLUSH_MODE, value = "MANUAL") })
+  Iterable<T> findAllById(Iterable<ID> ids);
+
+  @Override
+  @QueryHints({ @QueryHint(name = HINT_READONLY, value = "true"), @QueryHint(name = HINT_FLUSH_MODE, value = "MANUAL") })
+  List<T> findAll(Specification<T> spec, Sort sort);
+
+  /**
+   * @return one map per row, holding only the given fields, selected with a
+   *         tuple query (implemented in EntityJpaRepository)
+   */
+  List<Map<String, Object>> findAllFields(Fieldset fields);
+
+  /**
+   * @return as findAllFields(fields), for the rows matching the filter, in its
+   *         sort order
+   */
+  List<Map<String, Object>> findAllFields(Fieldset fields, EntityFilter<T> filter);
+
+  Optional<Map<String, Object>> findFieldsById(ID id, Fieldset fields);
+
+  /**
+   * @return those of the given ids that have a row, selecting only the id
+   *         column (implemented in EntityJpaRepository)
+   */
+  List<ID> findExistingIds(Collection<ID> ids);
+
+  /**
+   * @return the first count rows in id order, read-only like findAll
+   *         (implemented in EntityJpaRepository)
+   */
+  List<T> findFirst(int count);
+}
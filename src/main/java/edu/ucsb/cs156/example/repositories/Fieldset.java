@@ -0,0 +1,100 @@
+package edu.ucsb.cs156.example.repositories;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.persistence.Transient;
+
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+
+/**
+ * The columns asked for with fields=, checked against the entity's
+ * attributes. Both the attributes of each entity and the fieldsets parsed
+ * for it are cached, so a repeated fields= costs a map lookup.
+ */
+public final class Fieldset {
+  // fields= comes from the client; past this many distinct values per entity
+  // new ones are still parsed, just not remembered
+  static final int MAX_CACHED_PER_ENTITY = 256;
+
+  private static final ClassValue<Set<String>> ATTRIBUTES = new ClassValue<>() {
+    @Override
+    protected Set<String> computeValue(Class<?> entityType) {
+      return Arrays.stream(entityType.getDeclaredFields())
+          .filter(field -> !Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()))
+          .filter(field -> !field.isAnnotationPresent(Transient.class))
+          .map(Field::getName)
+          .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+  };
+
+  private static final ClassValue<Map<String, Fieldset>> PARSED = new ClassValue<>() {
+    @Override
+    protected Map<String, Fieldset> computeValue(Class<?> entityType) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+
+  private final Class<?> entityType;
+  private final List<String> names;
+
+  private Fieldset(Class<?> entityType, List<String> names) {
+    this.entityType = entityType;
+    this.names = names;
+  }
+
+  /**
+   * @param fields comma separated attribute names, e.g. "id,name"
+   * @throws InvalidQueryException when a name is not an attribute of the entity
+   */
+  public static Fieldset parse(Class<?> entityType, String fields) {
+    Map<String, Fieldset> parsed = PARSED.get(entityType);
+    Fieldset cached = parsed.get(fields);
+    if (cached != null) {
+      return cached;
+    }
+    Fieldset fieldset = new Fieldset(entityType, validate(entityType, fields));
+    if (parsed.size() < MAX_CACHED_PER_ENTITY) {
+      parsed.putIfAbsent(fields, fieldset);
+    }
+    return fieldset;
+  }
+
+  private static List<String> validate(Class<?> entityType, String fields) {
+    Set<String> attributes = ATTRIBUTES.get(entityType);
+    Set<String> names = new LinkedHashSet<>();
+    for (String name : fields.split(",")) {
+      String trimmed = name.trim();
+      if (trimmed.isEmpty()) {
+        continue;
+      }
+      if (!attributes.contains(trimmed)) {
+        throw new InvalidQueryException("%s has no field %s; fields are %s"
+            .formatted(entityType.getSimpleName(), trimmed, String.join(",", attributes)));
+      }
+      names.add(trimmed);
+    }
+    if (names.isEmpty()) {
+      throw new InvalidQueryException("fields must name at least one field of %s".formatted(entityType.getSimpleName()));
+    }
+    return List.copyOf(names);
+  }
+
+  public Class<?> getEntityType() {
+    return entityType;
+  }
+
+  /**
+   * @return the attribute names, without duplicates, in the order asked for
+   */
+  public List<String> getNames() {
+    return names;
+  }
+}
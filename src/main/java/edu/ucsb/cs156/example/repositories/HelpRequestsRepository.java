@@ -1,15 +1,39 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.HelpRequests;
+import edu.ucsb.cs156.example.models.HelpRequestsSummary;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
+@Repository
+public interface HelpRequestsRepository extends EntityRepository<HelpRequests, Long> {
+  @Query("SELECT new edu.ucsb.cs156.example.models.HelpRequestsSummary(h.id, h.requesterEmail, h.teamId, h.tableOrBreakoutRoom, h.requestTime, h.solved) FROM helprequests h")
+  List<HelpRequestsSummary> findAllSummaries();
 
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM helprequests h WHERE h.id IN :ids")
+  int bulkDelete(@Param("ids") Collection<Long> ids);
 
-@Repository
-public interface HelpRequestsRepository extends CrudRepository<HelpRequests, Long> {
-  
-}
\ No newline at end of file
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM helprequests h WHERE h.solved = true AND h.requestTime < :before")
+  int bulkDeleteSolvedBefore(@Param("before") LocalDateTime before);
+
+  /**
+   * Locks the first limit solved requests made before the given time, in id
+   * order, until the calling transaction ends; for archiving them.
+   */
+  @Query(value = "SELECT id FROM helprequests WHERE solved = true AND request_time < :before"
+      + " ORDER BY id LIMIT :limit FOR UPDATE", nativeQuery = true)
+  List<Long> lockSolvedIdsBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
@@ -0,0 +1,47 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.IdempotencyRecord;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends CrudRepository<IdempotencyRecord, String> {
+  /**
+   * Claims a key; throws DataIntegrityViolationException if it has a row
+   * already. A plain save() would overwrite that row instead.
+   */
+  @Modifying
+  @Transactional
+  @Query(value = "INSERT INTO idempotencykeys (idempotency_key, status, created_at) VALUES (:key, 0, :createdAt)",
+      nativeQuery = true)
+  int insertPending(@Param("key") String key, @Param("createdAt") LocalDateTime createdAt);
+
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM idempotencykeys k WHERE k.key = :key AND k.status = 0")
+  int deletePending(@Param("key") String key);
+
+  /**
+   * Deletes the key's row if it has expired, or is a PENDING row left by an
+   * instance that stopped before the request finished.
+   */
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM idempotencykeys k WHERE k.key = :key"
+      + " AND (k.createdAt < :expiredBefore OR (k.status = 0 AND k.createdAt < :abandonedBefore))")
+  int deleteStale(@Param("key") String key, @Param("expiredBefore") LocalDateTime expiredBefore,
+      @Param("abandonedBefore") LocalDateTime abandonedBefore);
+
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM idempotencykeys k WHERE k.createdAt < :before")
+  int bulkDeleteCreatedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,88 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.Job;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The state changes of a job are conditional updates, so that two workers
+ * (or a worker and the sweep that recovers stale jobs) cannot both act on
+ * the same job: each returns the number of rows changed, 0 when the job was
+ * no longer in the expected state.
+ */
+@Repository
+public interface JobRepository extends CrudRepository<Job, Long> {
+  List<Job> findAllByOrderByIdDesc();
+
+  List<Job> findByStatusOrderById(Job.Status status);
+
+  @Modifying
+  @Transactional
+  @Query("UPDATE jobs j SET j.status = 'RUNNING', j.workerId = :workerId, j.startedAt = :now, j.heartbeatAt = :now"
+      + " WHERE j.id = :id AND j.status = 'QUEUED'")
+  int claim(@Param("id") long id, @Param("workerId") String workerId, @Param("now") LocalDateTime now);
+
+  @Modifying
+  @Transactional
+  @Query("UPDATE jobs j SET j.heartbeatAt = :now, j.progress = :progress, j.total = :total,"
+      + " j.progressMessage = :message, j.log = :log"
+      + " WHERE j.id = :id AND j.workerId = :workerId AND j.status = 'RUNNING'")
+  int heartbeat(@Param("id") long id, @Param("workerId") String workerId, @Param("now") LocalDateTime now,
+      @Param("progress") long progress, @Param("total") Long total, @Param("message") String message,
+      @Param("log") String log);
+
+  @Modifying
+  @Transactional
+  @Query("UPDATE jobs j SET j.status = :status, j.finishedAt = :now, j.heartbeatAt = :now, j.result = :result,"
+      + " j.error = :error, j.progress = :progress, j.total = :total, j.progressMessage = :message, j.log = :log"
+      + " WHERE j.id = :id AND j.workerId = :workerId AND j.status = 'RUNNING'")
+  int finish(@Param("id") long id, @Param("workerId") String workerId, @Param("status") Job.Status status,
+      @Param("now") LocalDateTime now, @Param("result") String result, @Param("error") String error,
+      @Param("progress") long progress, @Param("total") Long total, @Param("message") String message,
+      @Param("log") String log);
+
+  @Query("SELECT j.cancelRequested FROM jobs j WHERE j.id = :id")
+  boolean isCancelRequested(@Param("id") long id);
+
+  @Modifying
+  @Transactional
+  @Query("UPDATE jobs j SET j.status = 'CANCELLED', j.cancelRequested = true, j.finishedAt = :now"
+      + " WHERE j.id = :id AND j.status = 'QUEUED'")
+  int cancelQueued(@Param("id") long id, @Param("now") LocalDateTime now);
+
+  @Modifying
+  @Transactional
+  @Query("UPDATE jobs j SET j.cancelRequested = true WHERE j.id = :id AND j.status = 'RUNNING'")
+  int requestCancel(@Param("id") long id);
+
+  /**
+   * Puts a job whose worker went away back in the queue, unless its worker
+   * has sent a heartbeat since it was seen.
+   */
+  @Modifying
+  @Transactional
+  @Query("UPDATE jobs j SET j.status = 'QUEUED', j.workerId = null"
+      + " WHERE j.id = :id AND j.status = 'RUNNING' AND j.heartbeatAt = :seenHeartbeat")
+  int requeueStale(@Param("id") long id, @Param("seenHeartbeat") LocalDateTime seenHeartbeat);
+
+  @Modifying
+  @Transactional
+  @Query("UPDATE jobs j SET j.status = 'FAILED', j.error = :error, j.finishedAt = :now"
+      + " WHERE j.id = :id AND j.status = 'RUNNING' AND j.heartbeatAt = :seenHeartbeat")
+  int failStale(@Param("id") long id, @Param("seenHeartbeat") LocalDateTime seenHeartbeat,
+      @Param("error") String error, @Param("now") LocalDateTime now);
+
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM jobs j WHERE j.finishedAt < :before")
+  int bulkDeleteFinishedBefore(@Param("before") LocalDateTime before);
+}
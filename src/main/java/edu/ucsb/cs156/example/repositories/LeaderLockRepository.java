@@ -0,0 +1,49 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.LeaderLock;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Used by LeaderLockService inside its own transactions, so that taking a
+ * lock and reading back its fencing token happen together.
+ */
+@Repository
+public interface LeaderLockRepository extends CrudRepository<LeaderLock, String> {
+  /**
+   * Takes the lock if its lease has run out.
+   */
+  @Modifying
+  @Query("UPDATE leaderlocks l SET l.owner = :owner, l.acquiredAt = :now, l.leaseUntil = :leaseUntil,"
+      + " l.fencingToken = l.fencingToken + 1 WHERE l.name = :name AND l.leaseUntil <= :now")
+  int takeExpired(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now,
+      @Param("leaseUntil") LocalDateTime leaseUntil);
+
+  /**
+   * Takes a lock that has never been taken; fails with a duplicate key when
+   * another instance got there first.
+   */
+  @Modifying
+  @Query(value = "INSERT INTO leaderlocks (lock_name, owner, acquired_at, lease_until, fencing_token)"
+      + " VALUES (:name, :owner, :now, :leaseUntil, 1)", nativeQuery = true)
+  int create(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now,
+      @Param("leaseUntil") LocalDateTime leaseUntil);
+
+  /**
+   * Moves the end of the lease, as long as fencingToken still holds it.
+   */
+  @Modifying
+  @Query("UPDATE leaderlocks l SET l.leaseUntil = :leaseUntil"
+      + " WHERE l.name = :name AND l.fencingToken = :fencingToken AND l.leaseUntil > :now")
+  int extend(@Param("name") String name, @Param("fencingToken") long fencingToken, @Param("now") LocalDateTime now,
+      @Param("leaseUntil") LocalDateTime leaseUntil);
+
+  boolean existsByNameAndFencingTokenAndLeaseUntilAfter(String name, long fencingToken, LocalDateTime now);
+}
@@ -1,12 +1,24 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.models.RecommendationRequestSummary;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 
 @Repository
-public interface RecommendationRequestRepository extends CrudRepository<RecommendationRequest, Long> {
+public interface RecommendationRequestRepository extends EntityRepository<RecommendationRequest, Long> {
+  @Query("SELECT new edu.ucsb.cs156.example.models.RecommendationRequestSummary(r.id, r.requesterEmail, r.professorEmail, r.dateRequested, r.dateNeeded, r.done) FROM recommendationrequests r")
+  List<RecommendationRequestSummary> findAllSummaries();
 
-}
\ No newline at end of file
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM recommendationrequests r WHERE r.id IN :ids")
+  int bulkDelete(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,29 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.SyncBucket;
+
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+
+import java.util.List;
+
+@Repository
+public interface SyncBucketRepository extends CrudRepository<SyncBucket, SyncBucket.Key> {
+  List<SyncBucket> findByEntityOrderByBucket(String entity);
+
+  long countByEntity(String entity);
+
+  /**
+   * Locks all of the table's buckets, in bucket order, until the calling
+   * transaction ends.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT b FROM syncbuckets b WHERE b.entity = :entity ORDER BY b.bucket")
+  List<SyncBucket> findByEntityForUpdate(@Param("entity") String entity);
+}
@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.SyncRowHash;
+
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SyncRowHashRepository extends CrudRepository<SyncRowHash, SyncRowHash.Key> {
+  /**
+   * Locks the row's hash until the calling transaction ends, so that two
+   * transactions changing the same row do not both take out the same old
+   * hash.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT r FROM syncrowhashes r WHERE r.entity = :entity AND r.entityId = :entityId")
+  Optional<SyncRowHash> findForUpdate(@Param("entity") String entity, @Param("entityId") String entityId);
+
+  List<SyncRowHash> findByEntity(String entity);
+
+  List<SyncRowHash> findByEntityAndBucketIn(String entity, Collection<Integer> buckets);
+}
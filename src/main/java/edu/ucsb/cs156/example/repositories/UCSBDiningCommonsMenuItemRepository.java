@@ -2,11 +2,20 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 
 @Repository
-public interface UCSBDiningCommonsMenuItemRepository extends CrudRepository<UCSBDiningCommonsMenuItem, Long> {
-    
-}
\ No newline at end of file
+public interface UCSBDiningCommonsMenuItemRepository extends EntityRepository<UCSBDiningCommonsMenuItem, Long> {
+  Iterable<UCSBDiningCommonsMenuItem> findAllByDiningCommonsCodeIn(Collection<String> diningCommonsCodes);
+
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM ucsbdiningcommonsmenuitems u WHERE u.id IN :ids")
+  int bulkDelete(@Param("ids") Collection<Long> ids);
+}
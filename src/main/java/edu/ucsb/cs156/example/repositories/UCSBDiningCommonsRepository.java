@@ -1,12 +1,19 @@
 package edu.ucsb.cs156.example.repositories;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Repository;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 
+import java.util.Collection;
 
 @Repository
-public interface UCSBDiningCommonsRepository extends CrudRepository<UCSBDiningCommons, String> {
- 
-}
\ No newline at end of file
+public interface UCSBDiningCommonsRepository extends EntityRepository<UCSBDiningCommons, String> {
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM ucsbdiningcommons u WHERE u.code IN :ids")
+  int bulkDelete(@Param("ids") Collection<String> ids);
+}
@@ -1,13 +1,32 @@
 package edu.ucsb.cs156.example.repositories;
 
-import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
 import org.springframework.stereotype.Repository;
 
 import edu.ucsb.cs156.example.entities.UCSBMenuItemReview;
+import edu.ucsb.cs156.example.models.UCSBMenuItemReviewSummary;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 
 @Repository
-public interface UCSBMenuItemReviewRepository extends CrudRepository<UCSBMenuItemReview, Long> {
-    
+public interface UCSBMenuItemReviewRepository extends EntityRepository<UCSBMenuItemReview, Long> {
+  @Query("SELECT new edu.ucsb.cs156.example.models.UCSBMenuItemReviewSummary(u.id, u.itemId, u.stars, u.reviewerEmail, u.dateReviewed) FROM ucsbmenuitemreview u")
+  List<UCSBMenuItemReviewSummary> findAllSummaries();
+
+  Iterable<UCSBMenuItemReview> findAllByItemIdIn(Collection<Long> itemIds);
+
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM ucsbmenuitemreview u WHERE u.id IN :ids")
+  int bulkDelete(@Param("ids") Collection<Long> ids);
+
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM ucsbmenuitemreview u WHERE u.itemId = :itemId")
+  int bulkDeleteByItemId(@Param("itemId") long itemId);
 }
@@ -1,11 +1,19 @@
 package edu.ucsb.cs156.example.repositories;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Repository;
 
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 
+import java.util.Collection;
+
 @Repository
-public interface UCSBOrganizationRepository extends CrudRepository<UCSBOrganization, String> {
-    
-}
\ No newline at end of file
+public interface UCSBOrganizationRepository extends EntityRepository<UCSBOrganization, String> {
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM ucsborganizations u WHERE u.orgCode IN :ids")
+  int bulkDelete(@Param("ids") Collection<String> ids);
+}
@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.models.ArticleSummary;
+import edu.ucsb.cs156.example.repositories.ArticleRepository;
+import edu.ucsb.cs156.example.repositories.EntityRepository;
+
+@Service
+public class ArticleService extends EntityService<Article, Long> {
+
+  @Autowired
+  ArticleRepository articleRepository;
+
+  public ArticleService() {
+    super(Article.class, Article::getId);
+  }
+
+  @Override
+  protected EntityRepository<Article, Long> repository() {
+    return articleRepository;
+  }
+
+  @Transactional(readOnly = true)
+  public List<ArticleSummary> findAllSummaries() {
+    return articleRepository.findAllSummaries();
+  }
+
+  @Transactional
+  public int bulkDelete(List<Long> ids) {
+    return deleteExisting(ids, articleRepository::bulkDelete);
+  }
+}
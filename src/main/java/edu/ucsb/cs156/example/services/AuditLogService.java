@@ -0,0 +1,182 @@
+package edu.ucsb.cs156.example.services;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.entities.AuditEvent;
+import edu.ucsb.cs156.example.repositories.AuditEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The audit log of admin changes, written off the request path.
+ *
+ * record() puts the event in a bounded ring buffer (AuditRingBuffer, one
+ * compare-and-set, no locks) and returns; one writer thread takes events
+ * out and inserts them with one JDBC batch per app.audit.batchSize events.
+ * The writer wakes every app.audit.flushIntervalMillis, or as soon as a
+ * batch is waiting.
+ *
+ * When the buffer is full, app.audit.whenFull decides: BLOCK makes the
+ * request wait for the writer to make room, so no event is lost; DROP
+ * discards the event and counts it in app.audit.dropped{reason=full}.
+ * Events in a batch the database refuses are counted there too, with
+ * reason=write_failed. Whatever is buffered is written when the app stops.
+ */
+@Slf4j
+@Service
+public class AuditLogService {
+  public enum WhenFull {
+    BLOCK, DROP
+  }
+
+  // how long a request waits between tries when the buffer is full and it blocks
+  private static final long BLOCKED_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private static final String INSERT = "INSERT INTO auditlog"
+      + " (occurred_at, user_email, method, path, params, handler, outcome, duration_millis)"
+      + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+  @Autowired
+  AuditEventRepository auditEventRepository;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Value("${app.audit.bufferSize:8192}")
+  private int bufferSize;
+
+  @Value("${app.audit.batchSize:500}")
+  private int batchSize;
+
+  @Value("${app.audit.flushIntervalMillis:1000}")
+  private long flushIntervalMillis;
+
+  @Value("${app.audit.whenFull:BLOCK}")
+  private WhenFull whenFull;
+
+  private AuditRingBuffer<AuditEvent> buffer;
+  private Thread writer;
+  private volatile boolean stopping;
+  // flush() runs on the writer and on shutdown, but the buffer takes one consumer at a time
+  private final Object draining = new Object();
+
+  private Counter droppedWhenFull;
+  private Counter droppedOnWrite;
+
+  @PostConstruct
+  void startWriter() {
+    buffer = new AuditRingBuffer<>(bufferSize);
+    droppedWhenFull = meterRegistry.counter("app.audit.dropped", "reason", "full");
+    droppedOnWrite = meterRegistry.counter("app.audit.dropped", "reason", "write_failed");
+    Gauge.builder("app.audit.buffered", buffer, AuditRingBuffer::size).register(meterRegistry);
+
+    writer = new Thread(this::writeUntilStopped, "audit-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @PreDestroy
+  void stopWriter() throws InterruptedException {
+    stopping = true;
+    LockSupport.unpark(writer);
+    writer.join(TimeUnit.SECONDS.toMillis(10));
+    flush();
+  }
+
+  /**
+   * Queues an event for the writer; returns straight away unless the buffer
+   * is full and app.audit.whenFull is BLOCK.
+   */
+  public void record(AuditEvent event) {
+    if (buffer.offer(event)) {
+      if (buffer.size() >= batchSize) {
+        LockSupport.unpark(writer);
+      }
+      return;
+    }
+    if (whenFull == WhenFull.DROP) {
+      droppedWhenFull.increment();
+      return;
+    }
+    do {
+      LockSupport.unpark(writer);
+      LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+    } while (!buffer.offer(event));
+  }
+
+  private void writeUntilStopped() {
+    while (!stopping) {
+      try {
+        flush();
+      } catch (RuntimeException e) {
+        log.error("audit writer failed", e);
+      }
+      if (buffer.size() < batchSize) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis));
+      }
+    }
+  }
+
+  /**
+   * Writes every event buffered so far, a batch at a time.
+   *
+   * @return how many were written
+   */
+  public int flush() {
+    synchronized (draining) {
+      int written = 0;
+      List<AuditEvent> batch = new ArrayList<>(batchSize);
+      while (buffer.drainTo(batch, batchSize) > 0) {
+        try {
+          jdbcTemplate.batchUpdate(INSERT, batch.stream().map(AuditLogService::values).toList());
+          written += batch.size();
+        } catch (DataAccessException e) {
+          droppedOnWrite.increment(batch.size());
+          log.error("dropped {} audit events the database refused", batch.size(), e);
+        }
+        batch.clear();
+      }
+      return written;
+    }
+  }
+
+  private static Object[] values(AuditEvent event) {
+    return new Object[] { Timestamp.valueOf(event.getOccurredAt()), event.getUserEmail(), event.getMethod(),
+        event.getPath(), event.getParams(), event.getHandler(), event.getOutcome(), event.getDurationMillis() };
+  }
+
+  /**
+   * @param userEmail only this user's events; all users' if null
+   * @param before    only events with a smaller id, to read further back;
+   *                  the newest if null
+   * @return at most limit events, newest first
+   */
+  @Transactional(readOnly = true)
+  public List<AuditEvent> find(String userEmail, Long before, int limit) {
+    long beforeId = before == null ? Long.MAX_VALUE : before;
+    PageRequest page = PageRequest.of(0, limit);
+    return userEmail == null
+        ? auditEventRepository.findByIdLessThanOrderByIdDesc(beforeId, page)
+        : auditEventRepository.findByUserEmailAndIdLessThanOrderByIdDesc(userEmail, beforeId, page);
+  }
+}
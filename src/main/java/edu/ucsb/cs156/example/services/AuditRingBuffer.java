@@ -0,0 +1,99 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded queue for many producers and one consumer that takes no locks:
+ * the array-based queue of Dmitry Vyukov. Each slot carries a sequence
+ * number saying whose turn it is; a producer claims a slot with one
+ * compare-and-set on the tail, fills it and publishes it by advancing the
+ * slot's sequence, and the consumer empties slots in order as they are
+ * published. A full queue refuses the element instead of waiting.
+ *
+ * Only one thread at a time may call drainTo.
+ */
+class AuditRingBuffer<E> {
+  private final int mask;
+  private final AtomicReferenceArray<E> slots;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+
+  /**
+   * @param capacity rounded up to a power of two
+   */
+  AuditRingBuffer(int capacity) {
+    if (capacity < 1 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+    }
+    int size = 1;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    mask = size - 1;
+    slots = new AtomicReferenceArray<>(size);
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * @return false, leaving the queue unchanged, when it is full
+   */
+  boolean offer(E element) {
+    while (true) {
+      long position = tail.get();
+      int slot = (int) position & mask;
+      long difference = sequences.get(slot) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          slots.set(slot, element);
+          sequences.set(slot, position + 1);
+          return true;
+        }
+      } else if (difference < 0) {
+        // the slot still holds the element from a lap ago
+        return false;
+      }
+      // another producer took the slot; try the next position
+    }
+  }
+
+  /**
+   * Moves up to max published elements into to, oldest first.
+   *
+   * @return how many were moved
+   */
+  int drainTo(List<? super E> to, int max) {
+    int drained = 0;
+    long position = head.get();
+    while (drained < max) {
+      int slot = (int) position & mask;
+      if (sequences.get(slot) != position + 1) {
+        // empty, or a producer has claimed the slot but not yet filled it
+        break;
+      }
+      to.add(slots.getAndSet(slot, null));
+      sequences.set(slot, position + mask + 1);
+      position++;
+      drained++;
+    }
+    head.set(position);
+    return drained;
+  }
+
+  /**
+   * @return how many elements are waiting, give or take those being added
+   */
+  int size() {
+    return (int) Math.max(0, Math.min(tail.get() - head.get(), capacity()));
+  }
+}
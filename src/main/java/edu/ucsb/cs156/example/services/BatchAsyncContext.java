@@ -0,0 +1,142 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The async context of a batch sub-request whose handler returned a
+ * CompletableFuture. There is no container to dispatch to, so dispatch()
+ * only signals BatchDispatcherService, which waits for it and then runs the
+ * handler again the way the container's async dispatch would.
+ */
+@Slf4j
+class BatchAsyncContext implements AsyncContext {
+  static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+  private final ServletRequest request;
+  private final ServletResponse response;
+  private final List<AsyncListener> listeners = new CopyOnWriteArrayList<>();
+  private final CompletableFuture<Void> dispatched = new CompletableFuture<>();
+  private volatile long timeout = DEFAULT_TIMEOUT_MILLIS;
+
+  BatchAsyncContext(ServletRequest request, ServletResponse response) {
+    this.request = request;
+    this.response = response;
+  }
+
+  /**
+   * @return true once dispatch() has been called, false if that did not
+   *         happen within the timeout
+   */
+  boolean awaitDispatch() {
+    try {
+      dispatched.get(timeout <= 0 ? Long.MAX_VALUE : timeout, TimeUnit.MILLISECONDS);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      log.warn("batch sub-request was not dispatched within {}ms", timeout);
+    }
+    return false;
+  }
+
+  void timedOut() {
+    for (AsyncListener listener : listeners) {
+      try {
+        listener.onTimeout(new AsyncEvent(this, request, response));
+      } catch (IOException e) {
+        log.warn("onTimeout failed for batch sub-request", e);
+      }
+    }
+  }
+
+  @Override
+  public ServletRequest getRequest() {
+    return request;
+  }
+
+  @Override
+  public ServletResponse getResponse() {
+    return response;
+  }
+
+  @Override
+  public boolean hasOriginalRequestAndResponse() {
+    return true;
+  }
+
+  @Override
+  public void dispatch() {
+    dispatched.complete(null);
+  }
+
+  @Override
+  public void dispatch(String path) {
+    dispatch();
+  }
+
+  @Override
+  public void dispatch(ServletContext context, String path) {
+    dispatch();
+  }
+
+  @Override
+  public void complete() {
+    for (AsyncListener listener : listeners) {
+      try {
+        listener.onComplete(new AsyncEvent(this, request, response));
+      } catch (IOException e) {
+        log.warn("onComplete failed for batch sub-request", e);
+      }
+    }
+  }
+
+  @Override
+  public void start(Runnable run) {
+    throw new UnsupportedOperationException("batch sub-requests only support dispatch()");
+  }
+
+  @Override
+  public void addListener(AsyncListener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void addListener(AsyncListener listener, ServletRequest request, ServletResponse response) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public <T extends AsyncListener> T createListener(Class<T> type) throws ServletException {
+    try {
+      return type.getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new ServletException(e);
+    }
+  }
+
+  @Override
+  public void setTimeout(long timeout) {
+    this.timeout = timeout;
+  }
+
+  @Override
+  public long getTimeout() {
+    return timeout;
+  }
+}
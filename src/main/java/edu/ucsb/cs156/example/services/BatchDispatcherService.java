@@ -0,0 +1,396 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.HttpRequestMethodNotSupportedException;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import edu.ucsb.cs156.example.controllers.BatchController;
+import edu.ucsb.cs156.example.filters.ConcurrencyLimitFilter;
+import edu.ucsb.cs156.example.filters.IdempotencyFilter;
+import edu.ucsb.cs156.example.filters.RateLimitFilter;
+import edu.ucsb.cs156.example.filters.ReadCoalescingFilter;
+import edu.ucsb.cs156.example.filters.ServerTimingFilter;
+import edu.ucsb.cs156.example.models.BatchRequest;
+import edu.ucsb.cs156.example.models.BatchResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the sub-requests of a POST /api/batch call through the regular
+ * Spring MVC handler mapping, so they hit the same controllers, argument
+ * binding, {@code @PreAuthorize} checks and exception handlers as a normal
+ * request made by the same user.
+ *
+ * Consecutive GETs are independent of each other and are run in parallel on a
+ * small bounded pool; any other method is a barrier and runs on its own, in
+ * order, so a read after a write in the same batch sees the write.
+ *
+ * Each sub-request first goes through the application's own filters, in
+ * their servlet order, as a request of its own would: it is timed and held
+ * to its handler's @QueryBudget, takes a token from the caller's rate limit
+ * and a concurrency slot, may be coalesced with an identical read, and is
+ * deduplicated by its Idempotency-Key. Spring Security has already run for
+ * the batch, and the batch's trace covers its sub-requests.
+ *
+ * Handlers that return a CompletableFuture (the bulkheaded endpoints) are
+ * waited for and then run through the filters and the handler adapter a
+ * second time, as the container's async dispatch would.
+ */
+@Slf4j
+@Service("batchDispatcher")
+public class BatchDispatcherService {
+  private static final String NOT_AN_API_PATH = "path must be an /api/ endpoint other than /api/batch";
+
+  @Autowired
+  @Qualifier("requestMappingHandlerMapping")
+  RequestMappingHandlerMapping handlerMapping;
+
+  @Autowired
+  RequestMappingHandlerAdapter handlerAdapter;
+
+  @Autowired
+  @Qualifier("handlerExceptionResolver")
+  HandlerExceptionResolver handlerExceptionResolver;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Autowired
+  ServerTimingFilter serverTimingFilter;
+
+  @Autowired
+  RateLimitFilter rateLimitFilter;
+
+  @Autowired
+  ReadCoalescingFilter readCoalescingFilter;
+
+  @Autowired
+  ConcurrencyLimitFilter concurrencyLimitFilter;
+
+  @Autowired
+  IdempotencyFilter idempotencyFilter;
+
+  @Value("${app.batch.threads:4}")
+  private int threads;
+
+  @Value("${app.batch.queueCapacity:64}")
+  private int queueCapacity;
+
+  private ThreadPoolExecutor executor;
+  private List<Filter> filters;
+
+  @PostConstruct
+  void orderFilters() {
+    filters = new ArrayList<>(List.of(serverTimingFilter, rateLimitFilter, readCoalescingFilter,
+        concurrencyLimitFilter, idempotencyFilter));
+    AnnotationAwareOrderComparator.sort(filters);
+  }
+
+  @PostConstruct
+  void startExecutor() {
+    AtomicInteger threadNumber = new AtomicInteger();
+    // when the queue is full the batch request thread runs the read itself,
+    // which throttles whoever is submitting instead of queueing without bound
+    executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity),
+        runnable -> {
+          Thread thread = new Thread(runnable, "batch-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        },
+        new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  @PreDestroy
+  void stopExecutor() {
+    executor.shutdown();
+  }
+
+  public List<BatchResponse> dispatchAll(List<BatchRequest> requests,
+      HttpServletRequest batchRequest, HttpServletResponse batchResponse) {
+    SecurityContext securityContext = SecurityContextHolder.getContext();
+    List<BatchResponse> results = new ArrayList<>(Collections.nCopies(requests.size(), null));
+    List<Integer> pendingReads = new ArrayList<>();
+
+    for (int i = 0; i < requests.size(); i++) {
+      if (isRead(requests.get(i))) {
+        pendingReads.add(i);
+        continue;
+      }
+      runReads(pendingReads, requests, results, securityContext, batchRequest, batchResponse);
+      pendingReads.clear();
+      results.set(i, dispatch(requests.get(i), batchRequest, batchResponse));
+    }
+    runReads(pendingReads, requests, results, securityContext, batchRequest, batchResponse);
+    return results;
+  }
+
+  private void runReads(List<Integer> indices, List<BatchRequest> requests, List<BatchResponse> results,
+      SecurityContext securityContext, HttpServletRequest batchRequest, HttpServletResponse batchResponse) {
+    if (indices.size() == 1) {
+      int only = indices.get(0);
+      results.set(only, dispatch(requests.get(only), batchRequest, batchResponse));
+      return;
+    }
+
+    List<Future<BatchResponse>> futures = new ArrayList<>();
+    for (int index : indices) {
+      BatchRequest request = requests.get(index);
+      futures.add(executor.submit(new DelegatingSecurityContextCallable<>(
+          () -> dispatch(request, batchRequest, batchResponse), securityContext)));
+    }
+    for (int i = 0; i < indices.size(); i++) {
+      BatchRequest request = requests.get(indices.get(i));
+      try {
+        results.set(indices.get(i), futures.get(i).get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        results.set(indices.get(i), error(request, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "interrupted"));
+      } catch (ExecutionException e) {
+        log.error("batch sub-request {} {} failed", request.getMethod(), request.getPath(), e.getCause());
+        results.set(indices.get(i), error(request, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getCause().toString()));
+      }
+    }
+  }
+
+  private boolean isRead(BatchRequest request) {
+    return HttpMethod.GET.matches(String.valueOf(request.getMethod()).toUpperCase());
+  }
+
+  BatchResponse dispatch(BatchRequest request, HttpServletRequest batchRequest, HttpServletResponse batchResponse) {
+    if (request.getMethod() == null || HttpMethod.resolve(request.getMethod().toUpperCase()) == null) {
+      return error(request, HttpServletResponse.SC_BAD_REQUEST, "unknown method %s".formatted(request.getMethod()));
+    }
+    String path = request.getPath();
+    if (path == null || !path.startsWith("/api/")) {
+      return error(request, HttpServletResponse.SC_BAD_REQUEST, NOT_AN_API_PATH);
+    }
+
+    byte[] body;
+    try {
+      body = request.getBody() == null ? new byte[0] : mapper.writeValueAsBytes(request.getBody());
+    } catch (IOException e) {
+      return error(request, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+    }
+    BatchSubRequest subRequest = new BatchSubRequest(batchRequest, request.getMethod(), path, request.getParams(),
+        request.getHeaders(), body);
+    if (isBatch(subRequest)) {
+      return error(request, HttpServletResponse.SC_BAD_REQUEST, NOT_AN_API_PATH);
+    }
+    BatchSubResponse subResponse = new BatchSubResponse(batchResponse);
+
+    RequestAttributes previousAttributes = RequestContextHolder.getRequestAttributes();
+    ServletRequestAttributes attributes = new ServletRequestAttributes(subRequest, subResponse);
+    RequestContextHolder.setRequestAttributes(attributes);
+    try {
+      new SubRequestChain().doFilter(subRequest, subResponse);
+      if (subRequest.isAsyncStarted()) {
+        handleAsyncDispatch(subRequest, subResponse);
+      }
+    } catch (IOException | ServletException | RuntimeException e) {
+      // a filter failed; the container would answer 500
+      log.error("batch sub-request {} {} failed", subRequest.getMethod(), path, e);
+      return error(request, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+    } finally {
+      attributes.requestCompleted();
+      RequestContextHolder.setRequestAttributes(previousAttributes);
+    }
+    return BatchResponse.builder()
+        .method(subRequest.getMethod())
+        .path(path)
+        .status(subResponse.getStatus())
+        .body(readBody(subResponse))
+        .build();
+  }
+
+  /**
+   * Whether the sub-request would reach BatchController. This asks the
+   * handler mapping rather than looking at the path, which the mapping
+   * cleans up first (// collapsed, ;params dropped, %xx decoded).
+   */
+  private boolean isBatch(BatchSubRequest request) {
+    try {
+      HandlerExecutionChain chain = handlerMapping.getHandler(request);
+      return chain != null && chain.getHandler() instanceof HandlerMethod handlerMethod
+          && BatchController.class.isAssignableFrom(handlerMethod.getBeanType());
+    } catch (HttpRequestMethodNotSupportedException e) {
+      // mapped, but not for this method, e.g. GET /api/batch
+      String lookupPath = handlerMapping.getUrlPathHelper().getLookupPathForRequest(request);
+      return handlerMapping.getHandlerMethods().entrySet().stream()
+          .filter(entry -> BatchController.class.isAssignableFrom(entry.getValue().getBeanType()))
+          .flatMap(entry -> entry.getKey().getPatternValues().stream())
+          .anyMatch(pattern -> handlerMapping.getPathMatcher().match(pattern, lookupPath));
+    } catch (Exception e) {
+      // handle() turns this into the right status
+      return false;
+    }
+  }
+
+  /**
+   * The application filters followed by the handler, as the servlet filter
+   * chain in front of the DispatcherServlet.
+   */
+  private final class SubRequestChain implements FilterChain {
+    private int next;
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+      if (next < filters.size()) {
+        filters.get(next++).doFilter(request, response, this);
+      } else {
+        handle((HttpServletRequest) request, (HttpServletResponse) response);
+      }
+    }
+  }
+
+  private void handleAsyncDispatch(BatchSubRequest request, BatchSubResponse response)
+      throws IOException, ServletException {
+    BatchAsyncContext asyncContext = request.getAsyncContext();
+    if (!asyncContext.awaitDispatch()) {
+      // lets Spring MVC's own timeout handling produce the result, as on a container timeout
+      asyncContext.timedOut();
+      if (!asyncContext.awaitDispatch()) {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        asyncContext.complete();
+        return;
+      }
+    }
+    request.startAsyncDispatch();
+    // with the request and response async processing was started with, which
+    // the filters may have wrapped
+    try {
+      new SubRequestChain().doFilter(asyncContext.getRequest(), asyncContext.getResponse());
+    } finally {
+      asyncContext.complete();
+    }
+  }
+
+  private void handle(HttpServletRequest request, HttpServletResponse response) {
+    HandlerExecutionChain chain = null;
+    Exception failure = null;
+    try {
+      chain = handlerMapping.getHandler(request);
+      if (chain == null) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        return;
+      }
+      for (HandlerInterceptor interceptor : chain.getInterceptorList()) {
+        if (!interceptor.preHandle(request, response, chain.getHandler())) {
+          return;
+        }
+      }
+      ModelAndView mv = handlerAdapter.handle(request, response, chain.getHandler());
+      if (request.isAsyncStarted()) {
+        return;
+      }
+      for (HandlerInterceptor interceptor : chain.getInterceptorList()) {
+        interceptor.postHandle(request, response, chain.getHandler(), mv);
+      }
+    } catch (Exception e) {
+      failure = e;
+      resolveException(request, response, chain, e);
+    } finally {
+      if (chain != null) {
+        for (HandlerInterceptor interceptor : chain.getInterceptorList()) {
+          try {
+            if (request.isAsyncStarted()) {
+              if (interceptor instanceof AsyncHandlerInterceptor asyncInterceptor) {
+                asyncInterceptor.afterConcurrentHandlingStarted(request, response, chain.getHandler());
+              }
+              continue;
+            }
+            interceptor.afterCompletion(request, response, chain.getHandler(), failure);
+          } catch (Exception e) {
+            log.warn("afterCompletion failed for batch sub-request", e);
+          }
+        }
+      }
+    }
+  }
+
+  private void resolveException(HttpServletRequest request, HttpServletResponse response,
+      HandlerExecutionChain chain, Exception e) {
+    if (e instanceof AccessDeniedException) {
+      // normally turned into a 403 by Spring Security's ExceptionTranslationFilter
+      response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+    Object handler = chain == null ? null : chain.getHandler();
+    ModelAndView resolved = handlerExceptionResolver.resolveException(request, response, handler, e);
+    if (resolved == null) {
+      log.error("unhandled exception in batch sub-request {} {}", request.getMethod(), request.getRequestURI(), e);
+      response.resetBuffer();
+      response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  private JsonNode readBody(BatchSubResponse response) {
+    byte[] bytes = response.getBody();
+    if (bytes.length == 0) {
+      return null;
+    }
+    String contentType = response.getContentType();
+    if (contentType != null && contentType.contains("json")) {
+      try {
+        return mapper.readTree(bytes);
+      } catch (IOException e) {
+        log.warn("batch sub-response declared as json but could not be parsed", e);
+      }
+    }
+    return new TextNode(new String(bytes, StandardCharsets.UTF_8));
+  }
+
+  private BatchResponse error(BatchRequest request, int status, String message) {
+    return BatchResponse.builder()
+        .method(request.getMethod())
+        .path(request.getPath())
+        .status(status)
+        .body(mapper.valueToTree(Map.of("message", message)))
+        .build();
+  }
+}
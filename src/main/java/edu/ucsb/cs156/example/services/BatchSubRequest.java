@@ -0,0 +1,281 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import org.springframework.util.LinkedCaseInsensitiveMap;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import edu.ucsb.cs156.example.filters.IdempotencyFilter;
+
+/**
+ * One entry of a POST /api/batch call, presented to Spring MVC as if it were
+ * its own request. Headers (Accept, cookies, ...) come from the enclosing
+ * batch request unless the entry sets them itself, except Idempotency-Key,
+ * which only ever applies to the entry that sets it; method, path,
+ * parameters, body and request attributes are private to the sub-request so
+ * that several of them can be dispatched at the same time.
+ */
+class BatchSubRequest extends HttpServletRequestWrapper {
+  private static final Set<String> BODY_HEADERS = Set.of("content-type", "content-length");
+  private static final Set<String> UNINHERITED_HEADERS = Set.of(IdempotencyFilter.IDEMPOTENCY_KEY.toLowerCase());
+
+  private final String method;
+  private final String path;
+  private final String queryString;
+  private final Map<String, String[]> parameters;
+  private final Map<String, String> headers = new LinkedCaseInsensitiveMap<>();
+  private final byte[] body;
+  private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+  private BatchAsyncContext asyncContext;
+  private boolean asyncStarted;
+  private DispatcherType dispatcherType = DispatcherType.REQUEST;
+
+  BatchSubRequest(HttpServletRequest batchRequest, String method, String pathAndQuery,
+      Map<String, String> params, Map<String, String> headers, byte[] body) {
+    super(batchRequest);
+    this.method = method.toUpperCase();
+    this.body = body;
+    if (headers != null) {
+      headers.forEach((name, value) -> {
+        if (!BODY_HEADERS.contains(name.toLowerCase()) && value != null) {
+          this.headers.put(name, value);
+        }
+      });
+    }
+
+    UriComponentsBuilder uri = UriComponentsBuilder.fromUriString(pathAndQuery);
+    if (params != null) {
+      params.forEach((name, value) -> uri.queryParam(name, value));
+    }
+    var components = uri.build();
+    this.path = components.getPath();
+    this.queryString = components.getQuery();
+
+    Map<String, String[]> parsed = new LinkedHashMap<>();
+    components.getQueryParams().forEach((name, values) -> parsed.put(name, values.toArray(new String[0])));
+    this.parameters = Collections.unmodifiableMap(parsed);
+  }
+
+  @Override
+  public String getMethod() {
+    return method;
+  }
+
+  @Override
+  public String getRequestURI() {
+    return getContextPath() + path;
+  }
+
+  @Override
+  public StringBuffer getRequestURL() {
+    StringBuffer url = new StringBuffer();
+    url.append(getScheme()).append("://").append(getServerName()).append(':').append(getServerPort());
+    return url.append(getRequestURI());
+  }
+
+  @Override
+  public String getServletPath() {
+    return path;
+  }
+
+  @Override
+  public String getPathInfo() {
+    return null;
+  }
+
+  @Override
+  public String getQueryString() {
+    return queryString;
+  }
+
+  @Override
+  public String getParameter(String name) {
+    String[] values = parameters.get(name);
+    return values == null ? null : values[0];
+  }
+
+  @Override
+  public Map<String, String[]> getParameterMap() {
+    return parameters;
+  }
+
+  @Override
+  public Enumeration<String> getParameterNames() {
+    return Collections.enumeration(parameters.keySet());
+  }
+
+  @Override
+  public String[] getParameterValues(String name) {
+    return parameters.get(name);
+  }
+
+  @Override
+  public Object getAttribute(String name) {
+    return attributes.get(name);
+  }
+
+  @Override
+  public Enumeration<String> getAttributeNames() {
+    return Collections.enumeration(attributes.keySet());
+  }
+
+  @Override
+  public void setAttribute(String name, Object value) {
+    if (value == null) {
+      attributes.remove(name);
+    } else {
+      attributes.put(name, value);
+    }
+  }
+
+  @Override
+  public void removeAttribute(String name) {
+    attributes.remove(name);
+  }
+
+  @Override
+  public String getContentType() {
+    return body.length == 0 ? null : "application/json";
+  }
+
+  @Override
+  public int getContentLength() {
+    return body.length;
+  }
+
+  @Override
+  public long getContentLengthLong() {
+    return body.length;
+  }
+
+  @Override
+  public String getHeader(String name) {
+    if (BODY_HEADERS.contains(name.toLowerCase())) {
+      return name.equalsIgnoreCase("content-type") ? getContentType() : Integer.toString(body.length);
+    }
+    if (headers.containsKey(name) || UNINHERITED_HEADERS.contains(name.toLowerCase())) {
+      return headers.get(name);
+    }
+    return super.getHeader(name);
+  }
+
+  @Override
+  public Enumeration<String> getHeaders(String name) {
+    if (BODY_HEADERS.contains(name.toLowerCase()) || headers.containsKey(name)
+        || UNINHERITED_HEADERS.contains(name.toLowerCase())) {
+      String value = getHeader(name);
+      return Collections.enumeration(value == null ? List.of() : List.of(value));
+    }
+    return super.getHeaders(name);
+  }
+
+  @Override
+  public Enumeration<String> getHeaderNames() {
+    List<String> names = Collections.list(super.getHeaderNames()).stream()
+        .filter(name -> !BODY_HEADERS.contains(name.toLowerCase()) && !headers.containsKey(name)
+            && !UNINHERITED_HEADERS.contains(name.toLowerCase()))
+        .collect(Collectors.toList());
+    names.addAll(headers.keySet());
+    if (body.length > 0) {
+      names.add("Content-Type");
+    }
+    return Collections.enumeration(names);
+  }
+
+  @Override
+  public ServletInputStream getInputStream() {
+    ByteArrayInputStream in = new ByteArrayInputStream(body);
+    return new ServletInputStream() {
+      @Override
+      public int read() {
+        return in.read();
+      }
+
+      @Override
+      public boolean isFinished() {
+        return in.available() == 0;
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setReadListener(ReadListener readListener) {
+        throw new UnsupportedOperationException("batch sub-requests are read synchronously");
+      }
+    };
+  }
+
+  @Override
+  public BufferedReader getReader() {
+    return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public boolean isAsyncSupported() {
+    return true;
+  }
+
+  @Override
+  public AsyncContext startAsync() {
+    throw new IllegalStateException("batch sub-requests must be started with their own request and response");
+  }
+
+  @Override
+  public AsyncContext startAsync(ServletRequest request, ServletResponse response) {
+    if (asyncContext == null) {
+      asyncContext = new BatchAsyncContext(request, response);
+    }
+    asyncStarted = true;
+    return asyncContext;
+  }
+
+  @Override
+  public boolean isAsyncStarted() {
+    return asyncStarted;
+  }
+
+  @Override
+  public BatchAsyncContext getAsyncContext() {
+    if (asyncContext == null) {
+      throw new IllegalStateException("async processing was not started");
+    }
+    return asyncContext;
+  }
+
+  @Override
+  public DispatcherType getDispatcherType() {
+    return dispatcherType;
+  }
+
+  /**
+   * Switches to the state the container puts a request in when it carries
+   * out AsyncContext.dispatch().
+   */
+  void startAsyncDispatch() {
+    asyncStarted = false;
+    dispatcherType = DispatcherType.ASYNC;
+  }
+}
@@ -0,0 +1,235 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+/**
+ * Captures the status, headers and body written for one batch sub-request.
+ * Nothing is passed through to the real response, which belongs to the
+ * enclosing POST /api/batch call.
+ */
+class BatchSubResponse extends HttpServletResponseWrapper {
+  private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+  private final LinkedCaseInsensitiveMap<List<String>> headers = new LinkedCaseInsensitiveMap<>();
+  private int status = HttpServletResponse.SC_OK;
+  private String characterEncoding = StandardCharsets.UTF_8.name();
+  private PrintWriter writer;
+  private Locale locale = Locale.getDefault();
+
+  BatchSubResponse(HttpServletResponse batchResponse) {
+    super(batchResponse);
+  }
+
+  byte[] getBody() {
+    if (writer != null) {
+      writer.flush();
+    }
+    return body.toByteArray();
+  }
+
+  @Override
+  public int getStatus() {
+    return status;
+  }
+
+  @Override
+  public void setStatus(int sc) {
+    status = sc;
+  }
+
+  @Override
+  @SuppressWarnings("deprecation")
+  public void setStatus(int sc, String sm) {
+    status = sc;
+  }
+
+  @Override
+  public void sendError(int sc) {
+    status = sc;
+  }
+
+  @Override
+  public void sendError(int sc, String msg) {
+    status = sc;
+  }
+
+  @Override
+  public void sendRedirect(String location) {
+    status = HttpServletResponse.SC_FOUND;
+    setHeader(HttpHeaders.LOCATION, location);
+  }
+
+  @Override
+  public boolean isCommitted() {
+    return false;
+  }
+
+  @Override
+  public void flushBuffer() {
+  }
+
+  @Override
+  public void reset() {
+    resetBuffer();
+    headers.clear();
+    status = HttpServletResponse.SC_OK;
+  }
+
+  @Override
+  public void resetBuffer() {
+    body.reset();
+  }
+
+  @Override
+  public void setBufferSize(int size) {
+  }
+
+  @Override
+  public int getBufferSize() {
+    return body.size();
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() {
+    return new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        body.write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+        body.write(b, off, len);
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        throw new UnsupportedOperationException("batch sub-responses are written synchronously");
+      }
+    };
+  }
+
+  @Override
+  public PrintWriter getWriter() {
+    if (writer == null) {
+      writer = new PrintWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+    }
+    return writer;
+  }
+
+  @Override
+  public String getContentType() {
+    return getHeader(HttpHeaders.CONTENT_TYPE);
+  }
+
+  @Override
+  public void setContentType(String type) {
+    setHeader(HttpHeaders.CONTENT_TYPE, type);
+  }
+
+  @Override
+  public String getCharacterEncoding() {
+    return characterEncoding;
+  }
+
+  @Override
+  public void setCharacterEncoding(String charset) {
+    characterEncoding = charset;
+  }
+
+  @Override
+  public void setContentLength(int len) {
+  }
+
+  @Override
+  public void setContentLengthLong(long len) {
+  }
+
+  @Override
+  public Locale getLocale() {
+    return locale;
+  }
+
+  @Override
+  public void setLocale(Locale locale) {
+    this.locale = locale;
+  }
+
+  @Override
+  public void addCookie(Cookie cookie) {
+    // sub-requests never get to set cookies on the enclosing batch response
+  }
+
+  @Override
+  public boolean containsHeader(String name) {
+    return headers.containsKey(name);
+  }
+
+  @Override
+  public String getHeader(String name) {
+    List<String> values = headers.get(name);
+    return values == null ? null : values.get(0);
+  }
+
+  @Override
+  public Collection<String> getHeaders(String name) {
+    return headers.getOrDefault(name, List.of());
+  }
+
+  @Override
+  public Collection<String> getHeaderNames() {
+    return headers.keySet();
+  }
+
+  @Override
+  public void setHeader(String name, String value) {
+    List<String> values = new ArrayList<>();
+    values.add(value);
+    headers.put(name, values);
+  }
+
+  @Override
+  public void addHeader(String name, String value) {
+    headers.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+  }
+
+  @Override
+  public void setIntHeader(String name, int value) {
+    setHeader(name, Integer.toString(value));
+  }
+
+  @Override
+  public void addIntHeader(String name, int value) {
+    addHeader(name, Integer.toString(value));
+  }
+
+  @Override
+  public void setDateHeader(String name, long date) {
+    setHeader(name, Long.toString(date));
+  }
+
+  @Override
+  public void addDateHeader(String name, long date) {
+    addHeader(name, Long.toString(date));
+  }
+}
@@ -0,0 +1,111 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Separate, bounded thread pools ("bulkheads") for the heavy endpoints, so
+ * that they run off the request threads and cannot crowd out each other or
+ * the lightweight endpoints (currentUser, single-row gets, ...), which keep
+ * running on the request threads.
+ *
+ * - userReads: full listings and multi-gets
+ * - adminWrites: bulk deletes
+ *
+ * Each pool has a fixed number of threads and a bounded queue; when the
+ * queue is full the work is refused with a RejectedExecutionException,
+ * which ApiController turns into a 503. Queue depth, active threads and
+ * rejections are published as app.bulkhead.* meters tagged with the pool.
+ */
+@Slf4j
+@Service("bulkheads")
+public class BulkheadService {
+  static final String USER_READS = "userReads";
+  static final String ADMIN_WRITES = "adminWrites";
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Value("${app.bulkhead.userReads.threads:8}")
+  private int userReadsThreads;
+
+  @Value("${app.bulkhead.userReads.queueCapacity:100}")
+  private int userReadsQueueCapacity;
+
+  @Value("${app.bulkhead.adminWrites.threads:2}")
+  private int adminWritesThreads;
+
+  @Value("${app.bulkhead.adminWrites.queueCapacity:20}")
+  private int adminWritesQueueCapacity;
+
+  private Bulkhead userReads;
+  private Bulkhead adminWrites;
+
+  private record Bulkhead(String name, ThreadPoolExecutor executor, Counter rejected) {
+  }
+
+  @PostConstruct
+  void startExecutors() {
+    userReads = bulkhead(USER_READS, userReadsThreads, userReadsQueueCapacity);
+    adminWrites = bulkhead(ADMIN_WRITES, adminWritesThreads, adminWritesQueueCapacity);
+  }
+
+  @PreDestroy
+  void stopExecutors() {
+    userReads.executor().shutdown();
+    adminWrites.executor().shutdown();
+  }
+
+  public <T> CompletableFuture<T> userReads(Supplier<T> work) {
+    return submit(userReads, work);
+  }
+
+  public <T> CompletableFuture<T> adminWrites(Supplier<T> work) {
+    return submit(adminWrites, work);
+  }
+
+  private <T> CompletableFuture<T> submit(Bulkhead bulkhead, Supplier<T> work) {
+    try {
+      // carries the caller's SecurityContext over, for @PreAuthorize checks
+      // and read-your-writes routing of the work on the pool thread, and the
+      // request's trace and timings, which the work adds a span and time to
+      Supplier<T> traced = TraceContext.wrap("bulkhead", bulkhead.name(), RequestTimings.wrap(work));
+      return CompletableFuture.supplyAsync(traced,
+          new DelegatingSecurityContextExecutor(bulkhead.executor()));
+    } catch (RejectedExecutionException e) {
+      bulkhead.rejected().increment();
+      throw new RejectedExecutionException("too many %s requests queued; retry shortly".formatted(bulkhead.name()), e);
+    }
+  }
+
+  private Bulkhead bulkhead(String name, int threads, int queueCapacity) {
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("bulkhead-%s-".formatted(name));
+    threadFactory.setDaemon(true);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+
+    Gauge.builder("app.bulkhead.queue.depth", executor, e -> e.getQueue().size())
+        .tag("bulkhead", name).register(meterRegistry);
+    Gauge.builder("app.bulkhead.active", executor, ThreadPoolExecutor::getActiveCount)
+        .tag("bulkhead", name).register(meterRegistry);
+    return new Bulkhead(name, executor, meterRegistry.counter("app.bulkhead.rejected", "bulkhead", name));
+  }
+}
@@ -0,0 +1,146 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.entities.ChangeLogEntry;
+import edu.ucsb.cs156.example.errors.ChangesExpiredException;
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+import edu.ucsb.cs156.example.models.ChangeFeed;
+import edu.ucsb.cs156.example.models.MultiGetResult;
+import edu.ucsb.cs156.example.repositories.ChangeLogEntryRepository;
+import edu.ucsb.cs156.example.repositories.ChangeLogStateRepository;
+
+/**
+ * Reads the change log written by ChangeLogService back to clients that
+ * keep a copy of the collections (GET /api/changes?since=): what changed
+ * after the seq they have read up to, at most app.changes.maxItems changes
+ * at a time, with each changed row as it is now.
+ */
+@Service
+public class ChangeFeedService {
+
+  @Autowired
+  ChangeLogEntryRepository changeLogEntryRepository;
+
+  @Autowired
+  ChangeLogStateRepository changeLogStateRepository;
+
+  @Autowired
+  List<EntityService<?, ?>> entityServices;
+
+  @Value("${app.changes.maxItems:1000}")
+  private int maxItems;
+
+  /**
+   * @param since    the latest seq the client has read; null for just the
+   *                 latest seq, which a client reads before its first /all
+   * @param entities simple names of the entity classes to report, e.g.
+   *                 UCSBDate; empty for all of them
+   * @throws ChangesExpiredException when changes after since have been
+   *                                 compacted away, or since is ahead of
+   *                                 the log
+   * @throws InvalidQueryException   when an entity name is unknown
+   */
+  @Transactional(readOnly = true)
+  public ChangeFeed changesSince(Long since, Collection<String> entities) {
+    Map<String, EntityService<?, ?>> services = servicesByName();
+    for (String entity : entities) {
+      if (!services.containsKey(entity)) {
+        throw new InvalidQueryException("no entity called %s; the entities are %s".formatted(entity,
+            String.join(",", new TreeMap<>(services).keySet())));
+      }
+    }
+
+    // before reading the entries: a change committed after this is left for next time
+    long latest = changeLogStateRepository.findLastSeq();
+    if (since == null) {
+      return ChangeFeed.builder().latest(latest).changes(List.of()).build();
+    }
+    if (since > latest) {
+      throw new ChangesExpiredException("since=%d is ahead of the change log, which is at %d".formatted(since, latest));
+    }
+    PageRequest page = PageRequest.of(0, maxItems + 1);
+    List<ChangeLogEntry> entries = entities.isEmpty()
+        ? changeLogEntryRepository.findBySeqGreaterThanAndSeqLessThanEqualOrderBySeq(since, latest, page)
+        : changeLogEntryRepository.findBySeqGreaterThanAndSeqLessThanEqualAndEntityInOrderBySeq(since, latest,
+            entities, page);
+    // after reading them: compaction that ran meanwhile may have dropped some
+    long compactedThrough = changeLogStateRepository.findCompactedThrough();
+    if (since < compactedThrough) {
+      throw new ChangesExpiredException(
+          "changes after %d have been compacted away; read the collections again and continue from %d"
+              .formatted(since, latest));
+    }
+
+    boolean hasMore = entries.size() > maxItems;
+    if (hasMore) {
+      entries = entries.subList(0, maxItems);
+      latest = entries.get(maxItems - 1).getSeq();
+    }
+
+    // the latest change to each row, in the order of those changes
+    Map<String, ChangeLogEntry> latestPerRow = new LinkedHashMap<>();
+    for (ChangeLogEntry entry : entries) {
+      String key = entry.getEntity() + "/" + entry.getEntityId();
+      latestPerRow.remove(key);
+      latestPerRow.put(key, entry);
+    }
+
+    Map<String, Set<String>> upserted = new HashMap<>();
+    latestPerRow.values().stream()
+        .filter(entry -> entry.getOp() == ChangeLogEntry.Op.UPSERT)
+        .forEach(entry -> upserted.computeIfAbsent(entry.getEntity(), entity -> new HashSet<>()).add(entry.getEntityId()));
+    Map<String, Map<String, Object>> rows = new HashMap<>();
+    upserted.forEach((entity, ids) -> rows.put(entity, currentRows(services.get(entity), ids)));
+
+    List<ChangeFeed.Change> changes = new ArrayList<>();
+    for (ChangeLogEntry entry : latestPerRow.values()) {
+      Object value = entry.getOp() == ChangeLogEntry.Op.UPSERT
+          ? rows.get(entry.getEntity()).get(entry.getEntityId())
+          : null;
+      // a row deleted after latest; the DELETE itself comes next time
+      ChangeLogEntry.Op op = entry.getOp() == ChangeLogEntry.Op.UPSERT && value == null
+          ? ChangeLogEntry.Op.DELETE
+          : entry.getOp();
+      changes.add(new ChangeFeed.Change(entry.getSeq(), entry.getEntity(), entry.getEntityId(), op, value));
+    }
+    return ChangeFeed.builder().since(since).latest(latest).hasMore(hasMore).changes(changes).build();
+  }
+
+  private Map<String, EntityService<?, ?>> servicesByName() {
+    Map<String, EntityService<?, ?>> services = new HashMap<>();
+    entityServices.forEach(service -> services.put(service.getEntityType().getSimpleName(), service));
+    return services;
+  }
+
+  /**
+   * @return the rows that still exist, by id as text
+   */
+  private static <T, ID> Map<String, Object> currentRows(EntityService<T, ID> service, Set<String> ids) {
+    List<ID> requested = ids.stream().map(service::parseId).toList();
+    MultiGetResult<T, ID> found = service.findMany(requested);
+    Set<ID> missing = new HashSet<>(found.getMissing());
+    Map<String, Object> rows = new HashMap<>();
+    int item = 0;
+    for (ID id : requested) {
+      if (!missing.contains(id)) {
+        rows.put(id.toString(), found.getItems().get(item++));
+      }
+    }
+    return rows;
+  }
+}
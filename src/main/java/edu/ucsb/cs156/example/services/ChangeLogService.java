@@ -0,0 +1,170 @@
+package edu.ucsb.cs156.example.services;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.aop.ClusterLock;
+import edu.ucsb.cs156.example.entities.ChangeLogEntry;
+import edu.ucsb.cs156.example.entities.ChangeLogState;
+import edu.ucsb.cs156.example.repositories.ChangeLogEntryRepository;
+import edu.ucsb.cs156.example.repositories.ChangeLogStateRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes the changelog that GET /api/changes serves: every create, update
+ * and delete made through the entity APIs records a change in the
+ * transaction that makes it.
+ *
+ * Changes are held until the transaction is about to commit, then numbered
+ * from the changelogstate row and inserted. Numbering locks that row until
+ * the commit, so transactions take their numbers in the order they commit
+ * and a client that has read up to some seq never later finds a smaller one
+ * appear.
+ *
+ * Compaction (every app.changes.compactIntervalMillis, on one instance)
+ * drops changes followed by a later one to the same row, and changes older
+ * than app.changes.retentionHours; clients that have not read as far as
+ * the latter are answered 410 Gone and must read everything again.
+ */
+@Slf4j
+@Service
+public class ChangeLogService {
+
+  @Autowired
+  ChangeLogEntryRepository changeLogEntryRepository;
+
+  @Autowired
+  ChangeLogStateRepository changeLogStateRepository;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Value("${app.changes.retentionHours:168}")
+  private long retentionHours;
+
+  private TransactionTemplate transactions;
+
+  private record Change(String entity, String entityId, ChangeLogEntry.Op op) {
+  }
+
+  /**
+   * The changes made so far by one transaction, written just before it
+   * commits. Kept as one of its synchronizations, which (unlike resources
+   * bound to the thread) are set aside while a REQUIRES_NEW transaction runs.
+   */
+  private class PendingChanges implements TransactionSynchronization {
+    final List<Change> changes = new ArrayList<>();
+
+    @Override
+    public void beforeCommit(boolean readOnly) {
+      write(changes);
+    }
+  }
+
+  @PostConstruct
+  void createState() {
+    transactions = new TransactionTemplate(transactionManager);
+    if (changeLogStateRepository.existsById(ChangeLogState.ID)) {
+      return;
+    }
+    try {
+      changeLogStateRepository.save(ChangeLogState.builder().id(ChangeLogState.ID).build());
+    } catch (DataIntegrityViolationException e) {
+      // another instance starting at the same time created it
+    }
+  }
+
+  public void recordUpsert(Class<?> entityType, Object id) {
+    record(new Change(entityType.getSimpleName(), id.toString(), ChangeLogEntry.Op.UPSERT));
+  }
+
+  public void recordDelete(Class<?> entityType, Object id) {
+    record(new Change(entityType.getSimpleName(), id.toString(), ChangeLogEntry.Op.DELETE));
+  }
+
+  public void recordDeletes(Class<?> entityType, Collection<?> ids) {
+    ids.forEach(id -> recordDelete(entityType, id));
+  }
+
+  /**
+   * Records that rows of the entity changed in a way not recorded row by
+   * row, e.g. by a set-based delete or a CSV import.
+   *
+   * @param entityName the simple name of the entity class
+   */
+  public void recordReset(String entityName) {
+    record(new Change(entityName, ChangeLogEntry.ALL_ROWS, ChangeLogEntry.Op.RESET));
+  }
+
+  private void record(Change change) {
+    if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new IllegalStateException("changes are recorded in the transaction that makes them");
+    }
+    PendingChanges pending = TransactionSynchronizationManager.getSynchronizations().stream()
+        .filter(PendingChanges.class::isInstance)
+        .map(PendingChanges.class::cast)
+        .findFirst()
+        .orElseGet(() -> {
+          PendingChanges created = new PendingChanges();
+          TransactionSynchronizationManager.registerSynchronization(created);
+          return created;
+        });
+    pending.changes.add(change);
+  }
+
+  private void write(List<Change> changes) {
+    if (changes.isEmpty()) {
+      return;
+    }
+    changeLogStateRepository.advance(changes.size());
+    long lastSeq = changeLogStateRepository.findLastSeq();
+    long firstSeq = lastSeq - changes.size() + 1;
+    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+    List<Object[]> rows = new ArrayList<>(changes.size());
+    for (int i = 0; i < changes.size(); i++) {
+      Change change = changes.get(i);
+      rows.add(new Object[] { firstSeq + i, change.entity(), change.entityId(), change.op().name(), now });
+    }
+    jdbcTemplate.batchUpdate("INSERT INTO changelog (seq, entity, entity_id, op, changed_at) VALUES (?, ?, ?, ?, ?)",
+        rows);
+  }
+
+  /**
+   * Drops superseded and expired changes, on one instance for all.
+   */
+  @Scheduled(fixedDelayString = "${app.changes.compactIntervalMillis:3600000}")
+  @ClusterLock(name = "changelog-compaction", holdAtLeast = "${app.changes.compactIntervalMillis:3600000}")
+  public void compact() {
+    int superseded = changeLogEntryRepository.deleteSuperseded();
+    LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+    Integer expired = transactions.execute(status -> {
+      Long through = changeLogEntryRepository.findLastSeqBefore(cutoff);
+      if (through == null) {
+        return 0;
+      }
+      // in the same transaction, so no client reads past the gap unwarned
+      changeLogStateRepository.compactedThrough(through);
+      return changeLogEntryRepository.deleteThrough(through);
+    });
+    log.info("compacted the change log: dropped {} superseded and {} expired changes", superseded, expired);
+  }
+}
@@ -0,0 +1,92 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.Job;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * CSV imports run as jobs (POST /api/.../import?async=true). The upload is
+ * copied to a file under app.jobs.spoolDir before the request returns, so
+ * that a queued import survives a restart; the file is deleted when the job
+ * ends.
+ *
+ * An import interrupted part way is not resumed, since running it again
+ * would insert its first rows twice; it is failed, and its progress message
+ * says how far it got.
+ */
+@Slf4j
+@Service
+public class CsvImportJobHandler implements JobHandler {
+  public static final String TYPE = "csvImport";
+
+  // lazily, as JobService needs every handler first
+  @Lazy
+  @Autowired
+  JobService jobService;
+
+  @Autowired
+  CsvImportService csvImportService;
+
+  @Autowired
+  ObjectMapper objectMapper;
+
+  @Value("${app.jobs.spoolDir:target/job-files}")
+  private Path spoolDir;
+
+  record Params(String entityName, String file, String filename) {
+  }
+
+  /**
+   * Spools file and queues a job that imports it.
+   */
+  public Job submit(CsvImportSpec spec, MultipartFile file, String createdBy) throws IOException {
+    Files.createDirectories(spoolDir);
+    Path spooled = Files.createTempFile(spoolDir, "import-", ".csv");
+    try {
+      file.transferTo(spooled);
+      return jobService.submit(TYPE, "import %s rows from %s".formatted(spec.entityName(), file.getOriginalFilename()),
+          new Params(spec.entityName(), spooled.toAbsolutePath().toString(), file.getOriginalFilename()), createdBy);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(spooled);
+      throw e;
+    }
+  }
+
+  @Override
+  public String type() {
+    return TYPE;
+  }
+
+  @Override
+  public Object run(JobContext job) throws IOException {
+    Params params = objectMapper.readValue(job.getParams(), Params.class);
+    try (InputStream in = Files.newInputStream(Path.of(params.file()))) {
+      log.info("importing {} into {}", params.filename(), CsvImportSpec.forEntity(params.entityName()).table());
+      return csvImportService.importCsv(CsvImportSpec.forEntity(params.entityName()), in, job);
+    } finally {
+      Files.deleteIfExists(Path.of(params.file()));
+    }
+  }
+
+  @Override
+  public void discard(String params) {
+    try {
+      Files.deleteIfExists(Path.of(objectMapper.readValue(params, Params.class).file()));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
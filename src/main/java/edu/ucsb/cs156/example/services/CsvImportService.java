@@ -0,0 +1,273 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.errors.CsvFormatException;
+import edu.ucsb.cs156.example.errors.JobCancelledException;
+import edu.ucsb.cs156.example.models.CsvImportResult;
+import edu.ucsb.cs156.example.models.CsvRowError;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Imports an uploaded CSV file into one table as a pipeline:
+ *
+ * - the calling thread reads the file a record at a time and cuts it into
+ *   chunks of chunkSize rows;
+ * - each chunk is checked and converted in parallel on a fork-join pool;
+ * - the calling thread inserts the converted chunks, in file order, with one
+ *   JDBC batch (and transaction) per chunk.
+ *
+ * At most chunksInFlight chunks are being validated or waiting to be
+ * written; when that many are, reading stops until the oldest is written.
+ * Together with the cap on kept errors this keeps memory bounded however
+ * long the file is.
+ *
+ * A row that fails validation, or that the database refuses, is reported by
+ * line and skipped; the rest of the file is still imported. When a batch is
+ * refused its rows are retried one at a time to find the bad ones.
+ *
+ * Rows are not numbered until inserted, so each chunk written records a
+ * RESET of its table in the change log rather than a change per row, and
+ * the table's sync tree is rebuilt once the import ends.
+ */
+@Slf4j
+@Service
+public class CsvImportService {
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  ChangeLogService changeLog;
+
+  @Autowired
+  SyncTreeService syncTree;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Value("${app.csvImport.parallelism:4}")
+  private int parallelism;
+
+  @Value("${app.csvImport.chunkSize:1000}")
+  private int chunkSize;
+
+  @Value("${app.csvImport.chunksInFlight:8}")
+  private int chunksInFlight;
+
+  @Value("${app.csvImport.maxErrors:1000}")
+  private int maxErrors;
+
+  @Value("${app.csvImport.maxRecordLength:65536}")
+  private int maxRecordLength;
+
+  private ForkJoinPool validators;
+  private TransactionTemplate transactions;
+
+  private record CsvRecord(long line, List<String> fields) {
+  }
+
+  private record ValidatedRow(long line, Object[] values, String error) {
+  }
+
+  /**
+   * Counts and errors of one import, updated only by the calling thread.
+   */
+  private class Outcome {
+    long rowsRead;
+    long rowsImported;
+    long errorCount;
+    final List<CsvRowError> errors = new ArrayList<>();
+
+    void error(long line, String message) {
+      errorCount++;
+      if (errors.size() < maxErrors) {
+        errors.add(new CsvRowError(line, message));
+      }
+    }
+  }
+
+  @PostConstruct
+  void startValidators() {
+    validators = new ForkJoinPool(parallelism, pool -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName("csv-import-" + thread.getPoolIndex());
+      thread.setDaemon(true);
+      return thread;
+    }, null, false);
+    transactions = new TransactionTemplate(transactionManager);
+  }
+
+  @PreDestroy
+  void stopValidators() {
+    validators.shutdownNow();
+  }
+
+  /**
+   * @param in UTF-8 CSV whose first record is a header naming the spec's
+   *           columns
+   * @throws CsvFormatException when the file is empty or the header lacks a
+   *                            column; nothing is imported then
+   */
+  public CsvImportResult importCsv(CsvImportSpec spec, InputStream in) throws IOException {
+    return importCsv(spec, in, JobContext.detached());
+  }
+
+  /**
+   * Imports as part of a job: the job's progress is the number of rows
+   * imported or rejected, updated after every chunk written, and cancelling
+   * the job stops the import after the chunk being written. Chunks already
+   * written are kept.
+   *
+   * @throws JobCancelledException when the job is cancelled
+   */
+  public CsvImportResult importCsv(CsvImportSpec spec, InputStream in, JobContext job) throws IOException {
+    CsvReader reader = new CsvReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)),
+        maxRecordLength);
+    List<String> header = reader.readRecord();
+    if (header == null) {
+      throw new CsvFormatException("CSV file for %s is empty".formatted(spec.entityName()));
+    }
+    int[] positions = spec.positionsIn(header);
+    String sql = spec.insertSql();
+
+    Outcome outcome = new Outcome();
+    Deque<Future<List<ValidatedRow>>> inFlight = new ArrayDeque<>();
+    try {
+      List<CsvRecord> chunk = new ArrayList<>(chunkSize);
+      while (true) {
+        List<String> fields;
+        try {
+          fields = reader.readRecord();
+        } catch (CsvFormatException e) {
+          // the reader cannot tell where the next record starts, so the rest is lost
+          outcome.error(reader.getRecordLineNumber(), e.getMessage() + "; the rest of the file was not read");
+          break;
+        }
+        if (fields == null) {
+          break;
+        }
+        outcome.rowsRead++;
+        chunk.add(new CsvRecord(reader.getRecordLineNumber(), fields));
+        if (chunk.size() == chunkSize) {
+          submit(spec, positions, chunk, inFlight, sql, outcome, job);
+          chunk = new ArrayList<>(chunkSize);
+        }
+      }
+      if (!chunk.isEmpty()) {
+        submit(spec, positions, chunk, inFlight, sql, outcome, job);
+      }
+      while (!inFlight.isEmpty()) {
+        write(spec, sql, inFlight.removeFirst(), outcome, job);
+      }
+    } finally {
+      inFlight.forEach(future -> future.cancel(true));
+      if (outcome.rowsImported > 0) {
+        syncTree.rebuild(spec.entityName());
+      }
+    }
+
+    log.info("imported {} of {} {} rows from CSV, {} errors",
+        outcome.rowsImported, outcome.rowsRead, spec.entityName(), outcome.errorCount);
+    return CsvImportResult.builder()
+        .rowsRead(outcome.rowsRead)
+        .rowsImported(outcome.rowsImported)
+        .errors(outcome.errors)
+        .errorCount(outcome.errorCount)
+        .build();
+  }
+
+  private void submit(CsvImportSpec spec, int[] positions, List<CsvRecord> chunk,
+      Deque<Future<List<ValidatedRow>>> inFlight, String sql, Outcome outcome, JobContext job) {
+    if (inFlight.size() >= chunksInFlight) {
+      write(spec, sql, inFlight.removeFirst(), outcome, job);
+    }
+    // a parallel stream started on a fork-join pool thread runs on that pool
+    inFlight.addLast(validators.submit(() -> chunk.parallelStream()
+        .map(record -> validate(spec, positions, record))
+        .toList()));
+  }
+
+  private static ValidatedRow validate(CsvImportSpec spec, int[] positions, CsvRecord record) {
+    try {
+      return new ValidatedRow(record.line(), spec.convert(record.fields(), positions), null);
+    } catch (IllegalArgumentException e) {
+      return new ValidatedRow(record.line(), null, e.getMessage());
+    }
+  }
+
+  private void write(CsvImportSpec spec, String sql, Future<List<ValidatedRow>> validated, Outcome outcome,
+      JobContext job) {
+    List<ValidatedRow> rows;
+    try {
+      rows = validated.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("CSV import interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("CSV validation failed", e.getCause());
+    }
+
+    List<ValidatedRow> valid = rows.stream().filter(row -> row.error() == null).toList();
+    List<ValidatedRow> failed = new ArrayList<>(rows.stream().filter(row -> row.error() != null).toList());
+    try {
+      if (!valid.isEmpty()) {
+        transactions.executeWithoutResult(status -> {
+          jdbcTemplate.batchUpdate(sql, valid.stream().map(ValidatedRow::values).toList());
+          changeLog.recordReset(spec.entityName());
+        });
+        outcome.rowsImported += valid.size();
+      }
+    } catch (DataAccessException batchFailure) {
+      for (ValidatedRow row : valid) {
+        try {
+          transactions.executeWithoutResult(status -> {
+            jdbcTemplate.update(sql, row.values());
+            changeLog.recordReset(spec.entityName());
+          });
+          outcome.rowsImported++;
+        } catch (DataAccessException rowFailure) {
+          failed.add(new ValidatedRow(row.line(), null, firstLine(rowFailure.getMostSpecificCause().getMessage())));
+        }
+      }
+    }
+    failed.sort(Comparator.comparingLong(ValidatedRow::line));
+    failed.forEach(row -> outcome.error(row.line(), row.error()));
+
+    job.progress(outcome.rowsImported + outcome.errorCount, null,
+        "%d rows imported, %d errors".formatted(outcome.rowsImported, outcome.errorCount));
+    job.checkCancelled();
+  }
+
+  private static String firstLine(String message) {
+    if (message == null) {
+      return "refused by the database";
+    }
+    int newline = message.indexOf('\n');
+    return newline < 0 ? message : message.substring(0, newline);
+  }
+}
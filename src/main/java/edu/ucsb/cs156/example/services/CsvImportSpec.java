@@ -0,0 +1,138 @@
+package edu.ucsb.cs156.example.services;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import edu.ucsb.cs156.example.errors.CsvFormatException;
+
+/**
+ * How the rows of an uploaded CSV file become rows of one table: the header
+ * names the CSV must have (the entity's field names, in any order; other
+ * columns are ignored), the column each one goes to, and how its text is
+ * checked and converted.
+ */
+public record CsvImportSpec(String entityName, String table, List<Column> columns) {
+  // the length of a plain String column in the generated schema
+  static final int MAX_STRING_LENGTH = 255;
+
+  public static final CsvImportSpec UCSB_DATES = new CsvImportSpec("UCSBDate", "ucsbdates", List.of(
+      Column.required("quarterYYYYQ", "quarteryyyyq", Column::string),
+      Column.required("name", "name", Column::string),
+      Column.required("localDateTime", "local_date_time", LocalDateTime::parse)));
+
+  public static final CsvImportSpec UCSB_ORGANIZATIONS = new CsvImportSpec("UCSBOrganization", "ucsborganizations", List.of(
+      Column.required("orgCode", "org_code", Column::string),
+      Column.required("orgTranslationShort", "org_translation_short", Column::string),
+      Column.required("orgTranslation", "org_translation", Column::string),
+      Column.required("inactive", "inactive", Column::bool)));
+
+  public static final CsvImportSpec UCSB_DINING_COMMONS_MENU_ITEMS = new CsvImportSpec("UCSBDiningCommonsMenuItem",
+      "ucsbdiningcommonsmenuitems", List.of(
+          Column.required("diningCommonsCode", "dining_commons_code", Column::string),
+          Column.required("name", "name", Column::string),
+          Column.required("station", "station", Column::string)));
+
+  public static final CsvImportSpec UCSB_MENU_ITEM_REVIEWS = new CsvImportSpec("UCSBMenuItemReview", "ucsbmenuitemreview", List.of(
+      Column.required("itemId", "item_id", Long::valueOf),
+      Column.required("stars", "stars", Integer::valueOf),
+      Column.required("reviewerEmail", "reviewer_email", Column::string),
+      Column.required("dateReviewed", "date_reviewed", LocalDateTime::parse),
+      Column.optional("comments", "comments", text -> text)));
+
+  private static final List<CsvImportSpec> ALL = List.of(UCSB_DATES, UCSB_ORGANIZATIONS,
+      UCSB_DINING_COMMONS_MENU_ITEMS, UCSB_MENU_ITEM_REVIEWS);
+
+  /**
+   * @return the spec for entityName; how an import job names its spec
+   */
+  static CsvImportSpec forEntity(String entityName) {
+    return ALL.stream()
+        .filter(spec -> spec.entityName().equals(entityName))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("no CSV import for " + entityName));
+  }
+
+  /**
+   * @param convert turns the trimmed text into the value to insert; throws
+   *                IllegalArgumentException, with a message saying what is
+   *                wrong, or DateTimeParseException when it is not valid
+   */
+  public record Column(String header, String sqlColumn, boolean required, Function<String, Object> convert) {
+    static Column required(String header, String sqlColumn, Function<String, Object> convert) {
+      return new Column(header, sqlColumn, true, convert);
+    }
+
+    static Column optional(String header, String sqlColumn, Function<String, Object> convert) {
+      return new Column(header, sqlColumn, false, convert);
+    }
+
+    static Object string(String text) {
+      if (text.length() > MAX_STRING_LENGTH) {
+        throw new IllegalArgumentException("longer than %d characters".formatted(MAX_STRING_LENGTH));
+      }
+      return text;
+    }
+
+    static Object bool(String text) {
+      if (!text.equalsIgnoreCase("true") && !text.equalsIgnoreCase("false")) {
+        throw new IllegalArgumentException("%s is not true or false".formatted(text));
+      }
+      return Boolean.valueOf(text);
+    }
+  }
+
+  String insertSql() {
+    return "INSERT INTO %s (%s) VALUES (%s)".formatted(table,
+        columns.stream().map(Column::sqlColumn).collect(Collectors.joining(", ")),
+        columns.stream().map(column -> "?").collect(Collectors.joining(", ")));
+  }
+
+  /**
+   * @return for each column, its position in the CSV header
+   * @throws CsvFormatException when the header lacks one of the columns
+   */
+  int[] positionsIn(List<String> header) {
+    // spreadsheet programs like to start the file with a byte order mark
+    List<String> trimmed = header.stream().map(name -> name.replace("\uFEFF", "").trim()).toList();
+    int[] positions = new int[columns.size()];
+    List<String> missing = new ArrayList<>();
+    for (int i = 0; i < columns.size(); i++) {
+      positions[i] = trimmed.indexOf(columns.get(i).header());
+      if (positions[i] < 0) {
+        missing.add(columns.get(i).header());
+      }
+    }
+    if (!missing.isEmpty()) {
+      throw new CsvFormatException("CSV header for %s is missing %s".formatted(entityName, String.join(",", missing)));
+    }
+    return positions;
+  }
+
+  /**
+   * @return the values to insert for one CSV record, in column order
+   * @throws IllegalArgumentException with a message naming the offending
+   *                                  column when the record is not valid
+   */
+  Object[] convert(List<String> record, int[] positions) {
+    Object[] values = new Object[columns.size()];
+    for (int i = 0; i < columns.size(); i++) {
+      Column column = columns.get(i);
+      String text = positions[i] < record.size() ? record.get(positions[i]).trim() : "";
+      if (text.isEmpty() && column.required()) {
+        throw new IllegalArgumentException("%s is required".formatted(column.header()));
+      }
+      try {
+        values[i] = column.convert().apply(text);
+      } catch (NumberFormatException | DateTimeParseException e) {
+        throw new IllegalArgumentException("%s: %s is not valid".formatted(column.header(), text));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("%s: %s".formatted(column.header(), e.getMessage()));
+      }
+    }
+    return values;
+  }
+}
@@ -0,0 +1,123 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.ucsb.cs156.example.errors.CsvFormatException;
+
+/**
+ * Reads RFC 4180 CSV one record at a time: comma separated, fields
+ * optionally in double quotes, "" for a quote inside a quoted field, and
+ * line breaks (\n or \r\n) allowed inside quotes.
+ *
+ * Only the record being read is held in memory, and it may not be longer
+ * than maxRecordLength characters, so a stray quote cannot make the rest of
+ * the file one giant field.
+ */
+class CsvReader {
+  private final Reader in;
+  private final int maxRecordLength;
+  private long lineNumber = 1;
+  private long recordLineNumber;
+  private int pushedBack = -2;
+
+  /**
+   * @param in should be buffered; it is read one character at a time
+   */
+  CsvReader(Reader in, int maxRecordLength) {
+    this.in = in;
+    this.maxRecordLength = maxRecordLength;
+  }
+
+  /**
+   * @return the fields of the next record, or null at the end of the input
+   * @throws CsvFormatException when a record is too long or has text
+   *                            right after a closing quote
+   */
+  List<String> readRecord() throws IOException {
+    int c = read();
+    while (c == '\r' || c == '\n') {
+      // blank lines between records are skipped
+      c = read();
+    }
+    if (c == -1) {
+      return null;
+    }
+    recordLineNumber = lineNumber;
+
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    int length = 0;
+    boolean quoted = false;
+    boolean afterQuote = false;
+    while (true) {
+      if (++length > maxRecordLength) {
+        throw new CsvFormatException("record starting on line %d is longer than %d characters"
+            .formatted(recordLineNumber, maxRecordLength));
+      }
+      if (quoted) {
+        if (c == -1) {
+          throw new CsvFormatException("quote opened on line %d is never closed".formatted(recordLineNumber));
+        } else if (c == '"') {
+          int next = read();
+          if (next == '"') {
+            field.append('"');
+          } else {
+            quoted = false;
+            afterQuote = true;
+            unread(next);
+          }
+        } else {
+          field.append((char) c);
+        }
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+        afterQuote = false;
+      } else if (c == '\n' || c == '\r' || c == -1) {
+        if (c == '\r') {
+          int next = read();
+          if (next != '\n') {
+            unread(next);
+          }
+        }
+        fields.add(field.toString());
+        return fields;
+      } else if (afterQuote) {
+        throw new CsvFormatException("unexpected text after a closing quote on line %d".formatted(lineNumber));
+      } else if (c == '"' && field.length() == 0) {
+        quoted = true;
+      } else {
+        field.append((char) c);
+      }
+      c = read();
+    }
+  }
+
+  /**
+   * @return the line the last record returned by readRecord started on
+   */
+  long getRecordLineNumber() {
+    return recordLineNumber;
+  }
+
+  private int read() throws IOException {
+    int c;
+    if (pushedBack != -2) {
+      c = pushedBack;
+      pushedBack = -2;
+      return c;
+    }
+    c = in.read();
+    if (c == '\n') {
+      lineNumber++;
+    }
+    return c;
+  }
+
+  private void unread(int c) {
+    pushedBack = c;
+  }
+}
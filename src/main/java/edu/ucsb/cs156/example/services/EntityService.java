@@ -0,0 +1,224 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+import edu.ucsb.cs156.example.models.MultiGetResult;
+import edu.ucsb.cs156.example.repositories.EntityFilter;
+import edu.ucsb.cs156.example.repositories.EntityRepository;
+import edu.ucsb.cs156.example.repositories.Fieldset;
+
+/**
+ * Transaction boundaries for one entity type, between its controller and its
+ * repository.
+ *
+ * Reads run in read-only transactions, which ReplicaRoutingDataSource sends
+ * to a read replica when one is configured. Updates and deletes look the row
+ * up and change it in one read-write transaction, so the lookup always sees
+ * the primary. Every write records its change in the change log
+ * (GET /api/changes) and, for the tables clients sync, in the sync tree
+ * (POST /api/sync/{entity}), in the same transaction.
+ */
+public abstract class EntityService<T, ID> {
+  // keeps the IN (...) list well under the bind parameter limits of H2 and Postgres
+  static final int MULTI_GET_CHUNK_SIZE = 500;
+
+  // a bulk delete of more ids than this is turned away with a 400
+  @Value("${app.bulkDelete.maxIds:5000}")
+  private int maxBulkDeleteIds;
+
+  @Autowired
+  ChangeLogService changeLog;
+
+  @Autowired
+  SyncTreeService syncTree;
+
+  private final Class<T> entityType;
+  private final Function<T, ID> idOf;
+  private final Class<?> idType;
+
+  protected EntityService(Class<T> entityType, Function<T, ID> idOf) {
+    this.entityType = entityType;
+    this.idOf = idOf;
+    this.idType = ResolvableType.forClass(getClass()).as(EntityService.class).resolveGeneric(1);
+  }
+
+  protected abstract EntityRepository<T, ID> repository();
+
+  public Class<T> getEntityType() {
+    return entityType;
+  }
+
+  public ID getId(T entity) {
+    return idOf.apply(entity);
+  }
+
+  /**
+   * @return an id as written in the change log, as this entity's id type
+   */
+  @SuppressWarnings("unchecked")
+  public ID parseId(String text) {
+    return (ID) DefaultConversionService.getSharedInstance().convert(text, idType);
+  }
+
+  @Transactional(readOnly = true)
+  public Iterable<T> findAll() {
+    return repository().findAll();
+  }
+
+  @Transactional(readOnly = true)
+  public List<T> findFirst(int count) {
+    return repository().findFirst(count);
+  }
+
+  @Transactional(readOnly = true)
+  public List<T> findAll(EntityFilter<T> filter) {
+    return repository().findAll(filter.getSpecification(), filter.getSort());
+  }
+
+  @Transactional(readOnly = true)
+  public T findById(ID id) {
+    return get(id);
+  }
+
+  @Transactional(readOnly = true)
+  public Optional<T> find(ID id) {
+    return repository().findById(id);
+  }
+
+  /**
+   * @return the entities in the order their ids were first requested, plus
+   *         the requested ids that do not exist
+   */
+  @Transactional(readOnly = true)
+  public MultiGetResult<T, ID> findMany(List<ID> ids) {
+    List<ID> requested = new ArrayList<>(new LinkedHashSet<>(ids));
+    Map<ID, T> found = new HashMap<>();
+    findInChunks(requested, repository()::findAllById).forEach(entity -> found.put(idOf.apply(entity), entity));
+
+    List<T> items = new ArrayList<>();
+    List<ID> missing = new ArrayList<>();
+    for (ID id : requested) {
+      T entity = found.get(id);
+      if (entity == null) {
+        missing.add(id);
+      } else {
+        items.add(entity);
+      }
+    }
+    return MultiGetResult.<T, ID>builder().items(items).missing(missing).build();
+  }
+
+  @Transactional(readOnly = true)
+  public List<Map<String, Object>> findAllFields(Fieldset fields) {
+    return repository().findAllFields(fields);
+  }
+
+  @Transactional(readOnly = true)
+  public List<Map<String, Object>> findAllFields(Fieldset fields, EntityFilter<T> filter) {
+    return repository().findAllFields(fields, filter);
+  }
+
+  @Transactional(readOnly = true)
+  public Map<String, Object> findFieldsById(ID id, Fieldset fields) {
+    return repository().findFieldsById(id, fields)
+        .orElseThrow(() -> new EntityNotFoundException(entityType, id));
+  }
+
+  @Transactional
+  public T create(T entity) {
+    T saved = repository().save(entity);
+    changeLog.recordUpsert(entityType, idOf.apply(saved));
+    syncTree.recordUpsert(entityType, idOf.apply(saved), saved);
+    return saved;
+  }
+
+  @Transactional
+  public T update(ID id, Consumer<T> changes) {
+    T entity = get(id);
+    changes.accept(entity);
+    repository().save(entity);
+    changeLog.recordUpsert(entityType, id);
+    syncTree.recordUpsert(entityType, id, entity);
+    return entity;
+  }
+
+  @Transactional
+  public void delete(ID id) {
+    repository().delete(get(id));
+    changeLog.recordDelete(entityType, id);
+    syncTree.recordDelete(entityType, id);
+  }
+
+  /**
+   * Runs a query for the rows matching any of the given keys with at most
+   * MULTI_GET_CHUNK_SIZE keys in each IN (...) list. Call it inside a
+   * transaction.
+   *
+   * @param query e.g. a repository's findAllByItemIdIn
+   */
+  protected <K> List<T> findInChunks(Collection<K> keys, Function<Collection<K>, Iterable<T>> query) {
+    List<K> all = List.copyOf(keys);
+    List<T> rows = new ArrayList<>();
+    for (int start = 0; start < all.size(); start += MULTI_GET_CHUNK_SIZE) {
+      query.apply(all.subList(start, Math.min(start + MULTI_GET_CHUNK_SIZE, all.size()))).forEach(rows::add);
+    }
+    return rows;
+  }
+
+  /**
+   * Deletes those of the given ids that have a row, MULTI_GET_CHUNK_SIZE ids
+   * at a time: each chunk selects the ids that exist, deletes them with the
+   * repository's set-based delete and records only them. Call it inside a
+   * read-write transaction.
+   *
+   * @param delete the repository's DELETE ... WHERE id IN (:ids)
+   * @return how many rows were deleted
+   */
+  protected int deleteExisting(List<ID> ids, ToIntFunction<Collection<ID>> delete) {
+    if (ids.size() > maxBulkDeleteIds) {
+      throw new InvalidQueryException("at most %d ids can be deleted at once, got %d"
+          .formatted(maxBulkDeleteIds, ids.size()));
+    }
+    List<ID> requested = new ArrayList<>(new LinkedHashSet<>(ids));
+    int count = 0;
+    for (int start = 0; start < requested.size(); start += MULTI_GET_CHUNK_SIZE) {
+      List<ID> chunk = requested.subList(start, Math.min(start + MULTI_GET_CHUNK_SIZE, requested.size()));
+      List<ID> existing = repository().findExistingIds(chunk);
+      if (!existing.isEmpty()) {
+        count += delete.applyAsInt(existing);
+        recordDeletes(existing);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Records rows deleted by a set-based delete, in its transaction.
+   */
+  protected void recordDeletes(Collection<ID> ids) {
+    changeLog.recordDeletes(entityType, ids);
+    syncTree.recordDeletes(entityType, ids);
+  }
+
+  private T get(ID id) {
+    return repository().findById(id)
+        .orElseThrow(() -> new EntityNotFoundException(entityType, id));
+  }
+}
@@ -0,0 +1,225 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import javax.annotation.PostConstruct;
+
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderFactory;
+import org.dataloader.DataLoaderRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBMenuItemReview;
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+import edu.ucsb.cs156.example.models.GraphQLRequest;
+import graphql.ExecutionInput;
+import graphql.GraphQL;
+import graphql.execution.instrumentation.ChainedInstrumentation;
+import graphql.analysis.FieldComplexityEnvironment;
+import graphql.analysis.MaxQueryComplexityInstrumentation;
+import graphql.analysis.MaxQueryDepthInstrumentation;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import graphql.schema.idl.TypeDefinitionRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executes read-only GraphQL queries (schema in graphql/schema.graphqls)
+ * through the dining commons EntityServices, so every fetch runs in a
+ * read-only transaction and may be served by a read replica.
+ *
+ * Every request gets a fresh DataLoaderRegistry, so references such as
+ * review.item or item.diningCommons are collected across the whole result
+ * and resolved with one IN query per loader per level (per 500 keys),
+ * never one query per row, and nothing is cached between requests.
+ *
+ * Every list field takes a first argument (default 20, at most maxFirst):
+ * root lists read only that many rows, and in the complexity limit a list
+ * counts first times the fields selected under it, so a wide nested query
+ * is rejected before it runs rather than after it has loaded the tables.
+ */
+@Slf4j
+@Service("graphQL")
+public class GraphQLService {
+  static final String MENU_ITEMS_BY_ID = "menuItemsById";
+  static final String DINING_COMMONS_BY_CODE = "diningCommonsByCode";
+  static final String MENU_ITEMS_BY_COMMONS_CODE = "menuItemsByDiningCommonsCode";
+  static final String REVIEWS_BY_ITEM_ID = "reviewsByItemId";
+  static final String FIRST = "first";
+  // the schema's default for first
+  static final int DEFAULT_FIRST = 20;
+
+  @Autowired
+  UCSBDiningCommonsService ucsbDiningCommonsService;
+
+  @Autowired
+  UCSBDiningCommonsMenuItemService ucsbDiningCommonsMenuItemService;
+
+  @Autowired
+  UCSBMenuItemReviewService ucsbMenuItemReviewService;
+
+  @Value("${app.graphql.maxDepth:6}")
+  private int maxDepth;
+
+  @Value("${app.graphql.maxComplexity:10000}")
+  private int maxComplexity;
+
+  @Value("${app.graphql.maxFirst:500}")
+  private int maxFirst;
+
+  private GraphQL graphQL;
+
+  @PostConstruct
+  void buildSchema() throws IOException {
+    String sdl;
+    try (InputStream in = new ClassPathResource("graphql/schema.graphqls").getInputStream()) {
+      sdl = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+    TypeDefinitionRegistry types = new SchemaParser().parse(sdl);
+    GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(types, runtimeWiring());
+
+    // a DataLoaderDispatcherInstrumentation is added in front of these by GraphQL.Builder
+    graphQL = GraphQL.newGraphQL(schema)
+        .instrumentation(new ChainedInstrumentation(List.of(
+            new MaxQueryDepthInstrumentation(maxDepth),
+            new MaxQueryComplexityInstrumentation(maxComplexity, GraphQLService::fieldComplexity))))
+        .build();
+  }
+
+  public Map<String, Object> execute(GraphQLRequest request) {
+    if (request.getQuery() == null || request.getQuery().isBlank()) {
+      throw new InvalidQueryException("a GraphQL request needs a query");
+    }
+    ExecutionInput input = ExecutionInput.newExecutionInput()
+        .query(request.getQuery())
+        .operationName(request.getOperationName())
+        .variables(request.getVariables() == null ? Map.of() : request.getVariables())
+        .dataLoaderRegistry(newDataLoaderRegistry())
+        .build();
+    return graphQL.execute(input).toSpecification();
+  }
+
+  private RuntimeWiring runtimeWiring() {
+    return RuntimeWiring.newRuntimeWiring()
+        .type("Query", type -> type
+            .dataFetcher("diningCommons", env -> ucsbDiningCommonsService.findFirst(first(env)))
+            .dataFetcher("diningCommonsByCode",
+                env -> ucsbDiningCommonsService.find(env.getArgument("code")).orElse(null))
+            .dataFetcher("menuItems", env -> ucsbDiningCommonsMenuItemService.findFirst(first(env)))
+            .dataFetcher("menuItem",
+                env -> ucsbDiningCommonsMenuItemService.find(idArgument(env)).orElse(null))
+            .dataFetcher("reviews", env -> ucsbMenuItemReviewService.findFirst(first(env)))
+            .dataFetcher("review",
+                env -> ucsbMenuItemReviewService.find(idArgument(env)).orElse(null)))
+        .type("UCSBDiningCommons", type -> type
+            .dataFetcher("menuItems", env -> {
+              UCSBDiningCommons commons = env.getSource();
+              int first = first(env);
+              DataLoader<String, List<UCSBDiningCommonsMenuItem>> loader = env.getDataLoader(MENU_ITEMS_BY_COMMONS_CODE);
+              return loader.load(commons.getCode()).thenApply(rows -> firstOf(rows, first));
+            }))
+        .type("UCSBDiningCommonsMenuItem", type -> type
+            .dataFetcher("diningCommons", env -> {
+              UCSBDiningCommonsMenuItem item = env.getSource();
+              if (item.getDiningCommonsCode() == null) {
+                return null;
+              }
+              DataLoader<String, UCSBDiningCommons> loader = env.getDataLoader(DINING_COMMONS_BY_CODE);
+              return loader.load(item.getDiningCommonsCode());
+            })
+            .dataFetcher("reviews", env -> {
+              UCSBDiningCommonsMenuItem item = env.getSource();
+              int first = first(env);
+              DataLoader<Long, List<UCSBMenuItemReview>> loader = env.getDataLoader(REVIEWS_BY_ITEM_ID);
+              return loader.load(item.getId()).thenApply(rows -> firstOf(rows, first));
+            }))
+        .type("UCSBMenuItemReview", type -> type
+            .dataFetcher("item", env -> {
+              UCSBMenuItemReview review = env.getSource();
+              DataLoader<Long, UCSBDiningCommonsMenuItem> loader = env.getDataLoader(MENU_ITEMS_BY_ID);
+              return loader.load(review.getItemId());
+            }))
+        .build();
+  }
+
+  private DataLoaderRegistry newDataLoaderRegistry() {
+    DataLoaderRegistry registry = new DataLoaderRegistry();
+    registry.register(MENU_ITEMS_BY_ID, DataLoaderFactory.newMappedDataLoader(
+        (Set<Long> ids) -> CompletableFuture.completedFuture(
+            byKey(ucsbDiningCommonsMenuItemService.findMany(List.copyOf(ids)).getItems(),
+                UCSBDiningCommonsMenuItem::getId))));
+    registry.register(DINING_COMMONS_BY_CODE, DataLoaderFactory.newMappedDataLoader(
+        (Set<String> codes) -> CompletableFuture.completedFuture(
+            byKey(ucsbDiningCommonsService.findMany(List.copyOf(codes)).getItems(), UCSBDiningCommons::getCode))));
+    registry.register(MENU_ITEMS_BY_COMMONS_CODE, DataLoaderFactory.newMappedDataLoader(
+        (Set<String> codes) -> CompletableFuture.completedFuture(
+            groupedByKey(ucsbDiningCommonsMenuItemService.findAllByDiningCommonsCodes(codes),
+                UCSBDiningCommonsMenuItem::getDiningCommonsCode))));
+    registry.register(REVIEWS_BY_ITEM_ID, DataLoaderFactory.newMappedDataLoader(
+        (Set<Long> itemIds) -> CompletableFuture.completedFuture(
+            groupedByKey(ucsbMenuItemReviewService.findAllByItemIds(itemIds), UCSBMenuItemReview::getItemId))));
+    return registry;
+  }
+
+  private static long idArgument(DataFetchingEnvironment env) {
+    return Long.parseLong(env.getArgument("id"));
+  }
+
+  private static <K, V> Map<K, V> byKey(Iterable<V> rows, Function<V, K> key) {
+    Map<K, V> result = new HashMap<>();
+    rows.forEach(row -> result.put(key.apply(row), row));
+    return result;
+  }
+
+  private static <K, V> Map<K, List<V>> groupedByKey(Iterable<V> rows, Function<V, K> key) {
+    return StreamSupport.stream(rows.spliterator(), false)
+        .collect(Collectors.groupingBy(key));
+  }
+
+  private int first(DataFetchingEnvironment env) {
+    Integer first = env.getArgument(FIRST);
+    if (first == null || first < 0 || first > maxFirst) {
+      throw new InvalidQueryException(String.format("first must be between 0 and %d", maxFirst));
+    }
+    return first;
+  }
+
+  // at most first of one parent's rows
+  private static <V> List<V> firstOf(List<V> rows, int first) {
+    if (rows == null) {
+      return List.of();
+    }
+    return rows.size() <= first ? rows : rows.subList(0, first);
+  }
+
+  /**
+   * One point per field, plus its selection once per row it may return: a
+   * list field with first: n counts n times its selection.
+   */
+  private static int fieldComplexity(FieldComplexityEnvironment env, int childComplexity) {
+    if (env.getFieldDefinition().getArgument(FIRST) == null) {
+      return 1 + childComplexity;
+    }
+    Object first = env.getArguments().getOrDefault(FIRST, DEFAULT_FIRST);
+    long rows = first instanceof Integer ? Math.max(0, (Integer) first) : DEFAULT_FIRST;
+    return (int) Math.min(Integer.MAX_VALUE, 1 + rows * Math.max(1, childComplexity));
+  }
+}
@@ -0,0 +1,136 @@
+package edu.ucsb.cs156.example.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.aop.ClusterLock;
+import edu.ucsb.cs156.example.entities.HelpRequests;
+import edu.ucsb.cs156.example.repositories.ArchivedHelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Moves solved help requests older than app.helpRequests.archiveAfterDays
+ * out of helprequests and into helprequestsarchive, so that the lists the
+ * app serves all day stay the size of the current quarters.
+ *
+ * Each batch of archiveBatchSize rows is one transaction of three
+ * statements: the rows are locked (SELECT ... FOR UPDATE, in id order),
+ * copied with one INSERT ... SELECT and deleted with one DELETE. While it
+ * runs, those rows of helprequests cannot be changed, and the time from
+ * locking to commit is published, per batch, as the app.archive.lock timer
+ * tagged table=helprequests; each run logs its total and longest.
+ */
+@Slf4j
+@Service
+public class HelpRequestsArchiveService {
+
+  @Autowired
+  HelpRequestsRepository helpRequestsRepository;
+
+  @Autowired
+  ArchivedHelpRequestRepository archivedHelpRequestRepository;
+
+  @Autowired
+  LeaderLockService leaderLocks;
+
+  @Autowired
+  ChangeLogService changeLog;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Value("${app.helpRequests.archiveAfterDays:365}")
+  private int archiveAfterDays;
+
+  @Value("${app.helpRequests.archiveBatchSize:500}")
+  private int batchSize;
+
+  private TransactionTemplate transactions;
+
+  private Timer lockTimer;
+
+  /**
+   * What one run did; lockedFor adds up how long each batch held its rows.
+   */
+  public record Report(long rowsArchived, int batches, Duration lockedFor, Duration longestLock, Duration elapsed) {
+  }
+
+  @PostConstruct
+  void createTransactions() {
+    transactions = new TransactionTemplate(transactionManager);
+    lockTimer = Timer.builder("app.archive.lock")
+        .description("how long one archival batch kept its rows of the live table locked")
+        .tag("table", "helprequests")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Archives whatever has come of age, on one instance for all.
+   */
+  @Scheduled(fixedDelayString = "${app.helpRequests.archiveIntervalMillis:86400000}")
+  @ClusterLock(name = "helprequests-archive", lease = "${app.helpRequests.archiveLease:30m}",
+      holdAtLeast = "${app.helpRequests.archiveIntervalMillis:86400000}")
+  public void archiveSolved() {
+    archiveSolvedBefore(LocalDateTime.now().minusDays(archiveAfterDays));
+  }
+
+  /**
+   * Archives the solved requests made before the given time, a batch at a
+   * time, until none are left. Must run under a cluster lock: a batch that
+   * finds the lock has passed to another instance is rolled back, and the
+   * run stops with LeaseLostException.
+   */
+  public Report archiveSolvedBefore(LocalDateTime before) {
+    long startedAt = System.nanoTime();
+    long rowsArchived = 0;
+    int batches = 0;
+    long lockedNanos = 0;
+    long longestNanos = 0;
+    while (true) {
+      long batchStartedAt = System.nanoTime();
+      int moved = transactions.execute(status -> {
+        List<Long> ids = helpRequestsRepository.lockSolvedIdsBefore(before, batchSize);
+        if (ids.isEmpty()) {
+          return 0;
+        }
+        archivedHelpRequestRepository.copyFromHelpRequests(ids, LocalDateTime.now());
+        helpRequestsRepository.bulkDelete(ids);
+        // to clients of the change feed, archived rows are deleted ones
+        changeLog.recordDeletes(HelpRequests.class, ids);
+        leaderLocks.checkHeld();
+        return ids.size();
+      });
+      if (moved == 0) {
+        break;
+      }
+      long lockedFor = System.nanoTime() - batchStartedAt;
+      lockTimer.record(Duration.ofNanos(lockedFor));
+      rowsArchived += moved;
+      batches++;
+      lockedNanos += lockedFor;
+      longestNanos = Math.max(longestNanos, lockedFor);
+    }
+    Report report = new Report(rowsArchived, batches, Duration.ofNanos(lockedNanos), Duration.ofNanos(longestNanos),
+        Duration.ofNanos(System.nanoTime() - startedAt));
+    log.info("archived {} solved help requests made before {} in {} batches; helprequests rows were locked for {} ms"
+        + " in all, {} ms at most, over {} ms", report.rowsArchived(), before, report.batches(),
+        report.lockedFor().toMillis(), report.longestLock().toMillis(), report.elapsed().toMillis());
+    return report;
+  }
+}
@@ -0,0 +1,73 @@
+package edu.ucsb.cs156.example.services;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.entities.ArchivedHelpRequest;
+import edu.ucsb.cs156.example.entities.HelpRequests;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.HelpRequestsSummary;
+import edu.ucsb.cs156.example.repositories.ArchivedHelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.EntityRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestsRepository;
+
+@Service
+public class HelpRequestsService extends EntityService<HelpRequests, Long> {
+
+  @Autowired
+  HelpRequestsRepository helpRequestsRepository;
+
+  @Autowired
+  ArchivedHelpRequestRepository archivedHelpRequestRepository;
+
+  public HelpRequestsService() {
+    super(HelpRequests.class, HelpRequests::getId);
+  }
+
+  @Override
+  protected EntityRepository<HelpRequests, Long> repository() {
+    return helpRequestsRepository;
+  }
+
+  @Transactional(readOnly = true)
+  public List<HelpRequestsSummary> findAllSummaries() {
+    return helpRequestsRepository.findAllSummaries();
+  }
+
+  @Transactional
+  public int bulkDelete(List<Long> ids) {
+    return deleteExisting(ids, helpRequestsRepository::bulkDelete);
+  }
+
+  @Transactional
+  public int bulkDeleteSolvedBefore(LocalDateTime before) {
+    int count = helpRequestsRepository.bulkDeleteSolvedBefore(before);
+    changeLog.recordReset(getEntityType().getSimpleName());
+    return count;
+  }
+
+  /**
+   * @return at most limit live and archived requests with an id over after,
+   *         in id order; live ones have a null archivedAt
+   */
+  @Transactional(readOnly = true)
+  public List<ArchivedHelpRequest> findAllIncludingArchived(long after, int limit) {
+    return archivedHelpRequestRepository.findAllIncludingLive(after, limit);
+  }
+
+  /**
+   * @return the live request with the given id or, failing that, the
+   *         archived one
+   */
+  @Transactional(readOnly = true)
+  public Object findByIdIncludingArchived(Long id) {
+    return helpRequestsRepository.findById(id)
+        .map(Object.class::cast)
+        .or(() -> archivedHelpRequestRepository.findById(id))
+        .orElseThrow(() -> new EntityNotFoundException(HelpRequests.class, id));
+  }
+}
@@ -0,0 +1,201 @@
+package edu.ucsb.cs156.example.services;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.aop.ClusterLock;
+import edu.ucsb.cs156.example.entities.IdempotencyRecord;
+import edu.ucsb.cs156.example.errors.IdempotencyKeyInFlightException;
+import edu.ucsb.cs156.example.repositories.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Remembers the responses to requests sent with an Idempotency-Key.
+ *
+ * Completed responses are kept in a bounded, least-recently-used map in
+ * memory and written through to the idempotencykeys table, so a retry that
+ * lands after a restart (or after the entry was evicted) is still answered
+ * from the table. Both expire after app.idempotency.ttlMinutes.
+ *
+ * While a request is running its key is "in flight": a duplicate that
+ * arrives meanwhile at this instance is handed the same future instead of
+ * running again. Claiming a key also inserts its PENDING row, so a
+ * duplicate at another instance finds the key taken and is refused with
+ * IdempotencyKeyInFlightException; the row gets the response when the
+ * request succeeds and is deleted otherwise.
+ */
+@Slf4j
+@Service("idempotency")
+public class IdempotencyService {
+
+  @Autowired
+  IdempotencyRecordRepository idempotencyRecordRepository;
+
+  @Value("${app.idempotency.maxEntries:10000}")
+  private int maxEntries;
+
+  @Value("${app.idempotency.ttlMinutes:1440}")
+  private long ttlMinutes;
+
+  // a PENDING row this old was left by an instance that stopped mid-request
+  @Value("${app.idempotency.pendingTimeoutSeconds:300}")
+  private long pendingTimeoutSeconds;
+
+  private Map<String, IdempotencyRecord> recent;
+
+  private final Map<String, CompletableFuture<IdempotencyRecord>> inFlight = new ConcurrentHashMap<>();
+
+  @PostConstruct
+  void createCache() {
+    recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+        return size() > maxEntries;
+      }
+    });
+  }
+
+  /**
+   * Returns the saved response for key, if there is one that has not expired.
+   */
+  public Optional<IdempotencyRecord> find(String key) {
+    IdempotencyRecord record = recent.get(key);
+    if (record == null) {
+      record = idempotencyRecordRepository.findById(key).orElse(null);
+      if (record != null && !record.isPending() && !isExpired(record)) {
+        recent.put(key, record);
+      }
+    }
+    if (record == null || record.isPending() || isExpired(record)) {
+      return Optional.empty();
+    }
+    return Optional.of(record);
+  }
+
+  /**
+   * Claims key for the calling thread.
+   *
+   * @return null if the caller now owns the key and must run the request and
+   *         then call {@link #complete} or {@link #abandon}; otherwise a future
+   *         for the response of the execution that already owns it, which
+   *         fails with IdempotencyKeyInFlightException if that execution is
+   *         on another instance
+   */
+  public CompletableFuture<IdempotencyRecord> claim(String key) {
+    CompletableFuture<IdempotencyRecord> mine = new CompletableFuture<>();
+    CompletableFuture<IdempotencyRecord> running = inFlight.putIfAbsent(key, mine);
+    if (running != null) {
+      return running;
+    }
+    // the previous owner may have finished between find() and putIfAbsent()
+    Optional<IdempotencyRecord> done = find(key);
+    if (done.isEmpty() && insertPending(key)) {
+      return null;
+    }
+    inFlight.remove(key, mine);
+    // a row that could not be inserted is either finished by now or still pending
+    done = done.or(() -> find(key));
+    if (done.isPresent()) {
+      mine.complete(done.get());
+    } else {
+      mine.completeExceptionally(new IdempotencyKeyInFlightException("%s is in flight on another instance".formatted(key)));
+    }
+    return mine;
+  }
+
+  /**
+   * @return whether the PENDING row was inserted, after deleting an expired
+   *         or abandoned row for the key that the purge has not got to yet
+   */
+  private boolean insertPending(String key) {
+    LocalDateTime now = LocalDateTime.now();
+    idempotencyRecordRepository.deleteStale(key, now.minusMinutes(ttlMinutes), now.minusSeconds(pendingTimeoutSeconds));
+    try {
+      idempotencyRecordRepository.insertPending(key, now);
+      return true;
+    } catch (DataIntegrityViolationException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Releases a claimed key. The response is handed to any duplicates that
+   * are waiting on it; it is only remembered for later retries if it was a
+   * success, so a failed request can be retried with the same key.
+   */
+  public void complete(String key, IdempotencyRecord record) {
+    try {
+      if (record.getStatus() >= 200 && record.getStatus() < 300) {
+        recent.put(key, record);
+        try {
+          idempotencyRecordRepository.save(record);
+        } catch (RuntimeException e) {
+          log.warn("could not save idempotency key {}; it is only remembered in memory", key, e);
+        }
+      } else {
+        deletePending(key);
+      }
+    } finally {
+      inFlight.remove(key).complete(record);
+    }
+  }
+
+  /**
+   * Releases a claimed key whose request failed without a response.
+   */
+  public void abandon(String key, Throwable cause) {
+    try {
+      deletePending(key);
+    } finally {
+      inFlight.remove(key).completeExceptionally(cause);
+    }
+  }
+
+  private void deletePending(String key) {
+    try {
+      idempotencyRecordRepository.deletePending(key);
+    } catch (RuntimeException e) {
+      // the key stays claimed until it expires
+      log.warn("could not release idempotency key {}", key, e);
+    }
+  }
+
+  /**
+   * Drops expired keys from this instance's memory.
+   */
+  @Scheduled(fixedDelayString = "${app.idempotency.purgeIntervalMillis:3600000}")
+  public void purgeExpired() {
+    LocalDateTime cutoff = LocalDateTime.now().minusMinutes(ttlMinutes);
+    synchronized (recent) {
+      recent.values().removeIf(record -> record.getCreatedAt().isBefore(cutoff));
+    }
+  }
+
+  /**
+   * Deletes expired keys from the table, which one instance does for all.
+   */
+  @Scheduled(fixedDelayString = "${app.idempotency.purgeIntervalMillis:3600000}")
+  @ClusterLock(name = "idempotency-purge", holdAtLeast = "${app.idempotency.purgeIntervalMillis:3600000}")
+  public void purgeExpiredRecords() {
+    LocalDateTime cutoff = LocalDateTime.now().minusMinutes(ttlMinutes);
+    int count = idempotencyRecordRepository.bulkDeleteCreatedBefore(cutoff);
+    log.info("purged {} expired idempotency keys", count);
+  }
+
+  private boolean isExpired(IdempotencyRecord record) {
+    return record.getCreatedAt().isBefore(LocalDateTime.now().minusMinutes(ttlMinutes));
+  }
+}
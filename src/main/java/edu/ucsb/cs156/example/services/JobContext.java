@@ -0,0 +1,101 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.errors.JobCancelledException;
+
+/**
+ * What a running job can see of and say about itself. Progress and log
+ * lines are only kept here; JobService writes them to the job's row with
+ * every heartbeat and when the job ends, so reporting progress is cheap
+ * enough to do after every unit of work.
+ */
+public class JobContext {
+  private final long id;
+  private final int maxLogChars;
+  private volatile String params;
+  private volatile boolean cancelRequested;
+
+  private long progress;
+  private Long total;
+  private String progressMessage;
+
+  private final StringBuilder log = new StringBuilder();
+  private long droppedLines;
+
+  JobContext(long id, int maxLogChars) {
+    this.id = id;
+    this.maxLogChars = maxLogChars;
+  }
+
+  /**
+   * @return a context for running a job's work directly, outside any job:
+   *         its progress goes nowhere and it is never cancelled
+   */
+  public static JobContext detached() {
+    return new JobContext(0, 0);
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  /**
+   * @return the job's params, as JSON
+   */
+  public String getParams() {
+    return params;
+  }
+
+  void setParams(String params) {
+    this.params = params;
+  }
+
+  /**
+   * @param done    units of work done so far
+   * @param total   units of work in all, or null when not known
+   * @param message what has been done, in words
+   */
+  public synchronized void progress(long done, Long total, String message) {
+    this.progress = done;
+    this.total = total;
+    this.progressMessage = message;
+  }
+
+  public boolean isCancelRequested() {
+    return cancelRequested;
+  }
+
+  /**
+   * @throws JobCancelledException when the job has been asked to stop
+   */
+  public void checkCancelled() {
+    if (cancelRequested) {
+      throw new JobCancelledException("job %d was cancelled".formatted(id));
+    }
+  }
+
+  void requestCancel() {
+    cancelRequested = true;
+  }
+
+  /**
+   * Adds a line to the log. Only the last maxLogChars characters are kept:
+   * the end of a long log is where it says why the job ended.
+   */
+  synchronized void appendLog(String line) {
+    log.append(line).append('\n');
+    while (log.length() > maxLogChars) {
+      int newline = log.indexOf("\n");
+      log.delete(0, newline + 1);
+      droppedLines++;
+    }
+  }
+
+  synchronized Snapshot snapshot() {
+    String text = droppedLines == 0 ? log.toString()
+        : "[%d earlier lines dropped]\n%s".formatted(droppedLines, log);
+    return new Snapshot(progress, total, progressMessage, text);
+  }
+
+  record Snapshot(long progress, Long total, String progressMessage, String log) {
+  }
+}
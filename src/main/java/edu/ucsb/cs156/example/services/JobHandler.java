@@ -0,0 +1,44 @@
+package edu.ucsb.cs156.example.services;
+
+/**
+ * One kind of background job. Each handler is a bean; JobService finds it
+ * by {@link #type()} when it runs a job of that type.
+ *
+ * An admin operation opts in to running as a job by adding a handler (and an
+ * endpoint that submits to it, usually its own mapping with async=true).
+ * Everything the job needs must be in its JSON params or reachable from
+ * them, because after a restart the job may be run from its row alone.
+ */
+public interface JobHandler {
+
+  /**
+   * @return the value stored in the type column of this handler's jobs
+   */
+  String type();
+
+  /**
+   * @return whether a job of this type that was interrupted (its worker
+   *         stopped or died) may simply be run again from the start; when
+   *         false such a job is failed instead
+   */
+  default boolean resumable() {
+    return false;
+  }
+
+  /**
+   * Does the work. Long-running handlers should report progress and call
+   * {@link JobContext#checkCancelled()} between units of work; anything
+   * they log through slf4j on this thread ends up in the job's log.
+   *
+   * @return the result, stored as JSON
+   */
+  Object run(JobContext job) throws Exception;
+
+  /**
+   * Releases whatever the job's params hold on to (e.g. an uploaded file)
+   * when the job ends without {@link #run} being called, because it was
+   * cancelled while queued or failed after an interruption.
+   */
+  default void discard(String params) {
+  }
+}
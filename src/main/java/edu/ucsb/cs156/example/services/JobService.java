@@ -0,0 +1,386 @@
+package edu.ucsb.cs156.example.services;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.core.AppenderBase;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.JobCancelledException;
+import edu.ucsb.cs156.example.repositories.JobRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs long admin operations as background jobs, on a small pool of
+ * workers instead of the request threads.
+ *
+ * The jobs table is the queue: submit() saves a QUEUED row and hands it to
+ * a worker, which claims it (QUEUED -> RUNNING under this instance's
+ * workerId) before running its {@link JobHandler}. When the workers' queue
+ * is full the job just stays QUEUED until the sweep hands it out again, and
+ * with several instances sharing the database whichever claims a job first
+ * runs it.
+ *
+ * While a job runs, every heartbeat writes its progress and log to the row
+ * and picks up cancellation requests. A RUNNING job whose heartbeat has
+ * stopped for staleAfterSeconds, and which is not running here, is
+ * recovered by the sweep: requeued if its handler is resumable, failed
+ * otherwise. Each start of an instance is a new worker, so the jobs a
+ * restart interrupted are recovered once their heartbeat goes stale.
+ * Everything a job logs through slf4j on its worker thread is captured into
+ * its log.
+ */
+@Slf4j
+@Service
+public class JobService {
+  private static final String MDC_JOB_ID = "jobId";
+
+  @Autowired
+  JobRepository jobRepository;
+
+  @Autowired
+  List<JobHandler> handlerBeans;
+
+  @Autowired
+  ObjectMapper objectMapper;
+
+  @Value("${app.jobs.threads:2}")
+  private int threads;
+
+  @Value("${app.jobs.queueCapacity:20}")
+  private int queueCapacity;
+
+  // defaults to host name, process id and a random suffix: unique to this
+  // start of this instance, even with several instances on one host
+  @Value("${app.jobs.workerId:}")
+  private String workerId;
+
+  @Value("${app.jobs.staleAfterSeconds:60}")
+  private long staleAfterSeconds;
+
+  @Value("${app.jobs.maxLogChars:65536}")
+  private int maxLogChars;
+
+  @Value("${app.jobs.retentionDays:30}")
+  private long retentionDays;
+
+  private Map<String, JobHandler> handlers;
+  private ThreadPoolExecutor workers;
+  private JobLogAppender logAppender;
+
+  // jobs handed to the workers that have not started yet
+  private final Set<Long> dispatched = ConcurrentHashMap.newKeySet();
+
+  // jobs this instance is running (or about to claim)
+  private final Map<Long, JobContext> running = new ConcurrentHashMap<>();
+
+  @PostConstruct
+  void startWorkers() {
+    handlers = handlerBeans.stream().collect(Collectors.toMap(JobHandler::type, Function.identity()));
+    if (workerId.isBlank()) {
+      workerId = "%s-%d-%s".formatted(hostName(), ProcessHandle.current().pid(),
+          UUID.randomUUID().toString().substring(0, 8));
+    }
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("job-worker-");
+    threadFactory.setDaemon(true);
+    workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+
+    LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+    logAppender = new JobLogAppender();
+    logAppender.setContext(loggerContext);
+    logAppender.start();
+    loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).addAppender(logAppender);
+  }
+
+  @PreDestroy
+  void stopWorkers() {
+    // running jobs are not interrupted (an interrupt can close H2's files);
+    // whatever is still RUNNING when the process ends is recovered by the
+    // first sweep after the restart
+    workers.shutdown();
+    ((LoggerContext) LoggerFactory.getILoggerFactory()).getLogger(Logger.ROOT_LOGGER_NAME)
+        .detachAppender(logAppender);
+    logAppender.stop();
+  }
+
+  /**
+   * Queues a job and returns its row, whose id can be polled for progress.
+   *
+   * @param params made into the job's JSON params
+   */
+  public Job submit(String type, String description, Object params, String createdBy) {
+    if (!handlers.containsKey(type)) {
+      throw new IllegalArgumentException("no handler for jobs of type " + type);
+    }
+    String json;
+    try {
+      json = objectMapper.writeValueAsString(params);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("params of a %s job cannot be written as JSON".formatted(type), e);
+    }
+    Job job = jobRepository.save(Job.builder()
+        .type(type)
+        .description(description)
+        .status(Job.Status.QUEUED)
+        .createdBy(createdBy)
+        .createdAt(now())
+        .params(json)
+        .build());
+    log.info("job {} ({}) queued by {}: {}", job.getId(), type, createdBy, description);
+    dispatch(job.getId());
+    return job;
+  }
+
+  public Iterable<Job> findAll() {
+    return jobRepository.findAllByOrderByIdDesc();
+  }
+
+  /**
+   * @return the job, with the progress and log from its last heartbeat
+   */
+  public Job find(long id) {
+    return jobRepository.findById(id).orElseThrow(() -> new EntityNotFoundException(Job.class, id));
+  }
+
+  /**
+   * A queued job is cancelled at once; a running one is asked to stop and
+   * ends as CANCELLED when it next checks. Finished jobs are left as they
+   * are.
+   */
+  public Job cancel(long id) {
+    Job job = find(id);
+    if (jobRepository.cancelQueued(id, now()) == 1) {
+      log.info("job {} ({}) cancelled before it started", id, job.getType());
+      discard(job);
+    } else if (jobRepository.requestCancel(id) == 1) {
+      JobContext context = running.get(id);
+      if (context != null) {
+        context.requestCancel();
+      }
+      log.info("job {} ({}) asked to stop", id, job.getType());
+    }
+    return find(id);
+  }
+
+  /**
+   * Writes the progress and log of the jobs running here to their rows, and
+   * picks up cancellations made through other instances.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.heartbeatMillis:5000}")
+  public void heartbeat() {
+    running.forEach((id, context) -> {
+      JobContext.Snapshot snapshot = context.snapshot();
+      int updated = jobRepository.heartbeat(id, workerId, now(), snapshot.progress(), snapshot.total(),
+          snapshot.progressMessage(), snapshot.log());
+      if (updated == 0) {
+        // either not claimed yet, or recovered by another instance that
+        // thought this one was gone, in which case it must stop
+        Job job = jobRepository.findById(id).orElse(null);
+        boolean lost = job == null || switch (job.getStatus()) {
+          case QUEUED -> false;
+          case RUNNING -> !workerId.equals(job.getWorkerId());
+          default -> true;
+        };
+        if (lost) {
+          context.requestCancel();
+        }
+      } else if (jobRepository.isCancelRequested(id)) {
+        context.requestCancel();
+      }
+    });
+  }
+
+  /**
+   * Recovers RUNNING jobs whose worker has gone away, hands queued jobs to
+   * the workers, and deletes finished jobs older than retentionDays. Also
+   * runs when the application starts, which is what resumes or fails the
+   * jobs that a restart interrupted.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.sweepIntervalMillis:30000}")
+  public void sweep() {
+    LocalDateTime staleBefore = now().minusSeconds(staleAfterSeconds);
+    for (Job job : jobRepository.findByStatusOrderById(Job.Status.RUNNING)) {
+      if (job.getHeartbeatAt().isBefore(staleBefore) && !running.containsKey(job.getId())) {
+        recover(job);
+      }
+    }
+    for (Job job : jobRepository.findByStatusOrderById(Job.Status.QUEUED)) {
+      dispatch(job.getId());
+    }
+    int purged = jobRepository.bulkDeleteFinishedBefore(now().minusDays(retentionDays));
+    if (purged > 0) {
+      log.info("deleted {} jobs that finished more than {} days ago", purged, retentionDays);
+    }
+  }
+
+  private void recover(Job job) {
+    JobHandler handler = handlers.get(job.getType());
+    if (handler != null && handler.resumable()) {
+      if (jobRepository.requeueStale(job.getId(), job.getHeartbeatAt()) == 1) {
+        log.info("job {} ({}) was interrupted on {}; queued to run again", job.getId(), job.getType(),
+            job.getWorkerId());
+      }
+      return;
+    }
+    String error = "interrupted on %s before it finished, after: %s"
+        .formatted(job.getWorkerId(), job.getProgressMessage());
+    if (jobRepository.failStale(job.getId(), job.getHeartbeatAt(), error, now()) == 1) {
+      log.warn("job {} ({}) {}", job.getId(), job.getType(), error);
+      discard(job);
+    }
+  }
+
+  private void dispatch(long id) {
+    if (!dispatched.add(id)) {
+      return;
+    }
+    try {
+      workers.execute(() -> run(id));
+    } catch (RejectedExecutionException e) {
+      dispatched.remove(id);
+      log.info("job {} stays queued until a worker is free", id);
+    }
+  }
+
+  private void run(long id) {
+    dispatched.remove(id);
+    JobContext context = new JobContext(id, maxLogChars);
+    // registered before the claim, so that the sweep never sees this job
+    // RUNNING under this workerId without it being in the map
+    if (running.putIfAbsent(id, context) != null) {
+      return;
+    }
+    try {
+      if (jobRepository.claim(id, workerId, now()) == 0) {
+        // cancelled, or claimed by another instance
+        return;
+      }
+      Job job = find(id);
+      context.setParams(job.getParams());
+      runClaimed(job, context);
+    } finally {
+      running.remove(id);
+    }
+  }
+
+  private void runClaimed(Job job, JobContext context) {
+    JobHandler handler = handlers.get(job.getType());
+    Job.Status status;
+    String result = null;
+    String error = null;
+    MDC.put(MDC_JOB_ID, Long.toString(job.getId()));
+    try {
+      log.info("job {} ({}) started on {}: {}", job.getId(), job.getType(), workerId, job.getDescription());
+      result = objectMapper.writeValueAsString(handler.run(context));
+      status = Job.Status.COMPLETED;
+      log.info("job {} ({}) completed", job.getId(), job.getType());
+    } catch (JobCancelledException e) {
+      status = Job.Status.CANCELLED;
+      error = e.getMessage();
+      log.info("job {} ({}) cancelled", job.getId(), job.getType());
+    } catch (Exception e) {
+      status = Job.Status.FAILED;
+      error = String.valueOf(e);
+      log.warn("job {} ({}) failed", job.getId(), job.getType(), e);
+    } finally {
+      MDC.remove(MDC_JOB_ID);
+    }
+    JobContext.Snapshot snapshot = context.snapshot();
+    if (jobRepository.finish(job.getId(), workerId, status, now(), result, truncate(error),
+        snapshot.progress(), snapshot.total(), snapshot.progressMessage(), snapshot.log()) == 0) {
+      log.warn("job {} ({}) finished as {} here, but was meanwhile recovered by another worker",
+          job.getId(), job.getType(), status);
+    }
+  }
+
+  private void discard(Job job) {
+    JobHandler handler = handlers.get(job.getType());
+    if (handler == null) {
+      return;
+    }
+    try {
+      handler.discard(job.getParams());
+    } catch (RuntimeException e) {
+      log.warn("could not release what job {} ({}) held", job.getId(), job.getType(), e);
+    }
+  }
+
+  private static String truncate(String error) {
+    return error == null || error.length() <= 4000 ? error : error.substring(0, 4000);
+  }
+
+  private static LocalDateTime now() {
+    return LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+  }
+
+  private static String hostName() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      return "localhost";
+    }
+  }
+
+  /**
+   * Copies the log events of job worker threads into the log of the job
+   * they are running, found through the jobId the worker puts in the MDC.
+   */
+  private class JobLogAppender extends AppenderBase<ILoggingEvent> {
+    @Override
+    protected void append(ILoggingEvent event) {
+      String jobId = event.getMDCPropertyMap().get(MDC_JOB_ID);
+      if (jobId == null) {
+        return;
+      }
+      JobContext context = running.get(Long.valueOf(jobId));
+      if (context == null) {
+        return;
+      }
+      String logger = event.getLoggerName().substring(event.getLoggerName().lastIndexOf('.') + 1);
+      StringBuilder line = new StringBuilder("%s %-5s %s - %s".formatted(
+          LocalDateTime.ofInstant(Instant.ofEpochMilli(event.getTimeStamp()), ZoneId.systemDefault())
+              .truncatedTo(ChronoUnit.MILLIS),
+          event.getLevel(), logger, event.getFormattedMessage()));
+      String prefix = "\n  ";
+      for (IThrowableProxy cause = event.getThrowableProxy(); cause != null; cause = cause.getCause()) {
+        line.append(prefix).append(cause.getClassName()).append(": ").append(cause.getMessage());
+        prefix = "\n  caused by ";
+      }
+      context.appendLog(line.toString());
+    }
+  }
+}
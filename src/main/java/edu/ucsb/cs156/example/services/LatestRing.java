@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed number of slots holding the latest elements added; each new one
+ * overwrites the oldest. Adding is one atomic increment and one store.
+ */
+class LatestRing<E> {
+  private final AtomicReferenceArray<E> slots;
+  private final AtomicLong next = new AtomicLong();
+
+  LatestRing(int size) {
+    slots = new AtomicReferenceArray<>(size);
+  }
+
+  void add(E element) {
+    slots.set((int) (next.getAndIncrement() % slots.length()), element);
+  }
+
+  /**
+   * @return the elements held, newest first
+   */
+  List<E> toList() {
+    List<E> elements = new ArrayList<>(slots.length());
+    long last = next.get() - 1;
+    for (int i = 0; i < slots.length(); i++) {
+      E element = slots.get((int) Math.floorMod(last - i, (long) slots.length()));
+      if (element != null) {
+        elements.add(element);
+      }
+    }
+    return elements;
+  }
+}
@@ -0,0 +1,208 @@
+package edu.ucsb.cs156.example.services;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.entities.LeaderLock;
+import edu.ucsb.cs156.example.errors.LeaseLostException;
+import edu.ucsb.cs156.example.models.LeaderLease;
+import edu.ucsb.cs156.example.repositories.LeaderLockRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Locks shared by every instance of the app through the leaderlocks table,
+ * so that work such as scheduled housekeeping runs on one instance at a
+ * time rather than on all of them (see @ClusterLock).
+ *
+ * A lock is held on a lease: if its holder dies, or runs longer than the
+ * lease, another instance may take it once the lease runs out. Each time
+ * the lock is taken its fencing token goes up, so work that must not run
+ * twice can check, with {@link #checkHeld()}, that its token is still the
+ * current one before each write. Leases are compared against the clocks of
+ * the instances, which must agree to well within a lease.
+ *
+ * How long taking a lock takes is published as the app.leaderlock.acquire
+ * timer, tagged with the lock and whether it was acquired or busy; work
+ * that outlived its lease counts towards app.leaderlock.lost.
+ */
+@Slf4j
+@Service
+public class LeaderLockService {
+
+  @Autowired
+  LeaderLockRepository leaderLockRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  // defaults to host name and process id: a restarted instance is a new owner
+  @Value("${app.leaderLock.owner:}")
+  private String owner;
+
+  private TransactionTemplate transactions;
+
+  private final ThreadLocal<LeaderLease> current = new ThreadLocal<>();
+
+  /**
+   * Work done while holding a lock; may throw anything the caller can.
+   */
+  @FunctionalInterface
+  public interface LockedWork {
+    void run() throws Throwable;
+  }
+
+  @PostConstruct
+  void createTransactions() {
+    if (owner.isBlank()) {
+      owner = "%s-%d".formatted(hostName(), ProcessHandle.current().pid());
+    }
+    transactions = new TransactionTemplate(transactionManager);
+    transactions.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+  }
+
+  public String getOwner() {
+    return owner;
+  }
+
+  /**
+   * Takes the lock called name for lease, unless another instance holds it.
+   */
+  public Optional<LeaderLease> tryAcquire(String name, Duration lease) {
+    Timer.Sample sample = Timer.start(meterRegistry);
+    String outcome = "error";
+    try {
+      Optional<LeaderLease> acquired = acquire(name, lease);
+      outcome = acquired.isPresent() ? "acquired" : "busy";
+      return acquired;
+    } finally {
+      sample.stop(meterRegistry.timer("app.leaderlock.acquire", "lock", name, "outcome", outcome));
+    }
+  }
+
+  private Optional<LeaderLease> acquire(String name, Duration lease) {
+    LocalDateTime now = now();
+    LocalDateTime leaseUntil = now.plus(lease);
+    try {
+      return transactions.execute(status -> {
+        if (leaderLockRepository.takeExpired(name, owner, now, leaseUntil) == 0) {
+          if (leaderLockRepository.existsById(name)) {
+            return Optional.empty();
+          }
+          leaderLockRepository.create(name, owner, now, leaseUntil);
+        }
+        LeaderLock lock = leaderLockRepository.findById(name).orElseThrow();
+        return Optional.of(new LeaderLease(name, owner, lock.getFencingToken(), now, leaseUntil));
+      });
+    } catch (DataIntegrityViolationException e) {
+      // another instance created the lock at the same moment
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * @return whether lease is still the current holder of its lock
+   */
+  public boolean isHeld(LeaderLease lease) {
+    return leaderLockRepository.existsByNameAndFencingTokenAndLeaseUntilAfter(lease.name(), lease.fencingToken(), now());
+  }
+
+  /**
+   * Lets the lock go. It stays taken until holdAtLeast after it was
+   * acquired, so that instances whose schedules fire a little later do not
+   * run the same work again straight away.
+   */
+  public void release(LeaderLease lease, Duration holdAtLeast) {
+    LocalDateTime now = now();
+    LocalDateTime heldUntil = lease.acquiredAt().plus(holdAtLeast);
+    LocalDateTime leaseUntil = heldUntil.isAfter(now) ? heldUntil : now;
+    Integer updated = transactions.execute(status ->
+        leaderLockRepository.extend(lease.name(), lease.fencingToken(), now, leaseUntil));
+    if (updated == null || updated == 0) {
+      meterRegistry.counter("app.leaderlock.lost", "lock", lease.name()).increment();
+      log.warn("lock {} (token {}) ran past its lease of {}; another instance may have run the same work",
+          lease.name(), lease.fencingToken(), Duration.between(lease.acquiredAt(), lease.leaseUntil()));
+    }
+  }
+
+  /**
+   * Runs work if this instance can take the lock called name, and lets the
+   * lock go afterwards; otherwise does nothing.
+   *
+   * @return whether work ran
+   */
+  public boolean runExclusively(String name, Duration lease, Duration holdAtLeast, LockedWork work) throws Throwable {
+    Optional<LeaderLease> acquired = tryAcquire(name, lease);
+    if (acquired.isEmpty()) {
+      log.debug("lock {} is held by another instance; skipping", name);
+      return false;
+    }
+    LeaderLease outer = current.get();
+    current.set(acquired.get());
+    try {
+      work.run();
+    } finally {
+      if (outer == null) {
+        current.remove();
+      } else {
+        current.set(outer);
+      }
+      release(acquired.get(), holdAtLeast);
+    }
+    return true;
+  }
+
+  /**
+   * @return the lease the calling thread's work runs under, if any
+   */
+  public Optional<LeaderLease> currentLease() {
+    return Optional.ofNullable(current.get());
+  }
+
+  /**
+   * For work run by {@link #runExclusively}: checks that its lock has not
+   * passed to another instance in the meantime.
+   *
+   * @throws LeaseLostException when it has
+   */
+  public void checkHeld() {
+    LeaderLease lease = current.get();
+    if (lease == null) {
+      throw new IllegalStateException("not running under a leader lock");
+    }
+    if (!isHeld(lease)) {
+      throw new LeaseLostException("lock %s (token %d) is no longer held by %s"
+          .formatted(lease.name(), lease.fencingToken(), owner));
+    }
+  }
+
+  private static LocalDateTime now() {
+    return LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+  }
+
+  private static String hostName() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      return "localhost";
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.Job;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Deleting the solved help requests made before a given time, run as a job
+ * (DELETE /api/helprequests/solved?async=true). Deleting them again is
+ * harmless, so an interrupted purge is simply run again.
+ */
+@Slf4j
+@Service
+public class PurgeSolvedHelpRequestsJobHandler implements JobHandler {
+  public static final String TYPE = "purgeSolvedHelpRequests";
+
+  // lazily, as JobService needs every handler first
+  @Lazy
+  @Autowired
+  JobService jobService;
+
+  @Autowired
+  HelpRequestsService helpRequestsService;
+
+  @Autowired
+  ObjectMapper objectMapper;
+
+  record Params(LocalDateTime before) {
+  }
+
+  public Job submit(LocalDateTime before, String createdBy) {
+    return jobService.submit(TYPE, "delete solved help requests made before " + before, new Params(before), createdBy);
+  }
+
+  @Override
+  public String type() {
+    return TYPE;
+  }
+
+  @Override
+  public boolean resumable() {
+    return true;
+  }
+
+  @Override
+  public Object run(JobContext job) throws IOException {
+    Params params = objectMapper.readValue(job.getParams(), Params.class);
+    int count = helpRequestsService.bulkDeleteSolvedBefore(params.before());
+    job.progress(count, (long) count, "%d help requests deleted".formatted(count));
+    log.info("deleted {} solved help requests made before {}", count, params.before());
+    return Map.of("count", count);
+  }
+}
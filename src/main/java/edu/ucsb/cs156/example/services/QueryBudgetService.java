@@ -0,0 +1,69 @@
+package edu.ucsb.cs156.example.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.errors.QueryBudgetExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds each /api/ request, once handled and before its response is
+ * committed (see ServerTimingFilter), to the @QueryBudget of the controller
+ * method that handled it: the number of SQL statements it may run, counted
+ * by StatementTimer (see RequestTimings).
+ *
+ * app.queryBudget.mode says what happens to a request over its budget:
+ *
+ * - OFF: nothing
+ * - COUNT: it is counted in app.querybudget.exceeded{handler}
+ * - LOG: it is counted and logged as a warning
+ * - FAIL: it is counted and logged, and a QueryBudgetExceededException is
+ *   thrown, as it is for a request whose controller method has no budget.
+ *   Nothing handles it, so this is for tests, where it fails the test that
+ *   made the request (see @QueryBudgetTest).
+ */
+@Slf4j
+@Service
+public class QueryBudgetService {
+  static final String METER = "app.querybudget.exceeded";
+
+  public enum Mode {
+    OFF, COUNT, LOG, FAIL
+  }
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Value("${app.queryBudget.mode:LOG}")
+  private Mode mode;
+
+  public void check(RequestTimings timings) {
+    String handler = timings.getHandler();
+    if (mode == Mode.OFF || handler == null) {
+      return;
+    }
+    int budget = timings.getQueryBudget();
+    int statements = timings.getStatements();
+    if (budget < 0) {
+      if (mode == Mode.FAIL) {
+        throw new QueryBudgetExceededException(
+            "%s has no @QueryBudget; it ran %d SQL statements".formatted(handler, statements));
+      }
+      return;
+    }
+    if (statements <= budget) {
+      return;
+    }
+    meterRegistry.counter(METER, "handler", handler).increment();
+    if (mode == Mode.COUNT) {
+      return;
+    }
+    String message = "%s ran %d SQL statements; its @QueryBudget is %d".formatted(handler, statements, budget);
+    log.warn(message);
+    if (mode == Mode.FAIL) {
+      throw new QueryBudgetExceededException(message);
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.services;
+
+/**
+ * The repository method the current thread is in, e.g.
+ * UCSBDateRepository.findById, so that the SQL it runs can be put down to
+ * it. Set by RepositoryTracingAspect; the outermost call wins when one
+ * repository method calls another.
+ */
+public final class QueryOrigin {
+  private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+  private QueryOrigin() {
+  }
+
+  /**
+   * @return what to pass to exit
+   */
+  public static String enter(String repositoryMethod) {
+    String previous = CURRENT.get();
+    if (previous == null) {
+      CURRENT.set(repositoryMethod);
+    }
+    return previous;
+  }
+
+  public static void exit(String previous) {
+    if (previous == null) {
+      CURRENT.remove();
+    }
+  }
+
+  /**
+   * @return null outside repository methods
+   */
+  public static String current() {
+    return CURRENT.get();
+  }
+}
@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.models.RecommendationRequestSummary;
+import edu.ucsb.cs156.example.repositories.EntityRepository;
+import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+
+@Service
+public class RecommendationRequestService extends EntityService<RecommendationRequest, Long> {
+
+  @Autowired
+  RecommendationRequestRepository recommendationRequestRepository;
+
+  public RecommendationRequestService() {
+    super(RecommendationRequest.class, RecommendationRequest::getId);
+  }
+
+  @Override
+  protected EntityRepository<RecommendationRequest, Long> repository() {
+    return recommendationRequestRepository;
+  }
+
+  @Transactional(readOnly = true)
+  public List<RecommendationRequestSummary> findAllSummaries() {
+    return recommendationRequestRepository.findAllSummaries();
+  }
+
+  @Transactional
+  public int bulkDelete(List<Long> ids) {
+    return deleteExisting(ids, recommendationRequestRepository::bulkDelete);
+  }
+}
@@ -0,0 +1,162 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Where the time of one request went, for its Server-Timing header (see
+ * ServerTimingFilter): the SQL statements it ran and the time they took,
+ * the time in controller methods and the work they handed to a bulkhead,
+ * and the time spent serializing the response; and which controller method
+ * handled it, for QueryBudgetService.
+ *
+ * Bound to the thread working on the request, like TraceContext. Adding to
+ * it is a ThreadLocal read and an atomic add, and allocates nothing; without
+ * a bound request it is just the ThreadLocal read.
+ */
+public final class RequestTimings {
+  private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+
+  private final long startNanos = System.nanoTime();
+  private final AtomicInteger statements = new AtomicInteger();
+  private final AtomicLong dbNanos = new AtomicLong();
+  private final AtomicLong controllerNanos = new AtomicLong();
+  private final AtomicLong serializationNanos = new AtomicLong();
+  // when the serialization in progress started; 0 when none is
+  private volatile long serializationStartNanos;
+  private final AtomicBoolean reported = new AtomicBoolean();
+  // the first controller method the request reached, and its @QueryBudget; -1 for none
+  private volatile String handler;
+  private volatile int queryBudget = -1;
+
+  public static RequestTimings current() {
+    return CURRENT.get();
+  }
+
+  public static void bind(RequestTimings timings) {
+    CURRENT.set(timings);
+  }
+
+  public static void unbind() {
+    CURRENT.remove();
+  }
+
+  public static void statementExecuted(long nanos) {
+    RequestTimings timings = CURRENT.get();
+    if (timings != null) {
+      timings.statements.incrementAndGet();
+      timings.dbNanos.addAndGet(nanos);
+    }
+  }
+
+  public static void controllerRan(long nanos) {
+    RequestTimings timings = CURRENT.get();
+    if (timings != null) {
+      timings.controllerNanos.addAndGet(nanos);
+    }
+  }
+
+  /**
+   * Records the controller method handling the request, unless one already
+   * is.
+   */
+  public static void handlerReached(String handler, int queryBudget) {
+    RequestTimings timings = CURRENT.get();
+    if (timings != null && timings.handler == null) {
+      timings.queryBudget = queryBudget;
+      timings.handler = handler;
+    }
+  }
+
+  /**
+   * @return the start, to pass to serializationFinished
+   */
+  public static long serializationStarted() {
+    long start = System.nanoTime();
+    RequestTimings timings = CURRENT.get();
+    if (timings != null) {
+      timings.serializationStartNanos = start;
+    }
+    return start;
+  }
+
+  public static void serializationFinished(long start) {
+    RequestTimings timings = CURRENT.get();
+    if (timings != null) {
+      timings.serializationNanos.addAndGet(System.nanoTime() - start);
+      timings.serializationStartNanos = 0;
+    }
+  }
+
+  /**
+   * @return work that, on whichever thread runs it, adds to the current
+   *         thread's timings, counting its own time as controller time
+   */
+  public static <T> Supplier<T> wrap(Supplier<T> work) {
+    RequestTimings timings = CURRENT.get();
+    if (timings == null) {
+      return work;
+    }
+    return () -> {
+      RequestTimings previous = CURRENT.get();
+      CURRENT.set(timings);
+      long start = System.nanoTime();
+      try {
+        return work.get();
+      } finally {
+        timings.controllerNanos.addAndGet(System.nanoTime() - start);
+        CURRENT.set(previous);
+      }
+    };
+  }
+
+  public int getStatements() {
+    return statements.get();
+  }
+
+  /**
+   * @return null when the request reached no controller method
+   */
+  public String getHandler() {
+    return handler;
+  }
+
+  /**
+   * @return -1 when the controller method has no @QueryBudget
+   */
+  public int getQueryBudget() {
+    return queryBudget;
+  }
+
+  /**
+   * @return true the first time it is called, when the header is due
+   */
+  public boolean markReported() {
+    return reported.compareAndSet(false, true);
+  }
+
+  /**
+   * The Server-Timing header value as of now, durations in milliseconds. A
+   * serialization still in progress counts up to now.
+   */
+  public String serverTiming() {
+    long now = System.nanoTime();
+    long serialization = serializationNanos.get();
+    long inProgress = serializationStartNanos;
+    if (inProgress != 0) {
+      serialization += now - inProgress;
+    }
+    int count = statements.get();
+    return String.format(Locale.ROOT,
+        "db;dur=%.1f;desc=\"%d SQL statement%s\", controller;dur=%.1f, ser;dur=%.1f, total;dur=%.1f",
+        millis(dbNanos.get()), count, count == 1 ? "" : "s", millis(controllerNanos.get()), millis(serialization),
+        millis(now - startNanos));
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+}
@@ -0,0 +1,173 @@
+package edu.ucsb.cs156.example.services;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.config.StatementListener;
+import edu.ucsb.cs156.example.models.QueryStats;
+import edu.ucsb.cs156.example.models.SlowQuery;
+import edu.ucsb.cs156.example.models.Trace;
+
+/**
+ * Which SQL the app spends its database time on, for GET
+ * /api/admin/queries.
+ *
+ * Each statement StatementTimer reports is reduced to a fingerprint:
+ * its SQL with string and number literals replaced by ? and lists of ?
+ * collapsed, so "where id in (?, ?)" and "where id in (?, ?, ?)" are one
+ * query. Count, total time and maximum time are kept per fingerprint, with
+ * the repository method that ran it (see QueryOrigin), for at most
+ * app.slowQueries.maxFingerprints fingerprints; statements past that are
+ * tallied under "other". Fingerprints are worked out once per distinct SQL
+ * string, so a statement seen before costs two map lookups and a few adds.
+ *
+ * Statements taking app.slowQueries.thresholdMillis or longer are also kept
+ * one by one, the latest app.slowQueries.bufferSize of them, with their
+ * fingerprint in place of their SQL so that no value in them is kept.
+ */
+@Service
+public class SlowQueryService implements StatementListener {
+  static final String OTHER = "other";
+
+  private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+  private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w$.])\\d+(?:\\.\\d+)?(?![\\w$])");
+  private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  @Value("${app.slowQueries.thresholdMillis:100}")
+  private long thresholdMillis;
+
+  @Value("${app.slowQueries.bufferSize:200}")
+  private int bufferSize;
+
+  @Value("${app.slowQueries.maxFingerprints:1000}")
+  private int maxFingerprints;
+
+  public enum SortBy {
+    TOTAL, COUNT, MAX, MEAN
+  }
+
+  private static final class Tally {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private volatile String repositoryMethod;
+  }
+
+  private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+  private final Map<String, Tally> tallies = new ConcurrentHashMap<>();
+  private LatestRing<SlowQuery> slow;
+  private long thresholdNanos;
+
+  @PostConstruct
+  void createBuffer() {
+    slow = new LatestRing<>(bufferSize);
+    thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+  }
+
+  @Override
+  public void executed(String sql, long nanos) {
+    String fingerprint = fingerprintOf(sql);
+    Tally tally = tallies.get(fingerprint);
+    if (tally == null) {
+      if (tallies.size() >= maxFingerprints) {
+        fingerprint = OTHER;
+      }
+      tally = tallies.computeIfAbsent(fingerprint, key -> new Tally());
+    }
+    tally.count.increment();
+    tally.totalNanos.add(nanos);
+    tally.maxNanos.accumulateAndGet(nanos, Math::max);
+    String origin = QueryOrigin.current();
+    if (origin != null && !origin.equals(tally.repositoryMethod)) {
+      tally.repositoryMethod = origin;
+    }
+
+    if (nanos >= thresholdNanos) {
+      Trace trace = TraceContext.current();
+      slow.add(SlowQuery.builder()
+          .fingerprint(fingerprint)
+          .repositoryMethod(origin)
+          .durationMillis(millis(nanos))
+          .occurredAt(LocalDateTime.now())
+          .traceId(trace == null ? null : trace.getId())
+          .build());
+    }
+  }
+
+  private String fingerprintOf(String sql) {
+    if (sql == null) {
+      return OTHER;
+    }
+    String fingerprint = fingerprints.get(sql);
+    if (fingerprint == null) {
+      fingerprint = fingerprint(sql);
+      // SQL built with literals in it could otherwise fill the map
+      if (fingerprints.size() < maxFingerprints * 4) {
+        fingerprints.put(sql, fingerprint);
+      }
+    }
+    return fingerprint;
+  }
+
+  static String fingerprint(String sql) {
+    String fingerprint = STRING_LITERAL.matcher(sql).replaceAll("?");
+    fingerprint = NUMBER_LITERAL.matcher(fingerprint).replaceAll("?");
+    fingerprint = PARAMETER_LIST.matcher(fingerprint).replaceAll("(?, ...)");
+    return WHITESPACE.matcher(fingerprint).replaceAll(" ").trim();
+  }
+
+  /**
+   * @return the limit fingerprints with the most of sortBy
+   */
+  public List<QueryStats> top(SortBy sortBy, int limit) {
+    Comparator<QueryStats> order = switch (sortBy) {
+      case TOTAL -> Comparator.comparingDouble(QueryStats::getTotalMillis);
+      case COUNT -> Comparator.comparingLong(QueryStats::getCount);
+      case MAX -> Comparator.comparingDouble(QueryStats::getMaxMillis);
+      case MEAN -> Comparator.comparingDouble(QueryStats::getMeanMillis);
+    };
+    return tallies.entrySet().stream()
+        .map(entry -> stats(entry.getKey(), entry.getValue()))
+        .filter(stats -> stats.getCount() > 0)
+        .sorted(order.reversed())
+        .limit(limit)
+        .toList();
+  }
+
+  /**
+   * @return the latest statements over the threshold, newest first
+   */
+  public List<SlowQuery> slowest() {
+    return slow.toList();
+  }
+
+  private static QueryStats stats(String fingerprint, Tally tally) {
+    long count = tally.count.sum();
+    long totalNanos = tally.totalNanos.sum();
+    return QueryStats.builder()
+        .fingerprint(fingerprint)
+        .repositoryMethod(tally.repositoryMethod)
+        .count(count)
+        .totalMillis(millis(totalNanos))
+        .maxMillis(millis(tally.maxNanos.get()))
+        .meanMillis(count == 0 ? 0 : millis(totalNanos / count))
+        .build();
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+}
@@ -0,0 +1,328 @@
+package edu.ucsb.cs156.example.services;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import edu.ucsb.cs156.example.aop.ClusterLock;
+import edu.ucsb.cs156.example.entities.SyncBucket;
+import edu.ucsb.cs156.example.entities.SyncRowHash;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+import edu.ucsb.cs156.example.models.MultiGetResult;
+import edu.ucsb.cs156.example.models.SyncDiff;
+import edu.ucsb.cs156.example.models.SyncRequest;
+import edu.ucsb.cs156.example.repositories.SyncBucketRepository;
+import edu.ucsb.cs156.example.repositories.SyncRowHashRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps a two-level hash tree of each reference table that clients copy for
+ * offline use, so that POST /api/sync/{entity} can send a client only the
+ * rows of the buckets where its copy differs, without a change log.
+ *
+ * Each row falls in one of app.sync.buckets buckets by its id. Its hash is
+ * the first 8 bytes of the SHA-256 of its JSON (properties sorted), a
+ * bucket's hash is the XOR of its rows' hashes, and the root is the SHA-256
+ * of the bucket hashes in order. A write through the entity services swaps
+ * the row's old hash for its new one in its bucket, in the same transaction;
+ * the buckets are changed just before commit, under a lock on the table's
+ * buckets, so concurrent writers do not lose each other's changes.
+ *
+ * Writes not made row by row (a CSV import) rebuild the table's tree
+ * afterwards from the rows. The trees are kept in the database, so a start
+ * of the app rebuilds only those that are missing or have another number of
+ * buckets than app.sync.buckets, on one instance for the whole cluster.
+ */
+@Slf4j
+@Service
+public class SyncTreeService {
+
+  static final List<Class<?>> SYNCED = List.of(UCSBDiningCommons.class, UCSBOrganization.class, UCSBDate.class,
+      UCSBDiningCommonsMenuItem.class);
+
+  private static final ObjectMapper CANONICAL = JsonMapper.builder()
+      .addModule(new JavaTimeModule())
+      .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+      .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+      .build();
+
+  @Autowired
+  SyncRowHashRepository syncRowHashRepository;
+
+  @Autowired
+  SyncBucketRepository syncBucketRepository;
+
+  // the entity services record their writes here, so they are looked up when needed
+  @Autowired
+  ObjectProvider<EntityService<?, ?>> entityServices;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Value("${app.sync.buckets:64}")
+  private int bucketCount;
+
+  private TransactionTemplate transactions;
+
+  /**
+   * How much each bucket's hash changes, per table, when the transaction
+   * that made the changes commits.
+   */
+  private class PendingBuckets implements TransactionSynchronization {
+    final Map<String, Map<Integer, Long>> deltas = new TreeMap<>();
+
+    @Override
+    public void beforeCommit(boolean readOnly) {
+      deltas.forEach(SyncTreeService.this::apply);
+    }
+  }
+
+  @PostConstruct
+  void createTransactions() {
+    transactions = new TransactionTemplate(transactionManager);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  @ClusterLock(name = "sync-tree-rebuild", lease = "30m")
+  public void rebuildMissing() {
+    for (Class<?> entityType : SYNCED) {
+      String entity = entityType.getSimpleName();
+      if (syncBucketRepository.countByEntity(entity) != bucketCount) {
+        rebuild(entity);
+      }
+    }
+  }
+
+  public static boolean isSynced(Class<?> entityType) {
+    return SYNCED.contains(entityType);
+  }
+
+  public void recordUpsert(Class<?> entityType, Object id, Object row) {
+    if (!isSynced(entityType)) {
+      return;
+    }
+    String entity = entityType.getSimpleName();
+    String entityId = id.toString();
+    long hash = hashOf(row);
+    Optional<SyncRowHash> old = syncRowHashRepository.findForUpdate(entity, entityId);
+    long oldHash = old.map(SyncRowHash::getHash).orElse(0L);
+    if (old.isPresent() && oldHash == hash) {
+      return;
+    }
+    int bucket = bucketOf(entityId);
+    syncRowHashRepository.save(SyncRowHash.builder().entity(entity).entityId(entityId).bucket(bucket).hash(hash).build());
+    pending().deltas.computeIfAbsent(entity, e -> new TreeMap<>()).merge(bucket, oldHash ^ hash, (a, b) -> a ^ b);
+  }
+
+  public void recordDelete(Class<?> entityType, Object id) {
+    if (!isSynced(entityType)) {
+      return;
+    }
+    String entity = entityType.getSimpleName();
+    syncRowHashRepository.findForUpdate(entity, id.toString()).ifPresent(old -> {
+      syncRowHashRepository.delete(old);
+      pending().deltas.computeIfAbsent(entity, e -> new TreeMap<>()).merge(old.getBucket(), old.getHash(),
+          (a, b) -> a ^ b);
+    });
+  }
+
+  public void recordDeletes(Class<?> entityType, Collection<?> ids) {
+    ids.forEach(id -> recordDelete(entityType, id));
+  }
+
+  private PendingBuckets pending() {
+    if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new IllegalStateException("sync tree changes are recorded in the transaction that makes them");
+    }
+    return TransactionSynchronizationManager.getSynchronizations().stream()
+        .filter(PendingBuckets.class::isInstance)
+        .map(PendingBuckets.class::cast)
+        .findFirst()
+        .orElseGet(() -> {
+          PendingBuckets created = new PendingBuckets();
+          TransactionSynchronizationManager.registerSynchronization(created);
+          return created;
+        });
+  }
+
+  private void apply(String entity, Map<Integer, Long> deltas) {
+    List<SyncBucket> buckets = syncBucketRepository.findByEntityForUpdate(entity);
+    for (SyncBucket bucket : buckets) {
+      Long delta = deltas.get(bucket.getBucket());
+      if (delta != null) {
+        bucket.setHash(bucket.getHash() ^ delta);
+      }
+    }
+    syncBucketRepository.saveAll(buckets);
+  }
+
+  /**
+   * Recomputes a table's tree from its rows, in one transaction; a no-op for
+   * tables that are not synced. Writers that commit meanwhile wait for it.
+   *
+   * @param entityName the simple name of the entity class
+   */
+  public void rebuild(String entityName) {
+    Optional<EntityService<?, ?>> service = syncedService(entityName);
+    if (service.isEmpty()) {
+      return;
+    }
+    try {
+      int changed = transactions.execute(status -> rebuildTree(entityName, service.get()));
+      log.info("rebuilt the sync tree of {}: {} row hashes changed", entityName, changed);
+    } catch (DataIntegrityViolationException e) {
+      // another instance created the buckets meanwhile
+      log.info("the sync tree of {} was rebuilt by another instance", entityName);
+    }
+  }
+
+  private <T, ID> int rebuildTree(String entity, EntityService<T, ID> service) {
+    Map<Integer, SyncBucket> buckets = new TreeMap<>();
+    for (SyncBucket bucket : syncBucketRepository.findByEntityForUpdate(entity)) {
+      if (bucket.getBucket() < bucketCount) {
+        buckets.put(bucket.getBucket(), bucket);
+      } else {
+        syncBucketRepository.delete(bucket);
+      }
+    }
+    for (int bucket = 0; bucket < bucketCount; bucket++) {
+      buckets.computeIfAbsent(bucket, index -> SyncBucket.builder().entity(entity).bucket(index).build());
+    }
+
+    Map<String, SyncRowHash> stored = new HashMap<>();
+    syncRowHashRepository.findByEntity(entity).forEach(row -> stored.put(row.getEntityId(), row));
+    long[] bucketHashes = new long[bucketCount];
+    List<SyncRowHash> changed = new ArrayList<>();
+    for (T row : service.findAll()) {
+      String entityId = service.getId(row).toString();
+      SyncRowHash hash = SyncRowHash.builder().entity(entity).entityId(entityId).bucket(bucketOf(entityId))
+          .hash(hashOf(row)).build();
+      bucketHashes[hash.getBucket()] ^= hash.getHash();
+      if (!hash.equals(stored.remove(entityId))) {
+        changed.add(hash);
+      }
+    }
+    syncRowHashRepository.saveAll(changed);
+    syncRowHashRepository.deleteAll(stored.values());
+    buckets.values().forEach(bucket -> bucket.setHash(bucketHashes[bucket.getBucket()]));
+    syncBucketRepository.saveAll(buckets.values());
+    return changed.size() + stored.size();
+  }
+
+  /**
+   * @throws InvalidQueryException when the table is not one clients can sync
+   */
+  @Transactional(readOnly = true)
+  public SyncDiff diff(String entityName, SyncRequest request) {
+    EntityService<?, ?> service = syncedService(entityName)
+        .orElseThrow(() -> new InvalidQueryException("%s cannot be synced; the tables that can are %s".formatted(
+            entityName, SYNCED.stream().map(Class::getSimpleName).collect(Collectors.joining(",")))));
+
+    List<SyncBucket> buckets = syncBucketRepository.findByEntityOrderByBucket(entityName);
+    String root = hex(rootOf(buckets));
+    if (root.equals(request.getRoot())) {
+      return SyncDiff.builder().root(root).bucketCount(buckets.size()).buckets(List.of()).build();
+    }
+    // a client whose tree is another shape gets every bucket
+    List<String> theirs = request.getBuckets() != null && request.getBuckets().size() == buckets.size()
+        ? request.getBuckets()
+        : null;
+    Map<Integer, String> differing = new TreeMap<>();
+    for (SyncBucket bucket : buckets) {
+      String hash = hex(bucket.getHash());
+      if (theirs == null || !hash.equals(theirs.get(bucket.getBucket()))) {
+        differing.put(bucket.getBucket(), hash);
+      }
+    }
+
+    Map<Integer, List<Object>> rows = rowsIn(service, entityName, differing.keySet());
+    List<SyncDiff.Bucket> changed = differing.entrySet().stream()
+        .map(bucket -> new SyncDiff.Bucket(bucket.getKey(), bucket.getValue(),
+            rows.getOrDefault(bucket.getKey(), List.of())))
+        .toList();
+    return SyncDiff.builder().root(root).bucketCount(buckets.size()).buckets(changed).build();
+  }
+
+  private <T, ID> Map<Integer, List<Object>> rowsIn(EntityService<T, ID> service, String entity,
+      Collection<Integer> buckets) {
+    Map<String, Integer> bucketOfId = syncRowHashRepository.findByEntityAndBucketIn(entity, buckets).stream()
+        .collect(Collectors.toMap(SyncRowHash::getEntityId, SyncRowHash::getBucket));
+    MultiGetResult<T, ID> found = service.findMany(bucketOfId.keySet().stream().map(service::parseId).toList());
+    Map<Integer, List<Object>> rows = new HashMap<>();
+    for (T row : found.getItems()) {
+      rows.computeIfAbsent(bucketOfId.get(service.getId(row).toString()), bucket -> new ArrayList<>()).add(row);
+    }
+    return rows;
+  }
+
+  private Optional<EntityService<?, ?>> syncedService(String entityName) {
+    return entityServices.orderedStream()
+        .filter(service -> isSynced(service.getEntityType())
+            && service.getEntityType().getSimpleName().equals(entityName))
+        .findFirst();
+  }
+
+  int bucketOf(String entityId) {
+    return Math.floorMod(entityId.hashCode(), bucketCount);
+  }
+
+  static long hashOf(Object row) {
+    try {
+      return ByteBuffer.wrap(sha256().digest(CANONICAL.writeValueAsBytes(row))).getLong();
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("cannot hash " + row.getClass().getSimpleName(), e);
+    }
+  }
+
+  static long rootOf(List<SyncBucket> buckets) {
+    ByteBuffer hashes = ByteBuffer.allocate(Long.BYTES * buckets.size());
+    buckets.forEach(bucket -> hashes.putLong(bucket.getHash()));
+    return ByteBuffer.wrap(sha256().digest(hashes.array())).getLong();
+  }
+
+  static String hex(long hash) {
+    return "%016x".formatted(hash);
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("every Java platform has SHA-256", e);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.function.Supplier;
+
+import edu.ucsb.cs156.example.models.Trace;
+
+/**
+ * The trace of the request the current thread is working on, if it is
+ * being traced, and the way to add spans to it:
+ *
+ *   try (TraceContext.Scope span = TraceContext.span("repository", name)) {
+ *     ...
+ *   }
+ *
+ * Without a trace, span() costs one ThreadLocal read and allocates nothing.
+ */
+public final class TraceContext {
+  private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+
+  /**
+   * An open span; closing it records it.
+   */
+  public interface Scope extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  private static final Scope NONE = () -> {
+  };
+
+  private TraceContext() {
+  }
+
+  public static Trace current() {
+    return CURRENT.get();
+  }
+
+  static void bind(Trace trace) {
+    CURRENT.set(trace);
+  }
+
+  static void unbind() {
+    CURRENT.remove();
+  }
+
+  public static Scope span(String kind, String name) {
+    Trace trace = CURRENT.get();
+    if (trace == null) {
+      return NONE;
+    }
+    long startNanos = System.nanoTime();
+    return () -> trace.addSpan(kind, name, startNanos, System.nanoTime());
+  }
+
+  /**
+   * Records the time from the start of the request to the first handler
+   * method as the filters span.
+   */
+  public static void handlerReached() {
+    Trace trace = CURRENT.get();
+    if (trace != null && trace.reachHandler()) {
+      trace.addSpan("filters", "filter chain", trace.getStartNanos(), System.nanoTime());
+    }
+  }
+
+  /**
+   * @return work that, on whichever thread runs it, adds to the current
+   *         thread's trace, inside a span of its own
+   */
+  public static <T> Supplier<T> wrap(String kind, String name, Supplier<T> work) {
+    Trace trace = CURRENT.get();
+    if (trace == null) {
+      return work;
+    }
+    return () -> {
+      Trace previous = CURRENT.get();
+      CURRENT.set(trace);
+      try (Scope span = span(kind, name)) {
+        return work.get();
+      } finally {
+        CURRENT.set(previous);
+      }
+    };
+  }
+}
@@ -0,0 +1,120 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.models.Trace;
+
+/**
+ * Starts and finishes the trace of each /api/ request (see TracingFilter)
+ * and keeps the interesting ones in memory for GET /api/admin/traces.
+ *
+ * Whether to keep a trace is decided when it finishes (tail sampling): one
+ * that took at least app.tracing.slowMillis is kept as slow, one that ended
+ * with a 5xx as error, and of the rest a fraction app.tracing.sampleRate is
+ * kept as sampled. Slow and error traces go into one ring buffer and sampled
+ * ones into another, each holding the latest app.tracing.bufferSize traces,
+ * so a burst of fast requests never pushes a slow one out.
+ */
+@Service
+public class TraceService {
+  @Value("${app.tracing.enabled:true}")
+  private boolean enabled;
+
+  @Value("${app.tracing.bufferSize:256}")
+  private int bufferSize;
+
+  @Value("${app.tracing.maxSpans:500}")
+  private int maxSpans;
+
+  @Value("${app.tracing.slowMillis:500}")
+  private long slowMillis;
+
+  @Value("${app.tracing.sampleRate:0.01}")
+  private double sampleRate;
+
+  private LatestRing<Trace> slow;
+  private LatestRing<Trace> sampled;
+
+  @PostConstruct
+  void createBuffers() {
+    slow = new LatestRing<>(bufferSize);
+    sampled = new LatestRing<>(bufferSize);
+  }
+
+  /**
+   * Starts a trace and binds it to the current thread.
+   *
+   * @return null when tracing is off
+   */
+  public Trace start(String method, String path) {
+    if (!enabled) {
+      return null;
+    }
+    Trace trace = new Trace(UUID.randomUUID().toString(), method, path, maxSpans);
+    TraceContext.bind(trace);
+    return trace;
+  }
+
+  /**
+   * Binds a trace started on another thread, for the async dispatch of the
+   * same request.
+   */
+  public void resume(Trace trace) {
+    TraceContext.bind(trace);
+  }
+
+  /**
+   * Unbinds the current thread's trace, leaving it unfinished.
+   */
+  public void suspend() {
+    TraceContext.unbind();
+  }
+
+  /**
+   * Unbinds the trace, and keeps it if it is slow, failed or sampled.
+   */
+  public void finish(Trace trace, int status) {
+    TraceContext.unbind();
+    trace.setStatus(status);
+    trace.setDurationMicros(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - trace.getStartNanos()));
+    if (trace.getDurationMicros() >= TimeUnit.MILLISECONDS.toMicros(slowMillis)) {
+      trace.setKeptBecause("slow");
+      slow.add(trace);
+    } else if (status >= 500) {
+      trace.setKeptBecause("error");
+      slow.add(trace);
+    } else if (ThreadLocalRandom.current().nextDouble() < sampleRate) {
+      trace.setKeptBecause("sampled");
+      sampled.add(trace);
+    }
+  }
+
+  /**
+   * @return the kept traces, newest first
+   */
+  public List<Trace.Summary> list() {
+    List<Trace> kept = slow.toList();
+    kept.addAll(sampled.toList());
+    return kept.stream()
+        .sorted(Comparator.comparing(Trace::getStartedAt).reversed())
+        .map(Trace::summary)
+        .toList();
+  }
+
+  public Optional<Trace> find(String id) {
+    return Stream.concat(slow.toList().stream(), sampled.toList().stream())
+        .filter(trace -> trace.getId().equals(id))
+        .findFirst();
+  }
+}
@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.EntityRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+
+@Service
+public class UCSBDateService extends EntityService<UCSBDate, Long> {
+
+  @Autowired
+  UCSBDateRepository ucsbDateRepository;
+
+  public UCSBDateService() {
+    super(UCSBDate.class, UCSBDate::getId);
+  }
+
+  @Override
+  protected EntityRepository<UCSBDate, Long> repository() {
+    return ucsbDateRepository;
+  }
+
+  @Transactional
+  public int bulkDelete(List<Long> ids) {
+    return deleteExisting(ids, ucsbDateRepository::bulkDelete);
+  }
+}
@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.repositories.EntityRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+
+@Service
+public class UCSBDiningCommonsMenuItemService extends EntityService<UCSBDiningCommonsMenuItem, Long> {
+
+  @Autowired
+  UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+  public UCSBDiningCommonsMenuItemService() {
+    super(UCSBDiningCommonsMenuItem.class, UCSBDiningCommonsMenuItem::getId);
+  }
+
+  @Override
+  protected EntityRepository<UCSBDiningCommonsMenuItem, Long> repository() {
+    return ucsbDiningCommonsMenuItemRepository;
+  }
+
+  @Transactional(readOnly = true)
+  public List<UCSBDiningCommonsMenuItem> findAllByDiningCommonsCodes(Collection<String> diningCommonsCodes) {
+    return findInChunks(diningCommonsCodes, ucsbDiningCommonsMenuItemRepository::findAllByDiningCommonsCodeIn);
+  }
+
+  @Transactional
+  public int bulkDelete(List<Long> ids) {
+    return deleteExisting(ids, ucsbDiningCommonsMenuItemRepository::bulkDelete);
+  }
+}
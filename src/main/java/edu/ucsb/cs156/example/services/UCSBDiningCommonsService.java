@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.repositories.EntityRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+
+@Service
+public class UCSBDiningCommonsService extends EntityService<UCSBDiningCommons, String> {
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  public UCSBDiningCommonsService() {
+    super(UCSBDiningCommons.class, UCSBDiningCommons::getCode);
+  }
+
+  @Override
+  protected EntityRepository<UCSBDiningCommons, String> repository() {
+    return ucsbDiningCommonsRepository;
+  }
+
+  @Transactional
+  public int bulkDelete(List<String> ids) {
+    return deleteExisting(ids, ucsbDiningCommonsRepository::bulkDelete);
+  }
+}
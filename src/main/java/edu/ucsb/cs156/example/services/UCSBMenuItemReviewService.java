@@ -0,0 +1,51 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.entities.UCSBMenuItemReview;
+import edu.ucsb.cs156.example.models.UCSBMenuItemReviewSummary;
+import edu.ucsb.cs156.example.repositories.EntityRepository;
+import edu.ucsb.cs156.example.repositories.UCSBMenuItemReviewRepository;
+
+@Service
+public class UCSBMenuItemReviewService extends EntityService<UCSBMenuItemReview, Long> {
+
+  @Autowired
+  UCSBMenuItemReviewRepository ucsbMenuItemReviewRepository;
+
+  public UCSBMenuItemReviewService() {
+    super(UCSBMenuItemReview.class, UCSBMenuItemReview::getId);
+  }
+
+  @Override
+  protected EntityRepository<UCSBMenuItemReview, Long> repository() {
+    return ucsbMenuItemReviewRepository;
+  }
+
+  @Transactional(readOnly = true)
+  public List<UCSBMenuItemReviewSummary> findAllSummaries() {
+    return ucsbMenuItemReviewRepository.findAllSummaries();
+  }
+
+  @Transactional(readOnly = true)
+  public List<UCSBMenuItemReview> findAllByItemIds(Collection<Long> itemIds) {
+    return findInChunks(itemIds, ucsbMenuItemReviewRepository::findAllByItemIdIn);
+  }
+
+  @Transactional
+  public int bulkDelete(List<Long> ids) {
+    return deleteExisting(ids, ucsbMenuItemReviewRepository::bulkDelete);
+  }
+
+  @Transactional
+  public int bulkDeleteByItemId(long itemId) {
+    int count = ucsbMenuItemReviewRepository.bulkDeleteByItemId(itemId);
+    changeLog.recordReset(getEntityType().getSimpleName());
+    return count;
+  }
+}
@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.repositories.EntityRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+
+@Service
+public class UCSBOrganizationService extends EntityService<UCSBOrganization, String> {
+
+  @Autowired
+  UCSBOrganizationRepository ucsbOrganizationRepository;
+
+  public UCSBOrganizationService() {
+    super(UCSBOrganization.class, UCSBOrganization::getOrgCode);
+  }
+
+  @Override
+  protected EntityRepository<UCSBOrganization, String> repository() {
+    return ucsbOrganizationRepository;
+  }
+
+  @Transactional
+  public int bulkDelete(List<String> ids) {
+    return deleteExisting(ids, ucsbOrganizationRepository::bulkDelete);
+  }
+}
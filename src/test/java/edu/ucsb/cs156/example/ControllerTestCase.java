@@ -12,10 +12,15 @@ import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
 import java.io.UnsupportedEncodingException;
 import java.util.Map;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
 @ActiveProfiles("test")
 @Import(TestConfig.class)
 public abstract class ControllerTestCase {
@@ -35,4 +40,16 @@ public abstract class ControllerTestCase {
     String responseString = result.getResponse().getContentAsString();
     return mapper.readValue(responseString, Map.class);
   }
+
+  /**
+   * For endpoints that return a CompletableFuture (see BulkheadService):
+   * performs the request, checks that the handler went async, and returns
+   * the result of the async dispatch that writes the response.
+   */
+  protected ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+    MvcResult started = mockMvc.perform(requestBuilder)
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    return mockMvc.perform(asyncDispatch(started));
+  }
 }
@@ -0,0 +1,91 @@
+package edu.ucsb.cs156.example.aop;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.controllers.JobsController;
+import edu.ucsb.cs156.example.entities.AuditEvent;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.AuditLogService;
+import edu.ucsb.cs156.example.services.JobService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.OAuth2LoginRequestPostProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.oauth2Login;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = JobsController.class)
+@Import({ TestConfig.class, AuditAspect.class })
+@ImportAutoConfiguration(AopAutoConfiguration.class)
+public class AuditAspectTests extends ControllerTestCase {
+
+  @MockBean
+  JobService jobService;
+
+  @MockBean
+  AuditLogService auditLogService;
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Test
+  public void an_admin_change_is_recorded_with_who_made_it_and_how_it_ended() throws Exception {
+    // arrange
+    when(jobService.cancel(4L)).thenReturn(Job.builder().id(4L).cancelRequested(true).build());
+    when(jobService.cancel(9L)).thenThrow(new EntityNotFoundException(Job.class, 9L));
+
+    OAuth2LoginRequestPostProcessor admin = oauth2Login()
+        .attributes(attributes -> attributes.put("email", "admin@ucsb.edu"))
+        .authorities(new SimpleGrantedAuthority("ROLE_ADMIN"), new SimpleGrantedAuthority("ROLE_USER"));
+
+    // act
+    mockMvc.perform(post("/api/jobs/cancel?id=4").with(admin).with(csrf()))
+        .andExpect(status().isOk());
+    mockMvc.perform(post("/api/jobs/cancel?id=9").with(admin).with(csrf()))
+        .andExpect(status().isNotFound());
+
+    // assert
+    ArgumentCaptor<AuditEvent> events = ArgumentCaptor.forClass(AuditEvent.class);
+    verify(auditLogService, times(2)).record(events.capture());
+    AuditEvent cancelled = events.getAllValues().get(0);
+    assertEquals("admin@ucsb.edu", cancelled.getUserEmail());
+    assertEquals("POST", cancelled.getMethod());
+    assertEquals("/api/jobs/cancel", cancelled.getPath());
+    assertEquals("id=4", cancelled.getParams());
+    assertEquals("JobsController.cancelJob", cancelled.getHandler());
+    assertEquals("OK", cancelled.getOutcome());
+    assertEquals("EntityNotFoundException", events.getAllValues().get(1).getOutcome());
+    // who made the change is read from the principal, not looked up
+    verifyNoInteractions(userRepository);
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_reads_are_not_recorded() throws Exception {
+    when(jobService.find(4L)).thenReturn(Job.builder().id(4L).build());
+
+    mockMvc.perform(get("/api/jobs?id=4"))
+        .andExpect(status().isOk());
+
+    verify(auditLogService, never()).record(any());
+  }
+}
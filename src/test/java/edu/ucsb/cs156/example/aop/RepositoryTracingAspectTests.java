@@ -0,0 +1,63 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import edu.ucsb.cs156.example.config.StatementTimingConfig;
+import edu.ucsb.cs156.example.config.JpaConfig;
+import edu.ucsb.cs156.example.models.QueryStats;
+import edu.ucsb.cs156.example.models.Trace;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.SlowQueryService;
+import edu.ucsb.cs156.example.services.TraceService;
+
+@DataJpaTest
+@Import({ JpaConfig.class, StatementTimingConfig.class, RepositoryTracingAspect.class, TraceService.class,
+    SlowQueryService.class })
+@ImportAutoConfiguration(AopAutoConfiguration.class)
+class RepositoryTracingAspectTests {
+
+  @Autowired
+  UCSBDateRepository ucsbDateRepository;
+
+  @Autowired
+  TraceService traceService;
+
+  @Autowired
+  SlowQueryService slowQueryService;
+
+  @Test
+  void repository_calls_in_a_traced_request_get_a_span_each() {
+    ucsbDateRepository.count();
+
+    Trace trace = traceService.start("GET", "/api/ucsbdates/all");
+    ucsbDateRepository.findAll();
+    ucsbDateRepository.findById(7L);
+    traceService.finish(trace, 200);
+
+    assertEquals(List.of("UCSBDateRepository.findAll", "UCSBDateRepository.findById"),
+        trace.getSpans().stream().map(Trace.Span::name).toList());
+    assertTrue(trace.getSpans().stream().allMatch(span -> span.kind().equals("repository")));
+  }
+
+  @Test
+  void the_sql_a_repository_method_runs_is_put_down_to_it() {
+    ucsbDateRepository.findAllByQuarterYYYYQ("20222");
+    ucsbDateRepository.findAllByQuarterYYYYQ("20223");
+
+    QueryStats stats = slowQueryService.top(SlowQueryService.SortBy.COUNT, 100).stream()
+        .filter(query -> "UCSBDateRepository.findAllByQuarterYYYYQ".equals(query.getRepositoryMethod()))
+        .findFirst().orElseThrow();
+    assertEquals(2, stats.getCount());
+    assertTrue(stats.getFingerprint().startsWith("select"), stats.getFingerprint());
+  }
+}
@@ -0,0 +1,145 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Stands two (or three) in-memory H2 databases in for the primary and its
+ * replicas; each holds one row naming the database, so a query shows where
+ * it was routed.
+ */
+class ReplicaRoutingDataSourceTests {
+
+  private final AtomicLong now = new AtomicLong();
+  private JdbcTemplate jdbc;
+  private TransactionTemplate reads;
+  private TransactionTemplate writes;
+
+  private static DataSource database(String name) {
+    DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1".formatted(name), "sa", "");
+    JdbcTemplate setup = new JdbcTemplate(dataSource);
+    setup.execute("create table if not exists marker (name varchar(20))");
+    setup.execute("delete from marker");
+    setup.update("insert into marker values (?)", name);
+    return dataSource;
+  }
+
+  private static DataSource notStartedYet(String name) {
+    // IFEXISTS makes H2 refuse connections until database(name) creates it
+    return new DriverManagerDataSource("jdbc:h2:mem:%s;IFEXISTS=TRUE".formatted(name), "sa", "");
+  }
+
+  private void route(DataSource primary, List<DataSource> replicas) {
+    ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas,
+        Duration.ofSeconds(5), Duration.ofSeconds(30), now::get);
+    DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+    DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+    jdbc = new JdbcTemplate(dataSource);
+    reads = new TransactionTemplate(transactionManager);
+    reads.setReadOnly(true);
+    writes = new TransactionTemplate(transactionManager);
+  }
+
+  private String readOnly() {
+    return reads.execute(status -> jdbc.queryForObject("select name from marker", String.class));
+  }
+
+  private String readWrite() {
+    return writes.execute(status -> jdbc.queryForObject("select name from marker", String.class));
+  }
+
+  private void signIn(String user) {
+    SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, List.of()));
+  }
+
+  private void advance(long seconds) {
+    now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+  }
+
+  @BeforeEach
+  void startClock() {
+    now.set(System.nanoTime());
+  }
+
+  @AfterEach
+  void signOut() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void read_only_transactions_go_to_the_replica_and_the_rest_to_the_primary() {
+    route(database("primary"), List.of(database("replica")));
+
+    assertEquals("replica", readOnly());
+    assertEquals("primary", readWrite());
+    assertEquals("primary", jdbc.queryForObject("select name from marker", String.class));
+  }
+
+  @Test
+  void reads_are_spread_over_the_replicas() {
+    route(database("primary"), List.of(database("replicaA"), database("replicaB")));
+
+    assertEquals(List.of("replicaA", "replicaB", "replicaA"), List.of(readOnly(), readOnly(), readOnly()));
+  }
+
+  @Test
+  void a_users_reads_stay_on_the_primary_for_a_while_after_their_write() {
+    route(database("primary"), List.of(database("replica")));
+
+    signIn("writer");
+    readWrite();
+    assertEquals("primary", readOnly());
+
+    signIn("someone-else");
+    assertEquals("replica", readOnly());
+
+    signIn("writer");
+    advance(6);
+    assertEquals("replica", readOnly());
+  }
+
+  @Test
+  void a_write_that_rolls_back_does_not_pin_reads_to_the_primary() {
+    route(database("primary"), List.of(database("replica")));
+
+    signIn("writer");
+    writes.execute(status -> {
+      jdbc.queryForObject("select name from marker", String.class);
+      status.setRollbackOnly();
+      return null;
+    });
+
+    assertEquals("replica", readOnly());
+  }
+
+  @Test
+  void unavailable_replicas_are_skipped_and_retried_later() {
+    route(database("primary"), List.of(notStartedYet("down"), database("replica")));
+
+    assertEquals(List.of("replica", "replica", "replica"), List.of(readOnly(), readOnly(), readOnly()));
+
+    route(database("primary"), List.of(notStartedYet("late")));
+    assertEquals("primary", readOnly());
+    database("late");
+    assertEquals("primary", readOnly());
+    advance(31);
+    assertEquals("late", readOnly());
+  }
+}
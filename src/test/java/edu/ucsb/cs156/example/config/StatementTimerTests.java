@@ -0,0 +1,81 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionEventListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import edu.ucsb.cs156.example.services.RequestTimings;
+
+class StatementTimerTests {
+
+  private final List<String> statements = new ArrayList<>();
+  private final RequestTimings timings = new RequestTimings();
+  private final StatementTimer timer = new StatementTimer(
+      () -> List.of((sql, nanos) -> statements.add(sql), (sql, nanos) -> RequestTimings.statementExecuted(nanos)));
+  private JdbcTemplate jdbc;
+
+  @BeforeEach
+  void createTable() {
+    jdbc = new TimedJdbcTemplate(
+        new DriverManagerDataSource("jdbc:h2:mem:instrumented;DB_CLOSE_DELAY=-1", "sa", ""), timer);
+    jdbc.execute("create table if not exists item (id int, name varchar(20))");
+    jdbc.execute("delete from item");
+    statements.clear();
+    RequestTimings.bind(timings);
+  }
+
+  @AfterEach
+  void unbind() {
+    RequestTimings.unbind();
+  }
+
+  @Test
+  void every_statement_is_reported_with_its_sql_as_prepared() {
+    jdbc.update("insert into item values (?, ?)", 1, "one");
+    jdbc.batchUpdate("insert into item values (?, ?)", List.of(new Object[] { 2, "two" }, new Object[] { 3, "three" }));
+    assertEquals(3, jdbc.queryForObject("select count(*) from item", Integer.class));
+    assertThrows(DataAccessException.class, () -> jdbc.queryForList("select nope from item"));
+
+    assertEquals(List.of("insert into item values (?, ?)", "insert into item values (?, ?)",
+        "select count(*) from item", "select nope from item"), statements);
+    assertEquals(4, timings.getStatements());
+    assertTrue(timings.serverTiming().startsWith("db;dur="), timings.serverTiming());
+    assertTrue(timings.serverTiming().contains("desc=\"4 SQL statements\""), timings.serverTiming());
+  }
+
+  @Test
+  void hibernate_statements_are_reported_with_the_sql_inspected_before_them() {
+    SessionEventListener session = timer.sessionListener();
+
+    assertEquals("select id from item where id=?", timer.inspect("select id from item where id=?"));
+    session.jdbcExecuteStatementStart();
+    session.jdbcExecuteStatementEnd();
+    timer.inspect("insert into item (id, name) values (?, ?)");
+    session.jdbcExecuteBatchStart();
+    session.jdbcExecuteBatchEnd();
+
+    assertEquals(List.of("select id from item where id=?", "insert into item (id, name) values (?, ?)"), statements);
+    assertEquals(2, timings.getStatements());
+  }
+
+  @Test
+  void statements_on_a_thread_without_a_request_are_still_reported_but_not_timed() {
+    RequestTimings.unbind();
+
+    jdbc.update("delete from item where id = ?", 1);
+
+    assertEquals(List.of("delete from item where id = ?"), statements);
+    assertEquals(0, timings.getStatements());
+  }
+}
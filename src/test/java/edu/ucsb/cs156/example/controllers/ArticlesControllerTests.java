@@ -1,10 +1,15 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.ArticleService;
+import edu.ucsb.cs156.example.services.SyncTreeService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Article;
 import edu.ucsb.cs156.example.repositories.ArticleRepository;
+import edu.ucsb.cs156.example.models.MultiGetResult;
+import edu.ucsb.cs156.example.models.ArticleSummary;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -24,16 +29,20 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
 
 @WebMvcTest(controllers = ArticlesController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, ArticleService.class })
 public class ArticlesControllerTests extends ControllerTestCase {
 
         @MockBean
@@ -42,6 +51,12 @@ public class ArticlesControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        ChangeLogService changeLogService;
+
+        @MockBean
+        SyncTreeService syncTreeService;
+
         // Tests for GET /api/articles/all
         @Test
         public void logged_out_users_cannot_get_all() throws Exception {
@@ -52,7 +67,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
         @WithMockUser(roles = { "USER" })
         @Test
         public void logged_in_users_can_get_all() throws Exception {
-                mockMvc.perform(get("/api/articles/all"))
+                performAsync(get("/api/articles/all"))
                                 .andExpect(status().is(200)); // logged
         }
 
@@ -87,7 +102,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
                 when(articleRepository.findAll()).thenReturn(expectedArticles);
 
                 // act
-                MvcResult response = mockMvc.perform(get("/api/articles/all"))
+                MvcResult response = performAsync(get("/api/articles/all"))
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
@@ -98,6 +113,25 @@ public class ArticlesControllerTests extends ControllerTestCase {
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_summaries_of_all_articles() throws Exception {
+                // arrange
+                List<ArticleSummary> summaries = List.of(
+                                new ArticleSummary(1L, "Title", "https://example.org", "a@ucsb.edu", LocalDateTime.parse("2022-01-03T00:00:00")));
+                when(articleRepository.findAllSummaries()).thenReturn(summaries);
+
+                // act
+                MvcResult response = performAsync(get("/api/articles/all?view=summary"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articleRepository, never()).findAll();
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(summaries), responseString);
+                assertFalse(responseString.contains("explanation"));
+        }
+
         // Tests for POST /api/articles/post...
 
         @Test
@@ -334,4 +368,131 @@ public class ArticlesControllerTests extends ControllerTestCase {
                 assertEquals("Article with id 67 not found", json.get("message"));
 
         }
-}
\ No newline at end of file
+
+        // Tests for DELETE /api/articles/bulk?ids=...
+
+        @Test
+        public void logged_out_users_cannot_bulk_delete() throws Exception {
+                mockMvc.perform(delete("/api/articles/bulk?ids=1,2,3").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_bulk_delete() throws Exception {
+                mockMvc.perform(delete("/api/articles/bulk?ids=1,2,3").with(csrf()))
+                                .andExpect(status().is(403)); // only admins can bulk delete
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_bulk_delete_with_a_single_statement() throws Exception {
+                // arrange
+
+                when(articleRepository.findExistingIds(eq(List.of(1L, 2L, 3L)))).thenReturn(List.of(1L, 3L));
+                when(articleRepository.bulkDelete(eq(List.of(1L, 3L)))).thenReturn(2);
+
+                // act
+                MvcResult response = performAsync(
+                                delete("/api/articles/bulk?ids=1,2,3")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articleRepository, times(1)).bulkDelete(List.of(1L, 3L));
+                verify(articleRepository, never()).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 Article deleted", json.get("message"));
+                assertEquals(2, json.get("count"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_bulk_delete_with_no_ids_does_not_touch_the_database() throws Exception {
+                // act
+                MvcResult response = performAsync(
+                                delete("/api/articles/bulk?ids=")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articleRepository, never()).bulkDelete(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("0 Article deleted", json.get("message"));
+                assertEquals(0, json.get("count"));
+        }
+
+        // Tests for GET /api/articles/many?ids=...
+
+        @Test
+        public void logged_out_users_cannot_get_many() throws Exception {
+                mockMvc.perform(get("/api/articles/many?ids=3,1,2"))
+                                .andExpect(status().is(403)); // logged out users can't get many
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_many_in_request_order_with_missing_reported() throws Exception {
+                // arrange
+
+                Article first = Article.builder().id(3L).build();
+                Article second = Article.builder().id(1L).build();
+
+                when(articleRepository.findAllById(eq(List.of(3L, 1L, 2L)))).thenReturn(List.of(second, first));
+
+                // act
+                MvcResult response = performAsync(get("/api/articles/many?ids=3,1,2,3"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(articleRepository, times(1)).findAllById(List.of(3L, 1L, 2L));
+                verify(articleRepository, never()).findById(any());
+                String expectedJson = mapper.writeValueAsString(
+                                MultiGetResult.builder().items(List.of(first, second)).missing(List.of(2L)).build());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for GET /api/articles/all?fields=... and /api/articles?id=...&fields=...
+
+        @Test
+        public void logged_out_users_cannot_get_fields() throws Exception {
+                mockMvc.perform(get("/api/articles/all?fields=id,title"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_selected_fields_of_all_rows() throws Exception {
+                // arrange
+                List<Map<String, Object>> rows = List.of(Map.of("id", 7L, "title", "Title"));
+                when(articleRepository.findAllFields(any())).thenReturn(rows);
+
+                // act
+                MvcResult response = performAsync(get("/api/articles/all?fields=id,title"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articleRepository).findAllFields(argThat(fields -> fields.getNames().equals(List.of("id", "title"))));
+                verify(articleRepository, never()).findAll();
+                assertEquals(mapper.writeValueAsString(rows), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_selected_fields_of_one_row() throws Exception {
+                // arrange
+                Map<String, Object> row = Map.of("title", "Title");
+                when(articleRepository.findFieldsById(eq(7L), any())).thenReturn(Optional.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/articles?id=7&fields=title"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articleRepository).findFieldsById(eq(7L), argThat(fields -> fields.getNames().equals(List.of("title"))));
+                verify(articleRepository, never()).findById(any());
+                assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+        }
+}
@@ -0,0 +1,80 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.AuditEvent;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.AuditLogService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@WebMvcTest(controllers = AuditController.class)
+@Import(TestConfig.class)
+public class AuditControllerTests extends ControllerTestCase {
+
+  @MockBean
+  AuditLogService auditLogService;
+
+  @MockBean
+  UserRepository userRepository;
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void only_admins_can_read_the_audit_log() throws Exception {
+    mockMvc.perform(get("/api/admin/audit"))
+        .andExpect(status().is(403));
+    verify(auditLogService, never()).find(any(), any(), anyInt());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_can_read_one_users_changes_a_page_at_a_time() throws Exception {
+    // arrange
+    AuditEvent event = AuditEvent.builder()
+        .id(41L)
+        .occurredAt(LocalDateTime.parse("2022-04-01T10:00:00"))
+        .userEmail("admin@ucsb.edu")
+        .method("DELETE")
+        .path("/api/ucsbdates")
+        .params("id=7")
+        .handler("UCSBDatesController.deleteUCSBDate")
+        .outcome("OK")
+        .durationMillis(9)
+        .build();
+    when(auditLogService.find("admin@ucsb.edu", 42L, 20)).thenReturn(List.of(event));
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/admin/audit?user=admin@ucsb.edu&before=42&limit=20"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(List.of(event)), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void a_limit_past_the_maximum_is_a_bad_request() throws Exception {
+    MvcResult response = mockMvc.perform(get("/api/admin/audit?limit=501"))
+        .andExpect(status().isBadRequest()).andReturn();
+
+    assertEquals("limit must be between 1 and 500", responseToJson(response).get("message"));
+    verify(auditLogService, never()).find(any(), any(), anyInt());
+  }
+}
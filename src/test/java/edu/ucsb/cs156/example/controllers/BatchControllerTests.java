@@ -0,0 +1,367 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.filters.IdempotencyFilter;
+import edu.ucsb.cs156.example.models.BatchRequest;
+import edu.ucsb.cs156.example.models.SystemInfo;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.CsvImportJobHandler;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.BatchDispatcherService;
+import edu.ucsb.cs156.example.services.SystemInfoService;
+import edu.ucsb.cs156.example.services.UCSBDateService;
+import edu.ucsb.cs156.example.services.SyncTreeService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebMvcTest(controllers = { BatchController.class, UCSBDatesController.class, SystemInfoController.class })
+@Import({ TestConfig.class, BatchDispatcherService.class, UCSBDateService.class })
+// one write at a time, so that a write inside a batch visibly holds the only slot
+@TestPropertySource(properties = { "app.concurrencyLimit.write.initial=1", "app.concurrencyLimit.write.max=1" })
+public class BatchControllerTests extends ControllerTestCase {
+
+        @MockBean
+        UCSBDateRepository ucsbDateRepository;
+
+        @MockBean
+        SystemInfoService systemInfoService;
+
+        @MockBean
+        UserRepository userRepository;
+
+        @MockBean
+        ChangeLogService changeLogService;
+
+        @MockBean
+        SyncTreeService syncTreeService;
+
+        @MockBean
+        CsvImportService csvImportService;
+
+        @MockBean
+        CsvImportJobHandler csvImportJobHandler;
+
+        private MvcResult performBatch(List<BatchRequest> requests) throws Exception {
+                return mockMvc.perform(
+                                post("/api/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(requests))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+        }
+
+        private JsonNode responseToTree(MvcResult result) throws Exception {
+                return mapper.readTree(result.getResponse().getContentAsString());
+        }
+
+        private JsonNode expectedTree(Object value) throws Exception {
+                return mapper.readTree(mapper.writeValueAsString(value));
+        }
+
+        @Test
+        public void logged_out_users_cannot_batch() throws Exception {
+                mockMvc.perform(post("/api/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[]")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void independent_reads_are_answered_in_one_response_in_request_order() throws Exception {
+                // arrange
+
+                UCSBDate ucsbDate1 = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+                SystemInfo systemInfo = SystemInfo.builder()
+                                .showSwaggerUILink(true)
+                                .springH2ConsoleEnabled(false)
+                                .build();
+
+                when(ucsbDateRepository.findAll()).thenReturn(new ArrayList<>(List.of(ucsbDate1)));
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(ucsbDate1));
+                when(ucsbDateRepository.findById(eq(8L))).thenReturn(Optional.empty());
+                when(systemInfoService.getSystemInfo()).thenReturn(systemInfo);
+
+                List<BatchRequest> requests = List.of(
+                                BatchRequest.builder().method("GET").path("/api/ucsbdates/all").build(),
+                                BatchRequest.builder().method("GET").path("/api/ucsbdates").params(Map.of("id", "7")).build(),
+                                BatchRequest.builder().method("get").path("/api/ucsbdates?id=8").build(),
+                                BatchRequest.builder().method("GET").path("/api/systemInfo").build());
+
+                // act
+                MvcResult response = performBatch(requests);
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findAll();
+                JsonNode results = responseToTree(response);
+                assertEquals(4, results.size());
+
+                assertEquals(200, results.get(0).get("status").asInt());
+                assertEquals(expectedTree(List.of(ucsbDate1)), results.get(0).get("body"));
+
+                assertEquals(200, results.get(1).get("status").asInt());
+                assertEquals(expectedTree(ucsbDate1), results.get(1).get("body"));
+
+                assertEquals(404, results.get(2).get("status").asInt());
+                assertEquals("UCSBDate with id 8 not found", results.get(2).get("body").get("message").asText());
+
+                assertEquals(200, results.get(3).get("status").asInt());
+                assertEquals(expectedTree(systemInfo), results.get(3).get("body"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void sub_requests_are_checked_against_the_callers_roles() throws Exception {
+                // act
+                MvcResult response = performBatch(List.of(
+                                BatchRequest.builder().method("POST").path("/api/ucsbdates/post")
+                                                .params(Map.of("quarterYYYYQ", "20222", "name", "x",
+                                                                "localDateTime", "2022-01-03T00:00:00"))
+                                                .build(),
+                                BatchRequest.builder().method("GET").path("/api/ucsbdates/all").build()));
+
+                // assert
+
+                verify(ucsbDateRepository, never()).save(any());
+                JsonNode results = responseToTree(response);
+                assertEquals(403, results.get(0).get("status").asInt());
+                assertEquals(200, results.get(1).get("status").asInt());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void writes_run_in_order_with_params_and_bodies() throws Exception {
+                // arrange
+
+                LocalDateTime ldt = LocalDateTime.parse("2022-01-03T00:00:00");
+                UCSBDate posted = UCSBDate.builder().quarterYYYYQ("20222").name("firstDayOfClasses").localDateTime(ldt).build();
+                UCSBDate original = UCSBDate.builder().quarterYYYYQ("20221").name("old").localDateTime(ldt).build();
+                UCSBDate edited = UCSBDate.builder().quarterYYYYQ("20223").name("new").localDateTime(ldt).build();
+
+                when(ucsbDateRepository.save(eq(posted))).thenReturn(posted);
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(original));
+
+                List<BatchRequest> requests = List.of(
+                                BatchRequest.builder().method("POST").path("/api/ucsbdates/post")
+                                                .params(Map.of("quarterYYYYQ", "20222", "name", "firstDayOfClasses",
+                                                                "localDateTime", "2022-01-03T00:00:00"))
+                                                .build(),
+                                BatchRequest.builder().method("PUT").path("/api/ucsbdates?id=67")
+                                                .body(mapper.valueToTree(edited))
+                                                .build(),
+                                BatchRequest.builder().method("DELETE").path("/api/ucsbdates/bulk?ids=1,2").build());
+
+                when(ucsbDateRepository.findExistingIds(eq(List.of(1L, 2L)))).thenReturn(List.of(1L, 2L));
+                when(ucsbDateRepository.bulkDelete(eq(List.of(1L, 2L)))).thenReturn(2);
+
+                // act
+                MvcResult response = performBatch(requests);
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).save(posted);
+                verify(ucsbDateRepository, times(1)).save(edited);
+                JsonNode results = responseToTree(response);
+                assertEquals(200, results.get(0).get("status").asInt());
+                assertEquals(expectedTree(posted), results.get(0).get("body"));
+                assertEquals(200, results.get(1).get("status").asInt());
+                assertEquals(expectedTree(edited), results.get(1).get("body"));
+                assertEquals("2 UCSBDate deleted", results.get(2).get("body").get("message").asText());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void bad_sub_requests_get_their_own_error_status() throws Exception {
+                // act
+                MvcResult response = performBatch(List.of(
+                                BatchRequest.builder().method("GET").path("/api/nosuchthing").build(),
+                                BatchRequest.builder().method("GET").path("/index.html").build(),
+                                BatchRequest.builder().method("GET").path("/api/batch").build(),
+                                BatchRequest.builder().method("FETCH").path("/api/ucsbdates/all").build(),
+                                BatchRequest.builder().method("GET").path("/api/ucsbdates").build()));
+
+                // assert
+
+                JsonNode results = responseToTree(response);
+                assertEquals(404, results.get(0).get("status").asInt());
+                assertTrue(results.get(0).get("body").isNull());
+                assertEquals(400, results.get(1).get("status").asInt());
+                assertEquals(400, results.get(2).get("status").asInt());
+                assertEquals(400, results.get(3).get("status").asInt());
+                assertEquals("unknown method FETCH", results.get(3).get("body").get("message").asText());
+                assertEquals(400, results.get(4).get("status").asInt()); // missing required id parameter
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void batches_cannot_be_nested_under_another_spelling_of_the_path() throws Exception {
+                // arrange
+
+                List<BatchRequest> inner = List.of(BatchRequest.builder().method("GET").path("/api/ucsbdates/all").build());
+
+                // act
+                MvcResult response = performBatch(List.of(
+                                BatchRequest.builder().method("POST").path("/api//batch").body(mapper.valueToTree(inner)).build(),
+                                BatchRequest.builder().method("POST").path("/api/batch;x=1").body(mapper.valueToTree(inner)).build(),
+                                BatchRequest.builder().method("POST").path("/api/%62atch").body(mapper.valueToTree(inner)).build()));
+
+                // assert
+
+                verify(ucsbDateRepository, never()).findAll();
+                JsonNode results = responseToTree(response);
+                assertEquals(3, results.size());
+                assertEquals(400, results.get(0).get("status").asInt());
+                assertEquals("path must be an /api/ endpoint other than /api/batch",
+                                results.get(0).get("body").get("message").asText());
+                // either rejected the same way, or not an endpoint at all
+                for (JsonNode result : results) {
+                        int status = result.get("status").asInt();
+                        assertTrue(status == 400 || status == 404, result.get("path").asText() + ": " + status);
+                }
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void batches_larger_than_the_limit_are_rejected() throws Exception {
+                // arrange
+
+                List<BatchRequest> requests = Collections.nCopies(21,
+                                BatchRequest.builder().method("GET").path("/api/ucsbdates/all").build());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(requests))
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, never()).findAll();
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("a batch may contain at most 20 requests", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void posts_in_a_batch_are_deduplicated_by_their_own_idempotency_key() throws Exception {
+                // arrange
+
+                when(ucsbDateRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+                BatchRequest keyed = BatchRequest.builder().method("POST").path("/api/ucsbdates/post")
+                                .params(Map.of("quarterYYYYQ", "20222", "name", "firstDayOfClasses",
+                                                "localDateTime", "2022-01-03T00:00:00"))
+                                .headers(Map.of(IdempotencyFilter.IDEMPOTENCY_KEY, "batched-1"))
+                                .build();
+                BatchRequest unkeyed = keyed.toBuilder().headers(null).build();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                // applies to the batch, not to the entries in it
+                                                .header(IdempotencyFilter.IDEMPOTENCY_KEY, "whole-batch")
+                                                .content(mapper.writeValueAsString(List.of(keyed, keyed, unkeyed, unkeyed)))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(3)).save(any());
+                JsonNode results = responseToTree(response);
+                for (JsonNode result : results) {
+                        assertEquals(200, result.get("status").asInt());
+                }
+                assertEquals(results.get(0).get("body"), results.get(1).get("body"));
+        }
+
+        @Test
+        public void a_write_in_a_batch_holds_a_write_slot() throws Exception {
+                // arrange
+
+                CountDownLatch saving = new CountDownLatch(1);
+                CountDownLatch finish = new CountDownLatch(1);
+                when(ucsbDateRepository.save(any())).thenAnswer(invocation -> {
+                        saving.countDown();
+                        finish.await(10, TimeUnit.SECONDS);
+                        return invocation.getArgument(0);
+                });
+                String params = "quarterYYYYQ=20222&name=firstDayOfClasses&localDateTime=2022-01-03T00:00:00";
+                List<BatchRequest> requests = List.of(
+                                BatchRequest.builder().method("POST").path("/api/ucsbdates/post?" + params).build());
+
+                ExecutorService pool = Executors.newSingleThreadExecutor();
+                // @WithMockUser only applies to the test thread
+                Future<MvcResult> batch = pool.submit(() -> mockMvc.perform(
+                                post("/api/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(requests))
+                                                .with(user("admin@ucsb.edu").roles("ADMIN", "USER"))
+                                                .with(csrf()))
+                                .andReturn());
+                assertTrue(saving.await(10, TimeUnit.SECONDS));
+
+                // act
+                MvcResult rejected = mockMvc.perform(post("/api/ucsbdates/post?" + params)
+                                .with(user("admin@ucsb.edu").roles("ADMIN", "USER"))
+                                .with(csrf()))
+                                .andReturn();
+                finish.countDown();
+                MvcResult response = batch.get(10, TimeUnit.SECONDS);
+                pool.shutdown();
+
+                // assert
+
+                assertEquals(503, rejected.getResponse().getStatus());
+                assertEquals(200, response.getResponse().getStatus());
+                assertEquals(200, responseToTree(response).get(0).get("status").asInt());
+                verify(ucsbDateRepository, times(1)).save(any());
+        }
+}
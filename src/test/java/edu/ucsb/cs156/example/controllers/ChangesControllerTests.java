@@ -0,0 +1,110 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.ChangeLogEntry;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.errors.ChangesExpiredException;
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+import edu.ucsb.cs156.example.models.ChangeFeed;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeFeedService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@WebMvcTest(controllers = ChangesController.class)
+@Import(TestConfig.class)
+public class ChangesControllerTests extends ControllerTestCase {
+
+  @MockBean
+  ChangeFeedService changeFeedService;
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Test
+  public void logged_out_users_cannot_read_changes() throws Exception {
+    mockMvc.perform(get("/api/changes?since=0"))
+        .andExpect(status().is(403));
+    verify(changeFeedService, never()).changesSince(any(), any());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void logged_in_user_gets_the_changes_to_the_entities_asked_for() throws Exception {
+    // arrange
+    UCSBDate date = UCSBDate.builder().id(7L).quarterYYYYQ("20222").name("firstDayOfClasses")
+        .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00")).build();
+    ChangeFeed feed = ChangeFeed.builder().since(40L).latest(42L).hasMore(false).changes(List.of(
+        new ChangeFeed.Change(41, "UCSBDate", "3", ChangeLogEntry.Op.DELETE, null),
+        new ChangeFeed.Change(42, "UCSBDate", "7", ChangeLogEntry.Op.UPSERT, date))).build();
+    when(changeFeedService.changesSince(40L, List.of("UCSBDate", "HelpRequests"))).thenReturn(feed);
+
+    // act
+    MvcResult response = performAsync(get("/api/changes?since=40&entities=UCSBDate,HelpRequests"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(feed), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void without_since_all_entities_are_asked_for_the_latest_seq() throws Exception {
+    // arrange
+    when(changeFeedService.changesSince(null, List.of()))
+        .thenReturn(ChangeFeed.builder().latest(42L).changes(List.of()).build());
+
+    // act
+    MvcResult response = performAsync(get("/api/changes"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(42, responseToJson(response).get("latest"));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void a_client_too_far_behind_is_told_the_changes_are_gone() throws Exception {
+    // arrange
+    when(changeFeedService.changesSince(eq(3L), any()))
+        .thenThrow(new ChangesExpiredException("changes after 3 have been compacted away"));
+
+    // act
+    MvcResult response = performAsync(get("/api/changes?since=3"))
+        .andExpect(status().isGone()).andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("ChangesExpiredException", json.get("type"));
+    assertEquals("changes after 3 have been compacted away", json.get("message"));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void an_unknown_entity_is_a_bad_request() throws Exception {
+    when(changeFeedService.changesSince(eq(3L), eq(List.of("Nonesuch"))))
+        .thenThrow(new InvalidQueryException("no entity called Nonesuch"));
+
+    performAsync(get("/api/changes?since=3&entities=Nonesuch"))
+        .andExpect(status().isBadRequest());
+  }
+}
@@ -0,0 +1,314 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBMenuItemReview;
+import edu.ucsb.cs156.example.models.GraphQLRequest;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBMenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.GraphQLService;
+import edu.ucsb.cs156.example.services.SyncTreeService;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsMenuItemService;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsService;
+import edu.ucsb.cs156.example.services.UCSBMenuItemReviewService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebMvcTest(controllers = GraphQLController.class)
+@Import({ TestConfig.class, GraphQLService.class, UCSBDiningCommonsService.class,
+                UCSBDiningCommonsMenuItemService.class, UCSBMenuItemReviewService.class })
+public class GraphQLControllerTests extends ControllerTestCase {
+
+        @MockBean
+        UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+        @MockBean
+        UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+        @MockBean
+        UCSBMenuItemReviewRepository ucsbMenuItemReviewRepository;
+
+        @MockBean
+        UserRepository userRepository;
+
+        @MockBean
+        ChangeLogService changeLogService;
+
+        @MockBean
+        SyncTreeService syncTreeService;
+
+        UCSBDiningCommons ortega = UCSBDiningCommons.builder().code("ortega").name("Ortega").build();
+        UCSBDiningCommons dlg = UCSBDiningCommons.builder().code("de-la-guerra").name("De La Guerra").build();
+
+        UCSBDiningCommonsMenuItem burrito = UCSBDiningCommonsMenuItem.builder()
+                        .id(1L).diningCommonsCode("ortega").name("Burrito").station("Grill").build();
+        UCSBDiningCommonsMenuItem salad = UCSBDiningCommonsMenuItem.builder()
+                        .id(2L).diningCommonsCode("ortega").name("Salad").station("Greens").build();
+        UCSBDiningCommonsMenuItem pizza = UCSBDiningCommonsMenuItem.builder()
+                        .id(3L).diningCommonsCode("de-la-guerra").name("Pizza").station("Oven").build();
+
+        UCSBMenuItemReview review1 = UCSBMenuItemReview.builder().id(10L).itemId(1L).stars(5)
+                        .reviewerEmail("a@ucsb.edu").dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00")).build();
+        UCSBMenuItemReview review2 = UCSBMenuItemReview.builder().id(11L).itemId(2L).stars(3)
+                        .reviewerEmail("b@ucsb.edu").dateReviewed(LocalDateTime.parse("2022-01-04T00:00:00")).build();
+        UCSBMenuItemReview review3 = UCSBMenuItemReview.builder().id(12L).itemId(1L).stars(4)
+                        .reviewerEmail("c@ucsb.edu").dateReviewed(LocalDateTime.parse("2022-01-05T00:00:00")).build();
+
+        // loaders query in chunks, so match the keys of a chunk in any order
+        @SafeVarargs
+        private static <K, C extends Iterable<K>> C keys(K... expected) {
+                return argThat(actual -> {
+                        Set<K> keys = new HashSet<>();
+                        actual.forEach(keys::add);
+                        return keys.equals(Set.of(expected));
+                });
+        }
+
+        private JsonNode performQuery(String query) throws Exception {
+                GraphQLRequest request = GraphQLRequest.builder().query(query).build();
+                MvcResult response = mockMvc.perform(
+                                post("/api/graphql")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(request))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+                return mapper.readTree(response.getResponse().getContentAsString());
+        }
+
+        @Test
+        public void logged_out_users_cannot_query() throws Exception {
+                mockMvc.perform(post("/api/graphql")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"query\": \"{ reviews { id } }\"}")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void reviews_with_items_and_commons_use_one_query_per_type() throws Exception {
+                // arrange
+
+                when(ucsbMenuItemReviewRepository.findFirst(20)).thenReturn(List.of(review1, review2, review3));
+                when(ucsbDiningCommonsMenuItemRepository.findAllById(keys(1L, 2L))).thenReturn(List.of(burrito, salad));
+                when(ucsbDiningCommonsRepository.findAllById(keys("ortega"))).thenReturn(List.of(ortega));
+
+                // act
+                JsonNode json = performQuery(
+                                "{ reviews { id stars dateReviewed item { name diningCommons { name } } } }");
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findAllById(any());
+                verify(ucsbDiningCommonsRepository, times(1)).findAllById(any());
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findById(any());
+                verify(ucsbDiningCommonsRepository, never()).findById(any());
+
+                assertTrue(json.path("errors").isMissingNode());
+                JsonNode reviews = json.get("data").get("reviews");
+                assertEquals(3, reviews.size());
+                assertEquals("10", reviews.get(0).get("id").asText());
+                assertEquals("2022-01-03T00:00", reviews.get(0).get("dateReviewed").asText());
+                assertEquals("Burrito", reviews.get(0).get("item").get("name").asText());
+                assertEquals("Ortega", reviews.get(0).get("item").get("diningCommons").get("name").asText());
+                assertEquals("Salad", reviews.get(1).get("item").get("name").asText());
+                assertEquals("Burrito", reviews.get(2).get("item").get("name").asText());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void commons_with_menu_items_and_reviews_use_one_query_per_level() throws Exception {
+                // arrange
+
+                when(ucsbDiningCommonsRepository.findFirst(20)).thenReturn(List.of(ortega, dlg));
+                when(ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCodeIn(keys("ortega", "de-la-guerra")))
+                                .thenReturn(List.of(burrito, salad, pizza));
+                when(ucsbMenuItemReviewRepository.findAllByItemIdIn(keys(1L, 2L, 3L)))
+                                .thenReturn(List.of(review1, review2, review3));
+
+                // act
+                JsonNode json = performQuery("{ diningCommons { code menuItems { name reviews { stars } } } }");
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findAllByDiningCommonsCodeIn(any());
+                verify(ucsbMenuItemReviewRepository, times(1)).findAllByItemIdIn(any());
+
+                JsonNode commons = json.get("data").get("diningCommons");
+                assertEquals(2, commons.get(0).get("menuItems").size());
+                assertEquals(2, commons.get(0).get("menuItems").get(0).get("reviews").size());
+                assertEquals(1, commons.get(0).get("menuItems").get(1).get("reviews").size());
+                assertEquals("Pizza", commons.get(1).get("menuItems").get(0).get("name").asText());
+                assertEquals(0, commons.get(1).get("menuItems").get(0).get("reviews").size());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void more_than_500_references_are_loaded_in_chunks_of_500() throws Exception {
+                // arrange
+
+                // no list returns more than 500 rows, but two of them can reference 600 items
+                List<UCSBDiningCommonsMenuItem> items = IntStream.rangeClosed(1, 600)
+                                .mapToObj(i -> UCSBDiningCommonsMenuItem.builder().id((long) i)
+                                                .diningCommonsCode(i <= 300 ? "ortega" : "de-la-guerra").name("Item").build())
+                                .collect(Collectors.toList());
+                when(ucsbDiningCommonsRepository.findFirst(2)).thenReturn(List.of(ortega, dlg));
+                when(ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCodeIn(any())).thenReturn(items);
+
+                // act
+                JsonNode json = performQuery(
+                                "{ diningCommons(first: 2) { menuItems(first: 500) { reviews(first: 1) { stars } } } }");
+
+                // assert
+
+                verify(ucsbMenuItemReviewRepository, times(2)).findAllByItemIdIn(any());
+                assertEquals(300, json.get("data").get("diningCommons").get(0).get("menuItems").size());
+                assertEquals(300, json.get("data").get("diningCommons").get(1).get("menuItems").size());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void a_request_without_a_query_is_a_bad_request() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(post("/api/graphql")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"variables\": {}}")
+                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+
+                assertEquals("a GraphQL request needs a query",
+                                responseToJson(response).get("message"));
+                verify(ucsbMenuItemReviewRepository, never()).findFirst(anyInt());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void single_rows_can_be_fetched_by_key() throws Exception {
+                // arrange
+
+                UCSBDiningCommonsMenuItem noCommons = UCSBDiningCommonsMenuItem.builder().id(4L).name("Mystery").build();
+                when(ucsbDiningCommonsMenuItemRepository.findById(eq(4L))).thenReturn(Optional.of(noCommons));
+                when(ucsbMenuItemReviewRepository.findById(eq(12L))).thenReturn(Optional.of(review3));
+                when(ucsbMenuItemReviewRepository.findById(eq(13L))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsRepository.findById(eq("ortega"))).thenReturn(Optional.of(ortega));
+                when(ucsbDiningCommonsMenuItemRepository.findFirst(20)).thenReturn(List.of(pizza));
+
+                // act
+                JsonNode json = performQuery("""
+                                {
+                                  menuItem(id: "4") { name diningCommons { name } }
+                                  review(id: "12") { stars }
+                                  missing: review(id: "13") { stars }
+                                  diningCommonsByCode(code: "ortega") { name }
+                                  menuItems { name }
+                                }
+                                """);
+
+                // assert
+
+                JsonNode data = json.get("data");
+                assertEquals("Mystery", data.get("menuItem").get("name").asText());
+                assertTrue(data.get("menuItem").get("diningCommons").isNull());
+                assertEquals(4, data.get("review").get("stars").asInt());
+                assertTrue(data.get("missing").isNull());
+                assertEquals("Ortega", data.get("diningCommonsByCode").get("name").asText());
+                assertEquals("Pizza", data.get("menuItems").get(0).get("name").asText());
+                verify(ucsbDiningCommonsRepository, never()).findAllById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void queries_over_the_depth_limit_are_rejected_before_fetching() throws Exception {
+                // act
+                JsonNode json = performQuery(
+                                "{ diningCommons { menuItems { reviews { item { reviews { item { name } } } } } } }");
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, never()).findFirst(anyInt());
+                assertTrue(json.get("errors").get(0).get("message").asText().contains("maximum query depth exceeded"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void queries_over_the_complexity_limit_are_rejected_before_fetching() throws Exception {
+                // arrange
+
+                String fields = IntStream.range(0, 100)
+                                .mapToObj(i -> "s%d: stars".formatted(i))
+                                .collect(Collectors.joining(" "));
+
+                // act
+                JsonNode json = performQuery("{ reviews(first: 100) { %s } }".formatted(fields));
+
+                // assert
+
+                verify(ucsbMenuItemReviewRepository, never()).findFirst(anyInt());
+                assertTrue(json.get("errors").get(0).get("message").asText().contains("maximum query complexity exceeded"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void nested_lists_count_first_times_their_selection() throws Exception {
+                // act: 50 commons x 50 items x 20 reviews
+                JsonNode json = performQuery(
+                                "{ diningCommons(first: 50) { menuItems(first: 50) { reviews { stars } } } }");
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, never()).findFirst(anyInt());
+                assertTrue(json.get("errors").get(0).get("message").asText().contains("maximum query complexity exceeded"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void first_over_the_maximum_is_rejected() throws Exception {
+                // act
+                JsonNode json = performQuery("{ diningCommons(first: 501) { code } }");
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, never()).findFirst(anyInt());
+                assertTrue(json.get("data").isNull());
+                assertTrue(json.get("errors").get(0).get("message").asText().contains("first must be between 0 and 500"));
+        }
+}
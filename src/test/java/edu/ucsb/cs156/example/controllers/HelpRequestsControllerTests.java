@@ -1,10 +1,19 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.HelpRequestsService;
+import edu.ucsb.cs156.example.services.PurgeSolvedHelpRequestsJobHandler;
+import edu.ucsb.cs156.example.services.SyncTreeService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.ArchivedHelpRequest;
 import edu.ucsb.cs156.example.entities.HelpRequests;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.ArchivedHelpRequestRepository;
 import edu.ucsb.cs156.example.repositories.HelpRequestsRepository;
+import edu.ucsb.cs156.example.models.MultiGetResult;
+import edu.ucsb.cs156.example.models.HelpRequestsSummary;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -14,6 +23,8 @@ import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -25,24 +36,44 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
 
 @WebMvcTest(controllers = HelpRequestsController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, HelpRequestsService.class })
 public class HelpRequestsControllerTests extends ControllerTestCase {
 
         @MockBean
         HelpRequestsRepository helpRequestsRepository;
 
+        @MockBean
+        ArchivedHelpRequestRepository archivedHelpRequestRepository;
+
+        @MockBean
+        PurgeSolvedHelpRequestsJobHandler purgeSolvedHelpRequestsJobHandler;
+
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        ChangeLogService changeLogService;
+
+        @MockBean
+        SyncTreeService syncTreeService;
+
         // Tests for GET /api/ucsbdates/all
         
         @Test
@@ -54,7 +85,7 @@ public class HelpRequestsControllerTests extends ControllerTestCase {
         @WithMockUser(roles = { "USER" })
         @Test
         public void logged_in_users_can_get_all() throws Exception {
-                mockMvc.perform(get("/api/helprequests/all"))
+                performAsync(get("/api/helprequests/all"))
                                 .andExpect(status().is(200)); // logged
         }
 
@@ -91,7 +122,7 @@ public class HelpRequestsControllerTests extends ControllerTestCase {
                 when(helpRequestsRepository.findAll()).thenReturn(helpRequests);
 
                 // act
-                MvcResult response = mockMvc.perform(get("/api/helprequests/all"))
+                MvcResult response = performAsync(get("/api/helprequests/all"))
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
@@ -102,6 +133,102 @@ public class HelpRequestsControllerTests extends ControllerTestCase {
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_summaries_of_all_help_requests() throws Exception {
+                // arrange
+                List<HelpRequestsSummary> summaries = List.of(
+                                new HelpRequestsSummary(1L, "m@gmail.com", "7pm-1", "t3", LocalDateTime.parse("2022-01-03T00:00:00"), true));
+                when(helpRequestsRepository.findAllSummaries()).thenReturn(summaries);
+
+                // act
+                MvcResult response = performAsync(get("/api/helprequests/all?view=summary"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestsRepository, never()).findAll();
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(summaries), responseString);
+                assertFalse(responseString.contains("explanation"));
+        }
+
+        // Tests for GET /api/helprequests/all?includeArchived=true and GET /api/helprequests?id=...&includeArchived=true
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void plain_all_reads_only_the_live_table() throws Exception {
+                performAsync(get("/api/helprequests/all")).andExpect(status().isOk());
+
+                verify(helpRequestsRepository, times(1)).findAll();
+                verify(archivedHelpRequestRepository, never()).findAll();
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_all_including_archived_in_id_order() throws Exception {
+                // arrange
+                ArchivedHelpRequest live = ArchivedHelpRequest.builder().id(9L).requesterEmail("m@ucsb.edu").teamId("s22-6pm-3")
+                                .tableOrBreakoutRoom("t3").explanation("stuck").solved(false)
+                                .requestTime(LocalDateTime.parse("2022-04-03T00:00:00")).build();
+                ArchivedHelpRequest archived = ArchivedHelpRequest.builder().id(2L).requesterEmail("n@ucsb.edu").teamId("s21-5pm-1")
+                                .tableOrBreakoutRoom("t1").explanation("old").solved(true)
+                                .requestTime(LocalDateTime.parse("2021-01-03T00:00:00"))
+                                .archivedAt(LocalDateTime.parse("2022-01-04T03:00:00")).build();
+                when(archivedHelpRequestRepository.findAllIncludingLive(eq(0L), eq(500))).thenReturn(List.of(archived, live));
+                when(archivedHelpRequestRepository.findAllIncludingLive(eq(9L), eq(10))).thenReturn(List.of());
+
+                // act
+                MvcResult response = performAsync(get("/api/helprequests/all?includeArchived=true"))
+                                .andExpect(status().isOk()).andReturn();
+                MvcResult next = performAsync(get("/api/helprequests/all?includeArchived=true&after=9&limit=10"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(mapper.writeValueAsString(List.of(archived, live)), response.getResponse().getContentAsString());
+                assertEquals("[]", next.getResponse().getContentAsString());
+                verify(helpRequestsRepository, never()).findAll();
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void include_archived_reads_at_most_500_at_a_time() throws Exception {
+                MvcResult response = mockMvc.perform(get("/api/helprequests/all?includeArchived=true&limit=501"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                assertEquals("limit must be between 1 and 500", responseToJson(response).get("message"));
+                verify(archivedHelpRequestRepository, never()).findAllIncludingLive(anyLong(), anyInt());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void include_archived_cannot_be_combined_with_a_filter() throws Exception {
+                MvcResult response = mockMvc.perform(get("/api/helprequests/all?includeArchived=true&filter=solved:true"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                assertEquals("includeArchived=true cannot be combined with fields, filter or sort", responseToJson(response).get("message"));
+                verify(archivedHelpRequestRepository, never()).findAllIncludingLive(anyLong(), anyInt());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_an_archived_request_by_id_only_when_asking_for_it() throws Exception {
+                // arrange
+                ArchivedHelpRequest archived = ArchivedHelpRequest.builder().id(2L).requesterEmail("n@ucsb.edu").teamId("s21-5pm-1")
+                                .tableOrBreakoutRoom("t1").explanation("old").solved(true)
+                                .requestTime(LocalDateTime.parse("2021-01-03T00:00:00"))
+                                .archivedAt(LocalDateTime.parse("2022-01-04T03:00:00")).build();
+                when(helpRequestsRepository.findById(eq(2L))).thenReturn(Optional.empty());
+                when(archivedHelpRequestRepository.findById(eq(2L))).thenReturn(Optional.of(archived));
+
+                // act and assert
+                mockMvc.perform(get("/api/helprequests?id=2")).andExpect(status().isNotFound());
+                MvcResult response = mockMvc.perform(get("/api/helprequests?id=2&includeArchived=true"))
+                                .andExpect(status().isOk()).andReturn();
+
+                assertEquals(mapper.writeValueAsString(archived), response.getResponse().getContentAsString());
+                verify(archivedHelpRequestRepository, times(1)).findById(2L);
+        }
+
         // Tests for POST /api/ucsbdates/post...
 
         @Test
@@ -349,4 +476,301 @@ public class HelpRequestsControllerTests extends ControllerTestCase {
                 assertEquals("HelpRequests with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for DELETE /api/helprequests/bulk?ids=...
+
+        @Test
+        public void logged_out_users_cannot_bulk_delete() throws Exception {
+                mockMvc.perform(delete("/api/helprequests/bulk?ids=1,2,3").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_bulk_delete() throws Exception {
+                mockMvc.perform(delete("/api/helprequests/bulk?ids=1,2,3").with(csrf()))
+                                .andExpect(status().is(403)); // only admins can bulk delete
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_bulk_delete_deletes_and_records_only_the_ids_that_exist() throws Exception {
+                // arrange
+
+                when(helpRequestsRepository.findExistingIds(eq(List.of(1L, 2L, 3L)))).thenReturn(List.of(1L, 3L));
+                when(helpRequestsRepository.bulkDelete(eq(List.of(1L, 3L)))).thenReturn(2);
+
+                // act
+                MvcResult response = performAsync(
+                                delete("/api/helprequests/bulk?ids=1,2,3")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestsRepository, times(1)).bulkDelete(List.of(1L, 3L));
+                verify(helpRequestsRepository, never()).findById(any());
+                verify(changeLogService, times(1)).recordDeletes(HelpRequests.class, List.of(1L, 3L));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 HelpRequests deleted", json.get("message"));
+                assertEquals(2, json.get("count"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_bulk_delete_of_many_ids_runs_in_chunks_of_500() throws Exception {
+                // arrange
+                String ids = LongStream.rangeClosed(1, 1200)
+                                .mapToObj(Long::toString)
+                                .collect(Collectors.joining(","));
+                when(helpRequestsRepository.findExistingIds(any())).thenAnswer(invocation -> List.copyOf(invocation.getArgument(0)));
+                when(helpRequestsRepository.bulkDelete(any())).thenAnswer(invocation -> invocation.<List<Long>>getArgument(0).size());
+
+                // act
+                MvcResult response = performAsync(
+                                delete("/api/helprequests/bulk?ids=" + ids)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestsRepository, times(1)).bulkDelete(eq(LongStream.rangeClosed(1, 500).boxed().toList()));
+                verify(helpRequestsRepository, times(1)).bulkDelete(eq(LongStream.rangeClosed(501, 1000).boxed().toList()));
+                verify(helpRequestsRepository, times(1)).bulkDelete(eq(LongStream.rangeClosed(1001, 1200).boxed().toList()));
+                assertEquals(1200, responseToJson(response).get("count"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_bulk_delete_of_more_than_the_maximum_ids_is_a_bad_request() throws Exception {
+                // arrange
+                String ids = LongStream.rangeClosed(1, 5001)
+                                .mapToObj(Long::toString)
+                                .collect(Collectors.joining(","));
+
+                // act
+                MvcResult response = performAsync(
+                                delete("/api/helprequests/bulk?ids=" + ids)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(helpRequestsRepository, never()).findExistingIds(any());
+                verify(helpRequestsRepository, never()).bulkDelete(any());
+                assertEquals("at most 5000 ids can be deleted at once, got 5001", responseToJson(response).get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_bulk_delete_with_no_ids_does_not_touch_the_database() throws Exception {
+                // act
+                MvcResult response = performAsync(
+                                delete("/api/helprequests/bulk?ids=")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestsRepository, never()).bulkDelete(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("0 HelpRequests deleted", json.get("message"));
+                assertEquals(0, json.get("count"));
+        }
+
+        // Tests for DELETE /api/helprequests/solved?before=...
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_delete_solved() throws Exception {
+                mockMvc.perform(delete("/api/helprequests/solved?before=2022-01-03T00:00:00").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_delete_solved_help_requests_older_than_a_date() throws Exception {
+                // arrange
+
+                LocalDateTime before = LocalDateTime.parse("2022-01-03T00:00:00");
+                when(helpRequestsRepository.bulkDeleteSolvedBefore(eq(before))).thenReturn(5);
+
+                // act
+                MvcResult response = performAsync(
+                                delete("/api/helprequests/solved?before=2022-01-03T00:00:00")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestsRepository, times(1)).bulkDeleteSolvedBefore(before);
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("5 HelpRequests deleted", json.get("message"));
+                assertEquals(5, json.get("count"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_delete_solved_help_requests_in_a_background_job() throws Exception {
+                // arrange
+                LocalDateTime before = LocalDateTime.parse("2022-01-03T00:00:00");
+                Job job = Job.builder().id(12L).type(PurgeSolvedHelpRequestsJobHandler.TYPE).status(Job.Status.QUEUED).build();
+                when(purgeSolvedHelpRequestsJobHandler.submit(eq(before), eq("user@example.org"))).thenReturn(job);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/helprequests/solved?before=2022-01-03T00:00:00&async=true")
+                                                .with(csrf()))
+                                .andExpect(status().isAccepted()).andReturn();
+
+                // assert
+                verify(helpRequestsRepository, never()).bulkDeleteSolvedBefore(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(12, json.get("id"));
+                assertEquals("QUEUED", json.get("status"));
+        }
+
+        // Tests for GET /api/helprequests/many?ids=...
+
+        @Test
+        public void logged_out_users_cannot_get_many() throws Exception {
+                mockMvc.perform(get("/api/helprequests/many?ids=3,1,2"))
+                                .andExpect(status().is(403)); // logged out users can't get many
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_many_in_request_order_with_missing_reported() throws Exception {
+                // arrange
+
+                HelpRequests first = HelpRequests.builder().id(3L).build();
+                HelpRequests second = HelpRequests.builder().id(1L).build();
+
+                when(helpRequestsRepository.findAllById(eq(List.of(3L, 1L, 2L)))).thenReturn(List.of(second, first));
+
+                // act
+                MvcResult response = performAsync(get("/api/helprequests/many?ids=3,1,2,3"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(helpRequestsRepository, times(1)).findAllById(List.of(3L, 1L, 2L));
+                verify(helpRequestsRepository, never()).findById(any());
+                String expectedJson = mapper.writeValueAsString(
+                                MultiGetResult.builder().items(List.of(first, second)).missing(List.of(2L)).build());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_many_splits_long_id_lists_into_chunks() throws Exception {
+                // arrange
+
+                String ids = LongStream.rangeClosed(1, 1200)
+                                .mapToObj(Long::toString)
+                                .collect(Collectors.joining(","));
+
+                // act
+                MvcResult response = performAsync(get("/api/helprequests/many?ids=" + ids))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(helpRequestsRepository, times(3)).findAllById(any());
+                verify(helpRequestsRepository, times(1)).findAllById(eq(LongStream.rangeClosed(1001, 1200).boxed().toList()));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1200, ((List<?>) json.get("missing")).size());
+        }
+
+        // Tests for GET /api/helprequests/all?fields=... and /api/helprequests?id=...&fields=...
+
+        @Test
+        public void logged_out_users_cannot_get_fields() throws Exception {
+                mockMvc.perform(get("/api/helprequests/all?fields=id,teamId"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_selected_fields_of_all_rows() throws Exception {
+                // arrange
+                List<Map<String, Object>> rows = List.of(Map.of("id", 7L, "teamId", "7pm-1"));
+                when(helpRequestsRepository.findAllFields(any())).thenReturn(rows);
+
+                // act
+                MvcResult response = performAsync(get("/api/helprequests/all?fields=id,teamId"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestsRepository).findAllFields(argThat(fields -> fields.getNames().equals(List.of("id", "teamId"))));
+                verify(helpRequestsRepository, never()).findAll();
+                assertEquals(mapper.writeValueAsString(rows), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_selected_fields_of_one_row() throws Exception {
+                // arrange
+                Map<String, Object> row = Map.of("teamId", "7pm-1");
+                when(helpRequestsRepository.findFieldsById(eq(7L), any())).thenReturn(Optional.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/helprequests?id=7&fields=teamId"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestsRepository).findFieldsById(eq(7L), argThat(fields -> fields.getNames().equals(List.of("teamId"))));
+                verify(helpRequestsRepository, never()).findById(any());
+                assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+        }
+
+        // Tests for GET /api/helprequests/all?filter=...&sort=...
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_filter_and_sort_all() throws Exception {
+                // arrange
+                HelpRequests helpRequest = HelpRequests.builder().id(7L).requesterEmail("m@ucsb.edu").teamId("s22-6pm-3")
+                                .tableOrBreakoutRoom("t3").explanation("stuck").solved(false)
+                                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00")).build();
+                Sort newestFirst = Sort.by(Sort.Order.desc("requestTime"));
+                when(helpRequestsRepository.findAll(any(Specification.class), eq(newestFirst))).thenReturn(List.of(helpRequest));
+
+                // act
+                MvcResult response = performAsync(get("/api/helprequests/all?filter=solved:false,teamId:s22-6pm-3&sort=-requestTime"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestsRepository).findAll(any(Specification.class), eq(newestFirst));
+                verify(helpRequestsRepository, never()).findAll();
+                assertEquals(mapper.writeValueAsString(List.of(helpRequest)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_filter_selected_fields() throws Exception {
+                // arrange
+                List<Map<String, Object>> rows = List.of(Map.of("id", 7L));
+                when(helpRequestsRepository.findAllFields(any(), any())).thenReturn(rows);
+
+                // act
+                MvcResult response = performAsync(get("/api/helprequests/all?fields=id&filter=teamId:s22-6pm-3"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestsRepository).findAllFields(argThat(fields -> fields.getNames().equals(List.of("id"))),
+                                argThat(filter -> filter.getSpecification() != null && filter.getSort().isUnsorted()));
+                assertEquals(mapper.writeValueAsString(rows), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void filters_on_unindexed_fields_are_a_bad_request() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/helprequests/all?filter=explanation:stuck"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(helpRequestsRepository, never()).findAll(any(Specification.class), any(Sort.class));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("InvalidQueryException", json.get("type"));
+                assertEquals("HelpRequests cannot be filtered or sorted on explanation; "
+                                + "indexed fields are id,requestTime,requesterEmail,solved,teamId", json.get("message"));
+        }
 }
@@ -0,0 +1,133 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.JobService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@WebMvcTest(controllers = JobsController.class)
+@Import(TestConfig.class)
+public class JobsControllerTests extends ControllerTestCase {
+
+  @MockBean
+  JobService jobService;
+
+  @MockBean
+  UserRepository userRepository;
+
+  private Job runningImport() {
+    return Job.builder()
+        .id(4L)
+        .type("csvImport")
+        .description("import UCSBDate rows from dates.csv")
+        .status(Job.Status.RUNNING)
+        .createdBy("admin@example.org")
+        .createdAt(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .progress(2000L)
+        .progressMessage("1998 rows imported, 2 errors")
+        .params("{\"entityName\":\"UCSBDate\"}")
+        .log("2022-01-03T00:00:01 INFO  JobService - job 4 (csvImport) started")
+        .build();
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void regular_users_cannot_see_jobs() throws Exception {
+    mockMvc.perform(get("/api/jobs/all"))
+        .andExpect(status().is(403));
+    mockMvc.perform(post("/api/jobs/cancel?id=4").with(csrf()))
+        .andExpect(status().is(403));
+    verify(jobService, never()).cancel(4L);
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_can_poll_a_job_and_its_params_are_json_but_its_log_is_left_out() throws Exception {
+    // arrange
+    when(jobService.find(4L)).thenReturn(runningImport());
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/jobs?id=4"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("RUNNING", json.get("status"));
+    assertEquals(2000, json.get("progress"));
+    assertEquals(Map.of("entityName", "UCSBDate"), json.get("params"));
+    assertFalse(json.containsKey("log"));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_can_list_jobs_and_read_a_log() throws Exception {
+    // arrange
+    when(jobService.findAll()).thenReturn(List.of(runningImport()));
+    when(jobService.find(4L)).thenReturn(runningImport());
+
+    // act
+    MvcResult list = mockMvc.perform(get("/api/jobs/all"))
+        .andExpect(status().isOk()).andReturn();
+    MvcResult log = mockMvc.perform(get("/api/jobs/log?id=4"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(1, mapper.readValue(list.getResponse().getContentAsString(), List.class).size());
+    assertEquals("2022-01-03T00:00:01 INFO  JobService - job 4 (csvImport) started",
+        log.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_can_cancel_a_job() throws Exception {
+    // arrange
+    Job cancelling = runningImport();
+    cancelling.setCancelRequested(true);
+    when(jobService.cancel(4L)).thenReturn(cancelling);
+
+    // act
+    MvcResult response = mockMvc.perform(post("/api/jobs/cancel?id=4").with(csrf()))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    verify(jobService, times(1)).cancel(4L);
+    assertEquals(true, responseToJson(response).get("cancelRequested"));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void polling_a_job_that_does_not_exist_is_not_found() throws Exception {
+    // arrange
+    when(jobService.find(9L)).thenThrow(new EntityNotFoundException(Job.class, 9L));
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/jobs?id=9"))
+        .andExpect(status().isNotFound()).andReturn();
+
+    // assert
+    assertEquals("Job with id 9 not found", responseToJson(response).get("message"));
+  }
+}
@@ -0,0 +1,95 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.models.QueryStats;
+import edu.ucsb.cs156.example.models.SlowQuery;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.SlowQueryService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@WebMvcTest(controllers = QueriesController.class)
+@Import(TestConfig.class)
+public class QueriesControllerTests extends ControllerTestCase {
+
+  @MockBean
+  SlowQueryService slowQueryService;
+
+  @MockBean
+  UserRepository userRepository;
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void only_admins_can_read_query_statistics() throws Exception {
+    mockMvc.perform(get("/api/admin/queries/top"))
+        .andExpect(status().is(403));
+    mockMvc.perform(get("/api/admin/queries/slow"))
+        .andExpect(status().is(403));
+    verify(slowQueryService, never()).top(any(), anyInt());
+    verify(slowQueryService, never()).slowest();
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_can_read_the_top_and_the_slow_queries() throws Exception {
+    // arrange
+    QueryStats stats = QueryStats.builder()
+        .fingerprint("select u1_.id from ucsbdates u1_ where u1_.id in (?, ...)")
+        .repositoryMethod("UCSBDateRepository.findAllById")
+        .count(12)
+        .totalMillis(30.5)
+        .maxMillis(9.0)
+        .meanMillis(2.5)
+        .build();
+    SlowQuery slow = SlowQuery.builder()
+        .fingerprint("select u1_.id from ucsbdates u1_")
+        .repositoryMethod("UCSBDateRepository.findAll")
+        .durationMillis(240.0)
+        .occurredAt(LocalDateTime.parse("2022-04-01T10:00:00"))
+        .traceId("abc")
+        .build();
+    when(slowQueryService.top(SlowQueryService.SortBy.MAX, 5)).thenReturn(List.of(stats));
+    when(slowQueryService.slowest()).thenReturn(List.of(slow));
+
+    // act
+    MvcResult top = mockMvc.perform(get("/api/admin/queries/top?sortBy=max&limit=5"))
+        .andExpect(status().isOk()).andReturn();
+    MvcResult slowest = mockMvc.perform(get("/api/admin/queries/slow"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(List.of(stats)), top.getResponse().getContentAsString());
+    assertEquals(mapper.writeValueAsString(List.of(slow)), slowest.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void an_unknown_sort_or_a_limit_out_of_range_is_a_bad_request() throws Exception {
+    MvcResult sort = mockMvc.perform(get("/api/admin/queries/top?sortBy=slowest"))
+        .andExpect(status().isBadRequest()).andReturn();
+    MvcResult limit = mockMvc.perform(get("/api/admin/queries/top?limit=0"))
+        .andExpect(status().isBadRequest()).andReturn();
+
+    assertEquals("sortBy must be total, count, max or mean", responseToJson(sort).get("message"));
+    assertEquals("limit must be between 1 and 500", responseToJson(limit).get("message"));
+    verify(slowQueryService, never()).top(any(), anyInt());
+  }
+}
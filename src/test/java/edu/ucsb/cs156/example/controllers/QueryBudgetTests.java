@@ -0,0 +1,412 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.oauth2Login;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.aop.QueryBudget;
+import edu.ucsb.cs156.example.entities.ArchivedHelpRequest;
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.entities.HelpRequests;
+import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBMenuItemReview;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.ArchivedHelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.ArticleRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestsRepository;
+import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBMenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.SlowQueryService;
+import edu.ucsb.cs156.example.testconfig.QueryBudgetTest;
+
+/**
+ * Sends each /api/ endpoint a request that succeeds, as a signed in admin,
+ * against real repositories; with @QueryBudgetTest, one that runs more SQL
+ * statements than its @QueryBudget fails its test. Endpoints whose budget
+ * is UNBOUNDED are left out.
+ */
+@QueryBudgetTest
+// every trace is kept, so that one can be read back; no request is turned away
+@TestPropertySource(properties = { "app.tracing.sampleRate=1", "app.rateLimit.enabled=false" })
+public class QueryBudgetTests {
+  private static final String EMAIL = "admin@ucsb.edu";
+  private static final LocalDateTime NOON = LocalDateTime.parse("2022-01-03T12:00:00");
+
+  @Autowired
+  MockMvc mockMvc;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Autowired
+  RequestMappingHandlerMapping handlerMapping;
+
+  @Autowired
+  SlowQueryService slowQueryService;
+
+  @Autowired
+  UserRepository userRepository;
+
+  @Autowired
+  ArticleRepository articleRepository;
+
+  @Autowired
+  HelpRequestsRepository helpRequestsRepository;
+
+  @Autowired
+  ArchivedHelpRequestRepository archivedHelpRequestRepository;
+
+  @Autowired
+  RecommendationRequestRepository recommendationRequestRepository;
+
+  @Autowired
+  UCSBDateRepository ucsbDateRepository;
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired
+  UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+  @Autowired
+  UCSBMenuItemReviewRepository ucsbMenuItemReviewRepository;
+
+  @Autowired
+  UCSBOrganizationRepository ucsbOrganizationRepository;
+
+  @BeforeEach
+  void signUpAdmin() {
+    // signed up already, as on every request but the first
+    userRepository.save(User.builder().email(EMAIL).googleSub("1").emailVerified(true).admin(true).build());
+  }
+
+  @AfterEach
+  void deleteRows() {
+    ucsbMenuItemReviewRepository.deleteAll();
+    ucsbDiningCommonsMenuItemRepository.deleteAll();
+    ucsbDiningCommonsRepository.deleteAll();
+    ucsbOrganizationRepository.deleteAll();
+    ucsbDateRepository.deleteAll();
+    recommendationRequestRepository.deleteAll();
+    helpRequestsRepository.deleteAll();
+    archivedHelpRequestRepository.deleteAll();
+    articleRepository.deleteAll();
+    userRepository.deleteAll();
+  }
+
+  /**
+   * Performs the request as the admin and, if the handler went async, the
+   * dispatch that writes the response; the budget is checked by then.
+   */
+  private MvcResult perform(MockHttpServletRequestBuilder request) throws Exception {
+    MvcResult result = mockMvc.perform(request.with(oauth2Login()
+        .attributes(attributes -> {
+          attributes.put("sub", "1");
+          attributes.put("email", EMAIL);
+          attributes.put("email_verified", true);
+        })
+        .authorities(new SimpleGrantedAuthority("ROLE_ADMIN"), new SimpleGrantedAuthority("ROLE_USER")))
+        .with(csrf()))
+        .andReturn();
+    if (result.getRequest().isAsyncStarted()) {
+      result = mockMvc.perform(asyncDispatch(result)).andReturn();
+    }
+    int status = result.getResponse().getStatus();
+    assertTrue(status >= 200 && status < 300,
+        "%s %s: %d %s".formatted(request.buildRequest(null).getMethod(), request.buildRequest(null).getRequestURI(),
+            status, result.getResponse().getContentAsString()));
+    return result;
+  }
+
+  private JsonNode json(MvcResult result) throws Exception {
+    return mapper.readTree(result.getResponse().getContentAsString());
+  }
+
+  private static MockMultipartFile csv(String content) {
+    return new MockMultipartFile("file", "import.csv", "text/csv", content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void every_api_endpoint_has_a_query_budget() {
+    for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : handlerMapping.getHandlerMethods().entrySet()) {
+      boolean api = entry.getKey().getPatternValues().stream().anyMatch(pattern -> pattern.startsWith("/api/"));
+      if (api) {
+        assertTrue(entry.getValue().hasMethodAnnotation(QueryBudget.class), entry.getValue().toString());
+      }
+    }
+  }
+
+  // without this a budget of any size would pass
+  @Test
+  public void hibernate_and_jdbc_template_statements_are_both_counted() throws Exception {
+    perform(post("/api/ucsbdates/post?quarterYYYYQ=20223&name=noon&localDateTime=2022-01-03T12:00:00"));
+
+    List<String> fingerprints = slowQueryService.top(SlowQueryService.SortBy.COUNT, 1000).stream()
+        .map(stats -> stats.getFingerprint().toLowerCase()).toList();
+    assertTrue(fingerprints.stream().anyMatch(sql -> sql.startsWith("insert into ucsbdates")), fingerprints::toString);
+    assertTrue(fingerprints.stream().anyMatch(sql -> sql.startsWith("insert into changelog")), fingerprints::toString);
+  }
+
+  @Test
+  public void articles() throws Exception {
+    Article article = articleRepository.save(Article.builder().title("Using testing-playground")
+        .url("https://testing-playground.com/").explanation("helps find queries").email("phtcon@ucsb.edu")
+        .dateAdded(NOON).build());
+    long id = article.getId();
+
+    perform(get("/api/articles/all"));
+    perform(get("/api/articles/all?fields=id,title"));
+    perform(get("/api/articles/all?filter=email:phtcon@ucsb.edu&sort=-dateAdded"));
+    perform(get("/api/articles/all?view=summary"));
+    perform(get("/api/articles?id=" + id));
+    perform(get("/api/articles?id=%d&fields=id,title".formatted(id)));
+    perform(get("/api/articles/many?ids=%d,%d".formatted(id, id + 100)));
+    article.setTitle("Using Testing Playground");
+    perform(put("/api/articles?id=" + id).contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(article)));
+    JsonNode posted = json(perform(post("/api/articles/post?title=Handy&url=https://example.org"
+        + "&explanation=handy&email=phtcon@ucsb.edu&dateAdded=2022-01-03T12:00:00")));
+    perform(delete("/api/articles?id=" + posted.get("id").asLong()));
+    perform(delete("/api/articles/bulk?ids=" + id));
+  }
+
+  @Test
+  public void help_requests() throws Exception {
+    HelpRequests helpRequest = helpRequestsRepository.save(HelpRequests.builder().requesterEmail("cgaucho@ucsb.edu")
+        .teamId("s22-5pm-3").tableOrBreakoutRoom("7").explanation("dokku problems").solved(true)
+        .requestTime(NOON).build());
+    long id = helpRequest.getId();
+    ArchivedHelpRequest archived = archivedHelpRequestRepository.save(ArchivedHelpRequest.builder().id(id + 1000)
+        .requesterEmail("cgaucho@ucsb.edu").teamId("s22-5pm-3").tableOrBreakoutRoom("7").explanation("old problems")
+        .solved(true).requestTime(NOON.minusYears(1)).archivedAt(NOON).build());
+
+    perform(get("/api/helprequests/all"));
+    perform(get("/api/helprequests/all?includeArchived=true"));
+    perform(get("/api/helprequests/all?fields=id,teamId"));
+    perform(get("/api/helprequests/all?filter=solved:true&sort=-requestTime"));
+    perform(get("/api/helprequests/all?view=summary"));
+    perform(get("/api/helprequests?id=" + id));
+    perform(get("/api/helprequests?id=%d&includeArchived=true".formatted(id)));
+    perform(get("/api/helprequests?id=%d&includeArchived=true".formatted(archived.getId())));
+    perform(get("/api/helprequests?id=%d&fields=id,teamId".formatted(id)));
+    perform(get("/api/helprequests/many?ids=%d,%d".formatted(id, id + 100)));
+    helpRequest.setExplanation("merge conflict");
+    perform(put("/api/helprequests?id=" + id).contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(helpRequest)));
+    JsonNode posted = json(perform(post("/api/helprequests/post?requesterEmail=ldelplaya@ucsb.edu&teamId=s22-6pm-4"
+        + "&tableOrBreakoutRoom=11&explanation=help&solved=false&requestTime=2022-01-03T12:00:00")));
+    perform(delete("/api/helprequests?id=" + posted.get("id").asLong()));
+    perform(delete("/api/helprequests/bulk?ids=%d,%d".formatted(id, id + 100)));
+    perform(delete("/api/helprequests/solved?before=2022-02-01T00:00:00"));
+    perform(delete("/api/helprequests/solved?before=2022-02-01T00:00:00&async=true"));
+  }
+
+  @Test
+  public void recommendation_requests() throws Exception {
+    RecommendationRequest recommendationRequest = recommendationRequestRepository.save(RecommendationRequest.builder()
+        .requesterEmail("cgaucho@ucsb.edu").professorEmail("phtcon@ucsb.edu").explanation("grad school")
+        .dateRequested(NOON).dateNeeded(NOON.plusMonths(1)).done(false).build());
+    long id = recommendationRequest.getId();
+
+    perform(get("/api/recommendationrequests/all"));
+    perform(get("/api/recommendationrequests/all?fields=id,professorEmail"));
+    perform(get("/api/recommendationrequests/all?filter=done:false&sort=-dateNeeded"));
+    perform(get("/api/recommendationrequests/all?view=summary"));
+    perform(get("/api/recommendationrequests?id=" + id));
+    perform(get("/api/recommendationrequests?id=%d&fields=id,professorEmail".formatted(id)));
+    perform(get("/api/recommendationrequests/many?ids=%d,%d".formatted(id, id + 100)));
+    recommendationRequest.setDone(true);
+    perform(put("/api/recommendationrequests?id=" + id).contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(recommendationRequest)));
+    JsonNode posted = json(perform(post("/api/recommendationrequests/post?requestorEmail=ldelplaya@ucsb.edu"
+        + "&professorEmail=phtcon@ucsb.edu&explanation=internship&dateRequested=2022-01-03T12:00:00"
+        + "&dateNeeded=2022-02-03T12:00:00&done=false")));
+    perform(delete("/api/recommendationrequests?id=" + posted.get("id").asLong()));
+    perform(delete("/api/recommendationrequests/bulk?ids=" + id));
+  }
+
+  @Test
+  public void ucsb_dates() throws Exception {
+    UCSBDate date = ucsbDateRepository.save(UCSBDate.builder().quarterYYYYQ("20222").name("firstDayOfClasses")
+        .localDateTime(NOON).build());
+    long id = date.getId();
+
+    perform(get("/api/ucsbdates/all"));
+    perform(get("/api/ucsbdates/all?fields=id,name"));
+    perform(get("/api/ucsbdates/all?filter=quarterYYYYQ:20222&sort=-localDateTime"));
+    perform(get("/api/ucsbdates?id=" + id));
+    perform(get("/api/ucsbdates?id=%d&fields=id,name".formatted(id)));
+    perform(get("/api/ucsbdates/many?ids=%d,%d".formatted(id, id + 100)));
+    date.setName("lastDayOfClasses");
+    perform(put("/api/ucsbdates?id=" + id).contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(date)));
+    JsonNode posted = json(perform(post("/api/ucsbdates/post?quarterYYYYQ=20223&name=noon"
+        + "&localDateTime=2022-01-03T12:00:00")));
+    perform(delete("/api/ucsbdates?id=" + posted.get("id").asLong()));
+    perform(delete("/api/ucsbdates/bulk?ids=" + id));
+    perform(multipart("/api/ucsbdates/import?async=true").file(csv("quarterYYYYQ,name,localDateTime\n")));
+  }
+
+  @Test
+  public void ucsb_dining_commons() throws Exception {
+    UCSBDiningCommons commons = ucsbDiningCommonsRepository.save(UCSBDiningCommons.builder().code("ortega")
+        .name("Ortega").hasSackMeal(true).hasTakeOutMeal(true).hasDiningCam(true).latitude(34.41)
+        .longitude(-119.85).build());
+
+    perform(get("/api/ucsbdiningcommons/all"));
+    perform(get("/api/ucsbdiningcommons/all?fields=code,name"));
+    perform(get("/api/ucsbdiningcommons/all?filter=code:ortega&sort=name"));
+    perform(get("/api/ucsbdiningcommons?code=ortega"));
+    perform(get("/api/ucsbdiningcommons?code=ortega&fields=code,name"));
+    perform(get("/api/ucsbdiningcommons/many?codes=ortega,carrillo"));
+    commons.setHasSackMeal(false);
+    perform(put("/api/ucsbdiningcommons?code=ortega").contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(commons)));
+    perform(post("/api/ucsbdiningcommons/post?code=dlg&name=De La Guerra&hasSackMeal=false"
+        + "&hasTakeOutMeal=false&hasDiningCam=true&latitude=34.41&longitude=-119.84"));
+    perform(delete("/api/ucsbdiningcommons?code=dlg"));
+    perform(delete("/api/ucsbdiningcommons/bulk?codes=ortega"));
+  }
+
+  @Test
+  public void ucsb_dining_commons_menu_items() throws Exception {
+    UCSBDiningCommonsMenuItem item = ucsbDiningCommonsMenuItemRepository.save(UCSBDiningCommonsMenuItem.builder()
+        .diningCommonsCode("ortega").name("Burrito").station("Grill").build());
+    long id = item.getId();
+
+    perform(get("/api/UCSBDiningCommonsMenuItem/all"));
+    perform(get("/api/UCSBDiningCommonsMenuItem/all?fields=id,name"));
+    perform(get("/api/UCSBDiningCommonsMenuItem/all?filter=diningCommonsCode:ortega&sort=-id"));
+    perform(get("/api/UCSBDiningCommonsMenuItem?id=" + id));
+    perform(get("/api/UCSBDiningCommonsMenuItem?id=%d&fields=id,name".formatted(id)));
+    perform(get("/api/UCSBDiningCommonsMenuItem/many?ids=%d,%d".formatted(id, id + 100)));
+    item.setStation("Grab and Go");
+    perform(put("/api/UCSBDiningCommonsMenuItem?id=" + id).contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(item)));
+    JsonNode posted = json(perform(post("/api/UCSBDiningCommonsMenuItem/post?diningCommonsCode=dlg&name=Salad"
+        + "&station=Greens")));
+    perform(delete("/api/UCSBDiningCommonsMenuItem?id=" + posted.get("id").asLong()));
+    perform(delete("/api/UCSBDiningCommonsMenuItem/bulk?ids=" + id));
+    perform(multipart("/api/UCSBDiningCommonsMenuItem/import?async=true").file(csv("diningCommonsCode,name,station\n")));
+  }
+
+  @Test
+  public void ucsb_menu_item_reviews() throws Exception {
+    UCSBMenuItemReview review = ucsbMenuItemReviewRepository.save(UCSBMenuItemReview.builder().itemId(7).stars(5)
+        .reviewerEmail("cgaucho@ucsb.edu").dateReviewed(NOON).comments("tasty").build());
+    long id = review.getId();
+
+    perform(get("/api/ucsbmenuitemreview/all"));
+    perform(get("/api/ucsbmenuitemreview/all?fields=id,stars"));
+    perform(get("/api/ucsbmenuitemreview/all?filter=itemId:7&sort=-dateReviewed"));
+    perform(get("/api/ucsbmenuitemreview/all?view=summary"));
+    perform(get("/api/ucsbmenuitemreview?id=" + id));
+    perform(get("/api/ucsbmenuitemreview?id=%d&fields=id,stars".formatted(id)));
+    perform(get("/api/ucsbmenuitemreview/many?ids=%d,%d".formatted(id, id + 100)));
+    review.setStars(4);
+    perform(put("/api/ucsbmenuitemreview?id=" + id).contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(review)));
+    JsonNode posted = json(perform(post("/api/ucsbmenuitemreview/post?itemId=8&stars=3"
+        + "&reviewerEmail=ldelplaya@ucsb.edu&dateReviewed=2022-01-03T12:00:00&comments=fine")));
+    perform(delete("/api/ucsbmenuitemreview?id=" + posted.get("id").asLong()));
+    perform(delete("/api/ucsbmenuitemreview/bulk?ids=" + id));
+    perform(delete("/api/ucsbmenuitemreview/item?itemId=7"));
+    perform(multipart("/api/ucsbmenuitemreview/import?async=true")
+        .file(csv("itemId,stars,reviewerEmail,dateReviewed,comments\n")));
+  }
+
+  @Test
+  public void ucsb_organizations() throws Exception {
+    UCSBOrganization organization = ucsbOrganizationRepository.save(UCSBOrganization.builder().orgCode("ZPR")
+        .orgTranslationShort("Zeta Phi Rho").orgTranslation("Zeta Phi Rho").inactive(false).build());
+
+    perform(get("/api/ucsborganization/all"));
+    perform(get("/api/ucsborganization/all?fields=orgCode,orgTranslationShort"));
+    perform(get("/api/ucsborganization/all?filter=orgTranslationShort:Zeta Phi Rho&sort=orgCode"));
+    perform(get("/api/ucsborganization?orgCode=ZPR"));
+    perform(get("/api/ucsborganization?orgCode=ZPR&fields=orgCode,orgTranslationShort"));
+    perform(get("/api/ucsborganization/many?orgCodes=ZPR,SKY"));
+    organization.setInactive(true);
+    perform(put("/api/ucsborganization?orgCode=ZPR").contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(organization)));
+    perform(post("/api/ucsborganization/post?orgCode=SKY&orgTranslationShort=Skydiving"
+        + "&orgTranslation=Skydiving Club&inactive=false"));
+    perform(delete("/api/ucsborganization?orgCode=SKY"));
+    perform(delete("/api/ucsborganization/bulk?orgCodes=ZPR"));
+    perform(multipart("/api/ucsborganization/import?async=true")
+        .file(csv("orgCode,orgTranslationShort,orgTranslation,inactive\n")));
+  }
+
+  @Test
+  public void jobs() throws Exception {
+    long id = json(perform(delete("/api/helprequests/solved?before=2022-02-01T00:00:00&async=true")))
+        .get("id").asLong();
+
+    perform(get("/api/jobs/all"));
+    perform(get("/api/jobs?id=" + id));
+    perform(get("/api/jobs/log?id=" + id));
+    perform(post("/api/jobs/cancel?id=" + id));
+  }
+
+  @Test
+  public void changes_and_sync() throws Exception {
+    long seq = json(perform(get("/api/changes"))).get("latest").asLong();
+    perform(post("/api/ucsbdates/post?quarterYYYYQ=20222&name=noon&localDateTime=2022-01-03T12:00:00"));
+    perform(post("/api/articles/post?title=Handy&url=https://example.org"
+        + "&explanation=handy&email=phtcon@ucsb.edu&dateAdded=2022-01-03T12:00:00"));
+
+    perform(get("/api/changes?since=%d&entities=UCSBDate".formatted(seq)));
+    perform(get("/api/changes?since=" + seq));
+    perform(post("/api/sync/UCSBDate").contentType(MediaType.APPLICATION_JSON).content("{}"));
+  }
+
+  @Test
+  public void users_and_admin() throws Exception {
+    MvcResult traced = perform(get("/api/currentUser"));
+    perform(get("/api/systemInfo"));
+    perform(get("/api/admin/users"));
+    perform(get("/api/admin/audit?user=" + EMAIL));
+    perform(get("/api/admin/traces/all"));
+    perform(get("/api/admin/traces?id=" + traced.getResponse().getHeader("X-Trace-Id")));
+    perform(get("/api/admin/queries/top?sortBy=total"));
+    perform(get("/api/admin/queries/slow"));
+  }
+}
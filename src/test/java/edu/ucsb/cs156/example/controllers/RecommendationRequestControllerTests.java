@@ -2,9 +2,14 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.RecommendationRequestService;
+import edu.ucsb.cs156.example.services.SyncTreeService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.models.MultiGetResult;
+import edu.ucsb.cs156.example.models.RecommendationRequestSummary;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -24,16 +29,20 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
 
 @WebMvcTest(controllers = RecommendationRequestController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, RecommendationRequestService.class })
 public class RecommendationRequestControllerTests extends ControllerTestCase {
 
     @MockBean
@@ -42,6 +51,12 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
     @MockBean
     UserRepository userRepository;
 
+    @MockBean
+    ChangeLogService changeLogService;
+
+    @MockBean
+    SyncTreeService syncTreeService;
+
     // Tests for GET /api/recommendationrequests/all
 
     @Test
@@ -53,7 +68,7 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
     @WithMockUser(roles = { "USER" })
     @Test
     public void logged_in_users_can_get_all() throws Exception {
-        mockMvc.perform(get("/api/recommendationrequests/all"))
+        performAsync(get("/api/recommendationrequests/all"))
             .andExpect(status().is(200)); // logged
     }
 
@@ -92,7 +107,7 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
         when(recommendationRequestRepository.findAll()).thenReturn(expectedRequests);
 
         // act
-        MvcResult response = mockMvc.perform(get("/api/recommendationrequests/all"))
+        MvcResult response = performAsync(get("/api/recommendationrequests/all"))
             .andExpect(status().isOk()).andReturn();
 
         // assert
@@ -103,6 +118,25 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
         assertEquals(expectedJson, responseString);
     }
 
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_summaries_of_all_recommendation_requests() throws Exception {
+        // arrange
+        List<RecommendationRequestSummary> summaries = List.of(
+            new RecommendationRequestSummary(1L, "abc@ucsb.edu", "xyz@ucsb.edu", LocalDateTime.parse("2022-07-25T07:03:23"), LocalDateTime.parse("2023-03-01T00:00:00"), true));
+        when(recommendationRequestRepository.findAllSummaries()).thenReturn(summaries);
+
+        // act
+        MvcResult response = performAsync(get("/api/recommendationrequests/all?view=summary"))
+            .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, never()).findAll();
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(mapper.writeValueAsString(summaries), responseString);
+        assertFalse(responseString.contains("explanation"));
+    }
+
     // Tests for POST /api/recommendationrequests/post...
 
     @Test
@@ -348,4 +382,131 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
         assertEquals("RecommendationRequest with id 67 not found", json.get("message"));
 
     }
+
+    // Tests for DELETE /api/recommendationrequests/bulk?ids=...
+
+    @Test
+    public void logged_out_users_cannot_bulk_delete() throws Exception {
+        mockMvc.perform(delete("/api/recommendationrequests/bulk?ids=1,2,3").with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_bulk_delete() throws Exception {
+        mockMvc.perform(delete("/api/recommendationrequests/bulk?ids=1,2,3").with(csrf()))
+                .andExpect(status().is(403)); // only admins can bulk delete
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_bulk_delete_with_a_single_statement() throws Exception {
+        // arrange
+
+        when(recommendationRequestRepository.findExistingIds(eq(List.of(1L, 2L, 3L)))).thenReturn(List.of(1L, 3L));
+        when(recommendationRequestRepository.bulkDelete(eq(List.of(1L, 3L)))).thenReturn(2);
+
+        // act
+        MvcResult response = performAsync(
+                delete("/api/recommendationrequests/bulk?ids=1,2,3")
+                        .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, times(1)).bulkDelete(List.of(1L, 3L));
+        verify(recommendationRequestRepository, never()).findById(any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("2 RecommendationRequest deleted", json.get("message"));
+        assertEquals(2, json.get("count"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_bulk_delete_with_no_ids_does_not_touch_the_database() throws Exception {
+        // act
+        MvcResult response = performAsync(
+                delete("/api/recommendationrequests/bulk?ids=")
+                        .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, never()).bulkDelete(any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("0 RecommendationRequest deleted", json.get("message"));
+        assertEquals(0, json.get("count"));
+    }
+
+    // Tests for GET /api/recommendationrequests/many?ids=...
+
+    @Test
+    public void logged_out_users_cannot_get_many() throws Exception {
+        mockMvc.perform(get("/api/recommendationrequests/many?ids=3,1,2"))
+                .andExpect(status().is(403)); // logged out users can't get many
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_many_in_request_order_with_missing_reported() throws Exception {
+        // arrange
+
+        RecommendationRequest first = RecommendationRequest.builder().id(3L).build();
+        RecommendationRequest second = RecommendationRequest.builder().id(1L).build();
+
+        when(recommendationRequestRepository.findAllById(eq(List.of(3L, 1L, 2L)))).thenReturn(List.of(second, first));
+
+        // act
+        MvcResult response = performAsync(get("/api/recommendationrequests/many?ids=3,1,2,3"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(recommendationRequestRepository, times(1)).findAllById(List.of(3L, 1L, 2L));
+        verify(recommendationRequestRepository, never()).findById(any());
+        String expectedJson = mapper.writeValueAsString(
+                MultiGetResult.builder().items(List.of(first, second)).missing(List.of(2L)).build());
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for GET /api/recommendationrequests/all?fields=... and /api/recommendationrequests?id=...&fields=...
+
+    @Test
+    public void logged_out_users_cannot_get_fields() throws Exception {
+        mockMvc.perform(get("/api/recommendationrequests/all?fields=id,professorEmail"))
+            .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_selected_fields_of_all_rows() throws Exception {
+        // arrange
+        List<Map<String, Object>> rows = List.of(Map.of("id", 7L, "professorEmail", "xyz@ucsb.edu"));
+        when(recommendationRequestRepository.findAllFields(any())).thenReturn(rows);
+
+        // act
+        MvcResult response = performAsync(get("/api/recommendationrequests/all?fields=id,professorEmail"))
+            .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository).findAllFields(argThat(fields -> fields.getNames().equals(List.of("id", "professorEmail"))));
+        verify(recommendationRequestRepository, never()).findAll();
+        assertEquals(mapper.writeValueAsString(rows), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_selected_fields_of_one_row() throws Exception {
+        // arrange
+        Map<String, Object> row = Map.of("professorEmail", "xyz@ucsb.edu");
+        when(recommendationRequestRepository.findFieldsById(eq(7L), any())).thenReturn(Optional.of(row));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequests?id=7&fields=professorEmail"))
+            .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository).findFieldsById(eq(7L), argThat(fields -> fields.getNames().equals(List.of("professorEmail"))));
+        verify(recommendationRequestRepository, never()).findById(any());
+        assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+    }
 }
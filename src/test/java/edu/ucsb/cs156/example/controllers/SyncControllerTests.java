@@ -0,0 +1,80 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+import edu.ucsb.cs156.example.models.SyncDiff;
+import edu.ucsb.cs156.example.models.SyncRequest;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.SyncTreeService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.util.List;
+
+@WebMvcTest(controllers = SyncController.class)
+@Import(TestConfig.class)
+public class SyncControllerTests extends ControllerTestCase {
+
+  @MockBean
+  SyncTreeService syncTreeService;
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Test
+  public void logged_out_users_cannot_sync() throws Exception {
+    mockMvc.perform(post("/api/sync/UCSBDiningCommons").with(csrf())
+        .contentType(MediaType.APPLICATION_JSON).content("{}"))
+        .andExpect(status().is(403));
+    verify(syncTreeService, never()).diff(any(), any());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void logged_in_user_gets_the_buckets_that_differ() throws Exception {
+    // arrange
+    SyncRequest request = SyncRequest.builder().root("00000000000000aa")
+        .buckets(List.of("0000000000000001", "0000000000000002")).build();
+    UCSBDiningCommons ortega = UCSBDiningCommons.builder().code("ortega").name("Ortega").build();
+    SyncDiff diff = SyncDiff.builder().root("00000000000000bb").bucketCount(2)
+        .buckets(List.of(new SyncDiff.Bucket(1, "0000000000000003", List.of(ortega)))).build();
+    when(syncTreeService.diff("UCSBDiningCommons", request)).thenReturn(diff);
+
+    // act
+    MvcResult response = performAsync(post("/api/sync/UCSBDiningCommons").with(csrf())
+        .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(request)))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(diff), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void a_table_that_cannot_be_synced_is_a_bad_request() throws Exception {
+    when(syncTreeService.diff(eq("HelpRequests"), any()))
+        .thenThrow(new InvalidQueryException("HelpRequests cannot be synced"));
+
+    performAsync(post("/api/sync/HelpRequests").with(csrf())
+        .contentType(MediaType.APPLICATION_JSON).content("{}"))
+        .andExpect(status().isBadRequest());
+  }
+}
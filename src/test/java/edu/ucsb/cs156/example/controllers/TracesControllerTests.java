@@ -0,0 +1,80 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.models.Trace;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.TraceService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@WebMvcTest(controllers = TracesController.class)
+@Import(TestConfig.class)
+public class TracesControllerTests extends ControllerTestCase {
+
+  @MockBean
+  TraceService traceService;
+
+  @MockBean
+  UserRepository userRepository;
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void only_admins_can_read_traces() throws Exception {
+    mockMvc.perform(get("/api/admin/traces/all"))
+        .andExpect(status().is(403));
+    verify(traceService, never()).list();
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_can_list_traces_and_read_one_with_its_spans() throws Exception {
+    // arrange
+    Trace.Summary summary = new Trace.Summary("abc", "GET", "/api/ucsbdates/all", 200,
+        LocalDateTime.parse("2022-04-01T10:00:00"), 812_000, 3, "slow");
+    Trace trace = new Trace("abc", "GET", "/api/ucsbdates/all", 10);
+    trace.addSpan("repository", "UCSBDateRepository.findAll", trace.getStartNanos() + 2_000, trace.getStartNanos() + 5_000);
+    trace.setStatus(200);
+    when(traceService.list()).thenReturn(List.of(summary));
+    when(traceService.find("abc")).thenReturn(Optional.of(trace));
+
+    // act
+    MvcResult list = mockMvc.perform(get("/api/admin/traces/all"))
+        .andExpect(status().isOk()).andReturn();
+    MvcResult one = mockMvc.perform(get("/api/admin/traces?id=abc"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(List.of(summary)), list.getResponse().getContentAsString());
+    assertEquals(mapper.writeValueAsString(trace), one.getResponse().getContentAsString());
+    List<?> spans = (List<?>) responseToJson(one).get("spans");
+    assertEquals(1, spans.size());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void a_trace_no_longer_kept_is_not_found() throws Exception {
+    when(traceService.find("gone")).thenReturn(Optional.empty());
+
+    MvcResult response = mockMvc.perform(get("/api/admin/traces?id=gone"))
+        .andExpect(status().isNotFound()).andReturn();
+
+    assertEquals("Trace with id gone not found", responseToJson(response).get("message"));
+  }
+}
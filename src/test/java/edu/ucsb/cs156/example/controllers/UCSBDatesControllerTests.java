@@ -1,10 +1,21 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.CsvImportJobHandler;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.CsvImportSpec;
+import edu.ucsb.cs156.example.services.UCSBDateService;
+import edu.ucsb.cs156.example.services.SyncTreeService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.errors.CsvFormatException;
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.models.CsvImportResult;
+import edu.ucsb.cs156.example.models.CsvRowError;
+import edu.ucsb.cs156.example.models.MultiGetResult;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -14,6 +25,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -23,17 +35,21 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 
 import java.time.LocalDateTime;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
 
 @WebMvcTest(controllers = UCSBDatesController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, UCSBDateService.class })
 public class UCSBDatesControllerTests extends ControllerTestCase {
 
         @MockBean
@@ -42,6 +58,18 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        ChangeLogService changeLogService;
+
+        @MockBean
+        SyncTreeService syncTreeService;
+
+        @MockBean
+        CsvImportService csvImportService;
+
+        @MockBean
+        CsvImportJobHandler csvImportJobHandler;
+
         // Tests for GET /api/ucsbdates/all
         
         @Test
@@ -53,7 +81,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         @WithMockUser(roles = { "USER" })
         @Test
         public void logged_in_users_can_get_all() throws Exception {
-                mockMvc.perform(get("/api/ucsbdates/all"))
+                performAsync(get("/api/ucsbdates/all"))
                                 .andExpect(status().is(200)); // logged
         }
 
@@ -84,7 +112,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 when(ucsbDateRepository.findAll()).thenReturn(expectedDates);
 
                 // act
-                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all"))
+                MvcResult response = performAsync(get("/api/ucsbdates/all"))
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
@@ -320,4 +348,232 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDate with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for DELETE /api/ucsbdates/bulk?ids=...
+
+        @Test
+        public void logged_out_users_cannot_bulk_delete() throws Exception {
+                mockMvc.perform(delete("/api/ucsbdates/bulk?ids=1,2,3").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_bulk_delete() throws Exception {
+                mockMvc.perform(delete("/api/ucsbdates/bulk?ids=1,2,3").with(csrf()))
+                                .andExpect(status().is(403)); // only admins can bulk delete
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_bulk_delete_with_a_single_statement() throws Exception {
+                // arrange
+
+                when(ucsbDateRepository.findExistingIds(eq(List.of(1L, 2L, 3L)))).thenReturn(List.of(1L, 3L));
+                when(ucsbDateRepository.bulkDelete(eq(List.of(1L, 3L)))).thenReturn(2);
+
+                // act
+                MvcResult response = performAsync(
+                                delete("/api/ucsbdates/bulk?ids=1,2,3")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).bulkDelete(List.of(1L, 3L));
+                verify(ucsbDateRepository, never()).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 UCSBDate deleted", json.get("message"));
+                assertEquals(2, json.get("count"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_bulk_delete_with_no_ids_does_not_touch_the_database() throws Exception {
+                // act
+                MvcResult response = performAsync(
+                                delete("/api/ucsbdates/bulk?ids=")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).bulkDelete(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("0 UCSBDate deleted", json.get("message"));
+                assertEquals(0, json.get("count"));
+        }
+
+        // Tests for GET /api/ucsbdates/many?ids=...
+
+        @Test
+        public void logged_out_users_cannot_get_many() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/many?ids=3,1,2"))
+                                .andExpect(status().is(403)); // logged out users can't get many
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_many_in_request_order_with_missing_reported() throws Exception {
+                // arrange
+
+                UCSBDate first = UCSBDate.builder().id(3L).build();
+                UCSBDate second = UCSBDate.builder().id(1L).build();
+
+                when(ucsbDateRepository.findAllById(eq(List.of(3L, 1L, 2L)))).thenReturn(List.of(second, first));
+
+                // act
+                MvcResult response = performAsync(get("/api/ucsbdates/many?ids=3,1,2,3"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findAllById(List.of(3L, 1L, 2L));
+                verify(ucsbDateRepository, never()).findById(any());
+                String expectedJson = mapper.writeValueAsString(
+                                MultiGetResult.builder().items(List.of(first, second)).missing(List.of(2L)).build());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for GET /api/ucsbdates/all?fields=... and /api/ucsbdates?id=...&fields=...
+
+        @Test
+        public void logged_out_users_cannot_get_fields() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/all?fields=id,name"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_selected_fields_of_all_rows() throws Exception {
+                // arrange
+                List<Map<String, Object>> rows = List.of(Map.of("id", 7L, "name", "firstDayOfClasses"));
+                when(ucsbDateRepository.findAllFields(any())).thenReturn(rows);
+
+                // act
+                MvcResult response = performAsync(get("/api/ucsbdates/all?fields=id,name"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository).findAllFields(argThat(fields -> fields.getNames().equals(List.of("id", "name"))));
+                verify(ucsbDateRepository, never()).findAll();
+                assertEquals(mapper.writeValueAsString(rows), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_selected_fields_of_one_row() throws Exception {
+                // arrange
+                Map<String, Object> row = Map.of("name", "firstDayOfClasses");
+                when(ucsbDateRepository.findFieldsById(eq(7L), any())).thenReturn(Optional.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates?id=7&fields=name"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository).findFieldsById(eq(7L), argThat(fields -> fields.getNames().equals(List.of("name"))));
+                verify(ucsbDateRepository, never()).findById(any());
+                assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void unknown_fields_are_a_bad_request() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all?fields=id,secret"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).findAllFields(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("InvalidQueryException", json.get("type"));
+                assertEquals("UCSBDate has no field secret; fields are id,quarterYYYYQ,name,localDateTime", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void fields_of_a_missing_date_are_not_found() throws Exception {
+                // arrange
+                when(ucsbDateRepository.findFieldsById(eq(7L), any())).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates?id=7&fields=name"))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                assertEquals("UCSBDate with id 7 not found", responseToJson(response).get("message"));
+        }
+
+        // Tests for POST /api/ucsbdates/import
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/ucsbdates/import")
+                                .file(new MockMultipartFile("file", "dates.csv", "text/csv", new byte[0]))
+                                .with(csrf()))
+                                .andExpect(status().is(403)); // only admins can import
+                verify(csvImportService, never()).importCsv(any(), any());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_import_a_csv_file() throws Exception {
+                // arrange
+                CsvImportResult result = CsvImportResult.builder().rowsRead(2).rowsImported(1)
+                                .errors(List.of(new CsvRowError(3, "name is required"))).errorCount(1).build();
+                when(csvImportService.importCsv(eq(CsvImportSpec.UCSB_DATES), any())).thenReturn(result);
+
+                // act
+                MvcResult response = mockMvc.perform(multipart("/api/ucsbdates/import")
+                                .file(new MockMultipartFile("file", "dates.csv", "text/csv",
+                                        "quarterYYYYQ,name,localDateTime\n20222,firstDayOfClasses,2022-03-28T00:00:00\n".getBytes(StandardCharsets.UTF_8)))
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(csvImportService, times(1)).importCsv(eq(CsvImportSpec.UCSB_DATES), any());
+                assertEquals(mapper.writeValueAsString(result), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_import_a_csv_file_in_a_background_job() throws Exception {
+                // arrange
+                Job job = Job.builder().id(3L).type(CsvImportJobHandler.TYPE).status(Job.Status.QUEUED).build();
+                when(csvImportJobHandler.submit(eq(CsvImportSpec.UCSB_DATES), any(), eq("user@example.org"))).thenReturn(job);
+
+                // act
+                MvcResult response = mockMvc.perform(multipart("/api/ucsbdates/import?async=true")
+                                .file(new MockMultipartFile("file", "dates.csv", "text/csv",
+                                        "quarterYYYYQ,name,localDateTime\n".getBytes(StandardCharsets.UTF_8)))
+                                .with(csrf()))
+                                .andExpect(status().isAccepted()).andReturn();
+
+                // assert
+                verify(csvImportService, never()).importCsv(any(), any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(3, json.get("id"));
+                assertEquals("QUEUED", json.get("status"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void a_csv_file_without_the_expected_header_is_a_bad_request() throws Exception {
+                // arrange
+                when(csvImportService.importCsv(eq(CsvImportSpec.UCSB_DATES), any()))
+                                .thenThrow(new CsvFormatException("CSV header for UCSBDate is missing quarterYYYYQ"));
+
+                // act
+                MvcResult response = mockMvc.perform(multipart("/api/ucsbdates/import")
+                                .file(new MockMultipartFile("file", "dates.csv", "text/csv",
+                                        "name\nfirstDayOfClasses\n".getBytes(StandardCharsets.UTF_8)))
+                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("CsvFormatException", json.get("type"));
+                assertEquals("CSV header for UCSBDate is missing quarterYYYYQ", json.get("message"));
+        }
 }
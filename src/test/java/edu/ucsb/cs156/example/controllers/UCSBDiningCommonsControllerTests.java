@@ -1,10 +1,14 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsService;
+import edu.ucsb.cs156.example.services.SyncTreeService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.models.MultiGetResult;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -22,16 +26,19 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
 import java.util.Optional;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
 
 @WebMvcTest(controllers = UCSBDiningCommonsController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, UCSBDiningCommonsService.class })
 public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
         @MockBean
@@ -40,6 +47,12 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        ChangeLogService changeLogService;
+
+        @MockBean
+        SyncTreeService syncTreeService;
+
         // Tests for GET /api/ucsbdiningcommons/all
 
         @Test
@@ -51,7 +64,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
         @WithMockUser(roles = { "USER" })
         @Test
         public void logged_in_users_can_get_all() throws Exception {
-                mockMvc.perform(get("/api/ucsbdiningcommons/all"))
+                performAsync(get("/api/ucsbdiningcommons/all"))
                                 .andExpect(status().is(200)); // logged
         }
 
@@ -107,7 +120,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 when(ucsbDiningCommonsRepository.findAll()).thenReturn(expectedCommons);
 
                 // act
-                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all"))
+                MvcResult response = performAsync(get("/api/ucsbdiningcommons/all"))
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
@@ -337,4 +350,131 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
 
         }
+
+        // Tests for DELETE /api/ucsbdiningcommons/bulk?codes=...
+
+        @Test
+        public void logged_out_users_cannot_bulk_delete() throws Exception {
+                mockMvc.perform(delete("/api/ucsbdiningcommons/bulk?codes=carrillo,dlg,ortega").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_bulk_delete() throws Exception {
+                mockMvc.perform(delete("/api/ucsbdiningcommons/bulk?codes=carrillo,dlg,ortega").with(csrf()))
+                                .andExpect(status().is(403)); // only admins can bulk delete
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_bulk_delete_with_a_single_statement() throws Exception {
+                // arrange
+
+                when(ucsbDiningCommonsRepository.findExistingIds(eq(List.of("carrillo", "dlg", "ortega")))).thenReturn(List.of("carrillo", "ortega"));
+                when(ucsbDiningCommonsRepository.bulkDelete(eq(List.of("carrillo", "ortega")))).thenReturn(2);
+
+                // act
+                MvcResult response = performAsync(
+                                delete("/api/ucsbdiningcommons/bulk?codes=carrillo,dlg,ortega")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).bulkDelete(List.of("carrillo", "ortega"));
+                verify(ucsbDiningCommonsRepository, never()).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 UCSBDiningCommons deleted", json.get("message"));
+                assertEquals(2, json.get("count"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_bulk_delete_with_no_codes_does_not_touch_the_database() throws Exception {
+                // act
+                MvcResult response = performAsync(
+                                delete("/api/ucsbdiningcommons/bulk?codes=")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).bulkDelete(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("0 UCSBDiningCommons deleted", json.get("message"));
+                assertEquals(0, json.get("count"));
+        }
+
+        // Tests for GET /api/ucsbdiningcommons/many?codes=...
+
+        @Test
+        public void logged_out_users_cannot_get_many() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/many?codes=ortega,dlg,portola"))
+                                .andExpect(status().is(403)); // logged out users can't get many
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_many_in_request_order_with_missing_reported() throws Exception {
+                // arrange
+
+                UCSBDiningCommons first = UCSBDiningCommons.builder().code("ortega").build();
+                UCSBDiningCommons second = UCSBDiningCommons.builder().code("dlg").build();
+
+                when(ucsbDiningCommonsRepository.findAllById(eq(List.of("ortega", "dlg", "portola")))).thenReturn(List.of(second, first));
+
+                // act
+                MvcResult response = performAsync(get("/api/ucsbdiningcommons/many?codes=ortega,dlg,portola,ortega"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findAllById(List.of("ortega", "dlg", "portola"));
+                verify(ucsbDiningCommonsRepository, never()).findById(any());
+                String expectedJson = mapper.writeValueAsString(
+                                MultiGetResult.builder().items(List.of(first, second)).missing(List.of("portola")).build());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for GET /api/ucsbdiningcommons/all?fields=... and /api/ucsbdiningcommons?code=...&fields=...
+
+        @Test
+        public void logged_out_users_cannot_get_fields() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/all?fields=code,name"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_selected_fields_of_all_rows() throws Exception {
+                // arrange
+                List<Map<String, Object>> rows = List.of(Map.of("code", "ortega", "name", "Ortega"));
+                when(ucsbDiningCommonsRepository.findAllFields(any())).thenReturn(rows);
+
+                // act
+                MvcResult response = performAsync(get("/api/ucsbdiningcommons/all?fields=code,name"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository).findAllFields(argThat(fields -> fields.getNames().equals(List.of("code", "name"))));
+                verify(ucsbDiningCommonsRepository, never()).findAll();
+                assertEquals(mapper.writeValueAsString(rows), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_selected_fields_of_one_row() throws Exception {
+                // arrange
+                Map<String, Object> row = Map.of("name", "Ortega");
+                when(ucsbDiningCommonsRepository.findFieldsById(eq("ortega"), any())).thenReturn(Optional.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons?code=ortega&fields=name"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository).findFieldsById(eq("ortega"), argThat(fields -> fields.getNames().equals(List.of("name"))));
+                verify(ucsbDiningCommonsRepository, never()).findById(any());
+                assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+        }
 }
@@ -1,11 +1,20 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.CsvImportJobHandler;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.CsvImportSpec;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsMenuItemService;
+import edu.ucsb.cs156.example.services.SyncTreeService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.models.CsvImportResult;
+import edu.ucsb.cs156.example.models.CsvRowError;
+import edu.ucsb.cs156.example.models.MultiGetResult;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -15,6 +24,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -24,17 +34,21 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 
 import java.time.LocalDateTime;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
 
 @WebMvcTest(controllers = UCSBDiningCommonsMenuItemController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, UCSBDiningCommonsMenuItemService.class })
 public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase {
 
         @MockBean
@@ -43,6 +57,18 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        ChangeLogService changeLogService;
+
+        @MockBean
+        SyncTreeService syncTreeService;
+
+        @MockBean
+        CsvImportService csvImportService;
+
+        @MockBean
+        CsvImportJobHandler csvImportJobHandler;
+
         // Tests for GET /api/UCSBDiningCommonsMenuItem/all
         
         @Test
@@ -54,7 +80,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         @WithMockUser(roles = { "USER" })
         @Test
         public void logged_in_users_can_get_all() throws Exception {
-                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all"))
+                performAsync(get("/api/UCSBDiningCommonsMenuItem/all"))
                                 .andExpect(status().is(200)); // logged
         }
 
@@ -81,7 +107,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                 when(ucsbDiningCommonsMenuItemRepository.findAll()).thenReturn(expectedMenuItems);
 
                 // act
-                MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all"))
+                MvcResult response = performAsync(get("/api/UCSBDiningCommonsMenuItem/all"))
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
@@ -308,4 +334,163 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenuItem with id 15 not found", json.get("message"));
         }
+
+        // Tests for DELETE /api/UCSBDiningCommonsMenuItem/bulk?ids=...
+
+        @Test
+        public void logged_out_users_cannot_bulk_delete() throws Exception {
+                mockMvc.perform(delete("/api/UCSBDiningCommonsMenuItem/bulk?ids=1,2,3").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_bulk_delete() throws Exception {
+                mockMvc.perform(delete("/api/UCSBDiningCommonsMenuItem/bulk?ids=1,2,3").with(csrf()))
+                                .andExpect(status().is(403)); // only admins can bulk delete
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_bulk_delete_with_a_single_statement() throws Exception {
+                // arrange
+
+                when(ucsbDiningCommonsMenuItemRepository.findExistingIds(eq(List.of(1L, 2L, 3L)))).thenReturn(List.of(1L, 3L));
+                when(ucsbDiningCommonsMenuItemRepository.bulkDelete(eq(List.of(1L, 3L)))).thenReturn(2);
+
+                // act
+                MvcResult response = performAsync(
+                                delete("/api/UCSBDiningCommonsMenuItem/bulk?ids=1,2,3")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).bulkDelete(List.of(1L, 3L));
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 UCSBDiningCommonsMenuItem deleted", json.get("message"));
+                assertEquals(2, json.get("count"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_bulk_delete_with_no_ids_does_not_touch_the_database() throws Exception {
+                // act
+                MvcResult response = performAsync(
+                                delete("/api/UCSBDiningCommonsMenuItem/bulk?ids=")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, never()).bulkDelete(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("0 UCSBDiningCommonsMenuItem deleted", json.get("message"));
+                assertEquals(0, json.get("count"));
+        }
+
+        // Tests for GET /api/UCSBDiningCommonsMenuItem/many?ids=...
+
+        @Test
+        public void logged_out_users_cannot_get_many() throws Exception {
+                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/many?ids=3,1,2"))
+                                .andExpect(status().is(403)); // logged out users can't get many
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_many_in_request_order_with_missing_reported() throws Exception {
+                // arrange
+
+                UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder().id(3L).build();
+                UCSBDiningCommonsMenuItem second = UCSBDiningCommonsMenuItem.builder().id(1L).build();
+
+                when(ucsbDiningCommonsMenuItemRepository.findAllById(eq(List.of(3L, 1L, 2L)))).thenReturn(List.of(second, first));
+
+                // act
+                MvcResult response = performAsync(get("/api/UCSBDiningCommonsMenuItem/many?ids=3,1,2,3"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findAllById(List.of(3L, 1L, 2L));
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findById(any());
+                String expectedJson = mapper.writeValueAsString(
+                                MultiGetResult.builder().items(List.of(first, second)).missing(List.of(2L)).build());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for GET /api/UCSBDiningCommonsMenuItem/all?fields=... and /api/UCSBDiningCommonsMenuItem?id=...&fields=...
+
+        @Test
+        public void logged_out_users_cannot_get_fields() throws Exception {
+                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all?fields=id,name"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_selected_fields_of_all_rows() throws Exception {
+                // arrange
+                List<Map<String, Object>> rows = List.of(Map.of("id", 7L, "name", "Burrito"));
+                when(ucsbDiningCommonsMenuItemRepository.findAllFields(any())).thenReturn(rows);
+
+                // act
+                MvcResult response = performAsync(get("/api/UCSBDiningCommonsMenuItem/all?fields=id,name"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository).findAllFields(argThat(fields -> fields.getNames().equals(List.of("id", "name"))));
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findAll();
+                assertEquals(mapper.writeValueAsString(rows), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_selected_fields_of_one_row() throws Exception {
+                // arrange
+                Map<String, Object> row = Map.of("name", "Burrito");
+                when(ucsbDiningCommonsMenuItemRepository.findFieldsById(eq(7L), any())).thenReturn(Optional.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem?id=7&fields=name"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository).findFieldsById(eq(7L), argThat(fields -> fields.getNames().equals(List.of("name"))));
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findById(any());
+                assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+        }
+
+        // Tests for POST /api/UCSBDiningCommonsMenuItem/import
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/UCSBDiningCommonsMenuItem/import")
+                                .file(new MockMultipartFile("file", "menu items.csv", "text/csv", new byte[0]))
+                                .with(csrf()))
+                                .andExpect(status().is(403)); // only admins can import
+                verify(csvImportService, never()).importCsv(any(), any());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_import_a_csv_file() throws Exception {
+                // arrange
+                CsvImportResult result = CsvImportResult.builder().rowsRead(2).rowsImported(1)
+                                .errors(List.of(new CsvRowError(3, "name is required"))).errorCount(1).build();
+                when(csvImportService.importCsv(eq(CsvImportSpec.UCSB_DINING_COMMONS_MENU_ITEMS), any())).thenReturn(result);
+
+                // act
+                MvcResult response = mockMvc.perform(multipart("/api/UCSBDiningCommonsMenuItem/import")
+                                .file(new MockMultipartFile("file", "menu items.csv", "text/csv",
+                                        "diningCommonsCode,name,station\nortega,Burrito,Grill\n".getBytes(StandardCharsets.UTF_8)))
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(csvImportService, times(1)).importCsv(eq(CsvImportSpec.UCSB_DINING_COMMONS_MENU_ITEMS), any());
+                assertEquals(mapper.writeValueAsString(result), response.getResponse().getContentAsString());
+        }
 }
@@ -1,7 +1,9 @@
 package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -9,21 +11,26 @@ import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.mockito.Mockito.never;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -31,10 +38,20 @@ import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBMenuItemReview;
 import edu.ucsb.cs156.example.repositories.UCSBMenuItemReviewRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.CsvImportJobHandler;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.CsvImportSpec;
+import edu.ucsb.cs156.example.services.UCSBMenuItemReviewService;
+import edu.ucsb.cs156.example.services.SyncTreeService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import edu.ucsb.cs156.example.models.CsvImportResult;
+import edu.ucsb.cs156.example.models.CsvRowError;
+import edu.ucsb.cs156.example.models.MultiGetResult;
+import edu.ucsb.cs156.example.models.UCSBMenuItemReviewSummary;
 
 @WebMvcTest(controllers = UCSBMenuItemReviewController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, UCSBMenuItemReviewService.class })
 public class UCSBMenuItemReviewControllerTests extends ControllerTestCase {
 
     @MockBean
@@ -43,6 +60,18 @@ public class UCSBMenuItemReviewControllerTests extends ControllerTestCase {
     @MockBean
     UserRepository userRepository;
 
+    @MockBean
+    ChangeLogService changeLogService;
+
+    @MockBean
+    SyncTreeService syncTreeService;
+
+    @MockBean
+    CsvImportService csvImportService;
+
+    @MockBean
+    CsvImportJobHandler csvImportJobHandler;
+
 
     // Tests for GET
 
@@ -55,7 +84,7 @@ public class UCSBMenuItemReviewControllerTests extends ControllerTestCase {
     @WithMockUser(roles = { "USER" })
     @Test
     public void logged_in_users_can_get_all() throws Exception {
-            mockMvc.perform(get("/api/ucsbmenuitemreview/all"))
+            performAsync(get("/api/ucsbmenuitemreview/all"))
                             .andExpect(status().is(200)); // logged
     }
 
@@ -90,7 +119,7 @@ public class UCSBMenuItemReviewControllerTests extends ControllerTestCase {
             when(ucsbMenuItemReviewRepository.findAll()).thenReturn(expectedDates);
 
             // act
-            MvcResult response = mockMvc.perform(get("/api/ucsbmenuitemreview/all"))
+            MvcResult response = performAsync(get("/api/ucsbmenuitemreview/all"))
                             .andExpect(status().isOk()).andReturn();
 
             // assert
@@ -101,6 +130,25 @@ public class UCSBMenuItemReviewControllerTests extends ControllerTestCase {
             assertEquals(expectedJson, responseString);
     }
 
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_summaries_of_all_reviews() throws Exception {
+        // arrange
+        List<UCSBMenuItemReviewSummary> summaries = List.of(
+            new UCSBMenuItemReviewSummary(1L, 7L, 5, "a@ucsb.edu", LocalDateTime.parse("2022-01-03T00:00:00")));
+        when(ucsbMenuItemReviewRepository.findAllSummaries()).thenReturn(summaries);
+
+        // act
+        MvcResult response = performAsync(get("/api/ucsbmenuitemreview/all?view=summary"))
+            .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(ucsbMenuItemReviewRepository, never()).findAll();
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(mapper.writeValueAsString(summaries), responseString);
+        assertFalse(responseString.contains("comments"));
+    }
+
     // Tests for POST 
 
     @Test
@@ -334,4 +382,191 @@ public class UCSBMenuItemReviewControllerTests extends ControllerTestCase {
             assertEquals("UCSBMenuItemReview with id 15 not found", json.get("message"));
     }
 
+    // Tests for DELETE /api/ucsbmenuitemreview/bulk?ids=...
+
+    @Test
+    public void logged_out_users_cannot_bulk_delete() throws Exception {
+        mockMvc.perform(delete("/api/ucsbmenuitemreview/bulk?ids=1,2,3").with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_bulk_delete() throws Exception {
+        mockMvc.perform(delete("/api/ucsbmenuitemreview/bulk?ids=1,2,3").with(csrf()))
+                .andExpect(status().is(403)); // only admins can bulk delete
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_bulk_delete_with_a_single_statement() throws Exception {
+        // arrange
+
+        when(ucsbMenuItemReviewRepository.findExistingIds(eq(List.of(1L, 2L, 3L)))).thenReturn(List.of(1L, 3L));
+        when(ucsbMenuItemReviewRepository.bulkDelete(eq(List.of(1L, 3L)))).thenReturn(2);
+
+        // act
+        MvcResult response = performAsync(
+                delete("/api/ucsbmenuitemreview/bulk?ids=1,2,3")
+                        .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(ucsbMenuItemReviewRepository, times(1)).bulkDelete(List.of(1L, 3L));
+        verify(ucsbMenuItemReviewRepository, never()).findById(any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("2 UCSBMenuItemReview deleted", json.get("message"));
+        assertEquals(2, json.get("count"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_bulk_delete_with_no_ids_does_not_touch_the_database() throws Exception {
+        // act
+        MvcResult response = performAsync(
+                delete("/api/ucsbmenuitemreview/bulk?ids=")
+                        .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(ucsbMenuItemReviewRepository, never()).bulkDelete(any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("0 UCSBMenuItemReview deleted", json.get("message"));
+        assertEquals(0, json.get("count"));
+    }
+
+    // Tests for DELETE /api/ucsbmenuitemreview/item?itemId=...
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_delete_reviews_for_an_item() throws Exception {
+        mockMvc.perform(delete("/api/ucsbmenuitemreview/item?itemId=27").with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_delete_all_reviews_for_an_item() throws Exception {
+        // arrange
+
+        when(ucsbMenuItemReviewRepository.bulkDeleteByItemId(eq(27L))).thenReturn(3);
+
+        // act
+        MvcResult response = performAsync(
+                delete("/api/ucsbmenuitemreview/item?itemId=27")
+                        .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(ucsbMenuItemReviewRepository, times(1)).bulkDeleteByItemId(27L);
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("3 UCSBMenuItemReview deleted", json.get("message"));
+        assertEquals(3, json.get("count"));
+    }
+
+    // Tests for GET /api/ucsbmenuitemreview/many?ids=...
+
+    @Test
+    public void logged_out_users_cannot_get_many() throws Exception {
+        mockMvc.perform(get("/api/ucsbmenuitemreview/many?ids=3,1,2"))
+                .andExpect(status().is(403)); // logged out users can't get many
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_many_in_request_order_with_missing_reported() throws Exception {
+        // arrange
+
+        UCSBMenuItemReview first = UCSBMenuItemReview.builder().id(3L).build();
+        UCSBMenuItemReview second = UCSBMenuItemReview.builder().id(1L).build();
+
+        when(ucsbMenuItemReviewRepository.findAllById(eq(List.of(3L, 1L, 2L)))).thenReturn(List.of(second, first));
+
+        // act
+        MvcResult response = performAsync(get("/api/ucsbmenuitemreview/many?ids=3,1,2,3"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(ucsbMenuItemReviewRepository, times(1)).findAllById(List.of(3L, 1L, 2L));
+        verify(ucsbMenuItemReviewRepository, never()).findById(any());
+        String expectedJson = mapper.writeValueAsString(
+                MultiGetResult.builder().items(List.of(first, second)).missing(List.of(2L)).build());
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for GET /api/ucsbmenuitemreview/all?fields=... and /api/ucsbmenuitemreview?id=...&fields=...
+
+    @Test
+    public void logged_out_users_cannot_get_fields() throws Exception {
+        mockMvc.perform(get("/api/ucsbmenuitemreview/all?fields=id,stars"))
+            .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_selected_fields_of_all_rows() throws Exception {
+        // arrange
+        List<Map<String, Object>> rows = List.of(Map.of("id", 7L, "stars", 5));
+        when(ucsbMenuItemReviewRepository.findAllFields(any())).thenReturn(rows);
+
+        // act
+        MvcResult response = performAsync(get("/api/ucsbmenuitemreview/all?fields=id,stars"))
+            .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(ucsbMenuItemReviewRepository).findAllFields(argThat(fields -> fields.getNames().equals(List.of("id", "stars"))));
+        verify(ucsbMenuItemReviewRepository, never()).findAll();
+        assertEquals(mapper.writeValueAsString(rows), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_selected_fields_of_one_row() throws Exception {
+        // arrange
+        Map<String, Object> row = Map.of("stars", 5);
+        when(ucsbMenuItemReviewRepository.findFieldsById(eq(7L), any())).thenReturn(Optional.of(row));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/ucsbmenuitemreview?id=7&fields=stars"))
+            .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(ucsbMenuItemReviewRepository).findFieldsById(eq(7L), argThat(fields -> fields.getNames().equals(List.of("stars"))));
+        verify(ucsbMenuItemReviewRepository, never()).findById(any());
+        assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+    }
+
+    // Tests for POST /api/ucsbmenuitemreview/import
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_import() throws Exception {
+        mockMvc.perform(multipart("/api/ucsbmenuitemreview/import")
+            .file(new MockMultipartFile("file", "reviews.csv", "text/csv", new byte[0]))
+            .with(csrf()))
+            .andExpect(status().is(403)); // only admins can import
+        verify(csvImportService, never()).importCsv(any(), any());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_import_a_csv_file() throws Exception {
+        // arrange
+        CsvImportResult result = CsvImportResult.builder().rowsRead(2).rowsImported(1)
+            .errors(List.of(new CsvRowError(3, "name is required"))).errorCount(1).build();
+        when(csvImportService.importCsv(eq(CsvImportSpec.UCSB_MENU_ITEM_REVIEWS), any())).thenReturn(result);
+
+        // act
+        MvcResult response = mockMvc.perform(multipart("/api/ucsbmenuitemreview/import")
+            .file(new MockMultipartFile("file", "reviews.csv", "text/csv",
+                    "itemId,stars,reviewerEmail,dateReviewed,comments\n7,5,cgaucho@ucsb.edu,2022-01-03T12:00:00,tasty\n".getBytes(StandardCharsets.UTF_8)))
+            .with(csrf()))
+            .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(csvImportService, times(1)).importCsv(eq(CsvImportSpec.UCSB_MENU_ITEM_REVIEWS), any());
+        assertEquals(mapper.writeValueAsString(result), response.getResponse().getContentAsString());
+    }
 }
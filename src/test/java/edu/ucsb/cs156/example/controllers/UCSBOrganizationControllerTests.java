@@ -1,10 +1,19 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.CsvImportJobHandler;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.CsvImportSpec;
+import edu.ucsb.cs156.example.services.UCSBOrganizationService;
+import edu.ucsb.cs156.example.services.SyncTreeService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.models.CsvImportResult;
+import edu.ucsb.cs156.example.models.CsvRowError;
+import edu.ucsb.cs156.example.models.MultiGetResult;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -14,6 +23,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -21,17 +31,21 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
 
 @WebMvcTest(controllers = UCSBOrganizationController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, UCSBOrganizationService.class })
 public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
     @MockBean
@@ -40,6 +54,18 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
     @MockBean
     UserRepository userRepository;
 
+    @MockBean
+    ChangeLogService changeLogService;
+
+    @MockBean
+    SyncTreeService syncTreeService;
+
+    @MockBean
+    CsvImportService csvImportService;
+
+    @MockBean
+    CsvImportJobHandler csvImportJobHandler;
+
      // Tests for GET /api/ucsborganization/all
 
     @Test
@@ -51,7 +77,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
     @WithMockUser(roles = { "USER" })
     @Test
     public void logged_in_users_can_get_all() throws Exception {
-        mockMvc.perform(get("/api/ucsborganization/all"))
+        performAsync(get("/api/ucsborganization/all"))
             .andExpect(status().is(200)); // logged
     }
 
@@ -81,7 +107,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
         when(ucsbOrganizationRepository.findAll()).thenReturn(expectedOrganization);
 
         // act
-        MvcResult response = mockMvc.perform(get("/api/ucsborganization/all"))
+        MvcResult response = performAsync(get("/api/ucsborganization/all"))
             .andExpect(status().isOk()).andReturn();
 
         // assert
@@ -312,4 +338,163 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
             Map<String, Object> json = responseToJson(response);
             assertEquals("UCSBOrganization with id test not found", json.get("message"));
     }
-}
\ No newline at end of file
+
+    // Tests for DELETE /api/ucsborganization/bulk?orgCodes=...
+
+    @Test
+    public void logged_out_users_cannot_bulk_delete() throws Exception {
+        mockMvc.perform(delete("/api/ucsborganization/bulk?orgCodes=ZPR,SKY,OSLI").with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_bulk_delete() throws Exception {
+        mockMvc.perform(delete("/api/ucsborganization/bulk?orgCodes=ZPR,SKY,OSLI").with(csrf()))
+                .andExpect(status().is(403)); // only admins can bulk delete
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_bulk_delete_with_a_single_statement() throws Exception {
+        // arrange
+
+        when(ucsbOrganizationRepository.findExistingIds(eq(List.of("ZPR", "SKY", "OSLI")))).thenReturn(List.of("ZPR", "OSLI"));
+        when(ucsbOrganizationRepository.bulkDelete(eq(List.of("ZPR", "OSLI")))).thenReturn(2);
+
+        // act
+        MvcResult response = performAsync(
+                delete("/api/ucsborganization/bulk?orgCodes=ZPR,SKY,OSLI")
+                        .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(ucsbOrganizationRepository, times(1)).bulkDelete(List.of("ZPR", "OSLI"));
+        verify(ucsbOrganizationRepository, never()).findById(any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("2 UCSBOrganization deleted", json.get("message"));
+        assertEquals(2, json.get("count"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_bulk_delete_with_no_orgcodes_does_not_touch_the_database() throws Exception {
+        // act
+        MvcResult response = performAsync(
+                delete("/api/ucsborganization/bulk?orgCodes=")
+                        .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(ucsbOrganizationRepository, never()).bulkDelete(any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("0 UCSBOrganization deleted", json.get("message"));
+        assertEquals(0, json.get("count"));
+    }
+
+    // Tests for GET /api/ucsborganization/many?orgCodes=...
+
+    @Test
+    public void logged_out_users_cannot_get_many() throws Exception {
+        mockMvc.perform(get("/api/ucsborganization/many?orgCodes=ZPR,SKY,OSLI"))
+                .andExpect(status().is(403)); // logged out users can't get many
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_many_in_request_order_with_missing_reported() throws Exception {
+        // arrange
+
+        UCSBOrganization first = UCSBOrganization.builder().orgCode("ZPR").build();
+        UCSBOrganization second = UCSBOrganization.builder().orgCode("SKY").build();
+
+        when(ucsbOrganizationRepository.findAllById(eq(List.of("ZPR", "SKY", "OSLI")))).thenReturn(List.of(second, first));
+
+        // act
+        MvcResult response = performAsync(get("/api/ucsborganization/many?orgCodes=ZPR,SKY,OSLI,ZPR"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(ucsbOrganizationRepository, times(1)).findAllById(List.of("ZPR", "SKY", "OSLI"));
+        verify(ucsbOrganizationRepository, never()).findById(any());
+        String expectedJson = mapper.writeValueAsString(
+                MultiGetResult.builder().items(List.of(first, second)).missing(List.of("OSLI")).build());
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for GET /api/ucsborganization/all?fields=... and /api/ucsborganization?orgCode=...&fields=...
+
+    @Test
+    public void logged_out_users_cannot_get_fields() throws Exception {
+        mockMvc.perform(get("/api/ucsborganization/all?fields=orgCode,orgTranslationShort"))
+            .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_selected_fields_of_all_rows() throws Exception {
+        // arrange
+        List<Map<String, Object>> rows = List.of(Map.of("orgCode", "ZPR", "orgTranslationShort", "Zeta Phi Rho"));
+        when(ucsbOrganizationRepository.findAllFields(any())).thenReturn(rows);
+
+        // act
+        MvcResult response = performAsync(get("/api/ucsborganization/all?fields=orgCode,orgTranslationShort"))
+            .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(ucsbOrganizationRepository).findAllFields(argThat(fields -> fields.getNames().equals(List.of("orgCode", "orgTranslationShort"))));
+        verify(ucsbOrganizationRepository, never()).findAll();
+        assertEquals(mapper.writeValueAsString(rows), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_selected_fields_of_one_row() throws Exception {
+        // arrange
+        Map<String, Object> row = Map.of("orgTranslationShort", "Zeta Phi Rho");
+        when(ucsbOrganizationRepository.findFieldsById(eq("ZPR"), any())).thenReturn(Optional.of(row));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/ucsborganization?orgCode=ZPR&fields=orgTranslationShort"))
+            .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(ucsbOrganizationRepository).findFieldsById(eq("ZPR"), argThat(fields -> fields.getNames().equals(List.of("orgTranslationShort"))));
+        verify(ucsbOrganizationRepository, never()).findById(any());
+        assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+    }
+
+    // Tests for POST /api/ucsborganization/import
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_import() throws Exception {
+        mockMvc.perform(multipart("/api/ucsborganization/import")
+            .file(new MockMultipartFile("file", "organizations.csv", "text/csv", new byte[0]))
+            .with(csrf()))
+            .andExpect(status().is(403)); // only admins can import
+        verify(csvImportService, never()).importCsv(any(), any());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_import_a_csv_file() throws Exception {
+        // arrange
+        CsvImportResult result = CsvImportResult.builder().rowsRead(2).rowsImported(1)
+            .errors(List.of(new CsvRowError(3, "name is required"))).errorCount(1).build();
+        when(csvImportService.importCsv(eq(CsvImportSpec.UCSB_ORGANIZATIONS), any())).thenReturn(result);
+
+        // act
+        MvcResult response = mockMvc.perform(multipart("/api/ucsborganization/import")
+            .file(new MockMultipartFile("file", "organizations.csv", "text/csv",
+                    "orgCode,orgTranslationShort,orgTranslation,inactive\nZPR,Zeta Phi Rho,Zeta Phi Rho,false\n".getBytes(StandardCharsets.UTF_8)))
+            .with(csrf()))
+            .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(csvImportService, times(1)).importCsv(eq(CsvImportSpec.UCSB_ORGANIZATIONS), any());
+        assertEquals(mapper.writeValueAsString(result), response.getResponse().getContentAsString());
+    }
+}
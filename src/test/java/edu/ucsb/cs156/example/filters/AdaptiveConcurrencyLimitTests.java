@@ -0,0 +1,246 @@
+package edu.ucsb.cs156.example.filters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+class AdaptiveConcurrencyLimitTests {
+
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(1000);
+  private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(1000);
+
+  private final AtomicLong now = new AtomicLong();
+
+  // windows of 1s and at least 3 requests, on a clock the test moves
+  private AdaptiveConcurrencyLimit limit(int initial, int min, int max) {
+    return new AdaptiveConcurrencyLimit(initial, min, max, 500, 0.5, 1000, 3, now::get);
+  }
+
+  private void releaseAll(AdaptiveConcurrencyLimit limit, int count, int inFlightAtStart, long latency) {
+    for (int i = 0; i < count; i++) {
+      limit.tryAcquire();
+      limit.release(inFlightAtStart, latency);
+    }
+  }
+
+  @Test
+  void requests_over_the_limit_are_rejected_without_waiting() {
+    // arrange
+    AdaptiveConcurrencyLimit limit = limit(2, 1, 10);
+
+    // act and assert
+    assertEquals(1, limit.tryAcquire());
+    assertEquals(2, limit.tryAcquire());
+    assertEquals(0, limit.tryAcquire());
+    assertEquals(2, limit.getInFlight());
+
+    limit.release(2, FAST);
+    assertEquals(2, limit.tryAcquire());
+  }
+
+  @Test
+  void slow_windows_shrink_the_limit_once_each_down_to_the_minimum() {
+    // arrange
+    AdaptiveConcurrencyLimit limit = limit(8, 2, 10);
+
+    // act and assert: a burst of slow requests within one window is one backoff
+    releaseAll(limit, 20, 1, SLOW);
+    assertEquals(8, limit.getLimit());
+    now.addAndGet(WINDOW);
+    releaseAll(limit, 1, 1, SLOW);
+    assertEquals(4, limit.getLimit());
+    releaseAll(limit, 20, 1, SLOW);
+    assertEquals(4, limit.getLimit());
+
+    now.addAndGet(WINDOW);
+    releaseAll(limit, 3, 1, SLOW);
+    assertEquals(2, limit.getLimit());
+    now.addAndGet(WINDOW);
+    releaseAll(limit, 3, 1, SLOW);
+    assertEquals(2, limit.getLimit());
+  }
+
+  @Test
+  void a_few_slow_requests_among_fast_ones_do_not_shrink_the_limit() {
+    // arrange
+    AdaptiveConcurrencyLimit limit = limit(8, 2, 10);
+
+    // act: a window with one slow request in ten, e.g. a large listing
+    releaseAll(limit, 9, 1, FAST);
+    now.addAndGet(WINDOW);
+    releaseAll(limit, 1, 1, SLOW);
+
+    // assert
+    assertEquals(8, limit.getLimit());
+  }
+
+  @Test
+  void a_window_needs_enough_requests_to_count() {
+    // arrange
+    AdaptiveConcurrencyLimit limit = limit(8, 2, 10);
+
+    // act: two slow requests, however long apart, are not a trend
+    releaseAll(limit, 1, 1, SLOW);
+    now.addAndGet(10 * WINDOW);
+    releaseAll(limit, 1, 1, SLOW);
+    assertEquals(8, limit.getLimit());
+
+    // the third completes the window
+    releaseAll(limit, 1, 1, SLOW);
+    assertEquals(4, limit.getLimit());
+  }
+
+  @Test
+  void fast_windows_grow_the_limit_only_while_it_is_in_use() {
+    // arrange
+    AdaptiveConcurrencyLimit limit = limit(4, 1, 5);
+
+    // act: one request at a time never needs more than the current limit
+    for (int i = 0; i < 5; i++) {
+      releaseAll(limit, 3, 1, FAST);
+      now.addAndGet(WINDOW);
+    }
+    releaseAll(limit, 1, 1, FAST);
+    assertEquals(4, limit.getLimit());
+
+    // act: windows that found the limit in use grow it by one each, up to the maximum
+    for (int i = 0; i < 5; i++) {
+      releaseAll(limit, 3, 3, FAST);
+      now.addAndGet(WINDOW);
+    }
+
+    // assert
+    assertEquals(5, limit.getLimit());
+  }
+
+  @Test
+  void releases_without_a_latency_only_free_the_slot() {
+    // arrange
+    AdaptiveConcurrencyLimit limit = limit(1, 1, 10);
+    assertEquals(1, limit.tryAcquire());
+
+    // act
+    now.addAndGet(WINDOW);
+    limit.release();
+
+    // assert
+    assertEquals(0, limit.getInFlight());
+    assertEquals(1, limit.tryAcquire());
+  }
+
+  @Test
+  void invalid_settings_are_rejected() {
+    assertThrows(IllegalArgumentException.class, () -> limit(1, 2, 10));
+    assertThrows(IllegalArgumentException.class, () -> limit(11, 2, 10));
+    assertThrows(IllegalArgumentException.class, () -> limit(5, 0, 10));
+    assertThrows(IllegalArgumentException.class,
+        () -> new AdaptiveConcurrencyLimit(5, 2, 10, 500, 1.0, 1000, 3, now::get));
+    assertThrows(IllegalArgumentException.class,
+        () -> new AdaptiveConcurrencyLimit(5, 2, 10, 500, 0.9, 1000, 0, now::get));
+  }
+
+  /**
+   * A database that slows down in proportion to how many queries it is
+   * running at once, beyond what it can handle in parallel.
+   */
+  static class SimulatedDatabase {
+    private final AtomicInteger running = new AtomicInteger();
+    private final long serviceMillis;
+    private final int parallelism;
+
+    SimulatedDatabase(long serviceMillis, int parallelism) {
+      this.serviceMillis = serviceMillis;
+      this.parallelism = parallelism;
+    }
+
+    void query() throws InterruptedException {
+      int queries = running.incrementAndGet();
+      try {
+        Thread.sleep(serviceMillis * ((queries + parallelism - 1) / parallelism));
+      } finally {
+        running.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Runs clients in a closed loop against db for durationMillis and returns
+   * the latencies (ms) of the queries started after warmupMillis.
+   */
+  private List<Long> load(SimulatedDatabase db, AdaptiveConcurrencyLimit limit, int clients, long durationMillis,
+      long warmupMillis, AtomicInteger rejected) throws Exception {
+    List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+    long start = System.currentTimeMillis();
+    ExecutorService pool = Executors.newFixedThreadPool(clients);
+    for (int c = 0; c < clients; c++) {
+      pool.submit(() -> {
+        while (System.currentTimeMillis() - start < durationMillis) {
+          int permit = limit == null ? 1 : limit.tryAcquire();
+          if (permit == 0) {
+            rejected.incrementAndGet();
+            Thread.sleep(5);
+            continue;
+          }
+          long begin = System.nanoTime();
+          db.query();
+          long nanos = System.nanoTime() - begin;
+          if (limit != null) {
+            limit.release(permit, nanos);
+          }
+          if (System.currentTimeMillis() - start > warmupMillis) {
+            latencies.add(TimeUnit.NANOSECONDS.toMillis(nanos));
+          }
+        }
+        return null;
+      });
+    }
+    pool.shutdown();
+    assertTrue(pool.awaitTermination(durationMillis + 10_000, TimeUnit.MILLISECONDS));
+    return latencies;
+  }
+
+  private static long p99(List<Long> latencies) {
+    List<Long> sorted = new ArrayList<>(latencies);
+    Collections.sort(sorted);
+    return sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1);
+  }
+
+  @Test
+  void load_test_latency_stays_bounded_when_the_database_slows_down() throws Exception {
+    // arrange: 32 clients against a database that now takes 40ms per query
+    // and only runs 2 at a time without slowing down
+    int clients = 32;
+
+    // act
+    List<Long> unprotected = load(new SimulatedDatabase(40, 2), null, clients, 1500, 500, new AtomicInteger());
+
+    // short windows, so that the limit settles within the test
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 1, 100, 150, 0.9, 50, 5, System::nanoTime);
+    AtomicInteger rejected = new AtomicInteger();
+    List<Long> protectedLatencies = load(new SimulatedDatabase(40, 2), limit, clients, 2500, 1000, rejected);
+
+    // assert: without the limit every query waits behind all 32; with it,
+    // latency settles around the 150ms threshold and the excess is rejected
+    log.info("p99 without limit {}ms, with limit {}ms (limit settled at {}, {} rejected)",
+        p99(unprotected), p99(protectedLatencies), limit.getLimit(), rejected.get());
+    assertTrue(p99(unprotected) >= 500, "p99 without limit was " + p99(unprotected));
+    assertTrue(p99(protectedLatencies) < 300, "p99 with limit was " + p99(protectedLatencies));
+    assertTrue(limit.getLimit() <= 8, "limit settled at " + limit.getLimit());
+    assertTrue(rejected.get() > 0);
+  }
+}
@@ -0,0 +1,194 @@
+package edu.ucsb.cs156.example.filters;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.controllers.UCSBDatesController;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.models.CsvImportResult;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.CsvImportJobHandler;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.UCSBDateService;
+import edu.ucsb.cs156.example.services.SyncTreeService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@WebMvcTest(controllers = UCSBDatesController.class)
+@Import({ TestConfig.class, UCSBDateService.class })
+@TestPropertySource(properties = {
+                "app.concurrencyLimit.read.initial=1",
+                "app.concurrencyLimit.read.min=1",
+                "app.concurrencyLimit.read.max=1",
+                "app.concurrencyLimit.bulk.limit=1" })
+public class ConcurrencyLimitFilterTests extends ControllerTestCase {
+
+        @MockBean
+        UCSBDateRepository ucsbDateRepository;
+
+        @MockBean
+        UserRepository userRepository;
+
+        @MockBean
+        ChangeLogService changeLogService;
+
+        @MockBean
+        SyncTreeService syncTreeService;
+
+        @MockBean
+        CsvImportService csvImportService;
+
+        @MockBean
+        CsvImportJobHandler csvImportJobHandler;
+
+        @Autowired
+        MeterRegistry meterRegistry;
+
+        UCSBDate ucsbDate1 = UCSBDate.builder()
+                        .name("firstDayOfClasses")
+                        .quarterYYYYQ("20222")
+                        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                        .build();
+
+        @Test
+        public void reads_over_the_limit_get_503_at_once_while_writes_still_run() throws Exception {
+                // arrange: the only read slot is taken by a request stuck in the database
+                CountDownLatch started = new CountDownLatch(1);
+                CountDownLatch release = new CountDownLatch(1);
+                when(ucsbDateRepository.findById(eq(7L))).thenAnswer(invocation -> {
+                        started.countDown();
+                        release.await(10, TimeUnit.SECONDS);
+                        return Optional.of(ucsbDate1);
+                });
+                ExecutorService pool = Executors.newSingleThreadExecutor();
+                Future<MvcResult> stuck = pool.submit(() -> mockMvc
+                                .perform(get("/api/ucsbdates?id=7").with(user("slow@ucsb.edu").roles("USER")))
+                                .andReturn());
+                assertTrue(started.await(10, TimeUnit.SECONDS));
+                double rejectedBefore = meterRegistry.counter(ConcurrencyLimitFilter.REJECTED_METER, "class", "read").count();
+
+                // act
+                MvcResult rejected = mockMvc
+                                .perform(get("/api/ucsbdates?id=7").with(user("other@ucsb.edu").roles("USER")))
+                                .andExpect(status().isServiceUnavailable())
+                                .andExpect(header().string("Retry-After", "1"))
+                                .andReturn();
+                performAsync(delete("/api/ucsbdates/bulk?ids=1").with(user("admin@ucsb.edu").roles("ADMIN"))
+                                .with(csrf()))
+                                .andExpect(status().isOk());
+                release.countDown();
+                pool.shutdown();
+
+                // assert
+                assertEquals(200, stuck.get().getResponse().getStatus());
+                Map<String, Object> json = responseToJson(rejected);
+                assertEquals("server busy; at most 1 concurrent read requests allowed right now", json.get("message"));
+                assertEquals(1.0, meterRegistry.counter(ConcurrencyLimitFilter.REJECTED_METER, "class", "read").count()
+                                - rejectedBefore);
+        }
+
+        @Test
+        public void imports_and_bulk_deletes_share_a_fixed_limit_of_their_own() throws Exception {
+                // arrange: the only bulk slot is taken by a long import
+                CountDownLatch started = new CountDownLatch(1);
+                CountDownLatch release = new CountDownLatch(1);
+                when(csvImportService.importCsv(any(), any())).thenAnswer(invocation -> {
+                        started.countDown();
+                        release.await(10, TimeUnit.SECONDS);
+                        return CsvImportResult.builder().rowsRead(1).rowsImported(1).errors(List.of()).build();
+                });
+                when(ucsbDateRepository.save(any())).thenReturn(ucsbDate1);
+                MockMultipartFile csv = new MockMultipartFile("file", "dates.csv", "text/csv",
+                                "quarterYYYYQ,name,localDateTime\n20222,first,2022-01-03T00:00:00\n".getBytes());
+                ExecutorService pool = Executors.newSingleThreadExecutor();
+                Future<MvcResult> importing = pool.submit(() -> mockMvc
+                                .perform(multipart("/api/ucsbdates/import").file(csv)
+                                                .with(user("admin@ucsb.edu").roles("ADMIN")).with(csrf()))
+                                .andReturn());
+                assertTrue(started.await(10, TimeUnit.SECONDS));
+
+                // act
+                MvcResult rejected = mockMvc.perform(delete("/api/ucsbdates/bulk?ids=1")
+                                .with(user("admin@ucsb.edu").roles("ADMIN")).with(csrf()))
+                                .andExpect(status().isServiceUnavailable())
+                                .andReturn();
+                mockMvc.perform(post("/api/ucsbdates/post?quarterYYYYQ=20222&name=first&localDateTime=2022-01-03T00:00:00")
+                                .with(user("admin@ucsb.edu").roles("ADMIN")).with(csrf()))
+                                .andExpect(status().isOk());
+                release.countDown();
+                pool.shutdown();
+
+                // assert
+                assertEquals(200, importing.get(10, TimeUnit.SECONDS).getResponse().getStatus());
+                assertEquals("server busy; at most 1 concurrent bulk requests allowed right now",
+                                responseToJson(rejected).get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void slots_are_released_when_requests_finish() throws Exception {
+                // arrange
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(ucsbDate1));
+
+                // act and assert
+                mockMvc.perform(get("/api/ucsbdates?id=7")).andExpect(status().isOk());
+                mockMvc.perform(get("/api/ucsbdates?id=7")).andExpect(status().isOk());
+                mockMvc.perform(get("/api/ucsbdates?id=8")).andExpect(status().isNotFound());
+                mockMvc.perform(get("/api/ucsbdates?id=7")).andExpect(status().isOk());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void async_requests_keep_their_slot_until_the_response_is_written() throws Exception {
+                // arrange
+                CountDownLatch release = new CountDownLatch(1);
+                when(ucsbDateRepository.findAll()).thenAnswer(invocation -> {
+                        release.await(10, TimeUnit.SECONDS);
+                        return List.of(ucsbDate1);
+                });
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(ucsbDate1));
+
+                // act: the /all handler returns at once and finishes on a bulkhead thread
+                MvcResult started = mockMvc.perform(get("/api/ucsbdates/all"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+
+                // assert
+                mockMvc.perform(get("/api/ucsbdates?id=7")).andExpect(status().isServiceUnavailable());
+                release.countDown();
+                mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+                mockMvc.perform(get("/api/ucsbdates?id=7")).andExpect(status().isOk());
+        }
+}
@@ -0,0 +1,251 @@
+package edu.ucsb.cs156.example.filters;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.controllers.HelpRequestsController;
+import edu.ucsb.cs156.example.entities.HelpRequests;
+import edu.ucsb.cs156.example.entities.IdempotencyRecord;
+import edu.ucsb.cs156.example.repositories.ArchivedHelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestsRepository;
+import edu.ucsb.cs156.example.repositories.IdempotencyRecordRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.HelpRequestsService;
+import edu.ucsb.cs156.example.services.PurgeSolvedHelpRequestsJobHandler;
+import edu.ucsb.cs156.example.services.SyncTreeService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebMvcTest(controllers = HelpRequestsController.class)
+@Import({ TestConfig.class, HelpRequestsService.class })
+public class IdempotencyFilterTests extends ControllerTestCase {
+
+        private static final String POST_URL = "/api/helprequests/post?requesterEmail=m@gmail.com&teamId=2&tableOrBreakoutRoom=t3&requestTime=2022-01-03T00:00:00&explanation=download&solved=true";
+
+        @MockBean
+        HelpRequestsRepository helpRequestsRepository;
+
+        @MockBean
+        ArchivedHelpRequestRepository archivedHelpRequestRepository;
+
+        @MockBean
+        PurgeSolvedHelpRequestsJobHandler purgeSolvedHelpRequestsJobHandler;
+
+        @MockBean
+        UserRepository userRepository;
+
+        @MockBean
+        ChangeLogService changeLogService;
+
+        @MockBean
+        SyncTreeService syncTreeService;
+
+        @Autowired
+        IdempotencyRecordRepository idempotencyRecordRepository;
+
+        HelpRequests saved = HelpRequests.builder()
+                        .id(17L)
+                        .requesterEmail("m@gmail.com")
+                        .teamId("2")
+                        .tableOrBreakoutRoom("t3")
+                        .explanation("download")
+                        .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                        .solved(true)
+                        .build();
+
+        private MvcResult postWithKey(String url, String key) throws Exception {
+                return mockMvc.perform(post(url).header(IdempotencyFilter.IDEMPOTENCY_KEY, key).with(csrf()))
+                                .andReturn();
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void a_retry_gets_the_original_response_without_a_second_insert() throws Exception {
+                // arrange
+                when(helpRequestsRepository.save(any())).thenReturn(saved);
+
+                // act
+                MvcResult first = postWithKey(POST_URL, "retry-1");
+                MvcResult retry = postWithKey(POST_URL, "retry-1");
+
+                // assert
+                verify(helpRequestsRepository, times(1)).save(any());
+                verify(idempotencyRecordRepository, times(1)).save(any(IdempotencyRecord.class));
+                assertEquals(200, first.getResponse().getStatus());
+                assertEquals(200, retry.getResponse().getStatus());
+                assertEquals(mapper.writeValueAsString(saved), retry.getResponse().getContentAsString());
+                assertNull(first.getResponse().getHeader(IdempotencyFilter.REPLAYED));
+                assertEquals("true", retry.getResponse().getHeader(IdempotencyFilter.REPLAYED));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void requests_without_a_key_are_not_deduplicated() throws Exception {
+                // arrange
+                when(helpRequestsRepository.save(any())).thenReturn(saved);
+
+                // act
+                mockMvc.perform(post(POST_URL).with(csrf())).andExpect(status().isOk());
+                mockMvc.perform(post(POST_URL).with(csrf())).andExpect(status().isOk());
+
+                // assert
+                verify(helpRequestsRepository, times(2)).save(any());
+                verify(idempotencyRecordRepository, never()).save(any(IdempotencyRecord.class));
+        }
+
+        @Test
+        public void concurrent_duplicates_run_once() throws Exception {
+                // arrange
+                when(helpRequestsRepository.save(any())).thenAnswer(invocation -> {
+                        Thread.sleep(300);
+                        return saved;
+                });
+                ExecutorService pool = Executors.newFixedThreadPool(3);
+                // @WithMockUser only applies to the test thread
+                Callable<MvcResult> send = () -> mockMvc.perform(post(POST_URL)
+                                .header(IdempotencyFilter.IDEMPOTENCY_KEY, "concurrent-1")
+                                .with(user("user").roles("ADMIN", "USER"))
+                                .with(csrf()))
+                                .andReturn();
+
+                // act
+                List<Future<MvcResult>> results = pool.invokeAll(List.of(send, send, send));
+                pool.shutdown();
+
+                // assert
+                verify(helpRequestsRepository, times(1)).save(any());
+                for (Future<MvcResult> result : results) {
+                        assertEquals(200, result.get().getResponse().getStatus());
+                        assertEquals(mapper.writeValueAsString(saved), result.get().getResponse().getContentAsString());
+                }
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void a_key_reused_for_different_parameters_is_rejected() throws Exception {
+                // arrange
+                when(helpRequestsRepository.save(any())).thenReturn(saved);
+                postWithKey(POST_URL, "reused-1");
+
+                // act
+                MvcResult response = postWithKey(POST_URL.replace("teamId=2", "teamId=3"), "reused-1");
+
+                // assert
+                verify(helpRequestsRepository, times(1)).save(any());
+                assertEquals(422, response.getResponse().getStatus());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Idempotency-Key was already used for a different request", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void failed_requests_are_not_remembered() throws Exception {
+                // arrange
+                when(helpRequestsRepository.save(any())).thenReturn(saved);
+
+                // act
+                MvcResult failed = postWithKey("/api/helprequests/post?requesterEmail=m@gmail.com", "failed-1");
+                MvcResult retried = postWithKey(POST_URL, "failed-1");
+
+                // assert
+                assertEquals(400, failed.getResponse().getStatus());
+                assertEquals(200, retried.getResponse().getStatus());
+                verify(helpRequestsRepository, times(1)).save(any());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void keys_are_scoped_to_the_path() throws Exception {
+                // arrange
+                when(helpRequestsRepository.save(any())).thenReturn(saved);
+                postWithKey(POST_URL, "scoped-1");
+
+                // act
+                MvcResult other = mockMvc.perform(post("/api/helprequests/bulk?ids=1")
+                                .header(IdempotencyFilter.IDEMPOTENCY_KEY, "scoped-1").with(csrf()))
+                                .andReturn();
+
+                // assert
+                assertNull(other.getResponse().getHeader(IdempotencyFilter.REPLAYED));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void a_duplicate_of_a_request_running_on_another_instance_gets_409() throws Exception {
+                // arrange
+                when(idempotencyRecordRepository.insertPending(any(), any()))
+                                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+                when(idempotencyRecordRepository.findById(any())).thenReturn(Optional.of(IdempotencyRecord.builder()
+                                .status(IdempotencyRecord.PENDING).createdAt(LocalDateTime.now()).build()));
+
+                // act
+                MvcResult response = postWithKey(POST_URL, "elsewhere-1");
+
+                // assert
+                verify(helpRequestsRepository, never()).save(any());
+                assertEquals(409, response.getResponse().getStatus());
+                assertEquals("a request with this Idempotency-Key is still in progress", responseToJson(response).get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void keys_are_stored_as_a_fixed_length_hash() throws Exception {
+                // arrange
+                when(helpRequestsRepository.save(any())).thenReturn(saved);
+
+                // act
+                postWithKey(POST_URL + "&explanation=" + "x".repeat(600), "k".repeat(255));
+
+                // assert
+                ArgumentCaptor<IdempotencyRecord> record = ArgumentCaptor.forClass(IdempotencyRecord.class);
+                verify(idempotencyRecordRepository, times(1)).save(record.capture());
+                assertTrue(record.getValue().getKey().matches("[0-9a-f]{64}"));
+                verify(idempotencyRecordRepository, times(1)).insertPending(eq(record.getValue().getKey()), any());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void blank_or_oversized_keys_are_rejected() throws Exception {
+                // act
+                MvcResult blank = postWithKey(POST_URL, " ");
+                MvcResult oversized = postWithKey(POST_URL, "k".repeat(256));
+
+                // assert
+                assertEquals(400, blank.getResponse().getStatus());
+                assertEquals(400, oversized.getResponse().getStatus());
+                assertEquals("Idempotency-Key must be 1 to 255 characters", responseToJson(blank).get("message"));
+                verify(helpRequestsRepository, never()).save(any());
+        }
+}
@@ -0,0 +1,167 @@
+package edu.ucsb.cs156.example.filters;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.controllers.BatchController;
+import edu.ucsb.cs156.example.controllers.UCSBDatesController;
+import edu.ucsb.cs156.example.models.BatchRequest;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.BatchDispatcherService;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.CsvImportJobHandler;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.UCSBDateService;
+import edu.ucsb.cs156.example.services.SyncTreeService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@WebMvcTest(controllers = { UCSBDatesController.class, BatchController.class })
+@Import({ TestConfig.class, UCSBDateService.class, BatchDispatcherService.class })
+@TestPropertySource(properties = {
+                "app.rateLimit.read.capacity=3",
+                "app.rateLimit.read.refillPerSecond=0.01",
+                "app.rateLimit.write.capacity=1",
+                "app.rateLimit.write.refillPerSecond=0.01",
+                // so that every one of a batch's identical reads reaches the repository
+                "app.coalesce.enabled=false" })
+public class RateLimitFilterTests extends ControllerTestCase {
+
+        @MockBean
+        UCSBDateRepository ucsbDateRepository;
+
+        @MockBean
+        UserRepository userRepository;
+
+        @MockBean
+        ChangeLogService changeLogService;
+
+        @MockBean
+        SyncTreeService syncTreeService;
+
+        @MockBean
+        CsvImportService csvImportService;
+
+        @MockBean
+        CsvImportJobHandler csvImportJobHandler;
+
+        @Test
+        public void reads_beyond_the_burst_get_429_with_retry_after() throws Exception {
+                // act
+                for (int i = 0; i < 3; i++) {
+                        performAsync(get("/api/ucsbdates/all").with(user("reader@ucsb.edu").roles("USER")))
+                                        .andExpect(status().isOk());
+                }
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all").with(user("reader@ucsb.edu").roles("USER")))
+                                .andExpect(status().isTooManyRequests())
+                                .andExpect(header().exists("Retry-After"))
+                                .andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(3)).findAll();
+                assertEquals(100, Long.parseLong(response.getResponse().getHeader("Retry-After")), 1);
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("too many requests; retry in %s seconds".formatted(response.getResponse().getHeader("Retry-After")),
+                                json.get("message"));
+        }
+
+        @Test
+        public void users_and_endpoint_classes_have_separate_buckets() throws Exception {
+                // arrange
+                for (int i = 0; i < 3; i++) {
+                        performAsync(get("/api/ucsbdates/all").with(user("busy@ucsb.edu").roles("USER")))
+                                        .andExpect(status().isOk());
+                }
+
+                // act and assert
+                mockMvc.perform(get("/api/ucsbdates/all").with(user("busy@ucsb.edu").roles("USER")))
+                                .andExpect(status().isTooManyRequests());
+                performAsync(get("/api/ucsbdates/all").with(user("quiet@ucsb.edu").roles("USER")))
+                                .andExpect(status().isOk());
+
+                // the writer bucket is still full even though reads are exhausted
+                performAsync(delete("/api/ucsbdates/bulk?ids=1").with(user("busy@ucsb.edu").roles("ADMIN")).with(csrf()))
+                                .andExpect(status().isOk());
+                mockMvc.perform(delete("/api/ucsbdates/bulk?ids=1").with(user("busy@ucsb.edu").roles("ADMIN")).with(csrf()))
+                                .andExpect(status().isTooManyRequests());
+        }
+
+        @Test
+        public void each_sub_request_of_a_batch_takes_a_token() throws Exception {
+                // arrange
+                List<BatchRequest> requests = IntStream.range(0, 5)
+                                .mapToObj(i -> BatchRequest.builder().method("GET").path("/api/ucsbdates/all").build())
+                                .toList();
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .characterEncoding("utf-8")
+                                .content(mapper.writeValueAsString(requests))
+                                .with(user("batcher@ucsb.edu").roles("USER"))
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(3)).findAll();
+                JsonNode results = mapper.readTree(response.getResponse().getContentAsString());
+                assertEquals(5, results.size());
+                int ok = 0;
+                for (JsonNode result : results) {
+                        if (result.get("status").asInt() == 200) {
+                                ok++;
+                        } else {
+                                assertEquals(429, result.get("status").asInt());
+                                assertEquals("too many requests; retry in 100 seconds",
+                                                result.get("body").get("message").asText());
+                        }
+                }
+                assertEquals(3, ok);
+
+                // the batch spent the caller's reads
+                mockMvc.perform(get("/api/ucsbdates/all").with(user("batcher@ucsb.edu").roles("USER")))
+                                .andExpect(status().isTooManyRequests());
+        }
+
+        @Test
+        public void anonymous_callers_are_limited_by_address() throws Exception {
+                // act
+                for (int i = 0; i < 3; i++) {
+                        mockMvc.perform(get("/api/ucsbdates/all").with(request -> {
+                                request.setRemoteAddr("10.0.0.1");
+                                return request;
+                        })).andExpect(status().is(403));
+                }
+
+                // assert
+                mockMvc.perform(get("/api/ucsbdates/all").with(request -> {
+                        request.setRemoteAddr("10.0.0.1");
+                        return request;
+                })).andExpect(status().isTooManyRequests());
+                mockMvc.perform(get("/api/ucsbdates/all").with(request -> {
+                        request.setRemoteAddr("10.0.0.2");
+                        return request;
+                })).andExpect(status().is(403));
+        }
+}
@@ -0,0 +1,239 @@
+package edu.ucsb.cs156.example.filters;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.controllers.UCSBDatesController;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.CsvImportJobHandler;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.UCSBDateService;
+import edu.ucsb.cs156.example.services.SyncTreeService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebMvcTest(controllers = UCSBDatesController.class)
+@Import({ TestConfig.class, UCSBDateService.class, ReadCoalescingFilterTests.HandlerHeaders.class })
+public class ReadCoalescingFilterTests extends ControllerTestCase {
+
+        /**
+         * Stands in for headers set between this filter and the controller,
+         * which only the request that actually runs passes through.
+         */
+        @Order(Ordered.LOWEST_PRECEDENCE)
+        static class HandlerHeaders extends OncePerRequestFilter {
+                @Override
+                protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                FilterChain chain) throws ServletException, IOException {
+                        response.setHeader(HttpHeaders.ETAG, "\"v1\"");
+                        response.addHeader(HttpHeaders.SET_COOKIE, "leader=" + request.getRemoteUser());
+                        chain.doFilter(request, response);
+                }
+        }
+
+        @MockBean
+        UCSBDateRepository ucsbDateRepository;
+
+        @MockBean
+        UserRepository userRepository;
+
+        @MockBean
+        ChangeLogService changeLogService;
+
+        @MockBean
+        SyncTreeService syncTreeService;
+
+        @MockBean
+        CsvImportService csvImportService;
+
+        @MockBean
+        CsvImportJobHandler csvImportJobHandler;
+
+        @Autowired
+        MeterRegistry meterRegistry;
+
+        UCSBDate ucsbDate1 = UCSBDate.builder()
+                        .name("firstDayOfClasses")
+                        .quarterYYYYQ("20222")
+                        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                        .build();
+
+        private double count(String outcome) {
+                return meterRegistry.counter(ReadCoalescingFilter.METER, "outcome", outcome).count();
+        }
+
+        @Test
+        public void concurrent_identical_reads_share_one_repository_call_per_role_set() throws Exception {
+                // arrange
+                when(ucsbDateRepository.findAll()).thenReturn(new ArrayList<>(List.of(ucsbDate1)));
+                double coalescedBefore = count("coalesced");
+                double executedBefore = count("executed");
+
+                // one USER request and the ADMIN request run; their handlers go
+                // async, so they stay in flight until their async dispatch below
+                MvcResult userLeader = mockMvc
+                                .perform(get("/api/ucsbdates/all").with(user("student@ucsb.edu").roles("USER")))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                MvcResult adminLeader = mockMvc
+                                .perform(get("/api/ucsbdates/all").with(user("admin@ucsb.edu").roles("ADMIN", "USER")))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+
+                ExecutorService pool = Executors.newFixedThreadPool(3);
+                CountDownLatch arrived = new CountDownLatch(3);
+                Callable<MvcResult> asUser = () -> mockMvc
+                                .perform(get("/api/ucsbdates/all").with(user("student@ucsb.edu").roles("USER"))
+                                                .with(request -> {
+                                                        arrived.countDown();
+                                                        return request;
+                                                }))
+                                .andReturn();
+
+                // act
+                List<Future<MvcResult>> followers = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                        followers.add(pool.submit(asUser));
+                }
+                // give the other three USER requests time to queue behind the first
+                assertTrue(arrived.await(10, TimeUnit.SECONDS));
+                Thread.sleep(200);
+                List<MvcResult> results = new ArrayList<>(List.of(
+                                mockMvc.perform(asyncDispatch(userLeader)).andReturn(),
+                                mockMvc.perform(asyncDispatch(adminLeader)).andReturn()));
+                for (Future<MvcResult> follower : followers) {
+                        results.add(follower.get(10, TimeUnit.SECONDS));
+                }
+                pool.shutdown();
+
+                // assert
+                String expectedJson = mapper.writeValueAsString(List.of(ucsbDate1));
+                for (MvcResult result : results) {
+                        assertEquals(200, result.getResponse().getStatus());
+                        assertEquals(expectedJson, result.getResponse().getContentAsString());
+                }
+                verify(ucsbDateRepository, times(2)).findAll();
+                assertEquals(3.0, count("coalesced") - coalescedBefore);
+                assertEquals(2.0, count("executed") - executedBefore);
+        }
+
+        @Test
+        public void a_coalesced_read_gets_the_shared_headers_and_its_own_trace() throws Exception {
+                // arrange
+                when(ucsbDateRepository.findAll()).thenReturn(new ArrayList<>(List.of(ucsbDate1)));
+                double coalescedBefore = count("coalesced");
+
+                MvcResult leader = mockMvc
+                                .perform(get("/api/ucsbdates/all").with(user("student@ucsb.edu").roles("USER")))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+
+                ExecutorService pool = Executors.newSingleThreadExecutor();
+                CountDownLatch arrived = new CountDownLatch(1);
+                Future<MvcResult> follower = pool.submit(() -> mockMvc
+                                .perform(get("/api/ucsbdates/all").with(user("other@ucsb.edu").roles("USER"))
+                                                .with(request -> {
+                                                        arrived.countDown();
+                                                        return request;
+                                                }))
+                                .andReturn());
+
+                // act
+                assertTrue(arrived.await(10, TimeUnit.SECONDS));
+                Thread.sleep(200);
+                MockHttpServletResponse leaderResponse = mockMvc.perform(asyncDispatch(leader)).andReturn().getResponse();
+                MockHttpServletResponse followerResponse = follower.get(10, TimeUnit.SECONDS).getResponse();
+                pool.shutdown();
+
+                // assert
+                assertEquals(1.0, count("coalesced") - coalescedBefore);
+                assertEquals(200, followerResponse.getStatus());
+                assertEquals("application/json", followerResponse.getContentType());
+                assertEquals(leaderResponse.getContentAsString(), followerResponse.getContentAsString());
+
+                assertEquals("\"v1\"", followerResponse.getHeader(HttpHeaders.ETAG));
+                assertTrue(leaderResponse.getHeaders(HttpHeaders.SET_COOKIE).contains("leader=student@ucsb.edu"));
+                assertTrue(followerResponse.getHeaders(HttpHeaders.SET_COOKIE).stream()
+                                .noneMatch(cookie -> cookie.startsWith("leader=")));
+
+                String leaderTrace = leaderResponse.getHeader(TracingFilter.TRACE_ID_HEADER);
+                String followerTrace = followerResponse.getHeader(TracingFilter.TRACE_ID_HEADER);
+                assertNotNull(followerTrace);
+                assertNotEquals(leaderTrace, followerTrace);
+                assertEquals(1, followerResponse.getHeaders(ServerTimingFilter.SERVER_TIMING_HEADER).size());
+                assertTrue(followerResponse.getHeader(ServerTimingFilter.SERVER_TIMING_HEADER).contains("total;dur="));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void sequential_reads_are_not_cached() throws Exception {
+                // arrange
+                when(ucsbDateRepository.findAll()).thenReturn(new ArrayList<>(List.of(ucsbDate1)));
+
+                // act
+                performAsync(get("/api/ucsbdates/all")).andExpect(status().isOk());
+                performAsync(get("/api/ucsbdates/all")).andExpect(status().isOk());
+
+                // assert
+                verify(ucsbDateRepository, times(2)).findAll();
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void paths_not_configured_for_coalescing_are_passed_through() throws Exception {
+                // arrange
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(ucsbDate1));
+                double executedBefore = count("executed");
+
+                // act
+                mockMvc.perform(get("/api/ucsbdates?id=7")).andExpect(status().isOk());
+
+                // assert
+                assertEquals(0.0, count("executed") - executedBefore);
+        }
+}
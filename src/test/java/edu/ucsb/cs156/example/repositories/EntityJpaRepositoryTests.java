@@ -0,0 +1,129 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+import edu.ucsb.cs156.example.config.JpaConfig;
+import edu.ucsb.cs156.example.entities.HelpRequests;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+
+@DataJpaTest
+@Import(JpaConfig.class)
+class EntityJpaRepositoryTests {
+
+  @Autowired
+  TestEntityManager entityManager;
+
+  @Autowired
+  HelpRequestsRepository helpRequestsRepository;
+
+  @Autowired
+  UCSBOrganizationRepository ucsbOrganizationRepository;
+
+  @Test
+  void all_rows_come_back_with_just_the_requested_fields_in_order() {
+    LocalDateTime when = LocalDateTime.parse("2022-01-03T00:00:00");
+    long id = entityManager.persistAndGetId(HelpRequests.builder().requesterEmail("m@ucsb.edu").teamId("7pm-1")
+        .tableOrBreakoutRoom("t3").explanation("long story").requestTime(when).solved(true).build(), Long.class);
+    entityManager.flush();
+
+    List<Map<String, Object>> rows = helpRequestsRepository.findAllFields(
+        Fieldset.parse(HelpRequests.class, "solved,id,requestTime"));
+
+    assertEquals(List.of(Map.of("solved", true, "id", id, "requestTime", when)), rows);
+    assertEquals(List.of("solved", "id", "requestTime"), List.copyOf(rows.get(0).keySet()));
+  }
+
+  @Test
+  void one_row_is_found_by_its_id() {
+    entityManager.persist(UCSBOrganization.builder().orgCode("ZPR").orgTranslationShort("Zeta Phi Rho")
+        .orgTranslation("Zeta Phi Rho").inactive(false).build());
+    entityManager.flush();
+    Fieldset fields = Fieldset.parse(UCSBOrganization.class, "orgTranslationShort");
+
+    assertEquals(Optional.of(Map.of("orgTranslationShort", "Zeta Phi Rho")),
+        ucsbOrganizationRepository.findFieldsById("ZPR", fields));
+    assertTrue(ucsbOrganizationRepository.findFieldsById("NONE", fields).isEmpty());
+  }
+
+  @Test
+  void filters_and_sorts_run_against_the_database() {
+    LocalDateTime when = LocalDateTime.parse("2022-01-03T00:00:00");
+    HelpRequests earlier = helpRequest("s22-6pm-3", false, when);
+    HelpRequests later = helpRequest("s22-6pm-3", false, when.plusHours(1));
+    HelpRequests solved = helpRequest("s22-6pm-3", true, when.plusHours(2));
+    HelpRequests otherTeam = helpRequest("s22-5pm-1", false, when.plusHours(3));
+    List.of(earlier, later, solved, otherTeam).forEach(entityManager::persist);
+    entityManager.flush();
+
+    EntityFilter<HelpRequests> unsolved = EntityFilter.parse(HelpRequests.class,
+        "solved:false,teamId:s22-6pm-3", "-requestTime");
+    assertEquals(List.of(later, earlier),
+        helpRequestsRepository.findAll(unsolved.getSpecification(), unsolved.getSort()));
+
+    EntityFilter<HelpRequests> eitherTeam = EntityFilter.parse(HelpRequests.class,
+        "teamId:s22-6pm-3,teamId:s22-5pm-1,solved:false", "requestTime");
+    assertEquals(List.of(Map.of("teamId", "s22-6pm-3"), Map.of("teamId", "s22-6pm-3"), Map.of("teamId", "s22-5pm-1")),
+        helpRequestsRepository.findAllFields(Fieldset.parse(HelpRequests.class, "teamId"), eitherTeam));
+  }
+
+  @Test
+  void every_filterable_field_has_an_index_in_the_schema() {
+    @SuppressWarnings("unchecked")
+    List<String> indexes = entityManager.getEntityManager().createNativeQuery(
+        "SELECT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES WHERE TABLE_NAME = 'HELPREQUESTS'").getResultList();
+
+    assertTrue(indexes.containsAll(List.of("HELPREQUESTS_SOLVED_REQUEST_TIME", "HELPREQUESTS_TEAM_ID",
+        "HELPREQUESTS_REQUESTER_EMAIL", "HELPREQUESTS_REQUEST_TIME")), indexes::toString);
+  }
+
+  @Test
+  void only_the_ids_that_have_a_row_are_found() {
+    LocalDateTime when = LocalDateTime.parse("2022-01-03T00:00:00");
+    long id = entityManager.persistAndGetId(helpRequest("s22-6pm-3", false, when), Long.class);
+    entityManager.persist(UCSBOrganization.builder().orgCode("ZPR").orgTranslationShort("Zeta Phi Rho")
+        .orgTranslation("Zeta Phi Rho").inactive(false).build());
+    entityManager.flush();
+
+    assertEquals(List.of(id), helpRequestsRepository.findExistingIds(List.of(id, id + 100)));
+    assertEquals(List.of("ZPR"), ucsbOrganizationRepository.findExistingIds(List.of("NONE", "ZPR")));
+  }
+
+  @Test
+  void find_first_returns_the_lowest_ids_only() {
+    LocalDateTime when = LocalDateTime.parse("2022-01-03T00:00:00");
+    HelpRequests first = entityManager.persist(helpRequest("s22-6pm-3", false, when));
+    HelpRequests second = entityManager.persist(helpRequest("s22-5pm-1", true, when));
+    entityManager.persist(helpRequest("s22-6pm-3", true, when));
+    entityManager.flush();
+
+    assertEquals(List.of(first, second), helpRequestsRepository.findFirst(2));
+    assertEquals(List.of(), helpRequestsRepository.findFirst(0));
+  }
+
+  @Test
+  void a_fieldset_for_another_entity_is_refused() {
+    Fieldset dateFields = Fieldset.parse(UCSBDate.class, "id");
+
+    assertThrows(InvalidDataAccessApiUsageException.class, () -> helpRequestsRepository.findAllFields(dateFields));
+  }
+
+  private static HelpRequests helpRequest(String teamId, boolean solved, LocalDateTime requestTime) {
+    return HelpRequests.builder().requesterEmail("m@ucsb.edu").teamId(teamId).tableOrBreakoutRoom("t3")
+        .explanation("long story").requestTime(requestTime).solved(solved).build();
+  }
+}
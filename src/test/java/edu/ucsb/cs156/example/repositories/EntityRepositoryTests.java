@@ -0,0 +1,75 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import edu.ucsb.cs156.example.config.JpaConfig;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+
+// @DataJpaTest runs every test in a read-write transaction, which is where
+// the read-only hints matter
+@DataJpaTest
+@Import(JpaConfig.class)
+class EntityRepositoryTests {
+
+  @Autowired
+  UCSBDateRepository ucsbDateRepository;
+
+  @Autowired
+  TestEntityManager entityManager;
+
+  private long persistDate(String name) {
+    UCSBDate date = UCSBDate.builder()
+        .quarterYYYYQ("20222")
+        .name(name)
+        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .build();
+    long id = entityManager.persistAndGetId(date, Long.class);
+    entityManager.flush();
+    entityManager.clear();
+    return id;
+  }
+
+  private Session session() {
+    return entityManager.getEntityManager().unwrap(Session.class);
+  }
+
+  @Test
+  void list_reads_load_read_only_entities() {
+    long id = persistDate("firstDayOfClasses");
+
+    UCSBDate fromFindAll = ucsbDateRepository.findAll().iterator().next();
+    assertTrue(session().isReadOnly(fromFindAll));
+    entityManager.clear();
+
+    UCSBDate fromFindAllById = ucsbDateRepository.findAllById(List.of(id)).iterator().next();
+    assertTrue(session().isReadOnly(fromFindAllById));
+    entityManager.clear();
+
+    UCSBDate fromFindById = ucsbDateRepository.findById(id).orElseThrow();
+    assertFalse(session().isReadOnly(fromFindById));
+  }
+
+  @Test
+  void changes_to_list_read_entities_are_not_written_back() {
+    long id = persistDate("original");
+
+    UCSBDate date = ucsbDateRepository.findAll().iterator().next();
+    date.setName("changed");
+    entityManager.flush();
+    entityManager.clear();
+
+    assertEquals("original", ucsbDateRepository.findById(id).orElseThrow().getName());
+  }
+}
@@ -0,0 +1,57 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.HelpRequests;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+
+class FieldsetTests {
+
+  @Test
+  void names_keep_the_requested_order_without_duplicates_or_blanks() {
+    Fieldset fields = Fieldset.parse(HelpRequests.class, " teamId,id,,teamId , solved");
+
+    assertEquals(List.of("teamId", "id", "solved"), fields.getNames());
+    assertEquals(HelpRequests.class, fields.getEntityType());
+  }
+
+  @Test
+  void the_same_fields_parse_to_the_same_cached_fieldset() {
+    assertSame(Fieldset.parse(UCSBDate.class, "id,name"), Fieldset.parse(UCSBDate.class, "id,name"));
+  }
+
+  @Test
+  void unknown_fields_are_rejected_with_the_list_of_known_ones() {
+    InvalidQueryException e = assertThrows(InvalidQueryException.class,
+        () -> Fieldset.parse(UCSBDate.class, "id,password"));
+
+    assertEquals("UCSBDate has no field password; fields are id,quarterYYYYQ,name,localDateTime", e.getMessage());
+  }
+
+  @Test
+  void at_least_one_field_is_required() {
+    InvalidQueryException e = assertThrows(InvalidQueryException.class,
+        () -> Fieldset.parse(UCSBDate.class, " , "));
+
+    assertEquals("fields must name at least one field of UCSBDate", e.getMessage());
+  }
+
+  @Test
+  void only_a_bounded_number_of_fieldsets_is_cached_per_entity() {
+    for (int i = 0; i < Fieldset.MAX_CACHED_PER_ENTITY; i++) {
+      Fieldset.parse(UCSBOrganization.class, "orgCode" + ",".repeat(i + 1));
+    }
+
+    assertNotSame(Fieldset.parse(UCSBOrganization.class, "orgCode,inactive"),
+        Fieldset.parse(UCSBOrganization.class, "orgCode,inactive"));
+  }
+}
@@ -0,0 +1,56 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import edu.ucsb.cs156.example.config.JpaConfig;
+import edu.ucsb.cs156.example.entities.IdempotencyRecord;
+
+@DataJpaTest
+@Import(JpaConfig.class)
+class IdempotencyRecordRepositoryTests {
+
+  @Autowired
+  IdempotencyRecordRepository idempotencyRecordRepository;
+
+  @Test
+  void a_key_can_be_claimed_once_until_its_pending_row_is_deleted() {
+    LocalDateTime now = LocalDateTime.now();
+
+    assertEquals(1, idempotencyRecordRepository.insertPending("k1", now));
+    assertTrue(idempotencyRecordRepository.findById("k1").orElseThrow().isPending());
+    assertThrows(DataIntegrityViolationException.class, () -> idempotencyRecordRepository.insertPending("k1", now));
+
+    assertEquals(1, idempotencyRecordRepository.deletePending("k1"));
+    assertEquals(1, idempotencyRecordRepository.insertPending("k1", now));
+  }
+
+  @Test
+  void a_completed_row_is_not_deleted_as_pending_but_expires() {
+    LocalDateTime now = LocalDateTime.now();
+    idempotencyRecordRepository.save(IdempotencyRecord.builder().key("k2").fingerprint("f").status(201)
+        .body("{}").createdAt(now.minusHours(2)).build());
+
+    assertEquals(0, idempotencyRecordRepository.deletePending("k2"));
+    assertEquals(0, idempotencyRecordRepository.deleteStale("k2", now.minusHours(3), now));
+    assertEquals(1, idempotencyRecordRepository.deleteStale("k2", now.minusHours(1), now));
+  }
+
+  @Test
+  void an_abandoned_pending_row_is_stale_before_it_expires() {
+    LocalDateTime now = LocalDateTime.now();
+    idempotencyRecordRepository.insertPending("k3", now.minusMinutes(10));
+
+    assertEquals(0, idempotencyRecordRepository.deleteStale("k3", now.minusHours(24), now.minusMinutes(20)));
+    assertEquals(1, idempotencyRecordRepository.deleteStale("k3", now.minusHours(24), now.minusMinutes(5)));
+  }
+}
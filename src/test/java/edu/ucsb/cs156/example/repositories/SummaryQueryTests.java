@@ -0,0 +1,92 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import edu.ucsb.cs156.example.config.JpaConfig;
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.entities.HelpRequests;
+import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.entities.UCSBMenuItemReview;
+import edu.ucsb.cs156.example.models.ArticleSummary;
+import edu.ucsb.cs156.example.models.HelpRequestsSummary;
+import edu.ucsb.cs156.example.models.RecommendationRequestSummary;
+import edu.ucsb.cs156.example.models.UCSBMenuItemReviewSummary;
+
+@DataJpaTest
+@Import(JpaConfig.class)
+class SummaryQueryTests {
+  // longer than the 255 characters a plain String column holds
+  private static final String LONG_TEXT = "x".repeat(10_000);
+  private static final LocalDateTime WHEN = LocalDateTime.parse("2022-01-03T00:00:00");
+
+  @Autowired
+  TestEntityManager entityManager;
+
+  @Autowired
+  HelpRequestsRepository helpRequestsRepository;
+
+  @Autowired
+  RecommendationRequestRepository recommendationRequestRepository;
+
+  @Autowired
+  ArticleRepository articleRepository;
+
+  @Autowired
+  UCSBMenuItemReviewRepository ucsbMenuItemReviewRepository;
+
+  private <T> long persist(T entity) {
+    long id = entityManager.persistAndGetId(entity, Long.class);
+    entityManager.flush();
+    entityManager.clear();
+    return id;
+  }
+
+  @Test
+  void help_request_summaries_leave_out_the_explanation() {
+    long id = persist(HelpRequests.builder().requesterEmail("m@ucsb.edu").teamId("7pm-1")
+        .tableOrBreakoutRoom("t3").explanation(LONG_TEXT).requestTime(WHEN).solved(true).build());
+
+    assertEquals(List.of(new HelpRequestsSummary(id, "m@ucsb.edu", "7pm-1", "t3", WHEN, true)),
+        helpRequestsRepository.findAllSummaries());
+    assertEquals(LONG_TEXT, helpRequestsRepository.findById(id).orElseThrow().getExplanation());
+  }
+
+  @Test
+  void recommendation_request_summaries_leave_out_the_explanation() {
+    long id = persist(RecommendationRequest.builder().requesterEmail("a@ucsb.edu").professorEmail("p@ucsb.edu")
+        .explanation(LONG_TEXT).dateRequested(WHEN).dateNeeded(WHEN.plusDays(7)).done(false).build());
+
+    assertEquals(List.of(new RecommendationRequestSummary(id, "a@ucsb.edu", "p@ucsb.edu", WHEN, WHEN.plusDays(7), false)),
+        recommendationRequestRepository.findAllSummaries());
+    assertEquals(LONG_TEXT, recommendationRequestRepository.findById(id).orElseThrow().getExplanation());
+  }
+
+  @Test
+  void article_summaries_leave_out_the_explanation() {
+    long id = persist(Article.builder().title("Title").url("https://example.org").explanation(LONG_TEXT)
+        .email("a@ucsb.edu").dateAdded(WHEN).build());
+
+    assertEquals(List.of(new ArticleSummary(id, "Title", "https://example.org", "a@ucsb.edu", WHEN)),
+        articleRepository.findAllSummaries());
+    assertEquals(LONG_TEXT, articleRepository.findById(id).orElseThrow().getExplanation());
+  }
+
+  @Test
+  void review_summaries_leave_out_the_comments() {
+    long id = persist(UCSBMenuItemReview.builder().itemId(7L).stars(5).reviewerEmail("a@ucsb.edu")
+        .dateReviewed(WHEN).comments(LONG_TEXT).build());
+
+    assertEquals(List.of(new UCSBMenuItemReviewSummary(id, 7L, 5, "a@ucsb.edu", WHEN)),
+        ucsbMenuItemReviewRepository.findAllSummaries());
+    assertEquals(LONG_TEXT, ucsbMenuItemReviewRepository.findById(id).orElseThrow().getComments());
+  }
+}
@@ -0,0 +1,46 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.config.JpaConfig;
+
+@DataJpaTest
+@Import({ JpaConfig.class, AuditLogService.class, AuditLogServiceTests.Meters.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+// the writer only wakes when a test flushes, or a request blocks on the full buffer
+@TestPropertySource(properties = { "app.audit.bufferSize=4", "app.audit.batchSize=100",
+    "app.audit.flushIntervalMillis=3600000", "app.audit.whenFull=BLOCK" })
+class AuditLogServiceBlockingTests {
+
+  @Autowired
+  AuditLogService auditLogService;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @AfterEach
+  void deleteEvents() {
+    auditLogService.flush();
+    jdbcTemplate.update("DELETE FROM auditlog");
+  }
+
+  @Test
+  void with_block_an_event_that_finds_the_buffer_full_waits_for_the_writer_to_make_room() {
+    for (int i = 0; i < 10; i++) {
+      auditLogService.record(AuditLogServiceTests.event("admin@ucsb.edu", "/api/" + i));
+    }
+    auditLogService.flush();
+
+    assertEquals(10, auditLogService.find(null, null, 100).size());
+  }
+}
@@ -0,0 +1,104 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.config.JpaConfig;
+import edu.ucsb.cs156.example.entities.AuditEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest
+@Import({ JpaConfig.class, AuditLogService.class, AuditLogServiceTests.Meters.class })
+// the writer commits on its own thread
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+// the writer only wakes when a test flushes
+@TestPropertySource(properties = { "app.audit.bufferSize=4", "app.audit.batchSize=100",
+    "app.audit.flushIntervalMillis=3600000", "app.audit.whenFull=DROP" })
+class AuditLogServiceTests {
+
+  @TestConfiguration
+  static class Meters {
+    @Bean
+    MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+  }
+
+  @Autowired
+  AuditLogService auditLogService;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @AfterEach
+  void deleteEvents() {
+    auditLogService.flush();
+    jdbcTemplate.update("DELETE FROM auditlog");
+  }
+
+  static AuditEvent event(String userEmail, String path) {
+    return AuditEvent.builder()
+        .occurredAt(LocalDateTime.parse("2022-04-01T10:00:00"))
+        .userEmail(userEmail)
+        .method("PUT")
+        .path(path)
+        .params("id=7")
+        .handler("UCSBDatesController.updateUCSBDate")
+        .outcome("OK")
+        .durationMillis(12)
+        .build();
+  }
+
+  private static List<String> paths(List<AuditEvent> events) {
+    return events.stream().map(AuditEvent::getPath).toList();
+  }
+
+  @Test
+  void recorded_events_are_written_when_flushed_and_read_back_newest_first() {
+    auditLogService.record(event("admin@ucsb.edu", "/api/ucsbdates"));
+    auditLogService.record(event("other@ucsb.edu", "/api/ucsborganizations"));
+    auditLogService.record(event("admin@ucsb.edu", "/api/ucsbdiningcommons"));
+    assertEquals(List.of(), auditLogService.find(null, null, 10));
+
+    assertEquals(3, auditLogService.flush());
+
+    List<AuditEvent> all = auditLogService.find(null, null, 10);
+    assertEquals(List.of("/api/ucsbdiningcommons", "/api/ucsborganizations", "/api/ucsbdates"), paths(all));
+    assertEquals("UCSBDatesController.updateUCSBDate", all.get(2).getHandler());
+    assertEquals(12, all.get(2).getDurationMillis());
+    assertEquals(List.of("/api/ucsbdiningcommons", "/api/ucsbdates"),
+        paths(auditLogService.find("admin@ucsb.edu", null, 10)));
+    assertEquals(List.of("/api/ucsborganizations"), paths(auditLogService.find(null, all.get(0).getId(), 1)));
+  }
+
+  @Test
+  void with_drop_an_event_that_finds_the_buffer_full_is_counted_and_lost() {
+    double droppedBefore = meterRegistry.counter("app.audit.dropped", "reason", "full").count();
+
+    for (int i = 0; i < 6; i++) {
+      auditLogService.record(event("admin@ucsb.edu", "/api/" + i));
+    }
+    auditLogService.flush();
+
+    assertEquals(List.of("/api/3", "/api/2", "/api/1", "/api/0"), paths(auditLogService.find(null, null, 10)));
+    assertEquals(droppedBefore + 2, meterRegistry.counter("app.audit.dropped", "reason", "full").count());
+  }
+}
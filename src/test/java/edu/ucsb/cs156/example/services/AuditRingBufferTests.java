@@ -0,0 +1,90 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class AuditRingBufferTests {
+
+  @Test
+  void elements_come_out_in_the_order_they_went_in_and_a_full_buffer_refuses_more() {
+    // arrange
+    AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(3);
+    List<Integer> drained = new ArrayList<>();
+
+    // act and assert
+    assertEquals(4, buffer.capacity());
+    for (int i = 0; i < 4; i++) {
+      assertTrue(buffer.offer(i));
+    }
+    assertFalse(buffer.offer(4));
+    assertEquals(4, buffer.size());
+
+    assertEquals(3, buffer.drainTo(drained, 3));
+    assertTrue(buffer.offer(5));
+    assertEquals(2, buffer.drainTo(drained, 10));
+    assertEquals(List.of(0, 1, 2, 3, 5), drained);
+    assertEquals(0, buffer.drainTo(drained, 10));
+    assertEquals(0, buffer.size());
+  }
+
+  @Test
+  void capacity_must_be_positive() {
+    assertThrows(IllegalArgumentException.class, () -> new AuditRingBuffer<>(0));
+  }
+
+  @Test
+  void every_element_offered_by_concurrent_producers_is_drained_exactly_once() throws Exception {
+    // arrange
+    int producers = 4;
+    int perProducer = 5_000;
+    AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(64);
+    ExecutorService pool = Executors.newFixedThreadPool(producers);
+    List<Future<?>> running = new ArrayList<>();
+
+    // act
+    for (int p = 0; p < producers; p++) {
+      int first = p * perProducer;
+      running.add(pool.submit(() -> {
+        for (int i = first; i < first + perProducer; i++) {
+          while (!buffer.offer(i)) {
+            Thread.onSpinWait();
+          }
+        }
+      }));
+    }
+    List<Integer> drained = new ArrayList<>();
+    while (drained.size() < producers * perProducer) {
+      buffer.drainTo(drained, 100);
+    }
+    for (Future<?> producer : running) {
+      producer.get();
+    }
+    pool.shutdown();
+
+    // assert
+    boolean[] seen = new boolean[producers * perProducer];
+    for (int element : drained) {
+      assertFalse(seen[element], "drained twice: " + element);
+      seen[element] = true;
+    }
+    // each producer's elements stay in its order
+    int[] last = new int[producers];
+    Arrays.fill(last, -1);
+    for (int element : drained) {
+      int producer = element / perProducer;
+      assertTrue(element > last[producer]);
+      last[producer] = element;
+    }
+  }
+}
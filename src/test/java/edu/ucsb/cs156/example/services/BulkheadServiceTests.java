@@ -0,0 +1,112 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@ExtendWith(SpringExtension.class)
+@Import(TestConfig.class)
+@ContextConfiguration
+@TestPropertySource(properties = {
+    "app.bulkhead.userReads.threads=2", "app.bulkhead.userReads.queueCapacity=4",
+    "app.bulkhead.adminWrites.threads=1", "app.bulkhead.adminWrites.queueCapacity=1" })
+class BulkheadServiceTests {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Autowired
+  BulkheadService bulkheads;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  private double gauge(String name, String bulkhead) {
+    return meterRegistry.get(name).tag("bulkhead", bulkhead).gauge().value();
+  }
+
+  private double rejected(String bulkhead) {
+    return meterRegistry.counter("app.bulkhead.rejected", "bulkhead", bulkhead).count();
+  }
+
+  @Test
+  void work_runs_on_the_bulkhead_threads() throws Exception {
+    String caller = Thread.currentThread().getName();
+
+    String reader = bulkheads.userReads(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+    String writer = bulkheads.adminWrites(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+
+    assertNotEquals(caller, reader);
+    assertTrue(reader.startsWith("bulkhead-userReads-"), reader);
+    assertTrue(writer.startsWith("bulkhead-adminWrites-"), writer);
+  }
+
+  @Test
+  void a_full_bulkhead_rejects_at_once_and_does_not_slow_the_other() throws Exception {
+    // arrange: the one admin thread is busy and its one queue slot is taken
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<Integer> running = bulkheads.adminWrites(() -> {
+      started.countDown();
+      await(release);
+      return 1;
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    CompletableFuture<Integer> queued = bulkheads.adminWrites(() -> 2);
+    double rejectedBefore = rejected(BulkheadService.ADMIN_WRITES);
+
+    // act
+    RejectedExecutionException e = assertThrows(RejectedExecutionException.class,
+        () -> bulkheads.adminWrites(() -> 3));
+    String read = bulkheads.userReads(() -> "unaffected").get(5, TimeUnit.SECONDS);
+
+    // assert
+    assertEquals("too many adminWrites requests queued; retry shortly", e.getMessage());
+    assertEquals(1.0, rejected(BulkheadService.ADMIN_WRITES) - rejectedBefore);
+    assertEquals(1.0, gauge("app.bulkhead.queue.depth", BulkheadService.ADMIN_WRITES));
+    assertEquals(1.0, gauge("app.bulkhead.active", BulkheadService.ADMIN_WRITES));
+    assertEquals("unaffected", read);
+
+    release.countDown();
+    assertEquals(1, running.get(5, TimeUnit.SECONDS));
+    assertEquals(2, queued.get(5, TimeUnit.SECONDS));
+    assertEquals(0.0, gauge("app.bulkhead.queue.depth", BulkheadService.ADMIN_WRITES));
+  }
+
+  @Test
+  void failures_complete_the_future_exceptionally() {
+    CompletableFuture<Object> failed = bulkheads.userReads(() -> {
+      throw new IllegalStateException("boom");
+    });
+
+    Exception e = assertThrows(Exception.class, () -> failed.get(5, TimeUnit.SECONDS));
+    assertEquals(IllegalStateException.class, e.getCause().getClass());
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.config.JpaConfig;
+import edu.ucsb.cs156.example.entities.ChangeLogEntry;
+import edu.ucsb.cs156.example.entities.HelpRequests;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.errors.ChangesExpiredException;
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+import edu.ucsb.cs156.example.models.ChangeFeed;
+
+@DataJpaTest
+@Import({ JpaConfig.class, ChangeLogService.class, SyncTreeService.class, ChangeFeedService.class,
+    HelpRequestsService.class, UCSBDiningCommonsService.class })
+// changes are written as the transactions that make them commit
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = { "app.changes.maxItems=4", "app.changes.retentionHours=24" })
+class ChangeFeedServiceTests {
+
+  @Autowired
+  ChangeFeedService changeFeedService;
+
+  @Autowired
+  ChangeLogService changeLogService;
+
+  @Autowired
+  HelpRequestsService helpRequestsService;
+
+  @Autowired
+  UCSBDiningCommonsService ucsbDiningCommonsService;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @AfterEach
+  void deleteRows() {
+    List.of("changelog", "helprequests", "ucsbdiningcommons").forEach(table -> jdbcTemplate.update("DELETE FROM " + table));
+  }
+
+  private long latest() {
+    return changeFeedService.changesSince(null, List.of()).getLatest();
+  }
+
+  private HelpRequests helpRequest(String teamId) {
+    return HelpRequests.builder()
+        .requesterEmail("cgaucho@ucsb.edu")
+        .teamId(teamId)
+        .tableOrBreakoutRoom("t3")
+        .explanation("stuck")
+        .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .build();
+  }
+
+  private static List<String> summary(ChangeFeed feed) {
+    return feed.getChanges().stream().map(change -> "%s %s %s".formatted(change.op(), change.entity(), change.id())).toList();
+  }
+
+  @Test
+  void the_feed_has_the_latest_change_to_each_row_with_the_row_as_it_is_now() {
+    long since = latest();
+    HelpRequests first = helpRequestsService.create(helpRequest("s22-5pm-1"));
+    HelpRequests second = helpRequestsService.create(helpRequest("s22-5pm-2"));
+    helpRequestsService.update(first.getId(), helpRequest -> helpRequest.setSolved(true));
+    helpRequestsService.delete(second.getId());
+
+    ChangeFeed feed = changeFeedService.changesSince(since, List.of());
+
+    assertEquals(List.of("UPSERT HelpRequests " + first.getId(), "DELETE HelpRequests " + second.getId()), summary(feed));
+    assertTrue(((HelpRequests) feed.getChanges().get(0).value()).getSolved());
+    assertEquals(since + 4, feed.getLatest());
+    assertFalse(feed.getHasMore());
+    assertEquals(List.of(), changeFeedService.changesSince(feed.getLatest(), List.of()).getChanges());
+  }
+
+  @Test
+  void the_feed_can_be_limited_to_some_entities() {
+    long since = latest();
+    helpRequestsService.create(helpRequest("s22-5pm-1"));
+    ucsbDiningCommonsService.create(UCSBDiningCommons.builder().code("ortega").name("Ortega").build());
+
+    ChangeFeed feed = changeFeedService.changesSince(since, List.of("UCSBDiningCommons"));
+
+    assertEquals(List.of("UPSERT UCSBDiningCommons ortega"), summary(feed));
+    assertEquals("Ortega", ((UCSBDiningCommons) feed.getChanges().get(0).value()).getName());
+    assertEquals(since + 2, feed.getLatest());
+    assertThrows(InvalidQueryException.class, () -> changeFeedService.changesSince(since, List.of("Nonesuch")));
+  }
+
+  @Test
+  void a_long_feed_is_read_a_page_at_a_time() {
+    long since = latest();
+    for (int i = 0; i < 6; i++) {
+      helpRequestsService.create(helpRequest("team-" + i));
+    }
+
+    ChangeFeed firstPage = changeFeedService.changesSince(since, List.of());
+    ChangeFeed secondPage = changeFeedService.changesSince(firstPage.getLatest(), List.of());
+
+    assertEquals(4, firstPage.getChanges().size());
+    assertTrue(firstPage.getHasMore());
+    assertEquals(since + 4, firstPage.getLatest());
+    assertEquals(2, secondPage.getChanges().size());
+    assertFalse(secondPage.getHasMore());
+  }
+
+  @Test
+  void changes_are_numbered_in_the_order_their_transactions_commit() {
+    long since = latest();
+    TransactionTemplate outer = new TransactionTemplate(transactionManager);
+    TransactionTemplate inner = new TransactionTemplate(transactionManager);
+    inner.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+    outer.executeWithoutResult(status -> {
+      helpRequestsService.create(helpRequest("started first"));
+      inner.executeWithoutResult(innerStatus -> helpRequestsService.create(helpRequest("committed first")));
+    });
+    // and a transaction that rolls back records nothing
+    assertThrows(IllegalStateException.class, () -> outer.executeWithoutResult(status -> {
+      helpRequestsService.create(helpRequest("rolled back"));
+      throw new IllegalStateException("rolled back");
+    }));
+
+    List<String> teams = changeFeedService.changesSince(since, List.of()).getChanges().stream()
+        .map(change -> ((HelpRequests) change.value()).getTeamId())
+        .toList();
+    assertEquals(List.of("committed first", "started first"), teams);
+  }
+
+  @Test
+  void set_based_deletes_ask_clients_to_read_the_entity_again() {
+    long since = latest();
+    helpRequestsService.bulkDeleteSolvedBefore(LocalDateTime.parse("2022-01-01T00:00:00"));
+
+    assertEquals(List.of("RESET HelpRequests *"), summary(changeFeedService.changesSince(since, List.of())));
+  }
+
+  @Test
+  void compaction_drops_superseded_changes_and_clients_behind_expired_ones_must_start_over() {
+    long since = latest();
+    HelpRequests helpRequest = helpRequestsService.create(helpRequest("s22-5pm-1"));
+    helpRequestsService.update(helpRequest.getId(), changed -> changed.setSolved(true));
+    long afterOld = latest();
+    helpRequestsService.create(helpRequest("s22-5pm-2"));
+    // the first two changes were made two days ago
+    jdbcTemplate.update("UPDATE changelog SET changed_at = ? WHERE seq <= ?",
+        Timestamp.valueOf(LocalDateTime.now().minusDays(2)), afterOld);
+
+    changeLogService.compact();
+
+    assertEquals(List.of(afterOld + 1),
+        jdbcTemplate.queryForList("SELECT seq FROM changelog WHERE seq > ? ORDER BY seq", Long.class, since));
+    ChangesExpiredException e = assertThrows(ChangesExpiredException.class,
+        () -> changeFeedService.changesSince(since, List.of()));
+    assertEquals("changes after %d have been compacted away; read the collections again and continue from %d"
+        .formatted(since, afterOld + 1), e.getMessage());
+    assertEquals(1, changeFeedService.changesSince(afterOld, List.of()).getChanges().size());
+    assertThrows(ChangesExpiredException.class, () -> changeFeedService.changesSince(afterOld + 2, List.of()));
+  }
+
+  @Test
+  void a_change_superseded_by_a_later_one_is_compacted_away() {
+    long since = latest();
+    HelpRequests helpRequest = helpRequestsService.create(helpRequest("s22-5pm-1"));
+    helpRequestsService.update(helpRequest.getId(), changed -> changed.setSolved(true));
+
+    changeLogService.compact();
+
+    assertEquals(List.of(ChangeLogEntry.Op.UPSERT.name()),
+        jdbcTemplate.queryForList("SELECT op FROM changelog WHERE seq > ?", String.class, since));
+    assertEquals(List.of("UPSERT HelpRequests " + helpRequest.getId()), summary(changeFeedService.changesSince(since, List.of())));
+  }
+}
@@ -0,0 +1,200 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.config.JpaConfig;
+import edu.ucsb.cs156.example.errors.CsvFormatException;
+import edu.ucsb.cs156.example.errors.JobCancelledException;
+import edu.ucsb.cs156.example.models.CsvImportResult;
+import edu.ucsb.cs156.example.models.CsvRowError;
+
+@DataJpaTest
+@Import({ JpaConfig.class, CsvImportService.class, ChangeLogService.class, SyncTreeService.class })
+// the service commits one transaction per chunk, so the tests must not run inside one
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+    "app.csvImport.chunkSize=3",
+    "app.csvImport.chunksInFlight=2",
+    "app.csvImport.maxErrors=3" })
+class CsvImportServiceTests {
+
+  @Autowired
+  CsvImportService csvImportService;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @AfterEach
+  void deleteImportedRows() {
+    List.of("ucsbdates", "ucsborganizations", "ucsbdiningcommonsmenuitems", "ucsbmenuitemreview")
+        .forEach(table -> jdbcTemplate.update("DELETE FROM " + table));
+  }
+
+  private static InputStream csv(String text) {
+    return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private List<String> menuItemNames() {
+    return jdbcTemplate.queryForList("SELECT name FROM ucsbdiningcommonsmenuitems ORDER BY id", String.class);
+  }
+
+  @Test
+  void valid_rows_are_imported_in_file_order_and_invalid_ones_reported_by_line() throws Exception {
+    CsvImportResult result = csvImportService.importCsv(CsvImportSpec.UCSB_DINING_COMMONS_MENU_ITEMS, csv("""
+        station,name,diningCommonsCode,notes
+        Grill,Burrito,ortega,
+        Greens,,ortega,missing name
+        Oven,Pizza,de-la-guerra,
+        Grill,Taco,ortega,
+        Grill,"Mac ""n"" Cheese",carrillo,
+        ,Soup,carrillo,missing station
+        Grill,Fries,carrillo,
+        """));
+
+    assertEquals(List.of("Burrito", "Pizza", "Taco", "Mac \"n\" Cheese", "Fries"), menuItemNames());
+    assertEquals(7, result.getRowsRead());
+    assertEquals(5, result.getRowsImported());
+    assertEquals(List.of(new CsvRowError(3, "name is required"), new CsvRowError(7, "station is required")),
+        result.getErrors());
+    assertEquals(2, result.getErrorCount());
+  }
+
+  @Test
+  void rows_the_database_refuses_are_reported_and_the_rest_of_their_batch_kept() throws Exception {
+    CsvImportResult result = csvImportService.importCsv(CsvImportSpec.UCSB_ORGANIZATIONS, csv("""
+        orgCode,orgTranslationShort,orgTranslation,inactive
+        ZPR,Zeta Phi Rho,Zeta Phi Rho,false
+        SKY,Skydiving Club,Skydiving Club,TRUE
+        ZPR,Zeta Again,Zeta Phi Rho Again,false
+        OSLI,Student Life,Office of Student Life,maybe
+        """));
+
+    assertEquals(List.of("SKY", "ZPR"),
+        jdbcTemplate.queryForList("SELECT org_code FROM ucsborganizations ORDER BY org_code", String.class));
+    assertEquals(2, result.getRowsImported());
+    assertEquals(4, result.getErrors().get(0).line());
+    assertTrue(result.getErrors().get(0).message().contains("primary key violation"), result.getErrors().get(0).message());
+    assertEquals(new CsvRowError(5, "inactive: maybe is not true or false"), result.getErrors().get(1));
+  }
+
+  @Test
+  void every_spec_inserts_into_its_entitys_table() throws Exception {
+    csvImportService.importCsv(CsvImportSpec.UCSB_DATES, csv("""
+        quarterYYYYQ,name,localDateTime
+        20222,firstDayOfClasses,2022-03-28T00:00:00
+        """));
+    csvImportService.importCsv(CsvImportSpec.UCSB_MENU_ITEM_REVIEWS, csv("""
+        itemId,stars,reviewerEmail,dateReviewed,comments
+        7,5,cgaucho@ucsb.edu,2022-01-03T12:00:00,
+        seven,5,cgaucho@ucsb.edu,2022-01-03T12:00:00,typo
+        """));
+
+    assertEquals(1, jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM ucsbdates WHERE quarteryyyyq = '20222' AND local_date_time = '2022-03-28 00:00:00'",
+        Integer.class));
+    assertEquals(5, jdbcTemplate.queryForObject("SELECT stars FROM ucsbmenuitemreview WHERE item_id = 7", Integer.class));
+  }
+
+  @Test
+  void a_header_without_a_required_column_imports_nothing() {
+    CsvFormatException e = assertThrows(CsvFormatException.class,
+        () -> csvImportService.importCsv(CsvImportSpec.UCSB_DATES, csv("name,localDateTime\nx,2022-01-03T00:00:00\n")));
+
+    assertEquals("CSV header for UCSBDate is missing quarterYYYYQ", e.getMessage());
+    assertThrows(CsvFormatException.class, () -> csvImportService.importCsv(CsvImportSpec.UCSB_DATES, csv("")));
+  }
+
+  @Test
+  void only_the_first_errors_are_listed_but_all_are_counted() throws Exception {
+    String rows = IntStream.range(0, 10).mapToObj(i -> "ortega,Item %d,\n".formatted(i)).reduce("", String::concat);
+
+    CsvImportResult result = csvImportService.importCsv(CsvImportSpec.UCSB_DINING_COMMONS_MENU_ITEMS,
+        csv("diningCommonsCode,name,station\n" + rows));
+
+    assertEquals(3, result.getErrors().size());
+    assertEquals(10, result.getErrorCount());
+    assertEquals(0, result.getRowsImported());
+  }
+
+  @Test
+  void rows_before_an_unreadable_record_are_kept() throws Exception {
+    CsvImportResult result = csvImportService.importCsv(CsvImportSpec.UCSB_DINING_COMMONS_MENU_ITEMS, csv("""
+        diningCommonsCode,name,station
+        ortega,Burrito,Grill
+        ortega,"Pizza,Oven
+        ortega,Taco,Grill
+        """));
+
+    assertEquals(List.of("Burrito"), menuItemNames());
+    assertEquals(List.of(new CsvRowError(3, "quote opened on line 3 is never closed; the rest of the file was not read")),
+        result.getErrors());
+  }
+
+  @Test
+  void a_cancelled_import_job_stops_after_the_chunk_being_written_and_keeps_it() throws Exception {
+    JobContext job = new JobContext(1, 1000) {
+      @Override
+      public synchronized void progress(long done, Long total, String message) {
+        super.progress(done, total, message);
+        // as if an admin cancelled the job while the first chunk was written
+        requestCancel();
+      }
+    };
+    String rows = IntStream.range(0, 10).mapToObj(i -> "ortega,Item %d,Grill\n".formatted(i)).reduce("", String::concat);
+
+    assertThrows(JobCancelledException.class, () -> csvImportService.importCsv(
+        CsvImportSpec.UCSB_DINING_COMMONS_MENU_ITEMS, csv("diningCommonsCode,name,station\n" + rows), job));
+
+    assertEquals(List.of("Item 0", "Item 1", "Item 2"), menuItemNames());
+    assertEquals("3 rows imported, 0 errors", job.snapshot().progressMessage());
+  }
+
+  @Test
+  void a_file_much_longer_than_the_pipeline_is_streamed_through() throws Exception {
+    int rows = 5_000;
+    // generated as it is read, so the test itself never holds the whole file
+    Iterator<InputStream> lines = IntStream.range(0, rows)
+        .mapToObj(i -> csv("ortega,Item %d,Grill\n".formatted(i)))
+        .iterator();
+    InputStream file = new SequenceInputStream(csv("diningCommonsCode,name,station\n"),
+        new SequenceInputStream(new Enumeration<InputStream>() {
+          @Override
+          public boolean hasMoreElements() {
+            return lines.hasNext();
+          }
+
+          @Override
+          public InputStream nextElement() {
+            return lines.next();
+          }
+        }));
+
+    CsvImportResult result = csvImportService.importCsv(CsvImportSpec.UCSB_DINING_COMMONS_MENU_ITEMS, file);
+
+    assertEquals(rows, result.getRowsImported());
+    List<String> names = menuItemNames();
+    assertEquals("Item 0", names.get(0));
+    assertEquals("Item %d".formatted(rows - 1), names.get(rows - 1));
+  }
+}
@@ -0,0 +1,61 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.errors.CsvFormatException;
+
+class CsvReaderTests {
+
+  @Test
+  void quoted_fields_may_hold_commas_quotes_and_line_breaks() throws Exception {
+    CsvReader reader = new CsvReader(new StringReader(
+        "a,\"b,c\",\"say \"\"hi\"\"\"\r\n\"two\nlines\",,x\n"), 1000);
+
+    assertEquals(List.of("a", "b,c", "say \"hi\""), reader.readRecord());
+    assertEquals(1, reader.getRecordLineNumber());
+    assertEquals(List.of("two\nlines", "", "x"), reader.readRecord());
+    assertEquals(2, reader.getRecordLineNumber());
+    assertNull(reader.readRecord());
+  }
+
+  @Test
+  void blank_lines_are_skipped_and_line_numbers_count_them() throws Exception {
+    CsvReader reader = new CsvReader(new StringReader("h1,h2\n\n\r\nv1,v2"), 1000);
+
+    assertEquals(List.of("h1", "h2"), reader.readRecord());
+    assertEquals(List.of("v1", "v2"), reader.readRecord());
+    assertEquals(4, reader.getRecordLineNumber());
+    assertNull(reader.readRecord());
+  }
+
+  @Test
+  void records_longer_than_the_limit_are_refused() throws Exception {
+    CsvReader reader = new CsvReader(new StringReader("ok\n\"never closed,and,on\nand on"), 10);
+
+    assertEquals(List.of("ok"), reader.readRecord());
+    CsvFormatException e = assertThrows(CsvFormatException.class, reader::readRecord);
+    assertEquals("record starting on line 2 is longer than 10 characters", e.getMessage());
+  }
+
+  @Test
+  void a_quote_left_open_at_the_end_of_the_file_is_refused() {
+    CsvReader reader = new CsvReader(new StringReader("a,\"b"), 1000);
+
+    CsvFormatException e = assertThrows(CsvFormatException.class, reader::readRecord);
+    assertEquals("quote opened on line 1 is never closed", e.getMessage());
+  }
+
+  @Test
+  void text_after_a_closing_quote_is_refused() {
+    CsvReader reader = new CsvReader(new StringReader("\"a\"b,c"), 1000);
+
+    assertThrows(CsvFormatException.class, reader::readRecord);
+  }
+}
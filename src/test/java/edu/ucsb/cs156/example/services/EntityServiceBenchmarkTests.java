@@ -0,0 +1,148 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.config.JpaConfig;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Heap and CPU cost of loading a 100k row /all, comparing the service's
+ * read-only path with loading managed entities in a read-write transaction. Not part of the regular build; run with
+ *
+ *   mvn test -Dtest=EntityServiceBenchmarkTests -Dbenchmarks=true
+ */
+@Slf4j
+@DataJpaTest
+@Import({ JpaConfig.class, UCSBDateService.class, ChangeLogService.class, SyncTreeService.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class EntityServiceBenchmarkTests {
+  private static final int ROWS = 100_000;
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int ROUNDS = 5;
+
+  @Autowired
+  UCSBDateService ucsbDateService;
+
+  @Autowired
+  EntityManager entityManager;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  private record Cost(long allocatedBytes, long cpuNanos) {
+  }
+
+  @BeforeEach
+  void insertRows() {
+    jdbcTemplate.update("DELETE FROM ucsbdates");
+    List<Object[]> rows = new ArrayList<>();
+    Timestamp when = Timestamp.valueOf(LocalDateTime.parse("2022-01-03T00:00:00"));
+    for (int i = 0; i < ROWS; i++) {
+      rows.add(new Object[] { "20222", "date " + i, when });
+    }
+    jdbcTemplate.batchUpdate("INSERT INTO ucsbdates (quarteryyyyq, name, local_date_time) VALUES (?, ?, ?)", rows);
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  // the heap still held once the rows are loaded, while the response would
+  // be written (managed entities keep their snapshots until the transaction ends)
+  private long retainedManaged() {
+    long before = usedHeap();
+    return new TransactionTemplate(transactionManager).execute(status -> {
+      List<UCSBDate> rows = loadManaged();
+      long retained = usedHeap() - before;
+      assertEquals(ROWS, rows.size());
+      return retained;
+    });
+  }
+
+  private long retainedReadOnly() {
+    long before = usedHeap();
+    Iterable<UCSBDate> rows = ucsbDateService.findAll();
+    long retained = usedHeap() - before;
+    assertEquals(ROWS, count(rows));
+    return retained;
+  }
+
+  private List<UCSBDate> loadManaged() {
+    return entityManager.createQuery("SELECT d FROM ucsbdates d", UCSBDate.class).getResultList();
+  }
+
+  private int managedEntitiesInReadWriteTransaction() {
+    return new TransactionTemplate(transactionManager).execute(status -> loadManaged().size());
+  }
+
+  private int serviceFindAll() {
+    return count(ucsbDateService.findAll());
+  }
+
+  private static int count(Iterable<UCSBDate> rows) {
+    int count = 0;
+    for (UCSBDate ignored : rows) {
+      count++;
+    }
+    return count;
+  }
+
+  private static Cost measure(Supplier<Integer> load) {
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      assertEquals(ROWS, load.get());
+    }
+    long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+    long cpuBefore = threads.getCurrentThreadCpuTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      assertEquals(ROWS, load.get());
+    }
+    return new Cost((threads.getThreadAllocatedBytes(thread) - allocatedBefore) / ROUNDS,
+        (threads.getCurrentThreadCpuTime() - cpuBefore) / ROUNDS);
+  }
+
+  @Test
+  void read_only_all_versus_managed_entities() {
+    Cost managed = measure(this::managedEntitiesInReadWriteTransaction);
+    Cost readOnly = measure(this::serviceFindAll);
+
+    long managedRetained = retainedManaged();
+    long readOnlyRetained = retainedReadOnly();
+
+    log.info("{} rows, managed read-write: {} MB retained, {} MB allocated, {} ms CPU per load",
+        ROWS, managedRetained >> 20, managed.allocatedBytes() >> 20, managed.cpuNanos() / 1_000_000);
+    log.info("{} rows, read-only service: {} MB retained, {} MB allocated, {} ms CPU per load",
+        ROWS, readOnlyRetained >> 20, readOnly.allocatedBytes() >> 20, readOnly.cpuNanos() / 1_000_000);
+  }
+}
@@ -0,0 +1,159 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doNothing;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.config.JpaConfig;
+import edu.ucsb.cs156.example.entities.ArchivedHelpRequest;
+import edu.ucsb.cs156.example.entities.HelpRequests;
+import edu.ucsb.cs156.example.errors.LeaseLostException;
+import edu.ucsb.cs156.example.repositories.ArchivedHelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest
+@Import({ JpaConfig.class, HelpRequestsArchiveService.class, ChangeLogService.class,
+    HelpRequestsArchiveServiceTests.Meters.class })
+// each batch commits in its own transaction
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "app.helpRequests.archiveBatchSize=2")
+class HelpRequestsArchiveServiceTests {
+
+  @TestConfiguration
+  static class Meters {
+    @Bean
+    MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+  }
+
+  static final LocalDateTime CUTOFF = LocalDateTime.parse("2022-01-01T00:00:00");
+
+  @MockBean
+  LeaderLockService leaderLocks;
+
+  @Autowired
+  HelpRequestsArchiveService archiveService;
+
+  @Autowired
+  HelpRequestsRepository helpRequestsRepository;
+
+  @Autowired
+  ArchivedHelpRequestRepository archivedHelpRequestRepository;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @AfterEach
+  void deleteRequests() {
+    helpRequestsRepository.deleteAll();
+    archivedHelpRequestRepository.deleteAll();
+  }
+
+  private HelpRequests save(String teamId, String requestTime, boolean solved) {
+    return helpRequestsRepository.save(HelpRequests.builder()
+        .requesterEmail("cgaucho@ucsb.edu")
+        .teamId(teamId)
+        .tableOrBreakoutRoom("t3")
+        .explanation("explanation for " + teamId)
+        .requestTime(LocalDateTime.parse(requestTime))
+        .solved(solved)
+        .build());
+  }
+
+  private List<String> liveTeams() {
+    return StreamSupport.stream(helpRequestsRepository.findAll().spliterator(), false)
+        .map(HelpRequests::getTeamId).sorted().toList();
+  }
+
+  private List<String> archivedTeams() {
+    return StreamSupport.stream(archivedHelpRequestRepository.findAll().spliterator(), false)
+        .map(ArchivedHelpRequest::getTeamId).sorted().toList();
+  }
+
+  @Test
+  void solved_requests_older_than_the_cutoff_move_to_the_archive_in_batches() {
+    HelpRequests old = save("old-1", "2021-03-01T10:00:00", true);
+    save("old-2", "2021-04-01T10:00:00", true);
+    save("old-3", "2021-05-01T10:00:00", true);
+    save("old-unsolved", "2021-05-01T10:00:00", false);
+    save("new-solved", "2022-02-01T10:00:00", true);
+    Timer lockTimer = meterRegistry.timer("app.archive.lock", "table", "helprequests");
+    long batchesBefore = lockTimer.count();
+
+    HelpRequestsArchiveService.Report report = archiveService.archiveSolvedBefore(CUTOFF);
+
+    assertEquals(List.of("new-solved", "old-unsolved"), liveTeams());
+    assertEquals(List.of("old-1", "old-2", "old-3"), archivedTeams());
+    assertEquals(3, report.rowsArchived());
+    assertEquals(2, report.batches());
+    assertTrue(report.longestLock().compareTo(report.lockedFor()) <= 0);
+    assertEquals(batchesBefore + 2, lockTimer.count());
+
+    ArchivedHelpRequest archived = archivedHelpRequestRepository.findById(old.getId()).orElseThrow();
+    assertEquals("explanation for old-1", archived.getExplanation());
+    assertEquals(old.getRequestTime(), archived.getRequestTime());
+    assertTrue(archived.getArchivedAt() != null);
+  }
+
+  @Test
+  void a_batch_that_finds_the_lock_lost_is_rolled_back_and_the_run_stops() {
+    save("old-1", "2021-03-01T10:00:00", true);
+    save("old-2", "2021-04-01T10:00:00", true);
+    save("old-3", "2021-05-01T10:00:00", true);
+    doNothing().doThrow(new LeaseLostException("lost it")).when(leaderLocks).checkHeld();
+
+    assertThrows(LeaseLostException.class, () -> archiveService.archiveSolvedBefore(CUTOFF));
+
+    assertEquals(List.of("old-3"), liveTeams());
+    assertEquals(List.of("old-1", "old-2"), archivedTeams());
+  }
+
+  @Test
+  void live_and_archived_requests_are_read_together_in_id_order_a_page_at_a_time() {
+    HelpRequests first = save("old-1", "2021-03-01T10:00:00", true);
+    HelpRequests second = save("new-solved", "2022-02-01T10:00:00", true);
+    HelpRequests third = save("old-2", "2021-04-01T10:00:00", true);
+    archiveService.archiveSolvedBefore(CUTOFF);
+
+    List<ArchivedHelpRequest> page = archivedHelpRequestRepository.findAllIncludingLive(0, 2);
+    List<ArchivedHelpRequest> rest = archivedHelpRequestRepository.findAllIncludingLive(second.getId(), 2);
+
+    assertEquals(List.of(first.getId(), second.getId()), page.stream().map(ArchivedHelpRequest::getId).toList());
+    assertTrue(page.get(0).getArchivedAt() != null);
+    assertEquals("explanation for new-solved", page.get(1).getExplanation());
+    assertEquals(null, page.get(1).getArchivedAt());
+    assertEquals(List.of(third.getId()), rest.stream().map(ArchivedHelpRequest::getId).toList());
+  }
+
+  @Test
+  void a_run_with_nothing_to_archive_reports_no_batches() {
+    save("new-solved", "2022-02-01T10:00:00", true);
+
+    HelpRequestsArchiveService.Report report = archiveService.archiveSolvedBefore(CUTOFF);
+
+    assertEquals(0, report.rowsArchived());
+    assertEquals(0, report.batches());
+    assertEquals(List.of("new-solved"), liveTeams());
+  }
+}
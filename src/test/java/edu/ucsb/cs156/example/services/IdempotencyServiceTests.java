@@ -0,0 +1,185 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.IdempotencyRecord;
+import edu.ucsb.cs156.example.errors.IdempotencyKeyInFlightException;
+import edu.ucsb.cs156.example.repositories.IdempotencyRecordRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+@ExtendWith(SpringExtension.class)
+@Import(TestConfig.class)
+@ContextConfiguration
+@TestPropertySource(properties = { "app.idempotency.maxEntries=2", "app.idempotency.ttlMinutes=60" })
+class IdempotencyServiceTests {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Autowired
+  IdempotencyService idempotencyService;
+
+  @Autowired
+  IdempotencyRecordRepository idempotencyRecordRepository;
+
+  private IdempotencyRecord record(String key, int status, LocalDateTime createdAt) {
+    return IdempotencyRecord.builder()
+        .key(key)
+        .fingerprint("f")
+        .status(status)
+        .body("{}")
+        .createdAt(createdAt)
+        .build();
+  }
+
+  @Test
+  void duplicates_wait_on_the_execution_that_claimed_the_key() throws Exception {
+    // act
+    CompletableFuture<IdempotencyRecord> first = idempotencyService.claim("coalesce");
+    CompletableFuture<IdempotencyRecord> second = idempotencyService.claim("coalesce");
+    CompletableFuture<IdempotencyRecord> third = idempotencyService.claim("coalesce");
+
+    // assert
+    assertNull(first);
+    assertNotNull(second);
+    assertSame(second, third);
+    assertTrue(!second.isDone());
+
+    IdempotencyRecord saved = record("coalesce", 200, LocalDateTime.now());
+    idempotencyService.complete("coalesce", saved);
+
+    assertSame(saved, second.get());
+    assertEquals(Optional.of(saved), idempotencyService.find("coalesce"));
+    verify(idempotencyRecordRepository, times(1)).save(saved);
+    // looked up in the table once, when the first claim checked for a finished run
+    verify(idempotencyRecordRepository, times(1)).findById(eq("coalesce"));
+  }
+
+  @Test
+  void failed_responses_are_shared_with_waiters_but_not_remembered() throws Exception {
+    // arrange
+    assertNull(idempotencyService.claim("failed"));
+    CompletableFuture<IdempotencyRecord> waiter = idempotencyService.claim("failed");
+    IdempotencyRecord failure = record("failed", 400, LocalDateTime.now());
+
+    // act
+    idempotencyService.complete("failed", failure);
+
+    // assert
+    assertSame(failure, waiter.get());
+    assertEquals(Optional.empty(), idempotencyService.find("failed"));
+    assertNull(idempotencyService.claim("failed"));
+    verify(idempotencyRecordRepository, never()).save(any());
+    verify(idempotencyRecordRepository, times(1)).deletePending("failed");
+  }
+
+  @Test
+  void abandoned_keys_fail_their_waiters_and_can_be_claimed_again() {
+    // arrange
+    assertNull(idempotencyService.claim("abandoned"));
+    CompletableFuture<IdempotencyRecord> waiter = idempotencyService.claim("abandoned");
+
+    // act
+    idempotencyService.abandon("abandoned", new IllegalStateException("boom"));
+
+    // assert
+    assertThrows(ExecutionException.class, waiter::get);
+    verify(idempotencyRecordRepository, times(1)).deletePending("abandoned");
+    assertNull(idempotencyService.claim("abandoned"));
+  }
+
+  @Test
+  void a_key_claimed_by_another_instance_is_refused_until_it_completes() throws Exception {
+    // arrange
+    IdempotencyRecord pending = IdempotencyRecord.builder().key("elsewhere").status(IdempotencyRecord.PENDING)
+        .createdAt(LocalDateTime.now()).build();
+    IdempotencyRecord completed = record("elsewhere", 201, LocalDateTime.now());
+    when(idempotencyRecordRepository.insertPending(eq("elsewhere"), any()))
+        .thenThrow(new DataIntegrityViolationException("duplicate key"));
+    when(idempotencyRecordRepository.findById(eq("elsewhere")))
+        .thenReturn(Optional.of(pending), Optional.of(pending), Optional.of(completed));
+
+    // act
+    CompletableFuture<IdempotencyRecord> whileRunning = idempotencyService.claim("elsewhere");
+    CompletableFuture<IdempotencyRecord> afterwards = idempotencyService.claim("elsewhere");
+
+    // assert
+    ExecutionException thrown = assertThrows(ExecutionException.class, whileRunning::get);
+    assertTrue(thrown.getCause() instanceof IdempotencyKeyInFlightException);
+    assertSame(completed, afterwards.get());
+  }
+
+  @Test
+  void a_claim_first_deletes_a_stale_row_for_its_key() {
+    // act
+    assertNull(idempotencyService.claim("expired-row"));
+
+    // assert
+    verify(idempotencyRecordRepository, times(1)).deleteStale(eq("expired-row"), any(), any());
+    verify(idempotencyRecordRepository, times(1)).insertPending(eq("expired-row"), any());
+  }
+
+  @Test
+  void keys_evicted_from_memory_are_found_in_the_table() {
+    // arrange
+    IdempotencyRecord oldest = record("evicted-1", 200, LocalDateTime.now());
+    for (String key : new String[] { "evicted-1", "evicted-2", "evicted-3" }) {
+      idempotencyService.claim(key);
+      idempotencyService.complete(key, key.equals("evicted-1") ? oldest : record(key, 200, LocalDateTime.now()));
+    }
+    clearInvocations(idempotencyRecordRepository);
+    when(idempotencyRecordRepository.findById(eq("evicted-1"))).thenReturn(Optional.of(oldest));
+
+    // act
+    Optional<IdempotencyRecord> found = idempotencyService.find("evicted-1");
+
+    // assert
+    assertEquals(Optional.of(oldest), found);
+    verify(idempotencyRecordRepository, times(1)).findById("evicted-1");
+  }
+
+  @Test
+  void expired_keys_are_ignored_and_purged() {
+    // arrange
+    IdempotencyRecord expired = record("expired", 200, LocalDateTime.now().minusHours(2));
+    when(idempotencyRecordRepository.findById(eq("expired"))).thenReturn(Optional.of(expired));
+    when(idempotencyRecordRepository.bulkDeleteCreatedBefore(any())).thenReturn(1);
+
+    // act
+    Optional<IdempotencyRecord> found = idempotencyService.find("expired");
+    idempotencyService.purgeExpired();
+    idempotencyService.purgeExpiredRecords();
+
+    // assert
+    assertEquals(Optional.empty(), found);
+    verify(idempotencyRecordRepository, times(1)).bulkDeleteCreatedBefore(any());
+  }
+}
@@ -0,0 +1,206 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.config.JpaConfig;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobRepository;
+import lombok.extern.slf4j.Slf4j;
+
+@DataJpaTest
+@Import({ JpaConfig.class, JobService.class, JobServiceTests.TestJobs.class })
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+// workers claim and finish jobs in their own transactions
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = { "app.jobs.workerId=this-worker", "app.jobs.staleAfterSeconds=60" })
+@Slf4j
+class JobServiceTests {
+
+  static final List<String> discarded = new CopyOnWriteArrayList<>();
+
+  record TestJob(String type, boolean resumable, Function<JobContext, Object> work) implements JobHandler {
+    @Override
+    public Object run(JobContext job) {
+      log.info("working on {}", job.getParams());
+      return work.apply(job);
+    }
+
+    @Override
+    public void discard(String params) {
+      discarded.add(params);
+    }
+  }
+
+  @TestConfiguration
+  static class TestJobs {
+    @Bean
+    JobHandler echo() {
+      return new TestJob("echo", false, job -> {
+        job.progress(1, 1L, "echoed");
+        return Map.of("echo", job.getParams());
+      });
+    }
+
+    @Bean
+    JobHandler resumableEcho() {
+      return new TestJob("resumableEcho", true, job -> Map.of("echo", job.getParams()));
+    }
+
+    @Bean
+    JobHandler broken() {
+      return new TestJob("broken", false, job -> {
+        throw new IllegalStateException("disk full");
+      });
+    }
+
+    @Bean
+    JobHandler endless() {
+      return new TestJob("endless", false, job -> {
+        for (long step = 1;; step++) {
+          job.progress(step, null, "%d steps".formatted(step));
+          job.checkCancelled();
+          try {
+            Thread.sleep(5);
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      });
+    }
+  }
+
+  @Autowired
+  JobService jobService;
+
+  @Autowired
+  JobRepository jobRepository;
+
+  @AfterEach
+  void deleteJobs() {
+    jobRepository.findByStatusOrderById(Job.Status.RUNNING).forEach(job -> jobService.cancel(job.getId()));
+    jobRepository.deleteAll();
+    discarded.clear();
+  }
+
+  private Job awaitStatus(long id, Job.Status status) throws InterruptedException {
+    for (int i = 0; i < 500; i++) {
+      Job job = jobRepository.findById(id).orElseThrow();
+      if (job.getStatus() == status) {
+        return job;
+      }
+      Thread.sleep(20);
+    }
+    throw new AssertionError("job %d never became %s".formatted(id, status));
+  }
+
+  private Job saveJob(String type, Job.Status status, String workerId, LocalDateTime heartbeatAt) {
+    return jobRepository.save(Job.builder()
+        .type(type)
+        .status(status)
+        .workerId(workerId)
+        .heartbeatAt(heartbeatAt)
+        .createdAt(LocalDateTime.now())
+        .params("\"%s params\"".formatted(type))
+        .build());
+  }
+
+  @Test
+  void a_submitted_job_runs_and_keeps_its_result_progress_and_log() throws Exception {
+    Job submitted = jobService.submit("echo", "say hi", Map.of("word", "hi"), "admin@example.org");
+    assertEquals(Job.Status.QUEUED, submitted.getStatus());
+
+    Job done = awaitStatus(submitted.getId(), Job.Status.COMPLETED);
+
+    assertEquals("{\"echo\":\"{\\\"word\\\":\\\"hi\\\"}\"}", done.getResult());
+    assertEquals("this-worker", done.getWorkerId());
+    assertEquals(1, done.getProgress());
+    assertEquals("echoed", done.getProgressMessage());
+    assertTrue(done.getLog().contains("INFO  JobServiceTests - working on {\"word\":\"hi\"}"), done.getLog());
+    assertTrue(done.getLog().contains("completed"), done.getLog());
+  }
+
+  @Test
+  void a_job_that_throws_is_failed_with_its_error() throws Exception {
+    Job failed = awaitStatus(jobService.submit("broken", "break", Map.of(), "admin@example.org").getId(),
+        Job.Status.FAILED);
+
+    assertEquals("java.lang.IllegalStateException: disk full", failed.getError());
+    assertTrue(failed.getLog().contains("  java.lang.IllegalStateException: disk full"), failed.getLog());
+    assertThrows(IllegalArgumentException.class, () -> jobService.submit("nonesuch", "", Map.of(), "admin@example.org"));
+  }
+
+  @Test
+  void a_running_job_reports_progress_with_each_heartbeat_and_stops_when_cancelled() throws Exception {
+    long id = jobService.submit("endless", "run forever", Map.of(), "admin@example.org").getId();
+    awaitStatus(id, Job.Status.RUNNING);
+    Thread.sleep(50);
+
+    jobService.heartbeat();
+    Job running = jobRepository.findById(id).orElseThrow();
+    assertTrue(running.getProgress() > 0);
+    assertTrue(running.getLog().contains("working on {}"), running.getLog());
+
+    // as another instance would: only the row changes, and the heartbeat brings it here
+    jobRepository.requestCancel(id);
+    jobService.heartbeat();
+
+    Job cancelled = awaitStatus(id, Job.Status.CANCELLED);
+    assertEquals("job %d was cancelled".formatted(id), cancelled.getError());
+  }
+
+  @Test
+  void a_queued_job_is_cancelled_without_running_and_releases_its_params() throws Exception {
+    Job queued = saveJob("endless", Job.Status.QUEUED, null, null);
+
+    Job cancelled = jobService.cancel(queued.getId());
+
+    assertEquals(Job.Status.CANCELLED, cancelled.getStatus());
+    assertEquals(List.of("\"endless params\""), discarded);
+    jobService.sweep();
+    assertEquals(Job.Status.CANCELLED, jobRepository.findById(queued.getId()).orElseThrow().getStatus());
+  }
+
+  @Test
+  void after_a_restart_interrupted_jobs_are_resumed_or_failed_and_queued_jobs_run() throws Exception {
+    LocalDateTime now = LocalDateTime.now();
+    Job resumable = saveJob("resumableEcho", Job.Status.RUNNING, "this-worker", now.minusMinutes(10));
+    Job notResumable = saveJob("endless", Job.Status.RUNNING, "this-worker", now.minusMinutes(10));
+    Job elsewhere = saveJob("echo", Job.Status.RUNNING, "other-worker", now);
+    // e.g. another instance on this host that was given the same workerId
+    Job alive = saveJob("echo", Job.Status.RUNNING, "this-worker", now);
+    Job abandoned = saveJob("echo", Job.Status.RUNNING, "other-worker", now.minusMinutes(10));
+    Job queued = saveJob("echo", Job.Status.QUEUED, null, null);
+
+    // as the first sweep after a restart does
+    jobService.sweep();
+
+    awaitStatus(resumable.getId(), Job.Status.COMPLETED);
+    awaitStatus(queued.getId(), Job.Status.COMPLETED);
+    assertTrue(awaitStatus(notResumable.getId(), Job.Status.FAILED).getError().startsWith("interrupted on this-worker"));
+    assertTrue(awaitStatus(abandoned.getId(), Job.Status.FAILED).getError().startsWith("interrupted on other-worker"));
+    assertEquals(Job.Status.RUNNING, jobRepository.findById(elsewhere.getId()).orElseThrow().getStatus());
+    assertEquals(Job.Status.RUNNING, jobRepository.findById(alive.getId()).orElseThrow().getStatus());
+    assertEquals(List.of("\"endless params\"", "\"echo params\""), discarded);
+  }
+}
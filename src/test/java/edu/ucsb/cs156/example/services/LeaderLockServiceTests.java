@@ -0,0 +1,211 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import edu.ucsb.cs156.example.aop.ClusterLock;
+import edu.ucsb.cs156.example.aop.ClusterLockAspect;
+import edu.ucsb.cs156.example.config.JpaConfig;
+import edu.ucsb.cs156.example.entities.LeaderLock;
+import edu.ucsb.cs156.example.errors.LeaseLostException;
+import edu.ucsb.cs156.example.models.LeaderLease;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Runs two instances of the lock machinery, each in its own application
+ * context, against one shared in-memory H2 database, as two app instances
+ * behind a load balancer would share one database.
+ */
+class LeaderLockServiceTests {
+
+  static final List<String> runs = new CopyOnWriteArrayList<>();
+
+  static class Housekeeping {
+    private final LeaderLockService leaderLocks;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    Housekeeping(LeaderLockService leaderLocks) {
+      this.leaderLocks = leaderLocks;
+    }
+
+    // through a method: the bean is a proxy, whose own fields are not set
+    public CountDownLatch release() {
+      return release;
+    }
+
+    @ClusterLock(name = "digest", holdAtLeast = "1h")
+    public void sendDigest() {
+      runs.add("digest by " + leaderLocks.getOwner());
+    }
+
+    @ClusterLock(name = "rollup")
+    public void rollUp() throws InterruptedException {
+      runs.add("rollup by %s with token %d".formatted(leaderLocks.getOwner(),
+          leaderLocks.currentLease().orElseThrow().fencingToken()));
+      release.await(5, TimeUnit.SECONDS);
+    }
+  }
+
+  @Configuration(proxyBeanMethods = false)
+  @ImportAutoConfiguration({ DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+      TransactionAutoConfiguration.class, JdbcTemplateAutoConfiguration.class, AopAutoConfiguration.class })
+  @EntityScan(basePackageClasses = LeaderLock.class)
+  @Import({ JpaConfig.class, LeaderLockService.class, ClusterLockAspect.class })
+  static class Instance {
+    @Bean
+    MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+
+    @Bean
+    Housekeeping housekeeping(LeaderLockService leaderLocks) {
+      return new Housekeeping(leaderLocks);
+    }
+  }
+
+  static ConfigurableApplicationContext nodeA;
+  static ConfigurableApplicationContext nodeB;
+
+  static ConfigurableApplicationContext start(String owner) {
+    return new SpringApplicationBuilder(Instance.class)
+        .web(WebApplicationType.NONE)
+        .properties(
+            "spring.datasource.url=jdbc:h2:mem:leaderlocks;DB_CLOSE_DELAY=-1",
+            "spring.jpa.hibernate.ddl-auto=update",
+            "spring.main.banner-mode=off",
+            "app.leaderLock.owner=" + owner)
+        .run();
+  }
+
+  @BeforeAll
+  static void startInstances() {
+    nodeA = start("node-a");
+    nodeB = start("node-b");
+  }
+
+  @AfterAll
+  static void stopInstances() {
+    nodeA.close();
+    nodeB.close();
+  }
+
+  @BeforeEach
+  void clearLocks() {
+    nodeA.getBean(JdbcTemplate.class).update("DELETE FROM leaderlocks");
+    runs.clear();
+  }
+
+  private static LeaderLockService leaderLocks(ConfigurableApplicationContext node) {
+    return node.getBean(LeaderLockService.class);
+  }
+
+  @Test
+  void a_scheduled_method_runs_on_one_instance_while_the_other_skips_it() throws Exception {
+    Housekeeping onA = nodeA.getBean(Housekeeping.class);
+    Housekeeping onB = nodeB.getBean(Housekeeping.class);
+
+    CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+      try {
+        onA.rollUp();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    while (runs.isEmpty()) {
+      Thread.sleep(10);
+    }
+    onB.rollUp();
+    onA.release().countDown();
+    first.get(5, TimeUnit.SECONDS);
+
+    assertEquals(List.of("rollup by node-a with token 1"), runs);
+
+    // once released, the next instance to try gets it, with the next token
+    onB.release().countDown();
+    onB.rollUp();
+    assertEquals(List.of("rollup by node-a with token 1", "rollup by node-b with token 2"), runs);
+  }
+
+  @Test
+  void hold_at_least_keeps_a_finished_run_from_being_repeated_elsewhere() throws Exception {
+    nodeA.getBean(Housekeeping.class).sendDigest();
+    nodeB.getBean(Housekeeping.class).sendDigest();
+    nodeA.getBean(Housekeeping.class).sendDigest();
+
+    assertEquals(List.of("digest by node-a"), runs);
+  }
+
+  @Test
+  void an_expired_lease_passes_to_another_instance_and_fences_off_the_old_holder() throws Exception {
+    LeaderLease onA = leaderLocks(nodeA).tryAcquire("report", Duration.ofSeconds(1)).orElseThrow();
+    assertTrue(leaderLocks(nodeB).tryAcquire("report", Duration.ofMinutes(1)).isEmpty());
+
+    // node-a stalls past its lease
+    Thread.sleep(1200);
+    LeaderLease onB = leaderLocks(nodeB).tryAcquire("report", Duration.ofMinutes(1)).orElseThrow();
+
+    assertEquals(onA.fencingToken() + 1, onB.fencingToken());
+    assertFalse(leaderLocks(nodeA).isHeld(onA));
+    assertTrue(leaderLocks(nodeB).isHeld(onB));
+
+    // node-a coming back to let go must not free node-b's lock
+    leaderLocks(nodeA).release(onA, Duration.ZERO);
+    assertTrue(leaderLocks(nodeB).isHeld(onB));
+    assertEquals(1, nodeA.getBean(MeterRegistry.class).counter("app.leaderlock.lost", "lock", "report").count());
+  }
+
+  @Test
+  void work_checking_its_lease_stops_once_the_lock_has_moved_on() throws Throwable {
+    LeaderLockService onA = leaderLocks(nodeA);
+
+    assertThrows(LeaseLostException.class, () -> onA.runExclusively("archive", Duration.ofSeconds(1), Duration.ZERO, () -> {
+      onA.checkHeld();
+      Thread.sleep(1200);
+      leaderLocks(nodeB).tryAcquire("archive", Duration.ofMinutes(1)).orElseThrow();
+      onA.checkHeld();
+      runs.add("written after losing the lock");
+    }));
+
+    assertEquals(List.of(), runs);
+    assertThrows(IllegalStateException.class, onA::checkHeld);
+  }
+
+  @Test
+  void acquisition_latency_is_timed_per_lock_and_outcome() {
+    leaderLocks(nodeA).tryAcquire("metrics", Duration.ofMinutes(1));
+    leaderLocks(nodeA).tryAcquire("metrics", Duration.ofMinutes(1));
+
+    MeterRegistry meters = nodeA.getBean(MeterRegistry.class);
+    assertEquals(1, meters.timer("app.leaderlock.acquire", "lock", "metrics", "outcome", "acquired").count());
+    assertEquals(1, meters.timer("app.leaderlock.acquire", "lock", "metrics", "outcome", "busy").count());
+  }
+}
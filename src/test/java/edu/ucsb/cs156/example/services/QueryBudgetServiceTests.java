@@ -0,0 +1,83 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.errors.QueryBudgetExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = { QueryBudgetService.class, QueryBudgetServiceTests.Meters.class })
+@TestPropertySource(properties = "app.queryBudget.mode=FAIL")
+class QueryBudgetServiceTests {
+
+  @TestConfiguration
+  static class Meters {
+    @Bean
+    MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+  }
+
+  @Autowired
+  QueryBudgetService queryBudgetService;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  private static RequestTimings request(String handler, int queryBudget, int statements) {
+    RequestTimings timings = new RequestTimings();
+    RequestTimings.bind(timings);
+    try {
+      if (handler != null) {
+        RequestTimings.handlerReached(handler, queryBudget);
+      }
+      for (int i = 0; i < statements; i++) {
+        RequestTimings.statementExecuted(1000);
+      }
+    } finally {
+      RequestTimings.unbind();
+    }
+    return timings;
+  }
+
+  private double exceeded(String handler) {
+    return meterRegistry.counter(QueryBudgetService.METER, "handler", handler).count();
+  }
+
+  @Test
+  void a_request_within_its_budget_passes() {
+    queryBudgetService.check(request("UCSBDatesController.getById", 1, 1));
+    // not a controller request, e.g. one turned away by a filter
+    queryBudgetService.check(request(null, -1, 3));
+
+    assertEquals(0, exceeded("UCSBDatesController.getById"));
+  }
+
+  @Test
+  void a_request_over_its_budget_is_counted_and_throws() {
+    QueryBudgetExceededException thrown = assertThrows(QueryBudgetExceededException.class,
+        () -> queryBudgetService.check(request("ArticlesController.updateArticle", 6, 7)));
+
+    assertEquals("ArticlesController.updateArticle ran 7 SQL statements; its @QueryBudget is 6", thrown.getMessage());
+    assertEquals(1, exceeded("ArticlesController.updateArticle"));
+  }
+
+  @Test
+  void a_request_whose_handler_has_no_budget_throws() {
+    QueryBudgetExceededException thrown = assertThrows(QueryBudgetExceededException.class,
+        () -> queryBudgetService.check(request("ArticlesController.getMany", -1, 1)));
+
+    assertEquals("ArticlesController.getMany has no @QueryBudget; it ran 1 SQL statements", thrown.getMessage());
+  }
+}
@@ -0,0 +1,99 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.models.QueryStats;
+import edu.ucsb.cs156.example.models.SlowQuery;
+import edu.ucsb.cs156.example.models.Trace;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = { SlowQueryService.class, TraceService.class })
+@TestPropertySource(properties = { "app.slowQueries.thresholdMillis=5", "app.slowQueries.bufferSize=2",
+    "app.slowQueries.maxFingerprints=3" })
+// the tallies outlive a test
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class SlowQueryServiceTests {
+
+  @Autowired
+  SlowQueryService slowQueryService;
+
+  @Autowired
+  TraceService traceService;
+
+  private static long millis(long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  @Test
+  void literals_and_parameter_lists_are_reduced_to_placeholders() {
+    assertEquals("select * from ucsbdates u1_ where u1_.name = ? and u1_.id in (?, ...) limit ?",
+        SlowQueryService.fingerprint(
+            "select *\n  from ucsbdates u1_ where u1_.name = 'it''s' and u1_.id in (1, 2,3) limit 10"));
+    assertEquals("delete from t where id in (?, ...)",
+        SlowQueryService.fingerprint("delete from t where id in (?, ?, ?)"));
+    assertEquals("select col1 from t2 where x > ?", SlowQueryService.fingerprint("select col1 from t2 where x > 1.5"));
+  }
+
+  @Test
+  void statements_are_tallied_by_fingerprint() {
+    slowQueryService.executed("select name from t where id = 1", millis(1));
+    slowQueryService.executed("select name from t where id = 2", millis(3));
+    slowQueryService.executed("select * from u", millis(1));
+
+    QueryStats byId = slowQueryService.top(SlowQueryService.SortBy.TOTAL, 1).get(0);
+    assertEquals("select name from t where id = ?", byId.getFingerprint());
+    assertEquals(2, byId.getCount());
+    assertEquals(4.0, byId.getTotalMillis());
+    assertEquals(3.0, byId.getMaxMillis());
+    assertEquals(2.0, byId.getMeanMillis());
+    assertNull(byId.getRepositoryMethod());
+    assertEquals(List.of("select name from t where id = ?", "select * from u"),
+        slowQueryService.top(SlowQueryService.SortBy.MEAN, 10).stream().map(QueryStats::getFingerprint).toList());
+  }
+
+  @Test
+  void fingerprints_past_the_maximum_are_tallied_as_other() {
+    for (int i = 0; i < 5; i++) {
+      slowQueryService.executed("select * from t" + (char) ('a' + i), millis(1));
+    }
+
+    List<QueryStats> top = slowQueryService.top(SlowQueryService.SortBy.COUNT, 10);
+    assertEquals(4, top.size());
+    assertEquals(SlowQueryService.OTHER, top.get(0).getFingerprint());
+    assertEquals(2, top.get(0).getCount());
+  }
+
+  @Test
+  void the_latest_slow_statements_are_kept_without_their_values() {
+    Trace trace = traceService.start("GET", "/api/ucsbdates/all");
+    slowQueryService.executed("select * from t where name = 'secret'", millis(6));
+    traceService.finish(trace, 200);
+    slowQueryService.executed("select * from t where name = 'public'", millis(4));
+
+    List<SlowQuery> slowest = slowQueryService.slowest();
+    assertEquals(1, slowest.size());
+    assertEquals("select * from t where name = ?", slowest.get(0).getFingerprint());
+    assertEquals(6.0, slowest.get(0).getDurationMillis());
+    assertEquals(trace.getId(), slowest.get(0).getTraceId());
+
+    slowQueryService.executed("update t set name = 'x' where id = 7", millis(9));
+    slowQueryService.executed("delete from t where id = 7", millis(12));
+
+    slowest = slowQueryService.slowest();
+    assertEquals(List.of("delete from t where id = ?", "update t set name = ? where id = ?"),
+        slowest.stream().map(SlowQuery::getFingerprint).toList());
+    assertNull(slowest.get(0).getTraceId());
+  }
+}
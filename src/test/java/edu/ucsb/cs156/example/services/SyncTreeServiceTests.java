@@ -0,0 +1,184 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.config.JpaConfig;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+import edu.ucsb.cs156.example.models.SyncDiff;
+import edu.ucsb.cs156.example.models.SyncRequest;
+
+@DataJpaTest
+@Import({ JpaConfig.class, ChangeLogService.class, SyncTreeService.class, UCSBOrganizationService.class,
+    HelpRequestsService.class })
+// the buckets change as the writes commit
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "app.sync.buckets=4")
+class SyncTreeServiceTests {
+
+  @Autowired
+  SyncTreeService syncTreeService;
+
+  @Autowired
+  UCSBOrganizationService organizationService;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @AfterEach
+  void deleteRows() {
+    List.of("changelog", "ucsborganizations").forEach(table -> jdbcTemplate.update("DELETE FROM " + table));
+    syncTreeService.rebuild("UCSBOrganization");
+  }
+
+  private UCSBOrganization create(String orgCode) {
+    return organizationService.create(UCSBOrganization.builder().orgCode(orgCode).orgTranslationShort(orgCode)
+        .orgTranslation("translation of " + orgCode).build());
+  }
+
+  /**
+   * @return the client's copy after applying the diff to it, by orgCode
+   */
+  private static Map<String, UCSBOrganization> apply(Map<String, UCSBOrganization> copy, Map<String, Integer> bucketOf,
+      SyncDiff diff) {
+    Map<String, UCSBOrganization> applied = new TreeMap<>(copy);
+    for (SyncDiff.Bucket bucket : diff.getBuckets()) {
+      applied.keySet().removeIf(orgCode -> bucketOf.get(orgCode) == bucket.index());
+      for (Object row : bucket.rows()) {
+        UCSBOrganization organization = (UCSBOrganization) row;
+        applied.put(organization.getOrgCode(), organization);
+        bucketOf.put(organization.getOrgCode(), bucket.index());
+      }
+    }
+    return applied;
+  }
+
+  private static SyncRequest requestFor(SyncDiff last, Map<String, String> bucketHashes) {
+    return SyncRequest.builder().root(last.getRoot())
+        .buckets(List.of(bucketHashes.get("0"), bucketHashes.get("1"), bucketHashes.get("2"), bucketHashes.get("3")))
+        .build();
+  }
+
+  private static Map<String, String> hashesOf(Map<String, String> before, SyncDiff diff) {
+    Map<String, String> hashes = new TreeMap<>(before);
+    diff.getBuckets().forEach(bucket -> hashes.put(Integer.toString(bucket.index()), bucket.hash()));
+    return hashes;
+  }
+
+  private String root() {
+    return syncTreeService.diff("UCSBOrganization", new SyncRequest()).getRoot();
+  }
+
+  @Test
+  void a_client_gets_only_the_buckets_that_changed_since_it_last_synced() {
+    for (String orgCode : List.of("ZPR", "SKY", "OSLI", "KRC", "ACM", "CSSA")) {
+      create(orgCode);
+    }
+
+    // a client with no copy gets every bucket
+    SyncDiff first = syncTreeService.diff("UCSBOrganization", new SyncRequest());
+    assertEquals(4, first.getBucketCount());
+    assertEquals(4, first.getBuckets().size());
+    Map<String, Integer> bucketOf = new TreeMap<>();
+    Map<String, UCSBOrganization> copy = apply(Map.of(), bucketOf, first);
+    assertEquals(List.of("ACM", "CSSA", "KRC", "OSLI", "SKY", "ZPR"), List.copyOf(copy.keySet()));
+    Map<String, String> hashes = hashesOf(Map.of(), first);
+
+    // and then nothing while nothing changes
+    assertEquals(List.of(), syncTreeService.diff("UCSBOrganization", requestFor(first, hashes)).getBuckets());
+
+    organizationService.update("SKY", organization -> organization.setInactive(true));
+    organizationService.delete("ZPR");
+    SyncDiff second = syncTreeService.diff("UCSBOrganization", requestFor(first, hashes));
+
+    assertNotEquals(first.getRoot(), second.getRoot());
+    List<Integer> changedBuckets = second.getBuckets().stream().map(SyncDiff.Bucket::index).toList();
+    List<Integer> expected = List.of(bucketOf.get("SKY"), bucketOf.get("ZPR")).stream().distinct().sorted().toList();
+    assertEquals(expected, changedBuckets);
+    copy = apply(copy, bucketOf, second);
+    assertEquals(List.of("ACM", "CSSA", "KRC", "OSLI", "SKY"), List.copyOf(copy.keySet()));
+    assertTrue(copy.get("SKY").getInactive());
+    assertEquals(List.of(),
+        syncTreeService.diff("UCSBOrganization", requestFor(second, hashesOf(hashes, second))).getBuckets());
+  }
+
+  @Test
+  void the_tree_kept_up_by_writes_is_the_tree_rebuilt_from_the_rows() {
+    create("ACM");
+    create("KRC");
+    create("OSLI");
+    organizationService.update("ACM", organization -> organization.setOrgTranslation("changed"));
+    organizationService.bulkDelete(List.of("KRC"));
+    String kept = root();
+
+    jdbcTemplate.update("UPDATE syncrowhashes SET hash = 0");
+    jdbcTemplate.update("UPDATE syncbuckets SET hash = 0");
+    syncTreeService.rebuild("UCSBOrganization");
+
+    assertEquals(kept, root());
+  }
+
+  @Test
+  void rows_written_past_the_entity_services_are_synced_after_a_rebuild() {
+    create("ACM");
+    String before = root();
+    // as a CSV import writes them
+    jdbcTemplate.update("INSERT INTO ucsborganizations (org_code, org_translation_short, org_translation, inactive)"
+        + " VALUES ('OSLI', 'OSLI', 'Office of Student Life', false)");
+    assertEquals(before, root());
+
+    syncTreeService.rebuild("UCSBOrganization");
+
+    SyncDiff diff = syncTreeService.diff("UCSBOrganization", new SyncRequest());
+    assertNotEquals(before, diff.getRoot());
+    List<String> orgCodes = diff.getBuckets().stream()
+        .flatMap(bucket -> bucket.rows().stream())
+        .map(row -> ((UCSBOrganization) row).getOrgCode())
+        .sorted()
+        .toList();
+    assertEquals(List.of("ACM", "OSLI"), orgCodes);
+  }
+
+  @Test
+  void a_start_rebuilds_only_the_trees_that_are_missing() {
+    create("ACM");
+    jdbcTemplate.update("INSERT INTO ucsborganizations (org_code, org_translation_short, org_translation, inactive)"
+        + " VALUES ('OSLI', 'OSLI', 'Office of Student Life', false)");
+    String kept = root();
+
+    syncTreeService.rebuildMissing();
+    assertEquals(kept, root());
+
+    jdbcTemplate.update("DELETE FROM syncbuckets WHERE entity = 'UCSBOrganization'");
+    syncTreeService.rebuildMissing();
+
+    SyncDiff diff = syncTreeService.diff("UCSBOrganization", new SyncRequest());
+    assertEquals(4, diff.getBucketCount());
+    assertEquals(2, diff.getBuckets().stream().mapToInt(bucket -> bucket.rows().size()).sum());
+  }
+
+  @Test
+  void only_the_reference_tables_can_be_synced() {
+    InvalidQueryException e = assertThrows(InvalidQueryException.class,
+        () -> syncTreeService.diff("HelpRequests", new SyncRequest()));
+    assertEquals("HelpRequests cannot be synced; the tables that can are"
+        + " UCSBDiningCommons,UCSBOrganization,UCSBDate,UCSBDiningCommonsMenuItem", e.getMessage());
+  }
+}
@@ -0,0 +1,72 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.models.Trace;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = TraceService.class)
+// nothing is sampled, so only slow and failed requests are kept
+@TestPropertySource(properties = { "app.tracing.bufferSize=2", "app.tracing.maxSpans=2",
+    "app.tracing.slowMillis=50", "app.tracing.sampleRate=0" })
+class TraceServiceTests {
+
+  @Autowired
+  TraceService traceService;
+
+  private Trace finished(String path, int status, long tookMillis) throws InterruptedException {
+    Trace trace = traceService.start("GET", path);
+    Thread.sleep(tookMillis);
+    traceService.finish(trace, status);
+    return trace;
+  }
+
+  @Test
+  void slow_and_failed_traces_are_kept_and_the_oldest_overwritten() throws Exception {
+    Trace fast = finished("/api/fast", 200, 0);
+    Trace slow = finished("/api/slow", 200, 60);
+    Trace failed = finished("/api/failed", 500, 0);
+    Trace slowest = finished("/api/slowest", 200, 80);
+
+    assertTrue(traceService.find(fast.getId()).isEmpty());
+    assertTrue(traceService.find(slow.getId()).isEmpty());
+    assertSame(failed, traceService.find(failed.getId()).orElseThrow());
+    assertEquals("error", failed.getKeptBecause());
+    assertEquals("slow", slowest.getKeptBecause());
+    assertTrue(slowest.getDurationMicros() >= 80_000);
+    assertEquals(List.of("/api/slowest", "/api/failed"),
+        traceService.list().stream().map(Trace.Summary::path).toList());
+  }
+
+  @Test
+  void spans_are_added_to_the_bound_trace_up_to_the_maximum() {
+    try (TraceContext.Scope span = TraceContext.span("repository", "unbound")) {
+      // nothing to add to
+    }
+    Trace trace = traceService.start("GET", "/api/spans");
+    assertSame(trace, TraceContext.current());
+    for (int i = 0; i < 3; i++) {
+      try (TraceContext.Scope span = TraceContext.span("repository", "call" + i)) {
+        // timed
+      }
+    }
+    traceService.finish(trace, 200);
+
+    assertNull(TraceContext.current());
+    assertEquals(List.of("call0", "call1"), trace.getSpans().stream().map(Trace.Span::name).toList());
+    assertEquals(1, trace.getDroppedSpans());
+    assertEquals(3, trace.summary().spanCount());
+  }
+}
@@ -0,0 +1,34 @@
+package edu.ucsb.cs156.example.testconfig;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * For tests that hold controller endpoints to their @QueryBudget: the whole
+ * app, with real repositories on an in-memory database, and
+ * app.queryBudget.mode=FAIL, so that a request that runs more SQL
+ * statements than its handler's budget, or whose handler has none, fails
+ * the mockMvc.perform that made it with a QueryBudgetExceededException.
+ *
+ * For a handler that returns a CompletableFuture, the budget is checked
+ * when the async dispatch is performed.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@ActiveProfiles("test")
+@TestPropertySource(properties = "app.queryBudget.mode=FAIL")
+public @interface QueryBudgetTest {
+}
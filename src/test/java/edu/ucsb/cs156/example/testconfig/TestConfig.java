@@ -1,15 +1,27 @@
 package edu.ucsb.cs156.example.testconfig;
 
 import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
 
 
+import edu.ucsb.cs156.example.repositories.IdempotencyRecordRepository;
+import edu.ucsb.cs156.example.services.BulkheadService;
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.IdempotencyService;
+import edu.ucsb.cs156.example.services.QueryBudgetService;
+import edu.ucsb.cs156.example.services.TraceService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @TestConfiguration
 public class TestConfig {
 
+    // needed by IdempotencyFilter, which every @WebMvcTest picks up
+    @MockBean
+    IdempotencyRecordRepository idempotencyRecordRepository;
+
     @Bean
     public CurrentUserService currentUserService() {
         return new MockCurrentUserServiceImpl();
@@ -20,4 +32,32 @@ public class TestConfig {
         return new GrantedAuthoritiesService();
     }
 
+    // @WebMvcTest does not auto-configure metrics
+    @Bean
+    public MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    @Bean
+    public IdempotencyService idempotencyService() {
+        return new IdempotencyService();
+    }
+
+    @Bean
+    public BulkheadService bulkheadService() {
+        return new BulkheadService();
+    }
+
+    // needed by ServerTimingFilter
+    @Bean
+    public QueryBudgetService queryBudgetService() {
+        return new QueryBudgetService();
+    }
+
+    // needed by TracingFilter
+    @Bean
+    public TraceService traceService() {
+        return new TraceService();
+    }
+
 }